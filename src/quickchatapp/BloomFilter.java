@@ -0,0 +1,174 @@
+package quickchatapp;
+
+/**
+ * BloomFilter.java
+ * Scalable Bloom filter over strings
+ * Answers "definitely not seen" in O(1) using a few bits per entry; a
+ * "might have been seen" answer must be confirmed with an exact check
+ * When a stage fills up a larger stage with a tighter error rate is added,
+ * so the overall false positive rate stays near the configured target
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BloomFilter {
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    
+    private final double falsePositiveRate;
+    private final List<Stage> stages;
+    private long count;
+    
+    // Constructor
+    /**
+     * @param expectedEntries entries the first stage is sized for
+     * @param falsePositiveRate target false positive rate, e.g. 0.01
+     */
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("Expected entries must be positive.");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.stages = new ArrayList<>();
+        // The first stage gets half the error budget; later ones get less
+        stages.add(new Stage(expectedEntries, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+        this.count = 0;
+    }
+    
+    /**
+     * Records a value
+     * @param value value to add
+     */
+    public void add(String value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        Stage current = stages.get(stages.size() - 1);
+        if (current.isFull()) {
+            double rate = current.falsePositiveRate * TIGHTENING_RATIO;
+            current = new Stage(current.capacity * GROWTH_FACTOR, rate);
+            stages.add(current);
+        }
+        current.add(h1, h2);
+        count++;
+    }
+    
+    /**
+     * Checks if a value might have been added
+     * @param value value to check
+     * @return false if definitely never added, true if possibly added
+     */
+    public boolean mightContain(String value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (Stage stage : stages) {
+            if (stage.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the number of values added
+     * @return entry count
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the configured target false positive rate
+     * @return false positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+    
+    /**
+     * Returns the memory used by the bit arrays
+     * @return size in bytes
+     */
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.bits.length * 8L;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Returns the number of stages the filter has grown to
+     * @return stage count
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+    
+    /**
+     * 64-bit hash of a string (FNV-1a style mixing with a murmur finaliser)
+     * Shared with the sketches in this package
+     */
+    static long hash(String value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+    
+    /**
+     * One fixed-size Bloom filter sized for a capacity and error rate
+     */
+    private static class Stage {
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private final double falsePositiveRate;
+        private int size;
+        
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            // Optimal sizing: m = -n ln p / (ln 2)^2, k = m / n ln 2
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            m = Math.max(64, (m + 63) / 64 * 64);
+            this.bits = new long[(int) (m / 64)];
+            this.bitCount = m;
+            this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+            this.size = 0;
+        }
+        
+        boolean isFull() {
+            return size >= capacity;
+        }
+        
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            size++;
+        }
+        
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package quickchatapp;
+
+/**
+ * ConversationStore.java
+ * Conversation threads for every recipient, persisted one file per thread
+ * Each thread lives in conversations/<recipient>.thread as one JSON
+ * record per line: a message with its sequence number, or a deletion of
+ * one. Lines are only ever appended, so adding to a thread writes just
+ * the new lines, and opening a thread reads only that thread's file.
+ * Threads are read from disk the first time they are asked for, and
+ * then catch up on any held messages their file is missing
+ * Not thread-safe; used under the same rules as MessageManager
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.json.JSONObject;
+
+public class ConversationStore {
+    static final String CONVERSATION_DIRECTORY = "conversations";
+    static final String THREAD_SUFFIX = ".thread";
+    
+    private final Path directory;
+    // Threads read so far, by recipient
+    private final Map<String, ConversationThread> threads;
+    // Messages held elsewhere for a recipient, oldest first
+    private Function<String, Collection<Message>> held;
+    
+    // Constructors
+    public ConversationStore() {
+        this(Paths.get(CONVERSATION_DIRECTORY));
+    }
+    
+    /**
+     * @param directory directory holding the thread files
+     */
+    public ConversationStore(Path directory) {
+        this.directory = directory;
+        this.threads = new HashMap<>();
+    }
+    
+    /**
+     * Returns a recipient's thread, reading its file on first use
+     * @param recipient recipient number
+     * @return the thread, empty if nothing was ever sent to the recipient
+     */
+    public ConversationThread thread(String recipient) {
+        ConversationThread thread = threads.get(recipient);
+        if (thread == null) {
+            thread = load(recipient);
+            threads.put(recipient, thread);
+            if (held != null) {
+                catchUp(thread, held.apply(recipient));
+            }
+        }
+        return thread;
+    }
+    
+    /**
+     * Adds a recipient's held messages to its thread when the thread is
+     * first read. Messages the thread already has are skipped, so only
+     * what is missing from the file gets written
+     * @param held held messages for a recipient, oldest first
+     */
+    void catchUpFrom(Function<String, Collection<Message>> held) {
+        this.held = held;
+    }
+    
+    /**
+     * Adds a message to the end of its recipient's thread
+     * @param message message to add
+     * @return its sequence number, or 0 if the thread already holds it
+     */
+    public long append(Message message) {
+        ConversationThread thread = thread(message.getRecipient());
+        long sequence = thread.append(message);
+        if (sequence > 0) {
+            write(thread.getRecipient(), record(message, sequence) + "\n");
+        }
+        return sequence;
+    }
+    
+    /**
+     * Adds messages to their threads with one write per thread
+     * @param messages messages to add, in order
+     * @return number of messages added
+     */
+    public int appendAll(Collection<Message> messages) {
+        Map<String, StringBuilder> lines = new LinkedHashMap<>();
+        int added = 0;
+        for (Message message : messages) {
+            long sequence = thread(message.getRecipient()).append(message);
+            if (sequence > 0) {
+                lines.computeIfAbsent(message.getRecipient(), recipient -> new StringBuilder())
+                    .append(record(message, sequence)).append('\n');
+                added++;
+            }
+        }
+        writeAll(lines);
+        return added;
+    }
+    
+    /**
+     * Removes messages from their threads with one write per thread
+     * @param messages deleted messages
+     * @return number of messages removed
+     */
+    public int removeAll(Collection<Message> messages) {
+        Map<String, StringBuilder> lines = new LinkedHashMap<>();
+        int removed = 0;
+        for (Message message : messages) {
+            long sequence = thread(message.getRecipient()).remove(message);
+            if (sequence > 0) {
+                JSONObject deletion = new JSONObject();
+                deletion.put("sequence", sequence);
+                deletion.put("deleted", true);
+                lines.computeIfAbsent(message.getRecipient(), recipient -> new StringBuilder())
+                    .append(deletion.toString()).append('\n');
+                removed++;
+            }
+        }
+        writeAll(lines);
+        return removed;
+    }
+    
+    /**
+     * @return number of threads read or started so far
+     */
+    public int getLoadedThreadCount() {
+        return threads.size();
+    }
+    
+    /**
+     * @param recipient recipient number
+     * @return the file a recipient's thread is kept in
+     */
+    Path fileOf(String recipient) {
+        // Keep the name portable whatever the number contains
+        return directory.resolve(recipient.replaceAll("[^0-9A-Za-z]", "_") + THREAD_SUFFIX);
+    }
+    
+    private ConversationThread load(String recipient) {
+        ConversationThread thread = new ConversationThread(recipient);
+        Path file = fileOf(recipient);
+        if (!Files.exists(file)) {
+            return thread;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject record;
+                try {
+                    record = new JSONObject(line);
+                } catch (Exception e) {
+                    // A line cut short by a crash; everything before it is intact
+                    continue;
+                }
+                long sequence = record.optLong("sequence", 0);
+                if (sequence <= 0) {
+                    continue;
+                }
+                if (record.optBoolean("deleted", false)) {
+                    thread.clear(sequence);
+                } else {
+                    thread.place(sequence, Message.fromJSON(record, Map.of()));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading conversation: " + e.getMessage());
+        }
+        return thread;
+    }
+    
+    private void catchUp(ConversationThread thread, Collection<Message> messages) {
+        StringBuilder lines = new StringBuilder();
+        for (Message message : messages) {
+            long sequence = thread.append(message);
+            if (sequence > 0) {
+                lines.append(record(message, sequence)).append('\n');
+            }
+        }
+        if (lines.length() > 0) {
+            write(thread.getRecipient(), lines.toString());
+        }
+    }
+    
+    private static String record(Message message, long sequence) {
+        JSONObject record = message.toJSON();
+        record.put("sequence", sequence);
+        // Read back by Message.fromJSON as the message's creation time
+        record.put("storedAt", message.getCreatedAt());
+        return record.toString();
+    }
+    
+    private void writeAll(Map<String, StringBuilder> lines) {
+        for (Map.Entry<String, StringBuilder> entry : lines.entrySet()) {
+            write(entry.getKey(), entry.getValue().toString());
+        }
+    }
+    
+    private void write(String recipient, String lines) {
+        try {
+            Files.createDirectories(directory);
+            Files.write(fileOf(recipient), lines.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Error writing conversation: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package quickchatapp;
+
+/**
+ * ConversationThread.java
+ * The messages to one recipient, in the order they were added
+ * Each message gets the next sequence number in the thread and sits in a
+ * fixed-size chunk at that position, so finding a sequence number is
+ * arithmetic and a page of N messages costs O(N) however large the rest
+ * of the store is. A delete clears the slot and keeps the number, so
+ * cursors handed out earlier stay valid
+ * Pages are returned oldest first; page backwards from a page's first
+ * sequence number and forwards from its last
+ * Not thread-safe; used under the same rules as MessageManager
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConversationThread {
+    private static final int CHUNK_BITS = 7;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    private final String recipient;
+    private final List<Message[]> chunks;
+    // Sequence number of each message held, by tombstone key
+    private final Map<String, Long> sequences;
+    // Highest sequence number handed out
+    private long lastSequence;
+    private int live;
+    
+    // Constructor
+    public ConversationThread(String recipient) {
+        this.recipient = recipient;
+        this.chunks = new ArrayList<>();
+        this.sequences = new HashMap<>();
+    }
+    
+    /**
+     * Adds a message at the end of the thread
+     * @param message message to the thread's recipient
+     * @return its sequence number, or 0 if the thread already holds it
+     */
+    public long append(Message message) {
+        if (sequences.containsKey(keyOf(message))) {
+            return 0;
+        }
+        long sequence = lastSequence + 1;
+        place(sequence, message);
+        return sequence;
+    }
+    
+    /**
+     * Removes a message, leaving its sequence number unused
+     * @param message message held by the thread
+     * @return its sequence number, or 0 if the thread does not hold it
+     */
+    public long remove(Message message) {
+        Long sequence = sequences.get(keyOf(message));
+        if (sequence == null) {
+            return 0;
+        }
+        clear(sequence);
+        return sequence;
+    }
+    
+    /**
+     * @param sequence sequence number in this thread
+     * @return the message, or null if there is none or it was deleted
+     */
+    public Message get(long sequence) {
+        if (sequence < 1 || sequence > lastSequence) {
+            return null;
+        }
+        return slot(sequence);
+    }
+    
+    /**
+     * @param count most messages to return
+     * @return the newest messages, oldest first
+     */
+    public Page latest(int count) {
+        return before(lastSequence + 1, count);
+    }
+    
+    /**
+     * @param cursor sequence number to page back from, usually a page's first
+     * @param count most messages to return
+     * @return the messages just before the cursor, oldest first
+     */
+    public Page before(long cursor, int count) {
+        List<Message> messages = new ArrayList<>(Math.max(0, Math.min(count, live)));
+        long sequence = Math.min(cursor, lastSequence + 1) - 1;
+        long last = 0;
+        long first = 0;
+        for (; sequence >= 1 && messages.size() < count; sequence--) {
+            Message message = slot(sequence);
+            if (message != null) {
+                messages.add(message);
+                first = sequence;
+                if (last == 0) {
+                    last = sequence;
+                }
+            }
+        }
+        Collections.reverse(messages);
+        return page(messages, first, last);
+    }
+    
+    /**
+     * @param cursor sequence number to page on from, usually a page's last
+     * @param count most messages to return
+     * @return the messages just after the cursor, oldest first
+     */
+    public Page after(long cursor, int count) {
+        List<Message> messages = new ArrayList<>(Math.max(0, Math.min(count, live)));
+        long first = 0;
+        long last = 0;
+        for (long sequence = Math.max(cursor, 0) + 1; sequence <= lastSequence && messages.size() < count; sequence++) {
+            Message message = slot(sequence);
+            if (message != null) {
+                messages.add(message);
+                last = sequence;
+                if (first == 0) {
+                    first = sequence;
+                }
+            }
+        }
+        return page(messages, first, last);
+    }
+    
+    public String getRecipient() {
+        return recipient;
+    }
+    
+    /**
+     * @return messages held, deleted ones excluded
+     */
+    public int size() {
+        return live;
+    }
+    
+    /**
+     * @return highest sequence number handed out, 0 for a new thread
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * Puts a message at a known sequence number, as when a persisted
+     * thread is read back; positions skipped over stay empty
+     */
+    void place(long sequence, Message message) {
+        while (sequence > (long) chunks.size() * CHUNK_SIZE) {
+            chunks.add(new Message[CHUNK_SIZE]);
+        }
+        if (slot(sequence) != null) {
+            clear(sequence);
+        }
+        int index = (int) (sequence - 1);
+        chunks.get(index >>> CHUNK_BITS)[index & CHUNK_MASK] = message;
+        sequences.put(keyOf(message), sequence);
+        lastSequence = Math.max(lastSequence, sequence);
+        live++;
+    }
+    
+    /**
+     * Empties the slot at a sequence number
+     */
+    void clear(long sequence) {
+        Message message = get(sequence);
+        if (message == null) {
+            return;
+        }
+        int index = (int) (sequence - 1);
+        chunks.get(index >>> CHUNK_BITS)[index & CHUNK_MASK] = null;
+        sequences.remove(keyOf(message));
+        live--;
+    }
+    
+    private Message slot(long sequence) {
+        int index = (int) (sequence - 1);
+        return chunks.get(index >>> CHUNK_BITS)[index & CHUNK_MASK];
+    }
+    
+    private Page page(List<Message> messages, long first, long last) {
+        return new Page(messages, first, last,
+            !messages.isEmpty() && hasLive(first - 1, -1),
+            !messages.isEmpty() && hasLive(last + 1, 1));
+    }
+    
+    /**
+     * Looks for a live message from a sequence number in one direction;
+     * stops at the first one, so only deleted slots are walked over
+     */
+    private boolean hasLive(long from, int step) {
+        for (long sequence = from; sequence >= 1 && sequence <= lastSequence; sequence += step) {
+            if (slot(sequence) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String keyOf(Message message) {
+        return Message.tombstoneKey(message.getMessageID(), message.getMessageHash());
+    }
+    
+    /**
+     * One page of a thread, oldest message first
+     */
+    public static final class Page {
+        private final List<Message> messages;
+        private final long firstSequence;
+        private final long lastSequence;
+        private final boolean hasOlder;
+        private final boolean hasNewer;
+        
+        Page(List<Message> messages, long firstSequence, long lastSequence, boolean hasOlder, boolean hasNewer) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.hasOlder = hasOlder;
+            this.hasNewer = hasNewer;
+        }
+        
+        public List<Message> getMessages() {
+            return messages;
+        }
+        
+        /**
+         * @return sequence number of the first message, the cursor for
+         *         the page before; 0 if the page is empty
+         */
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+        
+        /**
+         * @return sequence number of the last message, the cursor for
+         *         the page after; 0 if the page is empty
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+        
+        public boolean hasOlder() {
+            return hasOlder;
+        }
+        
+        public boolean hasNewer() {
+            return hasNewer;
+        }
+    }
+}
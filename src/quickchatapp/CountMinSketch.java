@@ -0,0 +1,126 @@
+package quickchatapp;
+
+/**
+ * CountMinSketch.java
+ * Estimates how often each string has been added in fixed memory
+ * Every value bumps one counter in each of depth rows; the smallest of
+ * its counters is the estimate. Estimates never undercount, and overcount
+ * by at most e / width of the total with probability 1 - e^-depth
+ * Updates are conservative: only the counters at the current minimum are
+ * raised, which keeps collisions from inflating the other rows. Sketches
+ * of the same shape merge by adding counters
+ */
+
+public class CountMinSketch {
+    private static final long SEED_A = 0x9E3779B97F4A7C15L;
+    private static final long SEED_B = 0xC2B2AE3D27D4EB4FL;
+    
+    private final int width;
+    private final int depth;
+    private final int[] counters;
+    private long total;
+    
+    // Constructor
+    /**
+     * @param width counters per row; error is about e / width of the total
+     * @param depth rows; failure probability is about e^-depth
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Width and depth must be positive.");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new int[width * depth];
+        this.total = 0;
+    }
+    
+    /**
+     * Records one occurrence of a value
+     * @param value value to count
+     */
+    public void add(String value) {
+        add(value, 1);
+    }
+    
+    /**
+     * Records several occurrences of a value
+     * @param value value to count
+     * @param count occurrences, at least 0
+     */
+    public void add(String value, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative.");
+        }
+        long h1 = BloomFilter.hash(value, SEED_A);
+        long h2 = BloomFilter.hash(value, SEED_B) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[slot(row, h1, h2)]);
+        }
+        int target = (int) Math.min(Integer.MAX_VALUE, (long) min + count);
+        for (int row = 0; row < depth; row++) {
+            int slot = slot(row, h1, h2);
+            if (counters[slot] < target) {
+                counters[slot] = target;
+            }
+        }
+        total += count;
+    }
+    
+    /**
+     * Estimates how often a value was added
+     * @param value value to look up
+     * @return estimate, never below the true count
+     */
+    public long estimate(String value) {
+        long h1 = BloomFilter.hash(value, SEED_A);
+        long h2 = BloomFilter.hash(value, SEED_B) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[slot(row, h1, h2)]);
+        }
+        return min;
+    }
+    
+    private int slot(int row, long h1, long h2) {
+        return row * width + (int) Math.floorMod(h1 + row * h2, (long) width);
+    }
+    
+    /**
+     * Adds another sketch's counts into this one
+     * @param other sketch with the same width and depth
+     * @return this sketch
+     */
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different shape.");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (int) Math.min(Integer.MAX_VALUE, (long) counters[i] + other.counters[i]);
+        }
+        total += other.total;
+        return this;
+    }
+    
+    /**
+     * @return number of occurrences added
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    /**
+     * @return largest overcount expected for any value, e / width of the total
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+    
+    /**
+     * @return memory used by the counters
+     */
+    public int getSizeInBytes() {
+        return counters.length * 4;
+    }
+}
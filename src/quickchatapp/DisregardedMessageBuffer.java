@@ -0,0 +1,226 @@
+package quickchatapp;
+
+/**
+ * DisregardedMessageBuffer.java
+ * Bounded holding area for disregarded messages
+ * A disregarded message can be undone (restored for sending) within the
+ * undo window, deleted at once ("Press 0 to delete message"), and is
+ * purged when its time to live runs out. Expiry runs on a hashed timing
+ * wheel sized to cover the time to live, so each message costs O(1) to
+ * schedule, cancel and expire and nothing is ever scanned. When the
+ * buffer is full the oldest message makes room for the new one
+ * Expiry is driven by the buffer's own operations and by the owning
+ * MessageManager's adds, not by a background thread. The owner is told
+ * about every message that leaves, however it leaves
+ */
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+public class DisregardedMessageBuffer {
+    public static final int DEFAULT_CAPACITY = 1_000;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+    public static final Duration DEFAULT_UNDO_WINDOW = Duration.ofSeconds(30);
+    // Slots in the wheel; one revolution covers the time to live
+    private static final int WHEEL_SLOTS = 512;
+    
+    private final int capacity;
+    private final long timeToLiveMillis;
+    private final long undoWindowMillis;
+    private final LongSupplier clock;
+    // Oldest first, by message hash
+    private final LinkedHashMap<String, Entry> entries;
+    private final TimingWheel<Entry> wheel;
+    private long expired;
+    private long evicted;
+    private Consumer<Message> onRemoved = message -> { };
+    
+    // Constructors
+    public DisregardedMessageBuffer() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE, DEFAULT_UNDO_WINDOW);
+    }
+    
+    /**
+     * @param capacity most messages held at once
+     * @param timeToLive time a message is kept before it is purged
+     * @param undoWindow time after disregarding in which it can be undone
+     */
+    public DisregardedMessageBuffer(int capacity, Duration timeToLive, Duration undoWindow) {
+        this(capacity, timeToLive, undoWindow, System::currentTimeMillis);
+    }
+    
+    DisregardedMessageBuffer(int capacity, Duration timeToLive, Duration undoWindow, LongSupplier clock) {
+        if (capacity <= 0 || timeToLive.isNegative() || timeToLive.isZero() || undoWindow.isNegative()) {
+            throw new IllegalArgumentException("Capacity and time to live must be positive.");
+        }
+        this.capacity = capacity;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.undoWindowMillis = undoWindow.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>();
+        long tickMillis = Math.max(1, (timeToLiveMillis + WHEEL_SLOTS - 1) / WHEEL_SLOTS);
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_SLOTS, clock, this::expire);
+    }
+    
+    /**
+     * Holds a disregarded message, evicting the oldest if the buffer is full
+     * @param message message marked "Disregarded"
+     */
+    public void add(Message message) {
+        wheel.advance();
+        Entry previous = entries.remove(message.getMessageHash());
+        if (previous != null) {
+            wheel.cancel(previous.timeout);
+            onRemoved.accept(previous.message);
+        }
+        if (entries.size() >= capacity) {
+            Iterator<Entry> oldest = entries.values().iterator();
+            Entry entry = oldest.next();
+            wheel.cancel(entry.timeout);
+            oldest.remove();
+            evicted++;
+            onRemoved.accept(entry.message);
+        }
+        Entry entry = new Entry(message, clock.getAsLong());
+        entry.timeout = wheel.schedule(entry, timeToLiveMillis);
+        entries.put(message.getMessageHash(), entry);
+    }
+    
+    /**
+     * Takes a message back out of the buffer if it is still in its undo window
+     * @param messageHash hash of the disregarded message
+     * @return the message, or null if it is not held or the window has passed
+     */
+    public Message undo(String messageHash) {
+        wheel.advance();
+        Entry entry = entries.get(messageHash);
+        if (entry == null || !isUndoable(entry)) {
+            return null;
+        }
+        remove(entry);
+        return entry.message;
+    }
+    
+    /**
+     * @param messageHash hash of a disregarded message
+     * @return true if it is held and can still be undone
+     */
+    public boolean canUndo(String messageHash) {
+        wheel.advance();
+        Entry entry = entries.get(messageHash);
+        return entry != null && isUndoable(entry);
+    }
+    
+    /**
+     * Deletes a message now instead of waiting for it to expire
+     * @param messageHash hash of the disregarded message
+     * @return the deleted message, or null if it is not held
+     */
+    public Message delete(String messageHash) {
+        wheel.advance();
+        Entry entry = entries.get(messageHash);
+        if (entry == null) {
+            return null;
+        }
+        remove(entry);
+        return entry.message;
+    }
+    
+    /**
+     * Purges the messages whose time to live has run out
+     * @return number purged
+     */
+    public int expireDue() {
+        return wheel.advance();
+    }
+    
+    /**
+     * @param messageHash hash to look for
+     * @return the held message, or null
+     */
+    public Message get(String messageHash) {
+        wheel.advance();
+        Entry entry = entries.get(messageHash);
+        return entry == null ? null : entry.message;
+    }
+    
+    /**
+     * @return held messages, oldest first
+     */
+    public List<Message> getMessages() {
+        wheel.advance();
+        List<Message> messages = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            messages.add(entry.message);
+        }
+        return messages;
+    }
+    
+    public int size() {
+        wheel.advance();
+        return entries.size();
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Sets the owner's hook for messages leaving the buffer: deleted,
+     * undone, expired, evicted or replaced by one with the same hash
+     * Called before undo returns, while the message is still "Disregarded"
+     * @param listener receives each message as it leaves
+     */
+    void onRemoved(Consumer<Message> listener) {
+        this.onRemoved = listener;
+    }
+    
+    /**
+     * @return messages purged because their time to live ran out
+     */
+    public long getExpiredCount() {
+        return expired;
+    }
+    
+    /**
+     * @return messages pushed out because the buffer was full
+     */
+    public long getEvictedCount() {
+        return evicted;
+    }
+    
+    private boolean isUndoable(Entry entry) {
+        return clock.getAsLong() - entry.disregardedAt <= undoWindowMillis;
+    }
+    
+    private void remove(Entry entry) {
+        wheel.cancel(entry.timeout);
+        entries.remove(entry.message.getMessageHash());
+        onRemoved.accept(entry.message);
+    }
+    
+    private void expire(Entry entry) {
+        entries.remove(entry.message.getMessageHash());
+        expired++;
+        onRemoved.accept(entry.message);
+    }
+    
+    /**
+     * A held message and its expiry
+     */
+    private static final class Entry {
+        final Message message;
+        final long disregardedAt;
+        TimingWheel.Timeout<Entry> timeout;
+        
+        Entry(Message message, long disregardedAt) {
+            this.message = message;
+            this.disregardedAt = disregardedAt;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package quickchatapp;
+
+/**
+ * HyperLogLog.java
+ * Estimates how many distinct strings have been added in fixed memory
+ * Each value's hash picks one of 2^precision registers, which keeps the
+ * longest run of leading zeros seen; the harmonic mean of the registers
+ * gives the estimate, with a standard error of about 1.04 / sqrt(2^precision)
+ * The sum behind the estimate is kept up to date on add, so reading the
+ * estimate is O(1). Sketches with the same precision merge by taking the
+ * larger register, which gives exactly the sketch of the combined stream
+ */
+
+public class HyperLogLog {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    
+    private final int precision;
+    private final byte[] registers;
+    // Sum of 2^-register over all registers, and how many are still zero
+    private double inverseSum;
+    private int zeroRegisters;
+    
+    // Constructor
+    /**
+     * @param precision 4 to 16; 2^precision one-byte registers are used
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16.");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.inverseSum = registers.length;
+        this.zeroRegisters = registers.length;
+    }
+    
+    /**
+     * Records a value
+     * @param value value to add
+     */
+    public void add(String value) {
+        long hash = BloomFilter.hash(value, SEED);
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first 1 bit in the rest of the hash; a guard bit caps it
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(index, rank);
+    }
+    
+    private void update(int index, int rank) {
+        int current = registers[index];
+        if (rank > current) {
+            inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+            if (current == 0) {
+                zeroRegisters--;
+            }
+            registers[index] = (byte) rank;
+        }
+    }
+    
+    /**
+     * Estimates the number of distinct values added
+     * @return estimated distinct count
+     */
+    public long estimate() {
+        int m = registers.length;
+        double raw = alpha(m) * m * m / inverseSum;
+        // Small cardinalities: linear counting on the empty registers is closer
+        if (raw <= 2.5 * m && zeroRegisters > 0) {
+            return Math.round(m * Math.log((double) m / zeroRegisters));
+        }
+        return Math.round(raw);
+    }
+    
+    /**
+     * Adds another sketch's values into this one
+     * @param other sketch with the same precision
+     * @return this sketch
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision.");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            update(i, other.registers[i]);
+        }
+        return this;
+    }
+    
+    public int getPrecision() {
+        return precision;
+    }
+    
+    /**
+     * @return memory used by the registers
+     */
+    public int getSizeInBytes() {
+        return registers.length;
+    }
+    
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
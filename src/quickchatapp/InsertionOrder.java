@@ -0,0 +1,81 @@
+package quickchatapp;
+
+/**
+ * InsertionOrder.java
+ * The order in which one MessageManager added its messages
+ * Kept by the manager and shared with its indexes rather than stored on
+ * Message: the same Message can be held by several managers (shards, a
+ * replica, a broadcaster's subscribers), each with its own order
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+class InsertionOrder {
+    // Packed sort keys leave this many low bits for the position
+    private static final int POSITION_BITS = 24;
+    
+    // Message has no equals, so this matches by identity
+    private final Map<Message, Long> sequences;
+    private long nextSequence;
+    
+    // Constructor
+    InsertionOrder() {
+        this.sequences = new IdentityHashMap<>();
+    }
+    
+    void add(Message message) {
+        sequences.put(message, nextSequence++);
+    }
+    
+    void remove(Message message) {
+        sequences.remove(message);
+    }
+    
+    /**
+     * @return the message's place in the order, or -1 if it is not held
+     */
+    long of(Message message) {
+        Long sequence = sequences.get(message);
+        return sequence != null ? sequence : -1;
+    }
+    
+    /**
+     * @return comparator putting older messages first
+     */
+    Comparator<Message> comparator() {
+        return Comparator.comparingLong(this::of);
+    }
+    
+    /**
+     * Puts messages gathered from several keys back in insertion order
+     * Sequences are packed with positions into longs and sorted as
+     * primitives, so each message is looked up once rather than per comparison
+     */
+    void sort(List<Message> messages) {
+        int size = messages.size();
+        if (size < 2) {
+            return;
+        }
+        if (size >= 1 << POSITION_BITS) {
+            messages.sort(comparator());
+            return;
+        }
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            // +1 keeps a message that is not held (-1) from going negative
+            keys[i] = ((of(messages.get(i)) + 1) << POSITION_BITS) | i;
+        }
+        Arrays.sort(keys);
+        Message[] sorted = new Message[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = messages.get((int) (keys[i] & ((1 << POSITION_BITS) - 1)));
+        }
+        for (int i = 0; i < size; i++) {
+            messages.set(i, sorted[i]);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package quickchatapp;
+
+/**
+ * LatencyHistogram.java
+ * Fixed-size latency histogram with log-linear buckets
+ * Values below 128 ns are counted exactly; above that every power of two
+ * is split into 64 buckets, so a reported percentile is within 1.6% of
+ * the true value while recording stays a shift and an array increment
+ * Not thread-safe: give each thread its own histogram and merge them
+ */
+
+import java.util.Arrays;
+
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = SUB_BUCKETS * 2;
+    // Enough buckets for any positive long
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final long[] counts;
+    private long total;
+    private long sum;
+    private long max;
+    
+    // Constructor
+    LatencyHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+    }
+    
+    /**
+     * @param nanos measured latency; negative values count as zero
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        total++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+    
+    /**
+     * Adds another histogram's counts to this one
+     * @return this histogram
+     */
+    LatencyHistogram merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+        return this;
+    }
+    
+    void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    /**
+     * @param percentile 0 to 100, e.g. 99.9
+     * @return upper bound of the bucket holding that percentile, 0 if empty
+     */
+    long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestValueIn(i));
+            }
+        }
+        return max;
+    }
+    
+    long getCount() {
+        return total;
+    }
+    
+    long getMax() {
+        return max;
+    }
+    
+    double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+    
+    private static int indexOf(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+    
+    private static long highestValueIn(int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index - (long) shift * SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
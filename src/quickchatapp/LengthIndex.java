@@ -0,0 +1,163 @@
+package quickchatapp;
+
+/**
+ * LengthIndex.java
+ * Messages grouped by content length, kept up to date on add and delete
+ * There is one bucket per length (checkMessageLength caps sends at 250
+ * characters, so there are few of them) and a bit set of the lengths in
+ * use, so the longest messages are found by stepping down through the
+ * occupied lengths and a query costs about as much as its output.
+ * Buckets are kept for all messages and for each status, so a status
+ * filter does not mean skipping over other messages
+ * Messages of equal length come back in the order they were added, as a
+ * scan would return them
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+class LengthIndex {
+    private final Buckets all;
+    private final Map<String, Buckets> byStatus;
+    // Owning manager's order, for merging ties across statuses
+    private final InsertionOrder order;
+    
+    // Constructor
+    LengthIndex(InsertionOrder order) {
+        this.order = order;
+        this.all = new Buckets();
+        this.byStatus = new HashMap<>();
+    }
+    
+    /**
+     * Status is read once, so change it before adding
+     */
+    void add(Message message) {
+        all.add(message);
+        byStatus.computeIfAbsent(String.valueOf(message.getSendStatus()), status -> new Buckets()).add(message);
+    }
+    
+    void remove(Message message) {
+        all.remove(message);
+        Buckets buckets = byStatus.get(String.valueOf(message.getSendStatus()));
+        if (buckets != null) {
+            buckets.remove(message);
+        }
+    }
+    
+    /**
+     * @param count most messages to return
+     * @param statuses statuses to include; none means every status
+     * @return the longest messages, longest first
+     */
+    List<Message> longest(int count, String... statuses) {
+        return collect(sources(statuses), count, 0, order);
+    }
+    
+    /**
+     * @param length length the messages must exceed
+     * @param statuses statuses to include; none means every status
+     * @return messages longer than length, longest first
+     */
+    List<Message> longerThan(int length, String... statuses) {
+        return collect(sources(statuses), Integer.MAX_VALUE, Math.max(0, length + 1), order);
+    }
+    
+    private List<Buckets> sources(String... statuses) {
+        if (statuses.length == 0) {
+            return List.of(all);
+        }
+        List<Buckets> sources = new ArrayList<>(statuses.length);
+        for (String status : statuses) {
+            Buckets buckets = byStatus.get(status);
+            if (buckets != null && !sources.contains(buckets)) {
+                sources.add(buckets);
+            }
+        }
+        return sources;
+    }
+    
+    /**
+     * Walks the occupied lengths from the longest down to minLength
+     */
+    private static List<Message> collect(List<Buckets> sources, int count, int minLength, InsertionOrder order) {
+        List<Message> result = new ArrayList<>(Math.max(0, Math.min(count, 64)));
+        int length = Integer.MIN_VALUE;
+        for (Buckets buckets : sources) {
+            length = Math.max(length, buckets.occupied.length() - 1);
+        }
+        while (length >= minLength && result.size() < count) {
+            int wanted = count - result.size();
+            if (sources.size() == 1) {
+                take(sources.get(0).bucket(length), wanted, result);
+            } else {
+                // Equal lengths across statuses go back in insertion order
+                List<Message> tied = new ArrayList<>();
+                for (Buckets buckets : sources) {
+                    take(buckets.bucket(length), wanted, tied);
+                }
+                order.sort(tied);
+                result.addAll(tied.subList(0, Math.min(wanted, tied.size())));
+            }
+            int next = -1;
+            for (Buckets buckets : sources) {
+                next = Math.max(next, length > 0 ? buckets.occupied.previousSetBit(length - 1) : -1);
+            }
+            length = next;
+        }
+        return result;
+    }
+    
+    private static void take(LinkedHashSet<Message> bucket, int wanted, List<Message> into) {
+        if (bucket == null) {
+            return;
+        }
+        Iterator<Message> messages = bucket.iterator();
+        for (int i = 0; i < wanted && messages.hasNext(); i++) {
+            into.add(messages.next());
+        }
+    }
+    
+    private static int lengthOf(Message message) {
+        String content = message.getMessageContent();
+        return content == null ? 0 : content.length();
+    }
+    
+    /**
+     * One bucket per length; Message has no equals, so sets match by identity
+     */
+    private static final class Buckets {
+        private final List<LinkedHashSet<Message>> byLength = new ArrayList<>();
+        private final BitSet occupied = new BitSet();
+        
+        void add(Message message) {
+            int length = lengthOf(message);
+            while (byLength.size() <= length) {
+                byLength.add(null);
+            }
+            LinkedHashSet<Message> bucket = byLength.get(length);
+            if (bucket == null) {
+                bucket = new LinkedHashSet<>();
+                byLength.set(length, bucket);
+            }
+            bucket.add(message);
+            occupied.set(length);
+        }
+        
+        void remove(Message message) {
+            LinkedHashSet<Message> bucket = bucket(lengthOf(message));
+            if (bucket != null && bucket.remove(message) && bucket.isEmpty()) {
+                occupied.clear(lengthOf(message));
+            }
+        }
+        
+        LinkedHashSet<Message> bucket(int length) {
+            return length >= 0 && length < byLength.size() ? byLength.get(length) : null;
+        }
+    }
+}
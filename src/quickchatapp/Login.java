@@ -63,10 +63,11 @@ public class Login {
      * @return true if valid, false otherwise
      */
     public boolean checkUserName() {
-        if (username == null || username.length() > 5) {
-            return false;
-        }
-        return username.contains("_");
+        QuickChatEvents.Validation event = new QuickChatEvents.Validation();
+        event.begin();
+        boolean valid = username != null && username.length() <= 5 && username.contains("_");
+        event.finish("username", username, valid);
+        return valid;
     }
     
     /**
@@ -78,6 +79,14 @@ public class Login {
      * @return true if valid, false otherwise
      */
     public boolean checkPasswordComplexity() {
+        QuickChatEvents.Validation event = new QuickChatEvents.Validation();
+        event.begin();
+        boolean valid = isComplex(password);
+        event.finish("password", password, valid);
+        return valid;
+    }
+    
+    private static boolean isComplex(String password) {
         if (password == null || password.length() < 8) {
             return false;
         }
@@ -105,16 +114,18 @@ public class Login {
      * @return true if valid, false otherwise
      */
     public boolean checkCellPhoneNumber() {
-        if (cellPhoneNumber == null) {
-            return false;
+        QuickChatEvents.Validation event = new QuickChatEvents.Validation();
+        event.begin();
+        boolean valid = false;
+        if (cellPhoneNumber != null) {
+            // Regex pattern: starts with +, followed by country code and up to 10 digits
+            String regex = "^\\+\\d{1,3}\\d{10}$";
+            Pattern pattern = Pattern.compile(regex);
+            Matcher matcher = pattern.matcher(cellPhoneNumber);
+            valid = matcher.matches();
         }
-        
-        // Regex pattern: starts with +, followed by country code and up to 10 digits
-        String regex = "^\\+\\d{1,3}\\d{10}$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(cellPhoneNumber);
-        
-        return matcher.matches();
+        event.finish("cellPhoneNumber", cellPhoneNumber, valid);
+        return valid;
     }
     
     /**
@@ -122,26 +133,33 @@ public class Login {
      * @return registration status message
      */
     public String registerUser() {
+        QuickChatEvents.LoginAttempt event = new QuickChatEvents.LoginAttempt();
+        event.begin();
         StringBuilder message = new StringBuilder();
+        boolean registered = true;
         
         if (!checkUserName()) {
+            registered = false;
             message.append("Username is not correctly formatted, please ensure that your username contains an underscore and is no more than five characters in length.\n");
         } else {
             message.append("Username successfully captured.\n");
         }
         
         if (!checkPasswordComplexity()) {
+            registered = false;
             message.append("Password is not correctly formatted; please ensure that the password contains at least eight characters, a capital letter, a number, and a special character.\n");
         } else {
             message.append("Password successfully captured.\n");
         }
         
         if (!checkCellPhoneNumber()) {
+            registered = false;
             message.append("Cell phone number incorrectly formatted or does not contain international code.\n");
         } else {
             message.append("Cell phone number successfully added.\n");
         }
         
+        event.finish("register", registered);
         return message.toString().trim();
     }
     
@@ -152,7 +170,11 @@ public class Login {
      * @return true if credentials match, false otherwise
      */
     public boolean loginUser(String inputUsername, String inputPassword) {
-        return this.username.equals(inputUsername) && this.password.equals(inputPassword);
+        QuickChatEvents.LoginAttempt event = new QuickChatEvents.LoginAttempt();
+        event.begin();
+        boolean success = this.username.equals(inputUsername) && this.password.equals(inputPassword);
+        event.finish("login", success);
+        return success;
     }
     
     /**
@@ -0,0 +1,141 @@
+package quickchatapp;
+
+/**
+ * LoginThrottle.java
+ * Limits login attempts per username before any password check runs
+ * Each username gets a token bucket kept as a single atomic timestamp
+ * (generic cell rate algorithm), so checks are lock-free
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class LoginThrottle {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_REFILL_MILLIS = 60_000L;
+    
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets;
+    // Idle buckets are swept at most once per full refill window
+    private final long purgeIntervalNanos;
+    private final AtomicLong lastPurge;
+    
+    // Constructors
+    public LoginThrottle() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_REFILL_MILLIS);
+    }
+    
+    /**
+     * @param maxAttempts attempts allowed in a burst
+     * @param refillMillis time for one attempt to be restored
+     */
+    public LoginThrottle(int maxAttempts, long refillMillis) {
+        this(maxAttempts, refillMillis, System::nanoTime);
+    }
+    
+    LoginThrottle(int maxAttempts, long refillMillis, LongSupplier clock) {
+        if (maxAttempts <= 0 || refillMillis <= 0) {
+            throw new IllegalArgumentException("Attempts and refill time must be positive.");
+        }
+        this.emissionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+        this.burstToleranceNanos = emissionIntervalNanos * (maxAttempts - 1);
+        this.clock = clock;
+        this.buckets = new ConcurrentHashMap<>();
+        this.purgeIntervalNanos = emissionIntervalNanos * maxAttempts;
+        this.lastPurge = new AtomicLong(clock.getAsLong());
+    }
+    
+    /**
+     * Takes one attempt from the username's bucket
+     * @param username username being logged in
+     * @return true if the attempt may go ahead, false if over the limit
+     */
+    public boolean tryAcquire(String username) {
+        if (username == null) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        long purgedAt = lastPurge.get();
+        if (now - purgedAt > purgeIntervalNanos && lastPurge.compareAndSet(purgedAt, now)) {
+            purgeIdle();
+        }
+        
+        // Theoretical arrival time: when the bucket would be full again
+        AtomicLong tat = buckets.get(username);
+        if (tat == null) {
+            tat = buckets.computeIfAbsent(username, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = tat.get();
+            long start = current - now > 0 ? current : now;
+            if (start - now > burstToleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, start + emissionIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Refills the username's bucket, e.g. after a successful login
+     * @param username username to reset
+     */
+    public void reset(String username) {
+        if (username != null) {
+            buckets.remove(username);
+        }
+    }
+    
+    /**
+     * Verifies login credentials, rejecting over-limit attempts first
+     * @param user registered user
+     * @param inputUsername username entered during login
+     * @param inputPassword password entered during login
+     * @return true if allowed and the credentials match, false otherwise
+     */
+    public boolean loginUser(Login user, String inputUsername, String inputPassword) {
+        if (!tryAcquire(inputUsername)) {
+            return false;
+        }
+        boolean success = user.loginUser(inputUsername, inputPassword);
+        if (success) {
+            reset(inputUsername);
+        }
+        return success;
+    }
+    
+    /**
+     * Checks if a username is currently being throttled
+     * @param username username to check
+     * @return true if the next attempt would be rejected, false otherwise
+     */
+    public boolean isThrottled(String username) {
+        AtomicLong tat = username == null ? null : buckets.get(username);
+        if (tat == null) {
+            return false;
+        }
+        return tat.get() - clock.getAsLong() > burstToleranceNanos;
+    }
+    
+    /**
+     * Returns the number of usernames with a partly used bucket
+     * @return tracked username count
+     */
+    public int getTrackedUserCount() {
+        return buckets.size();
+    }
+    
+    /**
+     * Removes buckets that have fully refilled; they behave the same as
+     * a missing bucket
+     */
+    public void purgeIdle() {
+        long now = clock.getAsLong();
+        buckets.entrySet().removeIf(e -> e.getValue().get() - now <= 0);
+    }
+}
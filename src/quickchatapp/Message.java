@@ -1,13 +1,25 @@
 package quickchatapp;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 public class Message {
     private String messageID;
@@ -16,17 +28,41 @@ public class Message {
     private String messageContent;
     private String messageHash;
     private String sendStatus; // "Sent", "Disregarded", "Stored"
+    private long createdAt; // epoch millis
     
-    private static int messageCounter = 0;
+    private static final AtomicInteger messageCounter = new AtomicInteger();
+    private static final Pattern RECIPIENT_PATTERN = Pattern.compile("^\\+\\d{1,3}\\d{10}$");
+    
+    // Persisted store, and the deletions not yet compacted out of it
+    static final String STORE_FILE = "stored_messages.json";
+    static final String TOMBSTONE_FILE = "stored_messages.tombstones";
+    // Held while either file is read or rewritten
+    static final Object STORE_LOCK = new Object();
     
     // Constructor
     public Message() {
         this.messageID = generateMessageID();
-        this.numMessagesSent = ++messageCounter;
+        this.numMessagesSent = messageCounter.incrementAndGet();
         this.recipient = "";
         this.messageContent = "";
         this.messageHash = "";
         this.sendStatus = "";
+        this.createdAt = System.currentTimeMillis();
+    }
+    
+    /**
+     * Rebuilds a message with known fields (import, load from file)
+     * Does not advance the message counter
+     */
+    Message(String messageID, int numMessagesSent, String recipient,
+            String messageContent, String messageHash, String sendStatus) {
+        this.messageID = messageID;
+        this.numMessagesSent = numMessagesSent;
+        this.recipient = recipient;
+        this.messageContent = messageContent;
+        this.messageHash = messageHash;
+        this.sendStatus = sendStatus;
+        this.createdAt = System.currentTimeMillis();
     }
     
     // Getters
@@ -54,6 +90,13 @@ public class Message {
         return sendStatus;
     }
     
+    /**
+     * @return when the message was created, or stored if it was loaded from file
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
     // Setters
     public void setRecipient(String recipient) {
         this.recipient = recipient;
@@ -67,6 +110,10 @@ public class Message {
         this.sendStatus = status;
     }
     
+    void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+    
     /**
      * Generates a random 10-digit message ID
      * @return 10-digit message ID as String
@@ -80,6 +127,26 @@ public class Message {
         return id.toString();
     }
     
+    /**
+     * Generates a random 10-digit message ID without per-call allocation of
+     * a Random; safe to call from many threads
+     * @return 10-digit message ID as String
+     */
+    static String newMessageID() {
+        long value = ThreadLocalRandom.current().nextLong(10_000_000_000L);
+        String digits = Long.toString(value);
+        return "0".repeat(10 - digits.length()) + digits;
+    }
+    
+    /**
+     * Reserves a block of message numbers for messages built elsewhere
+     * @param count how many numbers to reserve
+     * @return the first reserved number
+     */
+    static int reserveMessageNumbers(int count) {
+        return messageCounter.addAndGet(count) - count + 1;
+    }
+    
     /**
      * Checks if message ID is exactly 10 characters
      * @return true if valid, false otherwise
@@ -97,20 +164,14 @@ public class Message {
      * @return 0 if valid, error code otherwise
      */
     public int checkRecipientCell() {
-        if (recipient == null) {
-            return -1;
-        }
+        QuickChatEvents.Validation event = new QuickChatEvents.Validation();
+        event.begin();
         
         // Check if starts with + and has country code + 10 digits
-        String regex = "^\\+\\d{1,3}\\d{10}$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(recipient);
-        
-        if (!matcher.matches()) {
-            return -1; // Invalid format
-        }
+        boolean valid = recipient != null && RECIPIENT_PATTERN.matcher(recipient).matches();
         
-        return 0; // Valid
+        event.finish("recipient", recipient, valid);
+        return valid ? 0 : -1; // -1 means invalid format
     }
     
     /**
@@ -118,16 +179,19 @@ public class Message {
      * @return success/error message
      */
     public String checkMessageLength() {
+        QuickChatEvents.Validation event = new QuickChatEvents.Validation();
+        event.begin();
+        String result;
         if (messageContent == null) {
-            return "Message exceeds 250 characters by 250, please reduce size.";
-        }
-        
-        if (messageContent.length() > 250) {
+            result = "Message exceeds 250 characters by 250, please reduce size.";
+        } else if (messageContent.length() > 250) {
             int excess = messageContent.length() - 250;
-            return "Message exceeds 250 characters by " + excess + ", please reduce size.";
+            result = "Message exceeds 250 characters by " + excess + ", please reduce size.";
+        } else {
+            result = "Message ready to send.";
         }
-        
-        return "Message ready to send.";
+        event.finish("length", messageContent, messageContent != null && messageContent.length() <= 250);
+        return result;
     }
     
     /**
@@ -136,19 +200,28 @@ public class Message {
      * @return message hash in uppercase
      */
     public String createMessageHash() {
+        QuickChatEvents.Hash event = new QuickChatEvents.Hash();
+        event.begin();
+        messageHash = messageID.substring(0, 2) + ":" + numMessagesSent + ":" + hashWords(messageContent);
+        event.finish(messageContent);
+        return messageHash;
+    }
+    
+    /**
+     * Computes the content part of a message hash, which does not depend
+     * on the message number, so it can be worked out ahead of numbering
+     * @return FIRSTWORD:LASTWORD in uppercase, or EMPTY:EMPTY
+     */
+    static String hashWords(String messageContent) {
         if (messageContent == null || messageContent.trim().isEmpty()) {
-            messageHash = messageID.substring(0, 2) + ":" + numMessagesSent + ":EMPTY:EMPTY";
-            return messageHash;
+            return "EMPTY:EMPTY";
         }
         
         String[] words = messageContent.trim().split("\\s+");
         String firstWord = words[0].replaceAll("[^a-zA-Z]", "");
         String lastWord = words[words.length - 1].replaceAll("[^a-zA-Z]", "");
         
-        messageHash = messageID.substring(0, 2) + ":" + numMessagesSent + ":" + 
-                      firstWord.toUpperCase() + ":" + lastWord.toUpperCase();
-        
-        return messageHash;
+        return firstWord.toUpperCase() + ":" + lastWord.toUpperCase();
     }
     
     /**
@@ -175,39 +248,164 @@ public class Message {
     
 
     public void storeMessage() {
-        try {
-            JSONArray messagesArray;
-            String filename = "stored_messages.json";
-            
-            // Read existing messages or create new array
+        storeMessages(List.of(this));
+    }
+    
+    /**
+     * Appends several messages to the stored messages file in one
+     * read and one write
+     * @param messages messages to store
+     */
+    public static void storeMessages(Collection<Message> messages) {
+        List<JSONObject> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(message.toJSON());
+        }
+        storeRecords(records);
+    }
+    
+    /**
+     * Appends prepared records to the stored messages file in one read
+     * and one write
+     * @param records records in the toJSON layout
+     */
+    static void storeRecords(List<JSONObject> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        synchronized (STORE_LOCK) {
+            try {
+                JSONArray messagesArray;
+                String filename = STORE_FILE;
+                
+                // Read existing messages or create new array
+                QuickChatEvents.Store read = new QuickChatEvents.Store();
+                read.begin();
+                String content;
+                try {
+                    content = new String(Files.readAllBytes(Paths.get(filename)));
+                } catch (IOException e) {
+                    content = null;
+                }
+                read.finish("read", content == null ? 0 : content.length(), records.size());
+                
+                QuickChatEvents.Store parse = new QuickChatEvents.Store();
+                parse.begin();
+                messagesArray = content == null ? new JSONArray() : new JSONArray(content);
+                parse.finish("parse", content == null ? 0 : content.length(), messagesArray.length());
+                
+                // Add to array; storedAt drives age-based retention
+                long now = System.currentTimeMillis();
+                for (JSONObject record : records) {
+                    messagesArray.put(record.put("storedAt", now));
+                }
+                
+                // Write to file
+                QuickChatEvents.Store write = new QuickChatEvents.Store();
+                write.begin();
+                String output = messagesArray.toString(4);
+                try (FileWriter file = new FileWriter(filename)) {
+                    file.write(output);
+                    file.flush();
+                }
+                write.finish("write", output.length(), messagesArray.length());
+                
+            } catch (Exception e) {
+                System.err.println("Error storing message: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Records that a stored message was deleted; the record stays in the
+     * stored messages file until StoreCompactor removes it
+     * @param message deleted message
+     */
+    static void recordDeletion(Message message) {
+        recordDeletions(List.of(message));
+    }
+    
+    /**
+     * Records several deletions with one append to the tombstone file
+     * @param messages deleted messages
+     */
+    static void recordDeletions(Collection<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (Message message : messages) {
+            lines.append(tombstoneKey(message.messageID, message.messageHash)).append('\n');
+        }
+        synchronized (STORE_LOCK) {
             try {
-                String content = new String(Files.readAllBytes(Paths.get(filename)));
-                messagesArray = new JSONArray(content);
+                Files.write(Paths.get(TOMBSTONE_FILE), lines.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
             } catch (IOException e) {
-                messagesArray = new JSONArray();
+                System.err.println("Error recording deletion: " + e.getMessage());
             }
-            
-            // Create message object
-            JSONObject messageObj = new JSONObject();
-            messageObj.put("messageID", messageID);
-            messageObj.put("numMessagesSent", numMessagesSent);
-            messageObj.put("recipient", recipient);
-            messageObj.put("messageContent", messageContent);
-            messageObj.put("messageHash", messageHash);
-            messageObj.put("sendStatus", sendStatus);
-            
-            // Add to array
-            messagesArray.put(messageObj);
-            
-            // Write to file
-            try (FileWriter file = new FileWriter(filename)) {
-                file.write(messagesArray.toString(4));
-                file.flush();
+        }
+    }
+    
+    /**
+     * Reads the deletions recorded in a tombstone file
+     * @param tombstoneFile file to read
+     * @return tombstone keys, empty if the file does not exist
+     */
+    static Set<String> readTombstones(Path tombstoneFile) throws IOException {
+        Set<String> tombstones = new HashSet<>();
+        if (!Files.exists(tombstoneFile)) {
+            return tombstones;
+        }
+        for (String line : Files.readAllLines(tombstoneFile, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                tombstones.add(line);
             }
-            
-        } catch (Exception e) {
-            System.err.println("Error storing message: " + e.getMessage());
         }
+        return tombstones;
+    }
+    
+    /**
+     * Identifies a stored record; hashes alone can repeat across runs
+     * because the message counter restarts
+     */
+    static String tombstoneKey(String messageID, String messageHash) {
+        return messageID + " " + messageHash;
+    }
+    
+    /**
+     * Builds the JSON object written to the stored messages file
+     * @return message as a JSON object
+     */
+    JSONObject toJSON() {
+        JSONObject messageObj = new JSONObject();
+        messageObj.put("messageID", messageID);
+        messageObj.put("numMessagesSent", numMessagesSent);
+        messageObj.put("recipient", recipient);
+        messageObj.put("messageContent", messageContent);
+        messageObj.put("messageHash", messageHash);
+        messageObj.put("sendStatus", sendStatus);
+        return messageObj;
+    }
+    
+    /**
+     * Rebuilds a message from an object in the stored messages file
+     * @param messageObj JSON object written by toJSON or a broadcast
+     * @param bodies persisted bodies, for records that carry a bodyRef
+     * @return the message
+     */
+    static Message fromJSON(JSONObject messageObj, Map<String, String> bodies) {
+        Message message = new Message(
+            messageObj.optString("messageID", ""),
+            messageObj.optInt("numMessagesSent", 0),
+            messageObj.optString("recipient", ""),
+            MessageBodyStore.contentOf(messageObj, bodies),
+            messageObj.optString("messageHash", ""),
+            messageObj.optString("sendStatus", ""));
+        if (messageObj.has("storedAt")) {
+            message.setCreatedAt(messageObj.optLong("storedAt"));
+        }
+        return message;
     }
     
     /**
@@ -227,13 +425,13 @@ public class Message {
      * @return message counter
      */
     public static int returnTotalMessages() {
-        return messageCounter;
+        return messageCounter.get();
     }
     
     /**
      * Resets message counter (useful for testing)
      */
     public static void resetCounter() {
-        messageCounter = 0;
+        messageCounter.set(0);
     }
 }
\ No newline at end of file
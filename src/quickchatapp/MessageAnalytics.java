@@ -0,0 +1,199 @@
+package quickchatapp;
+
+/**
+ * MessageAnalytics.java
+ * Aggregate counts over a set of messages: per status, per recipient,
+ * per country code and a histogram of message lengths
+ * Instances are mergeable, so a parallel pass can give each thread its own
+ * accumulator and combine them at the end
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class MessageAnalytics {
+    // Lengths are bucketed in tens: 0-9, 10-19, ..., 240-249, 250 and over
+    public static final int BUCKET_WIDTH = 10;
+    public static final int BUCKET_COUNT = 26;
+    
+    // ITU two-digit country codes; 1 and 7 are one digit, the rest three
+    private static final String TWO_DIGIT_CODES =
+            " 20 27 30 31 32 33 34 36 39 40 41 43 44 45 46 47 48 49 51 52 53 54 55 56 57 58"
+            + " 60 61 62 63 64 65 66 81 82 84 86 90 91 92 93 94 95 98 ";
+    
+    private long totalMessages;
+    private final Map<String, Long> statusCounts;
+    private final Map<String, Long> recipientCounts;
+    private final Map<String, Long> countryCodeCounts;
+    private final long[] lengthHistogram;
+    
+    // Constructor
+    public MessageAnalytics() {
+        this.totalMessages = 0;
+        this.statusCounts = new HashMap<>();
+        this.recipientCounts = new HashMap<>();
+        this.countryCodeCounts = new HashMap<>();
+        this.lengthHistogram = new long[BUCKET_COUNT];
+    }
+    
+    /**
+     * Computes analytics over messages in one parallel pass
+     * @param messages messages to aggregate
+     * @return aggregated analytics
+     */
+    public static MessageAnalytics compute(Collection<Message> messages) {
+        return messages.parallelStream().collect(
+                MessageAnalytics::new, MessageAnalytics::add, MessageAnalytics::merge);
+    }
+    
+    /**
+     * Extracts the country code from an international number such as +27...
+     * Country codes are prefix-free, so the leading digits decide the length
+     * @param recipient recipient cell number
+     * @return country code digits, or "" if the number does not start with +
+     */
+    public static String countryCodeOf(String recipient) {
+        if (recipient == null || recipient.length() < 4 || recipient.charAt(0) != '+') {
+            return "";
+        }
+        for (int i = 1; i < 4; i++) {
+            if (!Character.isDigit(recipient.charAt(i))) {
+                return "";
+            }
+        }
+        char first = recipient.charAt(1);
+        if (first == '1' || first == '7') {
+            return recipient.substring(1, 2);
+        }
+        String two = recipient.substring(1, 3);
+        if (TWO_DIGIT_CODES.contains(" " + two + " ")) {
+            return two;
+        }
+        return recipient.substring(1, 4);
+    }
+    
+    /**
+     * Returns the histogram bucket for a message length
+     * @param length message length in characters
+     * @return bucket index
+     */
+    public static int bucketOf(int length) {
+        return Math.min(length / BUCKET_WIDTH, BUCKET_COUNT - 1);
+    }
+    
+    /**
+     * Counts a message
+     * @param message message to add
+     */
+    public void add(Message message) {
+        update(message, 1);
+    }
+    
+    /**
+     * Uncounts a message that was previously added
+     * @param message message to remove
+     */
+    public void remove(Message message) {
+        update(message, -1);
+    }
+    
+    private void update(Message message, long delta) {
+        totalMessages += delta;
+        adjust(statusCounts, message.getSendStatus(), delta);
+        adjust(recipientCounts, message.getRecipient(), delta);
+        adjust(countryCodeCounts, countryCodeOf(message.getRecipient()), delta);
+        String content = message.getMessageContent();
+        lengthHistogram[bucketOf(content == null ? 0 : content.length())] += delta;
+    }
+    
+    /**
+     * Adds another accumulator's counts into this one
+     * @param other analytics to merge in
+     * @return this instance
+     */
+    public MessageAnalytics merge(MessageAnalytics other) {
+        totalMessages += other.totalMessages;
+        other.statusCounts.forEach((k, v) -> adjust(statusCounts, k, v));
+        other.recipientCounts.forEach((k, v) -> adjust(recipientCounts, k, v));
+        other.countryCodeCounts.forEach((k, v) -> adjust(countryCodeCounts, k, v));
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            lengthHistogram[i] += other.lengthHistogram[i];
+        }
+        return this;
+    }
+    
+    private static void adjust(Map<String, Long> counts, String key, long delta) {
+        if (key == null) {
+            key = "";
+        }
+        // Drop keys that reach zero so deleted recipients do not linger
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+    
+    // Getters
+    public long getTotalMessages() {
+        return totalMessages;
+    }
+    
+    public long getStatusCount(String status) {
+        return statusCounts.getOrDefault(status, 0L);
+    }
+    
+    public long getRecipientCount(String recipient) {
+        return recipientCounts.getOrDefault(recipient, 0L);
+    }
+    
+    public long getCountryCodeCount(String countryCode) {
+        return countryCodeCounts.getOrDefault(countryCode, 0L);
+    }
+    
+    public int getDistinctRecipients() {
+        return recipientCounts.size();
+    }
+    
+    public Map<String, Long> getStatusCounts() {
+        return new HashMap<>(statusCounts);
+    }
+    
+    public Map<String, Long> getRecipientCounts() {
+        return new HashMap<>(recipientCounts);
+    }
+    
+    public Map<String, Long> getCountryCodeCounts() {
+        return new HashMap<>(countryCodeCounts);
+    }
+    
+    public long[] getLengthHistogram() {
+        return lengthHistogram.clone();
+    }
+    
+    /**
+     * Returns the recipients with the most messages, most first
+     * @param n how many recipients to return
+     * @return recipient and count pairs
+     */
+    public List<Map.Entry<String, Long>> getTopRecipients(int n) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(n + 1,
+                (a, b) -> a.getValue().equals(b.getValue())
+                        ? b.getKey().compareTo(a.getKey())
+                        : Long.compare(a.getValue(), b.getValue()));
+        for (Map.Entry<String, Long> entry : recipientCounts.entrySet()) {
+            heap.add(Map.entry(entry.getKey(), entry.getValue()));
+            if (heap.size() > n) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<String, Long>> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            top.add(0, heap.poll());
+        }
+        return top;
+    }
+}
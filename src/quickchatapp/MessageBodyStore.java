@@ -0,0 +1,177 @@
+package quickchatapp;
+
+/**
+ * MessageBodyStore.java
+ * Content-addressed store of message bodies
+ * Each distinct body is held once, keyed by a SHA-256 digest of its text,
+ * together with the fields derived from it (length check, hash words), so
+ * messages that share a body share one copy and one tokenisation
+ * Persisted bodies live in stored_message_bodies.json as a key to text
+ * map; stored records that point at one carry "bodyRef" instead of
+ * "messageContent"
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.JSONObject;
+
+public class MessageBodyStore {
+    static final String BODY_FILE = "stored_message_bodies.json";
+    
+    private static final int KEY_BYTES = 16;
+    
+    private final Map<String, Body> bodies;
+    
+    // Constructor
+    public MessageBodyStore() {
+        this.bodies = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns the shared body for some text, adding it on first use
+     * @param content message text
+     * @return the single Body instance for this text
+     */
+    public Body intern(String content) {
+        return bodies.computeIfAbsent(contentKey(content), key -> new Body(key, content));
+    }
+    
+    /**
+     * Returns the body with a key, if it is held
+     * @param key content key
+     * @return the body, or null
+     */
+    public Body get(String key) {
+        return bodies.get(key);
+    }
+    
+    public int size() {
+        return bodies.size();
+    }
+    
+    /**
+     * Computes the content address of a body
+     * @param content message text
+     * @return first 128 bits of the SHA-256 digest of the UTF-8 text, in hex
+     */
+    public static String contentKey(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            // 128 bits is ample against collisions and halves every bodyRef
+            StringBuilder hex = new StringBuilder(KEY_BYTES * 2);
+            for (int i = 0; i < KEY_BYTES; i++) {
+                byte b = digest[i];
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Reads persisted bodies
+     * @param file bodies file
+     * @return key to text, empty if the file does not exist
+     */
+    static Map<String, String> readBodies(Path file) throws IOException {
+        Map<String, String> bodies = new HashMap<>();
+        if (!Files.exists(file)) {
+            return bodies;
+        }
+        JSONObject stored = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        for (String key : stored.keySet()) {
+            bodies.put(key, stored.getString(key));
+        }
+        return bodies;
+    }
+    
+    /**
+     * Adds a body to the bodies file unless it is already there
+     * Callers hold Message.STORE_LOCK
+     * @param file bodies file
+     * @param body body to persist
+     */
+    static void persist(Path file, Body body) throws IOException {
+        JSONObject stored = Files.exists(file)
+                ? new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+                : new JSONObject();
+        if (stored.has(body.getKey())) {
+            return;
+        }
+        stored.put(body.getKey(), body.getContent());
+        write(file, stored);
+    }
+    
+    /**
+     * Replaces the bodies file atomically
+     */
+    static void write(Path file, JSONObject bodies) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bodies.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Returns the text of a stored record, following bodyRef if present
+     * @param record record from the stored messages file
+     * @param bodies persisted bodies
+     * @return message text, or "" if the body is missing
+     */
+    static String contentOf(JSONObject record, Map<String, String> bodies) {
+        if (record.has("messageContent")) {
+            return record.optString("messageContent", "");
+        }
+        String content = bodies.get(record.optString("bodyRef", ""));
+        return content == null ? "" : content;
+    }
+    
+    /**
+     * One distinct message body and the fields derived from it
+     */
+    public static class Body {
+        private final String key;
+        private final String content;
+        private final String hashWords;
+        private final String lengthCheck;
+        
+        Body(String key, String content) {
+            this.key = key;
+            this.content = content;
+            this.hashWords = Message.hashWords(content);
+            Message probe = new Message("", 0, "", content, "", "");
+            this.lengthCheck = probe.checkMessageLength();
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public String getContent() {
+            return content;
+        }
+        
+        /**
+         * @return FIRSTWORD:LASTWORD part of every hash for this body
+         */
+        public String getHashWords() {
+            return hashWords;
+        }
+        
+        /**
+         * @return result of Message.checkMessageLength for this body
+         */
+        public String getLengthCheck() {
+            return lengthCheck;
+        }
+    }
+}
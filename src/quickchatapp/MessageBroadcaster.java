@@ -0,0 +1,153 @@
+package quickchatapp;
+
+/**
+ * MessageBroadcaster.java
+ * Sends one body to many recipients
+ * The body is interned once in a MessageBodyStore, so its length check and
+ * hash words are worked out once and every message shares the same text;
+ * per-recipient work is the recipient check, an ID, a number and the hash
+ * prefix. A Stored broadcast is written with one append of small records
+ * that point at the body, and the body itself is written once
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONObject;
+
+public class MessageBroadcaster {
+    private final MessageManager messageManager;
+    private final MessageBodyStore bodyStore;
+    private final Path bodyFile;
+    
+    // Constructor
+    public MessageBroadcaster(MessageManager messageManager) {
+        this(messageManager, new MessageBodyStore());
+    }
+    
+    public MessageBroadcaster(MessageManager messageManager, MessageBodyStore bodyStore) {
+        this.messageManager = messageManager;
+        this.bodyStore = bodyStore;
+        this.bodyFile = Paths.get(MessageBodyStore.BODY_FILE);
+    }
+    
+    /**
+     * Sends or stores one body for every recipient
+     * Invalid and repeated recipients are skipped and reported
+     * @param content message text
+     * @param recipients recipient numbers
+     * @param status "Sent" or "Stored"
+     * @return the messages created and the recipients skipped
+     */
+    public Result broadcast(String content, Collection<String> recipients, String status) {
+        if (!"Sent".equals(status) && !"Stored".equals(status)) {
+            throw new IllegalArgumentException("Broadcast status must be Sent or Stored.");
+        }
+        MessageBodyStore.Body body = bodyStore.intern(content == null ? "" : content);
+        Map<String, String> rejected = new LinkedHashMap<>();
+        if (!body.getLengthCheck().equals("Message ready to send.")) {
+            for (String recipient : recipients) {
+                rejected.put(recipient, body.getLengthCheck());
+            }
+            return new Result(body, new ArrayList<>(), rejected);
+        }
+        
+        // Validate recipients first so numbers are reserved only for real messages
+        List<String> accepted = new ArrayList<>(recipients.size());
+        Set<String> seen = new HashSet<>();
+        Message probe = new Message("", 0, "", "", "", "");
+        for (String recipient : recipients) {
+            probe.setRecipient(recipient);
+            if (probe.checkRecipientCell() != 0) {
+                rejected.put(recipient, "Cell phone number is incorrectly formatted or does not contain an international code.");
+            } else if (!seen.add(recipient)) {
+                rejected.put(recipient, "Duplicate recipient.");
+            } else {
+                accepted.add(recipient);
+            }
+        }
+        
+        int number = Message.reserveMessageNumbers(accepted.size());
+        List<Message> messages = new ArrayList<>(accepted.size());
+        for (String recipient : accepted) {
+            String id = Message.newMessageID();
+            String hash = id.substring(0, 2) + ":" + number + ":" + body.getHashWords();
+            messages.add(new Message(id, number++, recipient, body.getContent(), hash, status));
+        }
+        messageManager.addMessages(messages);
+        
+        if ("Stored".equals(status)) {
+            persist(body, messages);
+        }
+        return new Result(body, messages, rejected);
+    }
+    
+    /**
+     * Writes the body once, then one record per recipient that refers to it
+     */
+    private void persist(MessageBodyStore.Body body, List<Message> messages) {
+        List<JSONObject> records = new ArrayList<>(messages.size());
+        for (Message msg : messages) {
+            JSONObject record = new JSONObject();
+            record.put("messageID", msg.getMessageID());
+            record.put("numMessagesSent", msg.getNumMessagesSent());
+            record.put("recipient", msg.getRecipient());
+            record.put("bodyRef", body.getKey());
+            record.put("messageHash", msg.getMessageHash());
+            record.put("sendStatus", msg.getSendStatus());
+            records.add(record);
+        }
+        synchronized (Message.STORE_LOCK) {
+            try {
+                MessageBodyStore.persist(bodyFile, body);
+            } catch (IOException e) {
+                System.err.println("Error storing message body: " + e.getMessage());
+                return;
+            }
+            Message.storeRecords(records);
+        }
+    }
+    
+    /**
+     * Outcome of one broadcast
+     */
+    public static class Result {
+        private final MessageBodyStore.Body body;
+        private final List<Message> messages;
+        private final Map<String, String> rejected;
+        
+        Result(MessageBodyStore.Body body, List<Message> messages, Map<String, String> rejected) {
+            this.body = body;
+            this.messages = messages;
+            this.rejected = rejected;
+        }
+        
+        public String getBodyKey() {
+            return body.getKey();
+        }
+        
+        public List<Message> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+        
+        /**
+         * @return skipped recipients and why, in the order given
+         */
+        public Map<String, String> getRejected() {
+            return Collections.unmodifiableMap(rejected);
+        }
+        
+        @Override
+        public String toString() {
+            return "Broadcast to " + messages.size() + " recipient(s), " + rejected.size() + " skipped.";
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package quickchatapp;
+
+/**
+ * MessageClient.java
+ * Client library for MessageServer
+ * Requests are buffered and only sent on flush(), so many requests can be
+ * pipelined in one write; a reader thread matches responses to requests
+ * by id and completes their futures
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MessageClient implements AutoCloseable {
+    private final Socket socket;
+    private final OutputStream out;
+    private final Map<Integer, CompletableFuture<Response>> pending;
+    private final AtomicInteger nextRequestId;
+    private final Thread reader;
+    // Why the reader stopped; once set, new requests fail straight away
+    private volatile IOException closed;
+    
+    // Constructor
+    /**
+     * Connects to a server on the loopback interface
+     * @param port server port
+     * @throws IOException if the connection fails
+     */
+    public MessageClient(int port) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        this.pending = new ConcurrentHashMap<>();
+        this.nextRequestId = new AtomicInteger();
+        this.reader = new Thread(this::readResponses, "quickchat-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    /**
+     * Queues a request; call flush() to send queued requests
+     * @param op MessageProtocol operation code
+     * @param args string arguments
+     * @return future completed with the server's response
+     */
+    public CompletableFuture<Response> sendAsync(byte op, String... args) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+        // Checked after the put, so either this or the reader fails the future
+        IOException failure = closed;
+        if (failure != null) {
+            pending.remove(requestId);
+            future.completeExceptionally(new UncheckedIOException(failure));
+            return future;
+        }
+        byte[] frame = MessageProtocol.encodeRequest(op, requestId, args);
+        synchronized (out) {
+            try {
+                out.write(frame);
+            } catch (IOException e) {
+                pending.remove(requestId);
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+    
+    /**
+     * Sends every queued request
+     * @throws IOException if the write fails
+     */
+    public void flush() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+    
+    // Blocking helpers: queue, flush and wait for one response
+    public Response send(String recipient, String content) throws IOException {
+        return call(MessageProtocol.OP_SEND, recipient, content);
+    }
+    
+    public Response store(String recipient, String content) throws IOException {
+        return call(MessageProtocol.OP_STORE, recipient, content);
+    }
+    
+    public Response searchByMessageID(String messageID) throws IOException {
+        return call(MessageProtocol.OP_SEARCH_ID, messageID);
+    }
+    
+    public Response searchByRecipient(String recipient) throws IOException {
+        return call(MessageProtocol.OP_SEARCH_RECIPIENT, recipient);
+    }
+    
+    public Response searchByMessageHash(String messageHash) throws IOException {
+        return call(MessageProtocol.OP_SEARCH_HASH, messageHash);
+    }
+    
+    public Response deleteMessageByHash(String messageHash) throws IOException {
+        return call(MessageProtocol.OP_DELETE, messageHash);
+    }
+    
+    public Response displayReport() throws IOException {
+        return call(MessageProtocol.OP_REPORT);
+    }
+    
+    private Response call(byte op, String... args) throws IOException {
+        CompletableFuture<Response> future = sendAsync(op, args);
+        flush();
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            throw new IOException("Request failed: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Reader thread: decodes response frames until the connection closes
+     */
+    private void readResponses() {
+        IOException failure = null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MessageProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                ByteBuffer frame = ByteBuffer.wrap(body);
+                int requestId = frame.getInt();
+                byte status = frame.get();
+                List<String> values = MessageProtocol.readStrings(frame, frame.getShort());
+                CompletableFuture<Response> future = pending.remove(requestId);
+                if (future != null) {
+                    future.complete(new Response(status, values));
+                }
+            }
+        } catch (EOFException e) {
+            failure = new EOFException("Connection closed by server.");
+        } catch (IOException e) {
+            failure = e;
+        }
+        // Anything still waiting, or sent from now on, will never be answered
+        closed = failure;
+        UncheckedIOException error = new UncheckedIOException(failure);
+        for (Integer requestId : pending.keySet()) {
+            CompletableFuture<Response> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+    
+    /**
+     * Returns how many requests are waiting for a response
+     * @return pending request count
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+    
+    /**
+     * A decoded server response
+     */
+    public static class Response {
+        private final byte status;
+        private final List<String> values;
+        
+        Response(byte status, List<String> values) {
+            this.status = status;
+            this.values = values;
+        }
+        
+        public boolean isOk() {
+            return status == MessageProtocol.STATUS_OK;
+        }
+        
+        public List<String> getValues() {
+            return values;
+        }
+        
+        /**
+         * Returns the first value, e.g. the status or error message
+         * @return first value, or "" if there are none
+         */
+        public String getValue() {
+            return values.isEmpty() ? "" : values.get(0);
+        }
+    }
+}
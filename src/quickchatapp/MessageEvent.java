@@ -0,0 +1,43 @@
+package quickchatapp;
+
+/**
+ * MessageEvent.java
+ * A change to a MessageManager (message added or deleted)
+ * Instances are slots in a MessageEventBuffer and are reused, so handlers
+ * must copy anything they want to keep after returning
+ */
+public class MessageEvent {
+    public enum Type { ADDED, DELETED }
+    
+    private long sequence;
+    private Type type;
+    private Message message;
+    
+    // Constructor
+    MessageEvent() {
+        this.sequence = -1;
+    }
+    
+    // Getters
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public Message getMessage() {
+        return message;
+    }
+    
+    void set(long sequence, Type type, Message message) {
+        this.sequence = sequence;
+        this.type = type;
+        this.message = message;
+    }
+    
+    void copyFrom(MessageEvent other) {
+        set(other.sequence, other.type, other.message);
+    }
+}
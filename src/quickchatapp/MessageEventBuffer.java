@@ -0,0 +1,253 @@
+package quickchatapp;
+
+/**
+ * MessageEventBuffer.java
+ * Pre-allocated single-writer ring buffer of MessageEvents
+ * The owning MessageManager publishes into reused slots, so publishing
+ * allocates nothing. Each subscriber reads with its own sequence cursor.
+ * A BLOCK subscriber holds the writer back until it has caught up; a DROP
+ * subscriber that falls a full buffer behind skips the lost events instead
+ */
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class MessageEventBuffer {
+    public enum OverflowPolicy { BLOCK, DROP }
+    
+    private final MessageEvent[] entries;
+    private final int mask;
+    // Highest sequence the writer has started writing, and finished writing
+    private final AtomicLong claimed;
+    private final AtomicLong cursor;
+    // Subscribers the writer must not overtake
+    private volatile Subscription[] gating;
+    
+    // Constructor
+    /**
+     * @param size number of slots, rounded up to a power of two
+     */
+    public MessageEventBuffer(int size) {
+        if (size <= 0 || size > (1 << 30)) {
+            throw new IllegalArgumentException("Buffer size must be between 1 and 2^30.");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.entries = new MessageEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new MessageEvent();
+        }
+        this.mask = capacity - 1;
+        this.claimed = new AtomicLong(-1);
+        this.cursor = new AtomicLong(-1);
+        this.gating = new Subscription[0];
+    }
+    
+    public int getSize() {
+        return entries.length;
+    }
+    
+    /**
+     * Returns the sequence of the last published event
+     * @return cursor, or -1 if nothing has been published
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+    
+    /**
+     * Publishes an event; must only be called from the owning writer
+     * Waits while a BLOCK subscriber is a full buffer behind
+     * @param type kind of change
+     * @param message message that changed
+     */
+    public void publish(MessageEvent.Type type, Message message) {
+        long next = cursor.get() + 1;
+        long wrapPoint = next - entries.length;
+        for (Subscription subscription : gating) {
+            int spins = 0;
+            while (subscription.sequence.get() < wrapPoint && !subscription.closed) {
+                spins = backOff(spins);
+            }
+        }
+        
+        claimed.set(next);
+        // Slot writes must not move ahead of the claim (seqlock for DROP readers)
+        VarHandle.storeStoreFence();
+        entries[(int) next & mask].set(next, type, message);
+        cursor.set(next);
+    }
+    
+    /**
+     * Registers a subscriber that sees events published from now on
+     * @param handler called for each event, on the thread that polls
+     * @param policy what to do when the subscriber falls behind
+     * @return subscription to poll, run on a thread, or close
+     */
+    public Subscription subscribe(Consumer<MessageEvent> handler, OverflowPolicy policy) {
+        Subscription subscription = new Subscription(this, handler, policy);
+        if (policy == OverflowPolicy.BLOCK) {
+            synchronized (this) {
+                // Start position must be fixed before the writer can see us
+                subscription.sequence.set(cursor.get());
+                Subscription[] updated = Arrays.copyOf(gating, gating.length + 1);
+                updated[gating.length] = subscription;
+                gating = updated;
+            }
+        } else {
+            subscription.sequence.set(cursor.get());
+        }
+        return subscription;
+    }
+    
+    private synchronized void removeGating(Subscription subscription) {
+        Subscription[] current = gating;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                gating = updated;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Spin, then yield, then park briefly
+     * @return updated spin count
+     */
+    private static int backOff(int spins) {
+        if (spins < 100) {
+            Thread.onSpinWait();
+        } else if (spins < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+        return spins + 1;
+    }
+    
+    /**
+     * One subscriber's position in the buffer
+     * Either call poll() from your own loop or run it on a dedicated thread
+     */
+    public static class Subscription implements Runnable {
+        private final MessageEventBuffer buffer;
+        private final Consumer<MessageEvent> handler;
+        private final OverflowPolicy policy;
+        // Last sequence handled (or skipped)
+        private final AtomicLong sequence;
+        // DROP subscribers copy each slot here and check it was not overwritten
+        private final MessageEvent scratch;
+        private volatile boolean closed;
+        private volatile long dropped;
+        
+        Subscription(MessageEventBuffer buffer, Consumer<MessageEvent> handler, OverflowPolicy policy) {
+            this.buffer = buffer;
+            this.handler = handler;
+            this.policy = policy;
+            this.sequence = new AtomicLong(-1);
+            this.scratch = new MessageEvent();
+            this.closed = false;
+            this.dropped = 0;
+        }
+        
+        /**
+         * Handles every event published since the last poll
+         * @return number of events handled
+         */
+        public int poll() {
+            if (closed) {
+                return 0;
+            }
+            long available = buffer.cursor.get();
+            long next = sequence.get() + 1;
+            if (next > available) {
+                return 0;
+            }
+            
+            int handled = 0;
+            int size = buffer.entries.length;
+            if (policy == OverflowPolicy.BLOCK) {
+                for (long s = next; s <= available; s++) {
+                    handler.accept(buffer.entries[(int) s & buffer.mask]);
+                    handled++;
+                }
+                sequence.set(available);
+                return handled;
+            }
+            
+            long skipped = 0;
+            long s = next;
+            while (s <= available) {
+                long oldest = Math.min(buffer.claimed.get() - size + 1, available + 1);
+                if (s < oldest) {
+                    skipped += oldest - s;
+                    s = oldest;
+                    continue;
+                }
+                scratch.copyFrom(buffer.entries[(int) s & buffer.mask]);
+                VarHandle.loadLoadFence();
+                if (buffer.claimed.get() - size >= s) {
+                    // Overwritten while copying; re-check from the new oldest
+                    continue;
+                }
+                handler.accept(scratch);
+                handled++;
+                s++;
+            }
+            if (skipped > 0) {
+                dropped += skipped;
+            }
+            sequence.set(available);
+            return handled;
+        }
+        
+        /**
+         * Polls until closed, backing off while there is nothing to do
+         */
+        @Override
+        public void run() {
+            int idle = 0;
+            while (!closed) {
+                if (poll() > 0) {
+                    idle = 0;
+                } else {
+                    idle = backOff(idle);
+                }
+            }
+        }
+        
+        /**
+         * Stops the subscription and releases the writer if it was gated
+         */
+        public void close() {
+            closed = true;
+            if (policy == OverflowPolicy.BLOCK) {
+                buffer.removeGating(this);
+            }
+        }
+        
+        public long getSequence() {
+            return sequence.get();
+        }
+        
+        /**
+         * Returns how many events a DROP subscriber skipped by falling behind
+         * @return dropped event count
+         */
+        public long getDroppedCount() {
+            return dropped;
+        }
+        
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package quickchatapp;
+
+/**
+ * MessageExporter.java
+ * Streams messages out of a MessageManager to NDJSON or CSV
+ * Messages are taken a chunk at a time, filtered and encoded on a pool of
+ * workers, and written in order through a buffered FileChannel; at most
+ * two chunks per worker are held, so memory does not grow with the store
+ * With gzip each chunk is compressed on its worker as its own gzip member
+ * (concatenated members are a valid gzip file)
+ * A checkpoint file next to the output records progress, so an interrupted
+ * export can be resumed; resuming assumes messages were only added since
+ * Run with: java quickchatapp.MessageExporter <file> [ndjson|csv] [status=X|recipient=X] [--gzip] [--resume]
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+public class MessageExporter {
+    public static final int DEFAULT_CHUNK_MESSAGES = 10_000;
+    public static final int DEFAULT_CHECKPOINT_CHUNKS = 10;
+    public static final String CSV_HEADER = "messageID,numMessagesSent,recipient,messageContent,messageHash,sendStatus";
+    
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+    
+    private final MessageManager messageManager;
+    private final int workers;
+    private int chunkMessages;
+    private int checkpointChunks;
+    private boolean gzip;
+    
+    // Constructor
+    public MessageExporter(MessageManager messageManager) {
+        this(messageManager, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public MessageExporter(MessageManager messageManager, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be at least 1.");
+        }
+        this.messageManager = messageManager;
+        this.workers = workers;
+        this.chunkMessages = DEFAULT_CHUNK_MESSAGES;
+        this.checkpointChunks = DEFAULT_CHECKPOINT_CHUNKS;
+        this.gzip = false;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java quickchatapp.MessageExporter <file> [ndjson|csv] [status=X|recipient=X] [--gzip] [--resume]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        MessageImporter.Format format = MessageImporter.formatOf(file);
+        Predicate<Message> filter = all();
+        boolean gzip = false;
+        boolean resume = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--gzip")) {
+                gzip = true;
+            } else if (arg.equals("--resume")) {
+                resume = true;
+            } else if (arg.startsWith("status=")) {
+                filter = byStatus(arg.substring("status=".length()));
+            } else if (arg.startsWith("recipient=")) {
+                filter = byRecipient(arg.substring("recipient=".length()));
+            } else {
+                format = MessageImporter.Format.valueOf(arg.toUpperCase());
+            }
+        }
+        
+        // loadStoredMessages only keeps contents, so read the full records
+        MessageManager manager = MessageStoreWarmup.loadManager(Paths.get(""));
+        MessageExporter exporter = new MessageExporter(manager);
+        exporter.setGzip(gzip);
+        System.out.println(exporter.export(file, format, filter, resume));
+    }
+    
+    // Filters
+    public static Predicate<Message> all() {
+        return msg -> true;
+    }
+    
+    public static Predicate<Message> byStatus(String status) {
+        return msg -> status.equals(msg.getSendStatus());
+    }
+    
+    public static Predicate<Message> byRecipient(String recipient) {
+        return msg -> recipient.equals(msg.getRecipient());
+    }
+    
+    // Settings
+    public void setChunkMessages(int chunkMessages) {
+        if (chunkMessages < 1) {
+            throw new IllegalArgumentException("Chunk messages must be at least 1.");
+        }
+        this.chunkMessages = chunkMessages;
+    }
+    
+    /**
+     * Sets how often the checkpoint is written
+     * @param checkpointChunks chunks written between checkpoints
+     */
+    public void setCheckpointChunks(int checkpointChunks) {
+        if (checkpointChunks < 1) {
+            throw new IllegalArgumentException("Checkpoint chunks must be at least 1.");
+        }
+        this.checkpointChunks = checkpointChunks;
+    }
+    
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+    
+    /**
+     * Returns where the checkpoint for an export is kept
+     * @param file export file
+     * @return checkpoint file path
+     */
+    public static Path checkpointOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+    
+    /**
+     * Exports messages matching a filter
+     * @param file output file
+     * @param format NDJSON or CSV
+     * @param filter messages to include
+     * @param resume true to continue from the checkpoint if there is one
+     * @return totals and throughput
+     * @throws IOException if writing fails or the checkpoint does not match
+     */
+    public Result export(Path file, MessageImporter.Format format, Predicate<Message> filter, boolean resume) throws IOException {
+        long start = System.nanoTime();
+        Path checkpointFile = checkpointOf(file);
+        Checkpoint checkpoint = new Checkpoint();
+        boolean resumed = resume && Files.exists(checkpointFile);
+        if (resumed) {
+            checkpoint = readCheckpoint(checkpointFile, format);
+        }
+        long resumedBytes = checkpoint.bytes;
+        long resumedMessages = checkpoint.exported;
+        
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "quickchat-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < checkpoint.bytes) {
+                throw new IOException("Export file is shorter than its checkpoint; restart the export.");
+            }
+            // Drop anything written after the last checkpoint
+            channel.truncate(checkpoint.bytes);
+            channel.position(checkpoint.bytes);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+            
+            if (!resumed && format == MessageImporter.Format.CSV) {
+                checkpoint.bytes += write(channel, buffer, finish((CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8)));
+            }
+            
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            int next = checkpoint.nextIndex;
+            int chunksSinceCheckpoint = 0;
+            int total = messageManager.getMessageCount();
+            while (next < total || !inFlight.isEmpty()) {
+                if (next < total && inFlight.size() < workers * 2) {
+                    List<Message> messages = messageManager.getMessageRange(next, chunkMessages);
+                    int end = next + messages.size();
+                    inFlight.add(CompletableFuture.supplyAsync(() -> encode(messages, end, format, filter), pool));
+                    next = end;
+                    continue;
+                }
+                Chunk chunk = inFlight.poll().join();
+                checkpoint.bytes += write(channel, buffer, chunk.bytes);
+                checkpoint.exported += chunk.exported;
+                checkpoint.nextIndex = chunk.endIndex;
+                checkpoint.lastMessageID = chunk.lastMessageID;
+                if (++chunksSinceCheckpoint >= checkpointChunks) {
+                    flush(channel, buffer);
+                    channel.force(false);
+                    writeCheckpoint(checkpointFile, format, checkpoint);
+                    chunksSinceCheckpoint = 0;
+                }
+            }
+            flush(channel, buffer);
+            channel.force(false);
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.deleteIfExists(checkpointFile);
+        return new Result(checkpoint.exported, checkpoint.exported - resumedMessages,
+                checkpoint.bytes, checkpoint.bytes - resumedBytes, System.nanoTime() - start);
+    }
+    
+    /**
+     * Worker: filters and encodes one chunk
+     */
+    private Chunk encode(List<Message> messages, int endIndex, MessageImporter.Format format, Predicate<Message> filter) {
+        StringBuilder text = new StringBuilder(messages.size() * 160);
+        int exported = 0;
+        for (Message msg : messages) {
+            if (!filter.test(msg)) {
+                continue;
+            }
+            if (format == MessageImporter.Format.CSV) {
+                text.append(msg.getMessageID()).append(',')
+                    .append(msg.getNumMessagesSent()).append(',');
+                appendCsv(text, msg.getRecipient()).append(',');
+                appendCsv(text, msg.getMessageContent()).append(',');
+                appendCsv(text, msg.getMessageHash()).append(',');
+                appendCsv(text, msg.getSendStatus());
+            } else {
+                text.append(msg.toJSON().toString());
+            }
+            text.append('\n');
+            exported++;
+        }
+        String lastMessageID = messages.isEmpty() ? "" : messages.get(messages.size() - 1).getMessageID();
+        return new Chunk(finish(text.toString().getBytes(StandardCharsets.UTF_8)), exported, endIndex, lastMessageID);
+    }
+    
+    /**
+     * Quotes a CSV field if it holds a comma, quote or line break
+     */
+    static StringBuilder appendCsv(StringBuilder text, String value) {
+        if (value == null) {
+            return text;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return text.append(value);
+        }
+        return text.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+    
+    /**
+     * Compresses encoded bytes into a gzip member when gzip is on
+     */
+    private byte[] finish(byte[] encoded) {
+        if (!gzip || encoded.length == 0) {
+            return encoded;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(encoded.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(encoded);
+        } catch (IOException e) {
+            // In-memory stream; cannot happen
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+    
+    private static int write(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush(channel, buffer);
+        }
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+        } else {
+            buffer.put(bytes);
+        }
+        return bytes.length;
+    }
+    
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private Checkpoint readCheckpoint(Path checkpointFile, MessageImporter.Format format) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        if (!format.name().equals(properties.getProperty("format"))
+                || gzip != Boolean.parseBoolean(properties.getProperty("gzip"))) {
+            throw new IOException("Checkpoint was written for a different format; restart the export.");
+        }
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.nextIndex = Integer.parseInt(properties.getProperty("nextIndex", "0"));
+        checkpoint.bytes = Long.parseLong(properties.getProperty("bytes", "0"));
+        checkpoint.exported = Long.parseLong(properties.getProperty("exported", "0"));
+        checkpoint.lastMessageID = properties.getProperty("lastMessageID", "");
+        
+        // The message before the resume point must still be where it was
+        if (checkpoint.nextIndex > 0) {
+            List<Message> last = messageManager.getMessageRange(checkpoint.nextIndex - 1, 1);
+            if (last.isEmpty() || !last.get(0).getMessageID().equals(checkpoint.lastMessageID)) {
+                throw new IOException("Messages changed since the checkpoint; restart the export.");
+            }
+        }
+        return checkpoint;
+    }
+    
+    private void writeCheckpoint(Path checkpointFile, MessageImporter.Format format, Checkpoint checkpoint) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("format", format.name());
+        properties.setProperty("gzip", String.valueOf(gzip));
+        properties.setProperty("nextIndex", String.valueOf(checkpoint.nextIndex));
+        properties.setProperty("bytes", String.valueOf(checkpoint.bytes));
+        properties.setProperty("exported", String.valueOf(checkpoint.exported));
+        properties.setProperty("lastMessageID", checkpoint.lastMessageID);
+        
+        // Write then rename, so a crash never leaves a half-written checkpoint
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "QuickChat export checkpoint");
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Progress of an export, as saved in the checkpoint file
+     */
+    private static class Checkpoint {
+        private int nextIndex;
+        private long bytes;
+        private long exported;
+        private String lastMessageID = "";
+    }
+    
+    /**
+     * One encoded chunk, ready to write
+     */
+    private static class Chunk {
+        private final byte[] bytes;
+        private final int exported;
+        private final int endIndex;
+        private final String lastMessageID;
+        
+        Chunk(byte[] bytes, int exported, int endIndex, String lastMessageID) {
+            this.bytes = bytes;
+            this.exported = exported;
+            this.endIndex = endIndex;
+            this.lastMessageID = lastMessageID;
+        }
+    }
+    
+    /**
+     * Export totals
+     */
+    public static class Result {
+        private final long messagesExported;
+        private final long messagesWritten;
+        private final long fileBytes;
+        private final long bytesWritten;
+        private final long elapsedNanos;
+        
+        Result(long messagesExported, long messagesWritten, long fileBytes, long bytesWritten, long elapsedNanos) {
+            this.messagesExported = messagesExported;
+            this.messagesWritten = messagesWritten;
+            this.fileBytes = fileBytes;
+            this.bytesWritten = bytesWritten;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getMessagesExported() {
+            return messagesExported;
+        }
+        
+        /**
+         * Messages written by this run, which is less than the total
+         * after a resume
+         * @return messages written
+         */
+        public long getMessagesWritten() {
+            return messagesWritten;
+        }
+        
+        public long getFileBytes() {
+            return fileBytes;
+        }
+        
+        /**
+         * Bytes written by this run, which is less than the file size
+         * after a resume
+         * @return bytes written
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+        
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+        
+        public double getMessagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : messagesWritten * 1e9 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Exported %,d messages (%,d bytes) in %,d ms, %,.0f messages/s",
+                    messagesExported, fileBytes, getElapsedMillis(), getMessagesPerSecond());
+        }
+    }
+}
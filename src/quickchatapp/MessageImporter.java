@@ -0,0 +1,506 @@
+package quickchatapp;
+
+/**
+ * MessageImporter.java
+ * Bulk import of message history from NDJSON or CSV files
+ * The file is read in chunks of rows; chunks are parsed and validated on a
+ * pool of workers (recipient check, length check, hash words) while the
+ * calling thread adds finished chunks to the MessageManager in file order
+ * and writes Stored rows to the stored messages file in batches
+ * Run with: java quickchatapp.MessageImporter <file> [ndjson|csv] [workers]
+ *
+ * NDJSON rows: {"recipient": "...", "messageContent": "...", "sendStatus": "Sent"}
+ * CSV files need a header row naming recipient and messageContent columns
+ * (sendStatus is optional); quoted fields may not span lines
+ * Rows without a status are imported as Sent; rows with a 10-digit
+ * messageID keep it, others get a new one
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import org.json.JSONObject;
+
+public class MessageImporter {
+    public enum Format { NDJSON, CSV }
+    
+    public static final int DEFAULT_CHUNK_ROWS = 10_000;
+    public static final int DEFAULT_PERSIST_ROWS = 100_000;
+    
+    // Only the first rejects are kept in the result; use a reject listener for all
+    private static final int MAX_REJECTS_KEPT = 1_000;
+    
+    private final MessageManager messageManager;
+    private final int workers;
+    private int chunkRows;
+    private int persistRows;
+    private boolean persistStored;
+    private Consumer<Result> progressListener;
+    private Consumer<Reject> rejectListener;
+    
+    // Constructor
+    public MessageImporter(MessageManager messageManager) {
+        this(messageManager, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public MessageImporter(MessageManager messageManager, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be at least 1.");
+        }
+        this.messageManager = messageManager;
+        this.workers = workers;
+        this.chunkRows = DEFAULT_CHUNK_ROWS;
+        this.persistRows = DEFAULT_PERSIST_ROWS;
+        this.persistStored = true;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java quickchatapp.MessageImporter <file> [ndjson|csv] [workers]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        Format format = args.length > 1 ? Format.valueOf(args[1].toUpperCase()) : formatOf(file);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        
+        MessageImporter importer = new MessageImporter(new MessageManager(), workers);
+        importer.setProgressListener(progress -> System.out.printf("%,d rows read, %,d imported, %,d rejected (%,.0f rows/s)%n",
+                progress.getRowsRead(), progress.getRowsImported(), progress.getRowsRejected(), progress.getRowsPerSecond()));
+        
+        Path rejectsFile = Paths.get(args[0] + ".rejects");
+        Result result;
+        try (PrintWriter rejects = new PrintWriter(Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8))) {
+            importer.setRejectListener(reject -> rejects.println(reject.getLineNumber() + "\t" + reject.getReason()));
+            result = importer.importFile(file, format);
+        }
+        System.out.println(result);
+        if (result.getRowsRejected() > 0) {
+            System.out.println("Rejected rows written to " + rejectsFile);
+        }
+    }
+    
+    /**
+     * Guesses the format from the file extension (.csv, otherwise NDJSON)
+     * @param file file to import
+     * @return detected format
+     */
+    public static Format formatOf(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".csv") ? Format.CSV : Format.NDJSON;
+    }
+    
+    // Settings
+    public void setChunkRows(int chunkRows) {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Chunk rows must be at least 1.");
+        }
+        this.chunkRows = chunkRows;
+    }
+    
+    public void setPersistRows(int persistRows) {
+        if (persistRows < 1) {
+            throw new IllegalArgumentException("Persist rows must be at least 1.");
+        }
+        this.persistRows = persistRows;
+    }
+    
+    /**
+     * Chooses whether Stored rows are written to the stored messages file
+     * @param persistStored true to persist (the default)
+     */
+    public void setPersistStored(boolean persistStored) {
+        this.persistStored = persistStored;
+    }
+    
+    /**
+     * Called on the importing thread after each chunk is added
+     * @param progressListener receives running totals
+     */
+    public void setProgressListener(Consumer<Result> progressListener) {
+        this.progressListener = progressListener;
+    }
+    
+    /**
+     * Called on the importing thread for every rejected row, in file order
+     * @param rejectListener receives each rejected row
+     */
+    public void setRejectListener(Consumer<Reject> rejectListener) {
+        this.rejectListener = rejectListener;
+    }
+    
+    /**
+     * Imports a UTF-8 file
+     * @param file file to import
+     * @param format file format
+     * @return totals, rejects and throughput
+     * @throws IOException if the file cannot be read
+     */
+    public Result importFile(Path file, Format format) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, format);
+        }
+    }
+    
+    /**
+     * Imports rows from a reader
+     * At most two chunks per worker are in flight, so memory stays bounded
+     * however large the input is
+     * @param reader row source, one row per line
+     * @param format row format
+     * @return totals, rejects and throughput
+     * @throws IOException if reading fails
+     */
+    public Result importFrom(BufferedReader reader, Format format) throws IOException {
+        Result result = new Result(System.nanoTime());
+        String[] header = null;
+        long lineNumber = 0;
+        
+        if (format == Format.CSV) {
+            String headerLine = reader.readLine();
+            lineNumber++;
+            if (headerLine == null) {
+                result.finish(System.nanoTime());
+                return result;
+            }
+            header = parseCsvLine(headerLine).toArray(new String[0]);
+            if (indexOf(header, "recipient") < 0 || indexOf(header, "messageContent") < 0) {
+                throw new IOException("CSV header must name recipient and messageContent columns.");
+            }
+        }
+        final String[] columns = header;
+        
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "quickchat-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        List<Message> toPersist = new ArrayList<>();
+        try {
+            while (true) {
+                long firstLine = lineNumber + 1;
+                List<String> lines = new ArrayList<>(chunkRows);
+                String line;
+                while (lines.size() < chunkRows && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                lineNumber += lines.size();
+                if (lines.isEmpty()) {
+                    break;
+                }
+                inFlight.add(CompletableFuture.supplyAsync(() -> parseChunk(lines, firstLine, format, columns), pool));
+                if (inFlight.size() >= workers * 2) {
+                    apply(inFlight.poll().join(), result, toPersist);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                apply(inFlight.poll().join(), result, toPersist);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        persist(toPersist);
+        result.finish(System.nanoTime());
+        return result;
+    }
+    
+    /**
+     * Adds a parsed chunk to the MessageManager; runs on the importing
+     * thread only, so chunks land in file order
+     */
+    private void apply(Chunk chunk, Result result, List<Message> toPersist) {
+        int number = Message.reserveMessageNumbers(chunk.rows.size());
+        List<Message> messages = new ArrayList<>(chunk.rows.size());
+        for (Row row : chunk.rows) {
+            String hash = row.messageID.substring(0, 2) + ":" + number + ":" + row.hashWords;
+            Message msg = new Message(row.messageID, number++, row.recipient, row.messageContent, hash, row.sendStatus);
+            messages.add(msg);
+            if (persistStored && msg.getSendStatus().equals("Stored")) {
+                toPersist.add(msg);
+            }
+        }
+        messageManager.addMessages(messages);
+        if (toPersist.size() >= persistRows) {
+            persist(toPersist);
+        }
+        for (Reject reject : chunk.rejects) {
+            result.reject(reject);
+            if (rejectListener != null) {
+                rejectListener.accept(reject);
+            }
+        }
+        result.rowsRead += chunk.rows.size() + chunk.rejects.size();
+        result.rowsImported += chunk.rows.size();
+        if (progressListener != null) {
+            progressListener.accept(result.snapshot(System.nanoTime()));
+        }
+    }
+    
+    private static void persist(List<Message> toPersist) {
+        Message.storeMessages(toPersist);
+        toPersist.clear();
+    }
+    
+    /**
+     * Worker: parses and validates one chunk of lines
+     */
+    private static Chunk parseChunk(List<String> lines, long firstLine, Format format, String[] header) {
+        Chunk chunk = new Chunk(lines.size());
+        long lineNumber = firstLine;
+        for (String line : lines) {
+            long current = lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                Message msg = format == Format.CSV ? fromCsv(line, header) : fromJson(line);
+                String reason = validate(msg);
+                if (reason != null) {
+                    chunk.rejects.add(new Reject(current, reason));
+                } else {
+                    chunk.rows.add(new Row(msg, Message.hashWords(msg.getMessageContent())));
+                }
+            } catch (RuntimeException e) {
+                chunk.rejects.add(new Reject(current, "Malformed row: " + e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+    
+    private static Message fromJson(String line) {
+        JSONObject row = new JSONObject(line);
+        return newMessage(row.optString("messageID", ""), row.optString("recipient", null),
+                row.optString("messageContent", null), row.optString("sendStatus", ""));
+    }
+    
+    private static Message fromCsv(String line, String[] header) {
+        List<String> fields = parseCsvLine(line);
+        if (fields.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " fields but found " + fields.size() + ".");
+        }
+        return newMessage(field(fields, header, "messageID"), field(fields, header, "recipient"),
+                field(fields, header, "messageContent"), field(fields, header, "sendStatus"));
+    }
+    
+    private static Message newMessage(String messageID, String recipient, String content, String status) {
+        String id = messageID != null && messageID.matches("\\d{10}") ? messageID : Message.newMessageID();
+        String sendStatus = status == null || status.isEmpty() ? "Sent" : status;
+        return new Message(id, 0, recipient, content, "", sendStatus);
+    }
+    
+    /**
+     * Applies the same checks as the send dialog
+     * @return reason for rejection, or null if the row is valid
+     */
+    private static String validate(Message msg) {
+        if (msg.checkRecipientCell() != 0) {
+            return "Cell phone number is incorrectly formatted or does not contain an international code.";
+        }
+        if (msg.getMessageContent() == null) {
+            return "Message content is missing.";
+        }
+        String lengthCheck = msg.checkMessageLength();
+        if (!lengthCheck.equals("Message ready to send.")) {
+            return lengthCheck;
+        }
+        String status = msg.getSendStatus();
+        if (!status.equals("Sent") && !status.equals("Stored") && !status.equals("Disregarded")) {
+            return "Unknown send status: " + status;
+        }
+        return null;
+    }
+    
+    /**
+     * Splits one CSV line; quoted fields may contain commas and "" escapes
+     * @param line CSV line
+     * @return field values
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private static String field(List<String> fields, String[] header, String name) {
+        int index = indexOf(header, name);
+        return index < 0 ? null : fields.get(index);
+    }
+    
+    private static int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * A validated row waiting for its message number
+     */
+    private static class Row {
+        private final String messageID;
+        private final String recipient;
+        private final String messageContent;
+        private final String sendStatus;
+        private final String hashWords;
+        
+        Row(Message msg, String hashWords) {
+            this.messageID = msg.getMessageID();
+            this.recipient = msg.getRecipient();
+            this.messageContent = msg.getMessageContent();
+            this.sendStatus = msg.getSendStatus();
+            this.hashWords = hashWords;
+        }
+    }
+    
+    /**
+     * Output of one worker task
+     */
+    private static class Chunk {
+        private final List<Row> rows;
+        private final List<Reject> rejects;
+        
+        Chunk(int size) {
+            this.rows = new ArrayList<>(size);
+            this.rejects = new ArrayList<>();
+        }
+    }
+    
+    /**
+     * A row that was not imported
+     */
+    public static class Reject {
+        private final long lineNumber;
+        private final String reason;
+        
+        Reject(long lineNumber, String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+        
+        public long getLineNumber() {
+            return lineNumber;
+        }
+        
+        public String getReason() {
+            return reason;
+        }
+        
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + reason;
+        }
+    }
+    
+    /**
+     * Import totals; also passed to the progress listener while running
+     */
+    public static class Result {
+        private final long startNanos;
+        private long endNanos;
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsRejected;
+        private final List<Reject> rejects;
+        
+        Result(long startNanos) {
+            this.startNanos = startNanos;
+            this.endNanos = startNanos;
+            this.rejects = new ArrayList<>();
+        }
+        
+        void reject(Reject reject) {
+            rowsRejected++;
+            if (rejects.size() < MAX_REJECTS_KEPT) {
+                rejects.add(reject);
+            }
+        }
+        
+        void finish(long now) {
+            endNanos = now;
+        }
+        
+        Result snapshot(long now) {
+            Result copy = new Result(startNanos);
+            copy.endNanos = now;
+            copy.rowsRead = rowsRead;
+            copy.rowsImported = rowsImported;
+            copy.rowsRejected = rowsRejected;
+            return copy;
+        }
+        
+        public long getRowsRead() {
+            return rowsRead;
+        }
+        
+        public long getRowsImported() {
+            return rowsImported;
+        }
+        
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+        
+        /**
+         * Returns the first rejected rows (up to 1,000), in file order
+         * @return rejected rows
+         */
+        public List<Reject> getRejects() {
+            return Collections.unmodifiableList(rejects);
+        }
+        
+        public long getElapsedMillis() {
+            return (endNanos - startNanos) / 1_000_000;
+        }
+        
+        public double getRowsPerSecond() {
+            long elapsed = endNanos - startNanos;
+            return elapsed == 0 ? 0 : rowsRead * 1e9 / elapsed;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Imported %,d of %,d rows (%,d rejected) in %,d ms, %,.0f rows/s",
+                    rowsImported, rowsRead, rowsRejected, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+}
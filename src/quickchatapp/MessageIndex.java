@@ -0,0 +1,126 @@
+package quickchatapp;
+
+/**
+ * MessageIndex.java
+ * Exact-match index from a key (ID, recipient, status) to the messages
+ * that have it, in insertion order
+ * Most keys map to one message, so a single message is held directly and
+ * only repeated keys get a set; removal is O(1) either way
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+class MessageIndex {
+    private final String field;
+    // Message, or LinkedHashSet<Message> once a key repeats
+    private final Map<String, Object> entries;
+    
+    // Constructor
+    MessageIndex(String field) {
+        this.field = field;
+        this.entries = new HashMap<>();
+    }
+    
+    void add(String key, Message message) {
+        entries.put(key, addTo(entries.get(key), message));
+    }
+    
+    void remove(String key, Message message) {
+        Object entry = removeFrom(entries.get(key), message);
+        if (entry == null) {
+            entries.remove(key);
+        } else {
+            entries.put(key, entry);
+        }
+    }
+    
+    /**
+     * @param key key to look up
+     * @return read-only view of the messages with the key, oldest first
+     */
+    Collection<Message> get(String key) {
+        return viewOf(entries.get(key));
+    }
+    
+    /**
+     * @return the oldest message with the key, or null
+     */
+    Message first(String key) {
+        Object entry = entries.get(key);
+        if (entry == null || entry instanceof Message) {
+            return (Message) entry;
+        }
+        return get(key).iterator().next();
+    }
+    
+    int count(String key) {
+        Object entry = entries.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        return entry instanceof Message ? 1 : ((Set<?>) entry).size();
+    }
+    
+    /**
+     * @return read-only view of the keys held
+     */
+    Set<String> keys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+    
+    String getField() {
+        return field;
+    }
+    
+    /**
+     * Adds a message to an entry held in the single-or-set form
+     * @param entry null, a Message or a set of messages
+     * @return the entry to hold from now on
+     */
+    @SuppressWarnings("unchecked")
+    static Object addTo(Object entry, Message message) {
+        if (entry == null) {
+            return message;
+        }
+        if (entry instanceof Message) {
+            Set<Message> messages = new LinkedHashSet<>();
+            messages.add((Message) entry);
+            messages.add(message);
+            return messages;
+        }
+        ((Set<Message>) entry).add(message);
+        return entry;
+    }
+    
+    /**
+     * @return the entry to hold from now on, null once it is empty
+     */
+    @SuppressWarnings("unchecked")
+    static Object removeFrom(Object entry, Message message) {
+        if (entry == message) {
+            return null;
+        }
+        if (entry instanceof Set) {
+            Set<Message> messages = (Set<Message>) entry;
+            messages.remove(message);
+            return messages.isEmpty() ? null : messages;
+        }
+        return entry;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static Collection<Message> viewOf(Object entry) {
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        if (entry instanceof Message) {
+            return Collections.singleton((Message) entry);
+        }
+        return Collections.unmodifiableSet((Set<Message>) entry);
+    }
+}
@@ -0,0 +1,101 @@
+package quickchatapp;
+
+/**
+ * MessageLoadClient.java
+ * Load client for MessageServer: several connections, each pipelining a
+ * batch of requests (mostly sends, some searches) per round trip
+ * Run with: java quickchatapp.MessageLoadClient [port|embedded] [connections] [pipeline] [seconds]
+ * "embedded" starts a server in the same JVM on a free port
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MessageLoadClient {
+    
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "embedded";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int pipeline = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        
+        MessageServer server = null;
+        int port;
+        if (target.equals("embedded")) {
+            server = new MessageServer(0, new MessageManager());
+            server.start();
+            port = server.getPort();
+        } else {
+            port = Integer.parseInt(target);
+        }
+        
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder batchNanos = new LongAdder();
+        LongAdder batches = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        
+        List<Thread> workers = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            Thread worker = new Thread(() -> {
+                try (MessageClient client = new MessageClient(port)) {
+                    run(client, pipeline, deadline, requests, errors, batchNanos, batches);
+                } catch (IOException e) {
+                    System.err.println("Connection failed: " + e.getMessage());
+                }
+            });
+            workers.add(worker);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        System.out.println("Connections: " + connections + ", pipeline depth: " + pipeline);
+        System.out.printf("Requests: %,d (errors %,d) in %.1f s%n", requests.sum(), errors.sum(), elapsed / 1e9);
+        System.out.printf("Throughput: %,.0f requests/s%n", requests.sum() * 1e9 / elapsed);
+        if (batches.sum() > 0) {
+            System.out.printf("Mean round trip per pipelined batch: %.3f ms%n", batchNanos.sum() / 1e6 / batches.sum());
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+    
+    private static void run(MessageClient client, int pipeline, long deadline, LongAdder requests,
+                            LongAdder errors, LongAdder batchNanos, LongAdder batches) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<CompletableFuture<MessageClient.Response>> inFlight = new ArrayList<>(pipeline);
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            for (int i = 0; i < pipeline; i++) {
+                String recipient = "+2771" + (10_000_000 + random.nextInt(10_000));
+                if (random.nextInt(10) < 8) {
+                    inFlight.add(client.sendAsync(MessageProtocol.OP_SEND, recipient,
+                            "Load test message " + random.nextInt(1_000)));
+                } else {
+                    inFlight.add(client.sendAsync(MessageProtocol.OP_SEARCH_ID,
+                            String.valueOf(1_000_000_000L + random.nextInt(1_000_000))));
+                }
+            }
+            client.flush();
+            for (CompletableFuture<MessageClient.Response> future : inFlight) {
+                if (!future.join().isOk()) {
+                    errors.increment();
+                }
+            }
+            batchNanos.add(System.nanoTime() - start);
+            batches.increment();
+            requests.add(inFlight.size());
+            inFlight.clear();
+        }
+    }
+}
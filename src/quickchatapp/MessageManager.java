@@ -3,7 +3,15 @@ package quickchatapp;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -18,6 +26,36 @@ public class MessageManager {
     private List<String> messageIDs;
     private List<String> recipients;
     private List<Message> allMessages;
+    // Kept up to date on add and delete when incremental analytics is on
+    private MessageAnalytics liveAnalytics;
+    // Approximate recipient statistics, updated on every add
+    private MessageSketches sketches;
+    // Duplicate screens; a hit is confirmed with an exact scan
+    private BloomFilter messageFingerprints;
+    private BloomFilter storedContentFilter;
+    // Change stream; null until someone opens it
+    private MessageEventBuffer events;
+    // Exact-match indexes used by lookups and the query planner
+    private MessageIndex idIndex;
+    private MessageIndex recipientIndex;
+    private MessageIndex statusIndex;
+    // Prefix and range lookups on recipient numbers
+    private RecipientTrie recipientTrie;
+    // Longest-message lookups, overall and per status
+    private LengthIndex lengthIndex;
+    // Versioned copy of allMessages that reports read through snapshots
+    private VersionedMessages versions;
+    // Holds disregarded messages apart from the rest when set; null keeps them inline
+    private DisregardedMessageBuffer disregardedBuffer;
+    // Ordered, persisted thread per recipient; null until turned on
+    private ConversationStore conversations;
+    // Order messages were added in, shared with the indexes that merge results
+    private InsertionOrder order;
+    
+    private static final int EXPECTED_MESSAGES = 1024;
+    private static final double DUPLICATE_FALSE_POSITIVE_RATE = 0.001;
+    // Prefix searches matching more than 1 in this many messages scan instead
+    private static final int TRIE_SCAN_RATIO = 16;
     
     public MessageManager() {
         this.sentMessages = new ArrayList<>();
@@ -27,14 +65,35 @@ public class MessageManager {
         this.messageIDs = new ArrayList<>();
         this.recipients = new ArrayList<>();
         this.allMessages = new ArrayList<>();
+        this.messageFingerprints = new BloomFilter(EXPECTED_MESSAGES, DUPLICATE_FALSE_POSITIVE_RATE);
+        this.storedContentFilter = new BloomFilter(EXPECTED_MESSAGES, DUPLICATE_FALSE_POSITIVE_RATE);
+        this.idIndex = new MessageIndex("messageID");
+        this.recipientIndex = new MessageIndex("recipient");
+        this.statusIndex = new MessageIndex("status");
+        this.order = new InsertionOrder();
+        this.recipientTrie = new RecipientTrie(order);
+        this.lengthIndex = new LengthIndex(order);
+        this.sketches = new MessageSketches();
+        this.versions = new VersionedMessages(this::longestIndexed);
     }
     
   
     public void addMessage(Message message) {
+        if (disregardedBuffer != null) {
+            disregardedBuffer.expireDue();
+            if ("Disregarded".equals(message.getSendStatus())) {
+                disregardedBuffer.add(message);
+                buffered(message);
+                return;
+            }
+        }
         allMessages.add(message);
         messageIDs.add(message.getMessageID());
         messageHashes.add(message.getMessageHash());
         recipients.add(message.getRecipient());
+        messageFingerprints.add(fingerprint(message));
+        index(message);
+        versions.append(List.of(message));
         
         String status = message.getSendStatus();
         if ("Sent".equals(status)) {
@@ -43,21 +102,258 @@ public class MessageManager {
             disregardedMessages.add(message.getMessageContent());
         } else if ("Stored".equals(status)) {
             storedMessages.add(message.getMessageContent());
+            storedContentFilter.add(message.getMessageContent());
+        }
+        
+        sketches.add(message);
+        if (liveAnalytics != null) {
+            liveAnalytics.add(message);
+        }
+        if (events != null) {
+            events.publish(MessageEvent.Type.ADDED, message);
+        }
+        if (conversations != null && !"Disregarded".equals(status)) {
+            conversations.append(message);
+        }
+    }
+
+    /**
+     * Adds many messages in one pass
+     * Each list grows once for the whole batch instead of once per message
+     * @param messages messages to add, in order
+     * @return number of messages added
+     */
+    public int addMessages(Collection<Message> messages) {
+        int size = messages.size();
+        if (disregardedBuffer != null) {
+            messages = holdDisregarded(messages);
+        }
+        List<String> ids = new ArrayList<>(messages.size());
+        List<String> hashes = new ArrayList<>(messages.size());
+        List<String> batchRecipients = new ArrayList<>(messages.size());
+        List<String> sent = new ArrayList<>();
+        List<String> disregarded = new ArrayList<>();
+        List<String> stored = new ArrayList<>();
+        for (Message message : messages) {
+            ids.add(message.getMessageID());
+            hashes.add(message.getMessageHash());
+            batchRecipients.add(message.getRecipient());
+            messageFingerprints.add(fingerprint(message));
+            index(message);
+            
+            String status = message.getSendStatus();
+            if ("Sent".equals(status)) {
+                sent.add(message.getMessageContent());
+            } else if ("Disregarded".equals(status)) {
+                disregarded.add(message.getMessageContent());
+            } else if ("Stored".equals(status)) {
+                stored.add(message.getMessageContent());
+                storedContentFilter.add(message.getMessageContent());
+            }
+        }
+        allMessages.addAll(messages);
+        versions.append(messages);
+        messageIDs.addAll(ids);
+        messageHashes.addAll(hashes);
+        recipients.addAll(batchRecipients);
+        sentMessages.addAll(sent);
+        disregardedMessages.addAll(disregarded);
+        storedMessages.addAll(stored);
+        
+        for (Message message : messages) {
+            sketches.add(message);
+            if (liveAnalytics != null) {
+                liveAnalytics.add(message);
+            }
+            if (events != null) {
+                events.publish(MessageEvent.Type.ADDED, message);
+            }
+        }
+        if (conversations != null) {
+            List<Message> threaded = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                if (!"Disregarded".equals(message.getSendStatus())) {
+                    threaded.add(message);
+                }
+            }
+            conversations.appendAll(threaded);
+        }
+        return size;
+    }
+    
+    /**
+     * Moves a batch's disregarded messages into the buffer
+     * @return the rest of the batch, in order
+     */
+    private Collection<Message> holdDisregarded(Collection<Message> messages) {
+        disregardedBuffer.expireDue();
+        List<Message> rest = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if ("Disregarded".equals(message.getSendStatus())) {
+                disregardedBuffer.add(message);
+                buffered(message);
+            } else {
+                rest.add(message);
+            }
         }
+        return rest;
     }
     
+    /**
+     * Counts and publishes a message the buffer took in, as for any other add
+     */
+    private void buffered(Message message) {
+        sketches.add(message);
+        if (liveAnalytics != null) {
+            liveAnalytics.add(message);
+        }
+        if (events != null) {
+            events.publish(MessageEvent.Type.ADDED, message);
+        }
+    }
+    
+    /**
+     * Uncounts and publishes a message that left the buffer, as for any
+     * other delete; an undone message is then added again as Sent
+     */
+    private void unbuffered(Message message) {
+        if (liveAnalytics != null) {
+            liveAnalytics.remove(message);
+        }
+        if (events != null) {
+            events.publish(MessageEvent.Type.DELETED, message);
+        }
+    }
+    
+    /**
+     * Marks messages as Stored, adds them and persists them with a single
+     * write of the stored messages file
+     * The caller's Message objects are changed and held, not copies, so
+     * they report "Stored" afterwards, as with Message.storeMessage
+     * @param messages messages to store; their status is set to "Stored"
+     * @return number of messages stored
+     */
+    public int storeMessages(Collection<Message> messages) {
+        for (Message message : messages) {
+            message.setSendStatus("Stored");
+        }
+        addMessages(messages);
+        Message.storeMessages(messages);
+        return messages.size();
+    }
+    
+    /**
+     * Adds a message on behalf of a logged-in user
+     * Only the session is checked, so the password is never re-verified
+     * @param session session issued by SessionManager
+     * @param message message to add
+     * @return true if added, false if the session is invalid or expired
+     */
+    public boolean addMessage(Session session, Message message) {
+        if (session == null || !session.isValid()) {
+            return false;
+        }
+        addMessage(message);
+        return true;
+    }
+    
+    /**
+     * Adds a message unless the recipient already has one with the same content
+     * Retried sends therefore do not create the same message twice
+     * @param message message to add
+     * @return true if added, false if it is a duplicate
+     */
+    public boolean addMessageIfAbsent(Message message) {
+        if (isDuplicate(message)) {
+            return false;
+        }
+        addMessage(message);
+        return true;
+    }
+    
+    /**
+     * Checks if a message with the same recipient and content is held
+     * The Bloom filter rules out most new messages without scanning
+     * @param message message to check
+     * @return true if a duplicate exists, false otherwise
+     */
+    public boolean isDuplicate(Message message) {
+        if (!messageFingerprints.mightContain(fingerprint(message))) {
+            return false;
+        }
+        for (Message existing : allMessages) {
+            if (existing.getRecipient().equals(message.getRecipient())
+                    && existing.getMessageContent().equals(message.getMessageContent())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String fingerprint(Message message) {
+        return message.getRecipient() + '\u0000' + message.getMessageContent();
+    }
+    
+    /**
+     * Indexes a message by ID, recipient, status and length
+     * Recipient, status and content are read once, so change them before adding
+     */
+    private void index(Message message) {
+        order.add(message);
+        idIndex.add(message.getMessageID(), message);
+        recipientIndex.add(message.getRecipient(), message);
+        statusIndex.add(message.getSendStatus(), message);
+        recipientTrie.add(message);
+        lengthIndex.add(message);
+    }
+    
+    private void unindex(Message message) {
+        idIndex.remove(message.getMessageID(), message);
+        recipientIndex.remove(message.getRecipient(), message);
+        statusIndex.remove(message.getSendStatus(), message);
+        recipientTrie.remove(message);
+        lengthIndex.remove(message);
+        order.remove(message);
+    }
+
    
     public void loadStoredMessages() {
+        QuickChatEvents.Load event = new QuickChatEvents.Load();
+        event.begin();
+        long fileBytes = 0;
+        int records = 0;
+        int deleted = 0;
+        int loaded = 0;
         try {
-            String content = new String(Files.readAllBytes(Paths.get("stored_messages.json")));
+            String content;
+            Set<String> tombstones;
+            Map<String, String> bodies;
+            synchronized (Message.STORE_LOCK) {
+                content = new String(Files.readAllBytes(Paths.get(Message.STORE_FILE)));
+                tombstones = Message.readTombstones(Paths.get(Message.TOMBSTONE_FILE));
+                bodies = MessageBodyStore.readBodies(Paths.get(MessageBodyStore.BODY_FILE));
+            }
+            fileBytes = content.length();
                 JSONArray messagesArray = new JSONArray(content);
+            records = messagesArray.length();
             
             for (int i = 0; i < messagesArray.length(); i++) {
                 JSONObject msgObj = messagesArray.getJSONObject(i);
-                String messageContent = msgObj.getString("messageContent");
+                String messageContent = MessageBodyStore.contentOf(msgObj, bodies);
                 
-                if (!storedMessages.contains(messageContent)) {
+                // Deleted, but not yet compacted out of the file
+                if (!tombstones.isEmpty() && tombstones.contains(Message.tombstoneKey(
+                        msgObj.optString("messageID", ""), msgObj.optString("messageHash", "")))) {
+                    deleted++;
+                    continue;
+                }
+                
+                // Only scan the list when the filter has possibly seen it
+                if (!storedContentFilter.mightContain(messageContent)
+                        || !storedMessages.contains(messageContent)) {
                     storedMessages.add(messageContent);
+                    storedContentFilter.add(messageContent);
+                    loaded++;
                 }
             }
         } catch (IOException e) {
@@ -65,40 +361,105 @@ public class MessageManager {
         } catch (Exception e) {
             System.err.println("Error parsing stored messages: " + e.getMessage());
         }
+        event.finish(fileBytes, records, deleted, loaded);
     }
     
     /**
      * Displays sender and recipient of all sent messages
+     * Reads a snapshot, so it is safe alongside a writer on another thread
      * @return formatted string
      */
     public String displaySentMessagesInfo() {
-        if (sentMessages.isEmpty()) {
-            return "No sent messages available.";
-        }
-        
+        return sentInfoOf(versions.snapshot());
+    }
+    
+    /**
+     * Formats the sent messages info for a sequence of messages
+     * @param messages messages in insertion order
+     * @return formatted string
+     */
+    static String sentInfoOf(Iterable<Message> messages) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== Sent Messages Info ===\n\n");
         
-        for (int i = 0; i < allMessages.size(); i++) {
-            Message msg = allMessages.get(i);
+        boolean any = false;
+        for (Message msg : messages) {
             if ("Sent".equals(msg.getSendStatus())) {
+                any = true;
                 sb.append("Recipient: ").append(msg.getRecipient())
                   .append("\nMessage: ").append(msg.getMessageContent())
                   .append("\n\n");
             }
         }
         
-        return sb.toString();
+        return any ? sb.toString() : "No sent messages available.";
     }
     
     /**
      * Finds and returns the longest sent message
+     * Answered from the length index as published with the latest
+     * snapshot, so it costs O(1) and is safe alongside a writer on
+     * another thread
      * @return longest message content
      */
     public String findLongestMessage() {
+        return versions.snapshot().findLongestMessage();
+    }
+    
+    /**
+     * Read by the versioned log on every change, on the writer's thread
+     * @return longest sent or stored message, or null if there is none
+     */
+    private Message longestIndexed() {
+        List<Message> longest = lengthIndex.longest(1, "Sent", "Stored");
+        return longest.isEmpty() ? null : longest.get(0);
+    }
+    
+    /**
+     * Finds the longest messages, in time proportional to the result
+     * Reads the live length index, so call it from the thread that adds
+     * and deletes messages
+     * @param count most messages to return
+     * @param statuses statuses to include, such as "Sent"; none means all
+     * @return up to count messages, longest first; equal lengths in the order added
+     * @throws IllegalArgumentException if count is negative
+     */
+    public List<Message> findLongestMessages(int count, String... statuses) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative.");
+        }
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
+        List<Message> longest = lengthIndex.longest(count, statuses);
+        event.finish("longestTop", longest.size(), allMessages.size());
+        return longest;
+    }
+    
+    /**
+     * Finds every message longer than a given length
+     * Reads the live length index, so call it from the thread that adds
+     * and deletes messages
+     * @param length number of characters the messages must exceed
+     * @param statuses statuses to include, such as "Sent"; none means all
+     * @return matching messages, longest first; equal lengths in the order added
+     */
+    public List<Message> findMessagesLongerThan(int length, String... statuses) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
+        List<Message> longer = lengthIndex.longerThan(length, statuses);
+        event.finish("longerThan", longer.size(), allMessages.size());
+        return longer;
+    }
+    
+    /**
+     * Finds the longest sent or stored message in a sequence of messages
+     * @param messages messages to look through
+     * @return longest message content
+     */
+    static String longestOf(Iterable<Message> messages) {
         String longest = "";
         
-        for (Message msg : allMessages) {
+        for (Message msg : messages) {
             if ("Sent".equals(msg.getSendStatus()) || "Stored".equals(msg.getSendStatus())) {
                 if (msg.getMessageContent().length() > longest.length()) {
                     longest = msg.getMessageContent();
@@ -115,13 +476,47 @@ public class MessageManager {
      * @return formatted message details or error message
      */
     public String searchByMessageID(String messageID) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
+        Message msg = idIndex.first(messageID);
+        event.finish("messageID", msg != null ? 1 : 0, allMessages.size());
+        if (msg != null) {
+            return "Recipient: " + msg.getRecipient() + "\n" +
+                   "Message: " + msg.getMessageContent();
+        }
+        return "Message ID not found.";
+    }
+    
+    /**
+     * Searches for many message IDs at once
+     * @param ids IDs to search for
+     * @return details or "Message ID not found." for each ID, in the order given
+     */
+    public Map<String, String> searchByMessageIDs(Collection<String> ids) {
+        Map<String, String> results = new LinkedHashMap<>();
+        for (String id : ids) {
+            results.put(id, searchByMessageID(id));
+        }
+        return results;
+    }
+    
+    /**
+     * Searches for a message by hash and returns details
+     * @param messageHash hash to search for
+     * @return formatted message details or error message
+     */
+    public String searchByMessageHash(String messageHash) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
         for (Message msg : allMessages) {
-            if (msg.getMessageID().equals(messageID)) {
+            if (msg.getMessageHash().equals(messageHash)) {
+                event.finish("messageHash", 1, allMessages.size());
                 return "Recipient: " + msg.getRecipient() + "\n" +
                        "Message: " + msg.getMessageContent();
             }
         }
-        return "Message ID not found.";
+        event.finish("messageHash", 0, allMessages.size());
+        return "Message hash not found.";
     }
     
     /**
@@ -130,25 +525,94 @@ public class MessageManager {
      * @return list of messages
      */
     public List<String> searchByRecipient(String recipient) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
         List<String> messages = new ArrayList<>();
         
-        for (Message msg : allMessages) {
-            if (msg.getRecipient().equals(recipient)) {
-                if ("Sent".equals(msg.getSendStatus()) || "Stored".equals(msg.getSendStatus())) {
-                    messages.add(msg.getMessageContent());
-                }
+        for (Message msg : recipientIndex.get(recipient)) {
+            if ("Sent".equals(msg.getSendStatus()) || "Stored".equals(msg.getSendStatus())) {
+                messages.add(msg.getMessageContent());
             }
         }
         
+        event.finish("recipient", messages.size(), allMessages.size());
         return messages;
     }
     
+    /**
+     * Finds all messages to recipients whose number starts with a prefix,
+     * such as a country code ("+27") or a number block ("+2771")
+     * @param prefix start of the recipient number
+     * @return matching messages in insertion order
+     */
+    public List<Message> searchByRecipientPrefix(String prefix) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
+        List<Message> messages;
+        // Gathering and re-sorting a large share of the store loses to a scan
+        if (recipientTrie.count(prefix) * TRIE_SCAN_RATIO > allMessages.size()) {
+            messages = new ArrayList<>();
+            for (Message msg : allMessages) {
+                if (msg.getRecipient().startsWith(prefix)) {
+                    messages.add(msg);
+                }
+            }
+            event.finish("recipientPrefix scan", messages.size(), allMessages.size());
+        } else {
+            messages = recipientTrie.messages(prefix);
+            event.finish("recipientPrefix", messages.size(), allMessages.size());
+        }
+        return messages;
+    }
+    
+    /**
+     * Finds all messages to recipients inside a range of numbers
+     * @param from lowest recipient number, inclusive
+     * @param to highest recipient number, inclusive
+     * @return matching messages in insertion order
+     */
+    public List<Message> searchByRecipientRange(String from, String to) {
+        QuickChatEvents.Search event = new QuickChatEvents.Search();
+        event.begin();
+        List<Message> messages = recipientTrie.messagesBetween(from, to);
+        event.finish("recipientRange", messages.size(), allMessages.size());
+        return messages;
+    }
+    
+    /**
+     * Counts messages to recipients whose number starts with a prefix
+     * without visiting the messages
+     * @param prefix start of the recipient number
+     * @return number of messages
+     */
+    public long countByRecipientPrefix(String prefix) {
+        return recipientTrie.count(prefix);
+    }
+    
+    /**
+     * Counts messages per recipient country code
+     * @return country code to message count, in code order
+     */
+    public Map<String, Long> countByCountryCode() {
+        return recipientTrie.countsByCountryCode();
+    }
+    
+    RecipientTrie getRecipientTrie() {
+        return recipientTrie;
+    }
+    
+    InsertionOrder getInsertionOrder() {
+        return order;
+    }
+    
     /**
      * Deletes a message using its hash
      * @param messageHash hash of message to delete
      * @return confirmation message
      */
     public String deleteMessageByHash(String messageHash) {
+        QuickChatEvents.Delete event = new QuickChatEvents.Delete();
+        event.begin();
         for (int i = 0; i < allMessages.size(); i++) {
             Message msg = allMessages.get(i);
             if (msg.getMessageHash().equals(messageHash)) {
@@ -157,30 +621,221 @@ public class MessageManager {
                 messageHashes.remove(i);
                 messageIDs.remove(i);
                 recipients.remove(i);
+                unindex(msg);
+                versions.remove(List.of(msg));
                 
                 // Remove from appropriate list
                 sentMessages.remove(content);
                 disregardedMessages.remove(content);
                 storedMessages.remove(content);
                 
+                if (liveAnalytics != null) {
+                    liveAnalytics.remove(msg);
+                }
+                if (events != null) {
+                    events.publish(MessageEvent.Type.DELETED, msg);
+                }
+                if (conversations != null) {
+                    conversations.removeAll(List.of(msg));
+                }
+                if ("Stored".equals(msg.getSendStatus())) {
+                    Message.recordDeletion(msg);
+                }
+                
+                event.finish("hash", 1, allMessages.size());
                 return "Message \"" + content + "\" successfully deleted.";
             }
         }
+        Message disregarded = disregardedBuffer != null ? disregardedBuffer.delete(messageHash) : null;
+        event.finish("hash", disregarded != null ? 1 : 0, allMessages.size());
+        if (disregarded != null) {
+            return "Message \"" + disregarded.getMessageContent() + "\" successfully deleted.";
+        }
         return "Message hash not found.";
     }
     
+    /**
+     * Sends a disregarded message after all, if it is still in its undo window
+     * Only messages held by the disregarded-message buffer can be undone
+     * @param messageHash hash of the disregarded message
+     * @return confirmation message
+     */
+    public String undoDisregard(String messageHash) {
+        if (disregardedBuffer == null || disregardedBuffer.get(messageHash) == null) {
+            return "Message hash not found.";
+        }
+        Message message = disregardedBuffer.undo(messageHash);
+        if (message == null) {
+            return "Undo window has passed.";
+        }
+        message.setSendStatus("Sent");
+        addMessage(message);
+        return "Message \"" + message.getMessageContent() + "\" successfully sent.";
+    }
+    
+    /**
+     * Deletes messages by hash in one pass, with the same result as calling
+     * deleteMessageByHash once per hash: each occurrence of a hash deletes
+     * the oldest message still holding it, so a hash shared by several
+     * messages deletes only one unless it is listed again
+     * The lists are compacted in place rather than shifted once per delete
+     * @param hashes hashes of messages to delete
+     * @return number of messages deleted
+     */
+    public int deleteByHashes(Collection<String> hashes) {
+        Map<String, Integer> wanted = new HashMap<>();
+        for (String hash : hashes) {
+            wanted.merge(hash, 1, Integer::sum);
+        }
+        // Messages are tested once each, oldest first
+        int deleted = deleteMatching(msg -> {
+            Integer left = wanted.get(msg.getMessageHash());
+            if (left == null) {
+                return false;
+            }
+            if (left == 1) {
+                wanted.remove(msg.getMessageHash());
+            } else {
+                wanted.put(msg.getMessageHash(), left - 1);
+            }
+            return true;
+        }, true);
+        // As deleteMessageByHash, hashes not held fall back to the buffer
+        if (disregardedBuffer != null) {
+            for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+                for (int i = 0; i < entry.getValue() && disregardedBuffer.delete(entry.getKey()) != null; i++) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Deletes messages a replica has seen deleted on its primary
+     * The primary has already recorded the deletions, so no tombstones
+     * are written here
+     * @param messages messages held by this manager
+     * @return number of messages deleted
+     */
+    int deleteReplicated(Collection<Message> messages) {
+        // Message has no equals, so this matches by identity
+        Set<Message> wanted = new HashSet<>(messages);
+        return deleteMatching(wanted::contains, false);
+    }
+    
+    private int deleteMatching(Predicate<Message> wanted, boolean recordDeletions) {
+        QuickChatEvents.Delete event = new QuickChatEvents.Delete();
+        event.begin();
+        List<Message> deleted = new ArrayList<>();
+        int kept = 0;
+        for (int i = 0; i < allMessages.size(); i++) {
+            Message msg = allMessages.get(i);
+            if (wanted.test(msg)) {
+                deleted.add(msg);
+                unindex(msg);
+                continue;
+            }
+            if (kept != i) {
+                allMessages.set(kept, msg);
+                messageHashes.set(kept, messageHashes.get(i));
+                messageIDs.set(kept, messageIDs.get(i));
+                recipients.set(kept, recipients.get(i));
+            }
+            kept++;
+        }
+        if (deleted.isEmpty()) {
+            event.finish("batch", 0, allMessages.size());
+            return 0;
+        }
+        truncate(allMessages, kept);
+        versions.remove(deleted);
+        truncate(messageHashes, kept);
+        truncate(messageIDs, kept);
+        truncate(recipients, kept);
+        
+        // Same as deleteMessageByHash: drop the first copy of each content
+        Map<String, Integer> contents = new HashMap<>();
+        for (Message msg : deleted) {
+            contents.merge(msg.getMessageContent(), 1, Integer::sum);
+        }
+        removeFirstCopies(sentMessages, contents);
+        removeFirstCopies(disregardedMessages, contents);
+        removeFirstCopies(storedMessages, contents);
+        
+        List<Message> storedDeleted = new ArrayList<>();
+        for (Message msg : deleted) {
+            if (liveAnalytics != null) {
+                liveAnalytics.remove(msg);
+            }
+            if (events != null) {
+                events.publish(MessageEvent.Type.DELETED, msg);
+            }
+            if (recordDeletions && "Stored".equals(msg.getSendStatus())) {
+                storedDeleted.add(msg);
+            }
+        }
+        Message.recordDeletions(storedDeleted);
+        if (conversations != null) {
+            conversations.removeAll(deleted);
+        }
+        event.finish("batch", deleted.size(), allMessages.size());
+        return deleted.size();
+    }
+    
+    private static <T> void truncate(List<T> list, int size) {
+        list.subList(size, list.size()).clear();
+    }
+    
+    private static void removeFirstCopies(List<String> list, Map<String, Integer> counts) {
+        Map<String, Integer> remaining = new HashMap<>(counts);
+        int kept = 0;
+        for (int i = 0; i < list.size(); i++) {
+            String content = list.get(i);
+            Integer left = remaining.get(content);
+            if (left != null && left > 0) {
+                remaining.put(content, left - 1);
+                continue;
+            }
+            list.set(kept++, content);
+        }
+        truncate(list, kept);
+    }
+    
     /**
      * Generates a full report of all sent messages
+     * Reads a snapshot, so it is safe alongside a writer on another thread
      * @return formatted report
      */
     public String displayReport() {
+        return buildReport(versions.snapshot());
+    }
+    
+    /**
+     * Takes a point-in-time view of the messages held
+     * O(1) and lock-free; the view does not change as messages are added
+     * or deleted, so long reports can run on other threads without
+     * blocking or tearing
+     * @return snapshot of the current messages
+     */
+    public MessageSnapshot snapshot() {
+        return versions.snapshot();
+    }
+    
+    /**
+     * Formats the sent messages report for a sequence of messages
+     * Shared with ShardedMessageManager so merged reports look the same
+     * @param messages messages in report order
+     * @return formatted report
+     */
+    static String buildReport(Iterable<Message> messages) {
         StringBuilder report = new StringBuilder();
         report.append("=================================================\n");
         report.append("           SENT MESSAGES REPORT\n");
         report.append("=================================================\n\n");
         
         int sentCount = 0;
-        for (Message msg : allMessages) {
+        for (Message msg : messages) {
             if ("Sent".equals(msg.getSendStatus())) {
                 sentCount++;
                 report.append("Message #").append(sentCount).append("\n");
@@ -203,13 +858,218 @@ public class MessageManager {
         return report.toString();
     }
     
+    /**
+     * Counts messages with the given status
+     * @param status "Sent", "Disregarded" or "Stored"
+     * @return number of messages with that status
+     */
+    public int countByStatus(String status) {
+        if (disregardedBuffer != null && "Disregarded".equals(status)) {
+            return statusIndex.count(status) + disregardedBuffer.size();
+        }
+        return statusIndex.count(status);
+    }
+    
+    /**
+     * Runs a query, using an index where one fits
+     * @param query conditions, order and limit
+     * @return matching messages and how they were found
+     */
+    public MessageQuery.Result query(MessageQuery query) {
+        return query.run(this);
+    }
+    
+    /**
+     * Runs a query and describes the plan it used
+     * @param query query to explain
+     * @return plan, rows examined and rows returned
+     */
+    public String explain(MessageQuery query) {
+        return query(query).explain();
+    }
+    
+    /**
+     * Returns the index on a field, for the query planner
+     * @param field "messageID", "recipient" or "status"
+     * @return the index, or null if the field is not indexed
+     */
+    MessageIndex indexOn(String field) {
+        switch (field) {
+            case "messageID":
+                return idIndex;
+            case "recipient":
+                return recipientIndex;
+            case "status":
+                return statusIndex;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Live read-only view of all messages, for the query planner's scans
+     */
+    List<Message> messagesView() {
+        return Collections.unmodifiableList(allMessages);
+    }
+    
+    /**
+     * Computes counts per status, recipient and country code plus a length
+     * histogram in one parallel pass over all messages, including those
+     * held by the disregarded-message buffer
+     * @return freshly computed analytics
+     */
+    public MessageAnalytics computeAnalytics() {
+        MessageAnalytics analytics = MessageAnalytics.compute(allMessages);
+        if (disregardedBuffer != null) {
+            for (Message message : disregardedBuffer.getMessages()) {
+                analytics.add(message);
+            }
+        }
+        return analytics;
+    }
+    
+    /**
+     * Turns incremental analytics on or off
+     * When on, analytics are updated on every add and delete so reads are O(1)
+     * @param enabled true to keep analytics up to date, false to stop
+     */
+    public void setIncrementalAnalytics(boolean enabled) {
+        if (enabled && liveAnalytics == null) {
+            liveAnalytics = computeAnalytics();
+        } else if (!enabled) {
+            liveAnalytics = null;
+        }
+    }
+    
+    /**
+     * Returns analytics for all messages
+     * @return a copy of the live analytics if incremental mode is on,
+     *         otherwise a fresh pass; later changes never show through
+     */
+    public MessageAnalytics getAnalytics() {
+        if (disregardedBuffer != null) {
+            // Drop anything that has expired since the last add
+            disregardedBuffer.expireDue();
+        }
+        return liveAnalytics != null ? new MessageAnalytics().merge(liveAnalytics) : computeAnalytics();
+    }
+    
+    /**
+     * Returns the approximate recipient statistics kept on every add:
+     * distinct recipients, messages per recipient and top recipients
+     * @return the manager's sketches (live, not a copy)
+     */
+    public MessageSketches getSketches() {
+        return sketches;
+    }
+    
+    /**
+     * Keeps disregarded messages in a bounded buffer instead of with the
+     * rest, so they expire after a while and no longer slow down searches
+     * and reports. Applies to messages added from now on. Buffered
+     * messages still count in analytics and sketches, and appear in the
+     * event stream as ADDED and, once deleted, undone, expired or
+     * evicted, as DELETED
+     * @param buffer buffer to hold them, or null to keep them inline again
+     */
+    public void setDisregardedBuffer(DisregardedMessageBuffer buffer) {
+        this.disregardedBuffer = buffer;
+        if (buffer != null) {
+            buffer.onRemoved(this::unbuffered);
+        }
+    }
+    
+    /**
+     * @return the disregarded-message buffer, or null if none is set
+     */
+    public DisregardedMessageBuffer getDisregardedBuffer() {
+        return disregardedBuffer;
+    }
+    
+    /**
+     * Keeps an ordered thread per recipient, persisted one file per
+     * thread. A thread picks up the messages already held for its
+     * recipient when it is first read, and follows every add and delete
+     * from then on. Disregarded messages are left out of threads
+     * @param store thread store, or null to stop keeping threads
+     */
+    public void setConversations(ConversationStore store) {
+        this.conversations = store;
+        if (store != null) {
+            store.catchUpFrom(this::threadedMessages);
+        }
+    }
+    
+    private List<Message> threadedMessages(String recipient) {
+        List<Message> threaded = new ArrayList<>();
+        for (Message message : recipientIndex.get(recipient)) {
+            if (!"Disregarded".equals(message.getSendStatus())) {
+                threaded.add(message);
+            }
+        }
+        return threaded;
+    }
+    
+    /**
+     * Returns the conversation with a recipient, in the order messages
+     * were added; page through it with latest, before and after
+     * @param recipient recipient number
+     * @return the thread, or null if conversations are not turned on
+     */
+    public ConversationThread getConversation(String recipient) {
+        return conversations != null ? conversations.thread(recipient) : null;
+    }
+    
+    /**
+     * Opens the change stream that addMessage and deleteMessageByHash publish to
+     * Subscribe to the returned buffer to react to changes without polling
+     * @param bufferSize slots in the ring buffer (used on first call only)
+     * @return the manager's event buffer
+     */
+    public MessageEventBuffer openEventStream(int bufferSize) {
+        if (events == null) {
+            events = new MessageEventBuffer(bufferSize);
+        }
+        return events;
+    }
+    
+    /**
+     * Returns the number of messages held
+     * @return message count
+     */
+    public int getMessageCount() {
+        return allMessages.size();
+    }
+    
+    /**
+     * Returns a copy of a slice of all messages, in insertion order, so
+     * large stores can be walked a chunk at a time
+     * @param from index of the first message
+     * @param count maximum number of messages
+     * @return up to count messages starting at from
+     */
+    public List<Message> getMessageRange(int from, int count) {
+        int to = Math.min(allMessages.size(), from + count);
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(allMessages.subList(from, to));
+    }
+    
     // Getters for testing
     public List<String> getSentMessages() {
         return new ArrayList<>(sentMessages);
     }
     
     public List<String> getDisregardedMessages() {
-        return new ArrayList<>(disregardedMessages);
+        List<String> disregarded = new ArrayList<>(disregardedMessages);
+        if (disregardedBuffer != null) {
+            for (Message message : disregardedBuffer.getMessages()) {
+                disregarded.add(message.getMessageContent());
+            }
+        }
+        return disregarded;
     }
     
     public List<String> getStoredMessages() {
@@ -0,0 +1,118 @@
+package quickchatapp;
+
+/**
+ * MessageProtocol.java
+ * Compact length-prefixed binary protocol spoken by MessageServer and
+ * MessageClient
+ *
+ * Request frame:  int length | byte op | int requestId | short argc | args
+ * Response frame: int length | int requestId | byte status | short count | values
+ * Strings are written as int byte-length followed by UTF-8 bytes;
+ * length counts the bytes after the length field itself
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MessageProtocol {
+    // Operations
+    public static final byte OP_SEND = 1;
+    public static final byte OP_STORE = 2;
+    public static final byte OP_SEARCH_ID = 3;
+    public static final byte OP_SEARCH_RECIPIENT = 4;
+    public static final byte OP_SEARCH_HASH = 5;
+    public static final byte OP_DELETE = 6;
+    public static final byte OP_REPORT = 7;
+    
+    // Response status
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    
+    // Frames larger than this are rejected and the connection closed
+    public static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+    
+    private MessageProtocol() {
+    }
+    
+    /**
+     * Encodes a request frame
+     * @param op operation code
+     * @param requestId id echoed back in the response
+     * @param args string arguments
+     * @return frame bytes including the length prefix
+     */
+    public static byte[] encodeRequest(byte op, int requestId, String... args) {
+        byte[][] encoded = encodeAll(args);
+        int length = 1 + 4 + 2 + sizeOf(encoded);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length).put(op).putInt(requestId).putShort((short) encoded.length);
+        putAll(buffer, encoded);
+        return buffer.array();
+    }
+    
+    /**
+     * Encodes a response frame
+     * @param requestId id of the request being answered
+     * @param status STATUS_OK or STATUS_ERROR
+     * @param values string results
+     * @return frame bytes including the length prefix
+     */
+    public static byte[] encodeResponse(int requestId, byte status, List<String> values) {
+        byte[][] encoded = encodeAll(values.toArray(new String[0]));
+        int length = 4 + 1 + 2 + sizeOf(encoded);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length).putInt(requestId).put(status).putShort((short) encoded.length);
+        putAll(buffer, encoded);
+        return buffer.array();
+    }
+    
+    /**
+     * Reads count strings from a frame body
+     * @param buffer buffer positioned at the first string
+     * @param count number of strings
+     * @return decoded strings
+     */
+    public static List<String> readStrings(ByteBuffer buffer, int count) {
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed string in frame.");
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            values.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+    
+    private static byte[][] encodeAll(String[] values) {
+        if (values.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many values for one frame.");
+        }
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = (values[i] == null ? "" : values[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+    
+    private static int sizeOf(byte[][] encoded) {
+        long size = 0;
+        for (byte[] value : encoded) {
+            size += 4 + value.length;
+        }
+        if (size + 11 > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("Frame exceeds " + MAX_FRAME_BYTES + " bytes.");
+        }
+        return (int) size;
+    }
+    
+    private static void putAll(ByteBuffer buffer, byte[][] encoded) {
+        for (byte[] value : encoded) {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+}
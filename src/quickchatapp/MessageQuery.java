@@ -0,0 +1,456 @@
+package quickchatapp;
+
+/**
+ * MessageQuery.java
+ * Composable query over the messages held by a MessageManager
+ * Conditions on status, recipient (exact or prefix), content length,
+ * keyword and creation time are combined with and/or, then ordered and
+ * limited. The planner drives the query from the smallest index that can
+ * answer part of it (ID, recipient or status, or the recipient trie for
+ * prefixes and number ranges), unions indexes for an or
+ * whose every branch is indexed, and otherwise scans every message;
+ * every candidate row is checked against the full condition
+ * Example:
+ *   MessageQuery.where(MessageQuery.status("Sent").and(MessageQuery.keyword("meeting")))
+ *           .orderBy(MessageQuery.Order.NEWEST).limit(10)
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+public class MessageQuery {
+    
+    /**
+     * Result order; ties keep insertion order
+     */
+    public enum Order {
+        INSERTION, OLDEST, NEWEST, SHORTEST, LONGEST
+    }
+    
+    private final Condition condition;
+    private Order order;
+    private int limit;
+    
+    // Constructor
+    private MessageQuery(Condition condition) {
+        this.condition = condition;
+        this.order = Order.INSERTION;
+        this.limit = Integer.MAX_VALUE;
+    }
+    
+    /**
+     * @param condition condition every result must meet
+     * @return a query in insertion order with no limit
+     */
+    public static MessageQuery where(Condition condition) {
+        return new MessageQuery(condition);
+    }
+    
+    /**
+     * @return a query matching every message
+     */
+    public static MessageQuery all() {
+        return new MessageQuery(new Condition() {
+            @Override
+            boolean matches(Message message) {
+                return true;
+            }
+            
+            @Override
+            public String toString() {
+                return "all";
+            }
+        });
+    }
+    
+    public MessageQuery orderBy(Order order) {
+        this.order = order;
+        return this;
+    }
+    
+    public MessageQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+        this.limit = limit;
+        return this;
+    }
+    
+    // Conditions
+    
+    public static Condition messageID(String messageID) {
+        return new Equals("messageID", messageID, Message::getMessageID);
+    }
+    
+    public static Condition status(String status) {
+        return new Equals("status", status, Message::getSendStatus);
+    }
+    
+    public static Condition recipient(String recipient) {
+        return new Equals("recipient", recipient, Message::getRecipient);
+    }
+    
+    public static Condition recipientPrefix(String prefix) {
+        return new Condition() {
+            @Override
+            boolean matches(Message message) {
+                return message.getRecipient().startsWith(prefix);
+            }
+            
+            @Override
+            Access access(MessageManager manager) {
+                RecipientTrie trie = manager.getRecipientTrie();
+                return new Access("TRIE " + this, trie.count(prefix), () -> trie.messages(prefix));
+            }
+            
+            @Override
+            public String toString() {
+                return "recipient starts with " + prefix;
+            }
+        };
+    }
+    
+    /**
+     * @param from lowest recipient number, inclusive
+     * @param to highest recipient number, inclusive
+     */
+    public static Condition recipientBetween(String from, String to) {
+        return new Condition() {
+            @Override
+            boolean matches(Message message) {
+                String recipient = message.getRecipient();
+                return recipient.compareTo(from) >= 0 && recipient.compareTo(to) <= 0;
+            }
+            
+            @Override
+            Access access(MessageManager manager) {
+                RecipientTrie trie = manager.getRecipientTrie();
+                return new Access("TRIE " + this, trie.countBetween(from, to), () -> trie.messagesBetween(from, to));
+            }
+            
+            @Override
+            public String toString() {
+                return "recipient " + from + ".." + to;
+            }
+        };
+    }
+    
+    /**
+     * @param min shortest content length, inclusive
+     * @param max longest content length, inclusive
+     */
+    public static Condition lengthBetween(int min, int max) {
+        return new Condition() {
+            @Override
+            boolean matches(Message message) {
+                int length = message.getMessageContent().length();
+                return length >= min && length <= max;
+            }
+            
+            @Override
+            public String toString() {
+                return "length " + min + ".." + max;
+            }
+        };
+    }
+    
+    /**
+     * Matches a whole word or phrase in the content, ignoring case
+     * @param keyword word to look for
+     */
+    public static Condition keyword(String keyword) {
+        Pattern pattern = Pattern.compile("(?<![\\p{L}\\p{N}])" + Pattern.quote(keyword) + "(?![\\p{L}\\p{N}])",
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return new Condition() {
+            @Override
+            boolean matches(Message message) {
+                return pattern.matcher(message.getMessageContent()).find();
+            }
+            
+            @Override
+            public String toString() {
+                return "keyword \"" + keyword + "\"";
+            }
+        };
+    }
+    
+    /**
+     * @param fromMillis earliest creation time, inclusive
+     * @param toMillis latest creation time, exclusive
+     */
+    public static Condition createdBetween(long fromMillis, long toMillis) {
+        return new Condition() {
+            @Override
+            boolean matches(Message message) {
+                long createdAt = message.getCreatedAt();
+                return createdAt >= fromMillis && createdAt < toMillis;
+            }
+            
+            @Override
+            public String toString() {
+                return "created " + fromMillis + ".." + toMillis;
+            }
+        };
+    }
+    
+    /**
+     * Runs the query against a manager
+     */
+    Result run(MessageManager manager) {
+        long start = System.nanoTime();
+        List<Message> all = manager.messagesView();
+        Access access = condition.access(manager);
+        Collection<Message> rows;
+        String plan;
+        // An index that would hand back most rows costs more than a scan
+        if (access != null && access.size < all.size()) {
+            rows = access.rows.get();
+            plan = access.description + " (" + rows.size() + " of " + all.size() + " rows)";
+        } else {
+            rows = all;
+            plan = "SCAN all messages (" + all.size() + " rows)";
+        }
+        
+        int examined = 0;
+        List<Message> matches = new ArrayList<>();
+        if (order == Order.INSERTION) {
+            // Rows already come in insertion order, so a limit can stop early
+            for (Message message : rows) {
+                if (matches.size() >= limit) {
+                    break;
+                }
+                examined++;
+                if (condition.matches(message)) {
+                    matches.add(message);
+                }
+            }
+        } else {
+            Comparator<Message> comparator = comparator(order, manager.getInsertionOrder());
+            if (limit < Integer.MAX_VALUE) {
+                // Keep only the best limit rows; the head is the worst of them
+                PriorityQueue<Message> best = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024)), comparator.reversed());
+                for (Message message : rows) {
+                    examined++;
+                    if (limit > 0 && condition.matches(message)) {
+                        best.add(message);
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+                matches.addAll(best);
+            } else {
+                for (Message message : rows) {
+                    examined++;
+                    if (condition.matches(message)) {
+                        matches.add(message);
+                    }
+                }
+            }
+            matches.sort(comparator);
+        }
+        return new Result(this, matches, plan, examined, System.nanoTime() - start);
+    }
+    
+    private static Comparator<Message> comparator(Order order, InsertionOrder insertion) {
+        Comparator<Message> bySequence = insertion.comparator();
+        switch (order) {
+            case OLDEST:
+                return Comparator.comparingLong(Message::getCreatedAt).thenComparing(bySequence);
+            case NEWEST:
+                return Comparator.comparingLong(Message::getCreatedAt).reversed().thenComparing(bySequence);
+            case SHORTEST:
+                return Comparator.<Message>comparingInt(message -> message.getMessageContent().length()).thenComparing(bySequence);
+            case LONGEST:
+                return Comparator.<Message>comparingInt(message -> message.getMessageContent().length()).reversed()
+                        .thenComparing(bySequence);
+            default:
+                return bySequence;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return condition + ", order " + order + (limit < Integer.MAX_VALUE ? ", limit " + limit : "");
+    }
+    
+    /**
+     * A condition on one message; combine with and/or
+     */
+    public abstract static class Condition {
+        
+        abstract boolean matches(Message message);
+        
+        /**
+         * Rows that could satisfy this condition, found through an index
+         * @return candidate rows, or null if a scan is needed
+         */
+        Access access(MessageManager manager) {
+            return null;
+        }
+        
+        public Condition and(Condition other) {
+            return new Junction(this, other, true);
+        }
+        
+        public Condition or(Condition other) {
+            return new Junction(this, other, false);
+        }
+    }
+    
+    /**
+     * Exact match on an indexed field
+     */
+    private static class Equals extends Condition {
+        private final String field;
+        private final String value;
+        private final Function<Message, String> getter;
+        
+        Equals(String field, String value, Function<Message, String> getter) {
+            this.field = field;
+            this.value = value;
+            this.getter = getter;
+        }
+        
+        @Override
+        boolean matches(Message message) {
+            return value.equals(getter.apply(message));
+        }
+        
+        @Override
+        Access access(MessageManager manager) {
+            MessageIndex index = manager.indexOn(field);
+            return index == null ? null : new Access("INDEX " + this, index.count(value), () -> index.get(value));
+        }
+        
+        @Override
+        public String toString() {
+            return field + " = " + value;
+        }
+    }
+    
+    private static class Junction extends Condition {
+        private final Condition left;
+        private final Condition right;
+        private final boolean and;
+        
+        Junction(Condition left, Condition right, boolean and) {
+            this.left = left;
+            this.right = right;
+            this.and = and;
+        }
+        
+        @Override
+        boolean matches(Message message) {
+            return and ? left.matches(message) && right.matches(message)
+                       : left.matches(message) || right.matches(message);
+        }
+        
+        @Override
+        Access access(MessageManager manager) {
+            Access leftAccess = left.access(manager);
+            Access rightAccess = right.access(manager);
+            if (and) {
+                // Either side narrows the rows; drive from the smaller one
+                if (leftAccess == null) {
+                    return rightAccess;
+                }
+                if (rightAccess == null || leftAccess.size <= rightAccess.size) {
+                    return leftAccess;
+                }
+                return rightAccess;
+            }
+            // An or can only use indexes when both sides can
+            if (leftAccess == null || rightAccess == null) {
+                return null;
+            }
+            return new Access("UNION(" + leftAccess.description + ", " + rightAccess.description + ")",
+                    leftAccess.size + rightAccess.size, () -> {
+                        Set<Message> union = Collections.newSetFromMap(new IdentityHashMap<>());
+                        union.addAll(leftAccess.rows.get());
+                        union.addAll(rightAccess.rows.get());
+                        List<Message> rows = new ArrayList<>(union);
+                        manager.getInsertionOrder().sort(rows);
+                        return rows;
+                    });
+        }
+        
+        @Override
+        public String toString() {
+            return "(" + left + (and ? " AND " : " OR ") + right + ")";
+        }
+    }
+    
+    /**
+     * How candidate rows would be found, and roughly how many there are;
+     * the rows are only gathered once the planner picks this path
+     */
+    static class Access {
+        final String description;
+        final long size;
+        // Candidate rows in insertion order
+        final Supplier<Collection<Message>> rows;
+        
+        Access(String description, long size, Supplier<Collection<Message>> rows) {
+            this.description = description;
+            this.size = size;
+            this.rows = rows;
+        }
+    }
+    
+    /**
+     * Messages found by a query and how they were found
+     */
+    public static class Result {
+        private final MessageQuery query;
+        private final List<Message> messages;
+        private final String plan;
+        private final int rowsExamined;
+        private final long elapsedNanos;
+        
+        Result(MessageQuery query, List<Message> messages, String plan, int rowsExamined, long elapsedNanos) {
+            this.query = query;
+            this.messages = messages;
+            this.plan = plan;
+            this.rowsExamined = rowsExamined;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public List<Message> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+        
+        /**
+         * @return the access path, e.g. "INDEX recipient = +27718693002 (3 of 100 rows)"
+         */
+        public String getPlan() {
+            return plan;
+        }
+        
+        public int getRowsExamined() {
+            return rowsExamined;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        /**
+         * @return the query, the plan chosen, rows examined and rows returned
+         */
+        public String explain() {
+            return "Query: " + query + "\n"
+                    + "Plan: " + plan + "\n"
+                    + "Rows examined: " + rowsExamined + ", rows returned: " + messages.size() + "\n";
+        }
+    }
+}
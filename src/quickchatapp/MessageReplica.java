@@ -0,0 +1,488 @@
+package quickchatapp;
+
+/**
+ * MessageReplica.java
+ * Read replica of a primary's persisted messages
+ * Tails the stored messages file and the tombstone file, possibly written
+ * by another process, and applies new records and deletions to its own
+ * indexed MessageManager, so searches and reports can run away from the
+ * process that takes the sends
+ * Stores only ever append to the stored messages array, so a poll reads
+ * just the bytes after the last record it applied and checks that the
+ * bytes before them are unchanged. If they are not (the file was
+ * compacted or replaced) it reloads the whole file and reconciles. A file
+ * caught halfway through a rewrite does not parse and is retried on the
+ * next poll. Replication lag is measured from each record's storedAt
+ * Run with: java quickchatapp.MessageReplica [directory] [poll ms] [report seconds]
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class MessageReplica {
+    // Bytes before the read position compared on each poll
+    private static final int ANCHOR_BYTES = 64;
+    
+    private final Path storeFile;
+    private final Path tombstoneFile;
+    private final Path bodyFile;
+    private final MessageManager manager;
+    // Replicated messages by tombstone key
+    private final Map<String, Message> applied;
+    // Deletions seen on the primary, kept so a late record is not applied
+    private final Set<String> deletedKeys;
+    private Map<String, String> bodies;
+    // Where the last poll left the stored messages file
+    private Object storeFileKey;
+    private long storeSize;
+    private long storeModified;
+    private long storeOffset;
+    private byte[] storeAnchor;
+    // Where the last poll left the tombstone file
+    private Object tombstoneFileKey;
+    private long tombstoneOffset;
+    // Lag statistics; guarded by pollLock
+    private final LatencyHistogram lag;
+    private long lastLagMillis;
+    private long appliedRecords;
+    private long appliedDeletions;
+    private int resyncs;
+    private volatile long lastSyncMillis;
+    private final Object pollLock = new Object();
+    private ScheduledExecutorService scheduler;
+    
+    // Constructors
+    public MessageReplica() {
+        this(Paths.get(""));
+    }
+    
+    /**
+     * @param directory directory holding the primary's store files
+     */
+    public MessageReplica(Path directory) {
+        this.storeFile = directory.resolve(Message.STORE_FILE);
+        this.tombstoneFile = directory.resolve(Message.TOMBSTONE_FILE);
+        this.bodyFile = directory.resolve(MessageBodyStore.BODY_FILE);
+        this.manager = new MessageManager();
+        this.applied = new HashMap<>();
+        this.deletedKeys = new HashSet<>();
+        this.bodies = new HashMap<>();
+        this.storeSize = -1;
+        this.storeAnchor = new byte[0];
+        this.lag = new LatencyHistogram();
+    }
+    
+    public static void main(String[] args) throws InterruptedException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "");
+        long pollMillis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        long reportSeconds = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        
+        MessageReplica replica = new MessageReplica(directory);
+        replica.start(Duration.ofMillis(pollMillis));
+        System.out.println("Replicating " + replica.storeFile.toAbsolutePath() + " every " + pollMillis + " ms");
+        while (true) {
+            Thread.sleep(reportSeconds * 1000);
+            System.out.println(replica.status());
+        }
+    }
+    
+    /**
+     * Applies whatever the primary has written since the last poll
+     * @return records added plus records deleted
+     * @throws IOException if a file exists but cannot be read
+     */
+    public int poll() throws IOException {
+        synchronized (pollLock) {
+            long started = System.currentTimeMillis();
+            int changes = pollStore();
+            if (changes < 0) {
+                // Caught the store mid-write; deletions wait for their records
+                return 0;
+            }
+            changes += pollTombstones();
+            lastSyncMillis = started;
+            return changes;
+        }
+    }
+    
+    /**
+     * Polls on a fixed schedule until stop() is called
+     * @param interval time between polls
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quickchat-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error replicating stored messages: " + e.getMessage());
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * Returns the replica's manager
+     * Polls change it under its monitor: hold that for index searches, or
+     * use snapshot(), which needs no lock
+     * @return the replica's manager
+     */
+    public MessageManager getManager() {
+        return manager;
+    }
+    
+    /**
+     * @return point-in-time view of the replicated messages
+     */
+    public MessageSnapshot snapshot() {
+        return manager.snapshot();
+    }
+    
+    /**
+     * @return time from the primary storing the last applied record to this
+     *         replica applying it
+     */
+    public long getLastLagMillis() {
+        synchronized (pollLock) {
+            return lastLagMillis;
+        }
+    }
+    
+    /**
+     * @param percentile 0 to 100, e.g. 99
+     * @return replication lag at that percentile over all applied records
+     */
+    public long getLagMillis(double percentile) {
+        synchronized (pollLock) {
+            return lag.percentile(percentile) / 1_000_000L;
+        }
+    }
+    
+    /**
+     * Upper bound on how stale the replica is: it held everything the
+     * primary had written when the last successful poll started
+     * @return millis since that poll, or -1 if none has succeeded
+     */
+    public long getStalenessMillis() {
+        long last = lastSyncMillis;
+        return last == 0 ? -1 : System.currentTimeMillis() - last;
+    }
+    
+    public long getAppliedRecords() {
+        synchronized (pollLock) {
+            return appliedRecords;
+        }
+    }
+    
+    public long getAppliedDeletions() {
+        synchronized (pollLock) {
+            return appliedDeletions;
+        }
+    }
+    
+    /**
+     * @return full reloads of the stored messages file, the first load included
+     */
+    public int getResyncs() {
+        synchronized (pollLock) {
+            return resyncs;
+        }
+    }
+    
+    /**
+     * @return one-line summary of size and lag
+     */
+    public String status() {
+        synchronized (pollLock) {
+            return String.format("Messages: %,d  applied: %,d  deleted: %,d  resyncs: %d  "
+                    + "lag p50/p99/max: %d/%d/%d ms  staleness: %d ms",
+                    manager.snapshot().size(), appliedRecords, appliedDeletions, resyncs,
+                    lag.percentile(50) / 1_000_000L, lag.percentile(99) / 1_000_000L,
+                    lag.getMax() / 1_000_000L, getStalenessMillis());
+        }
+    }
+    
+    /**
+     * @return changes applied, or -1 if the file was caught mid-write
+     */
+    private int pollStore() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(storeFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return applied.isEmpty() ? 0 : resync("[]".getBytes(StandardCharsets.UTF_8));
+        }
+        Object key = attributes.fileKey();
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        boolean sameFile = Objects.equals(key, storeFileKey);
+        if (sameFile && size == storeSize && modified == storeModified) {
+            return 0;
+        }
+        
+        int changes = -1;
+        // The file may have grown since its size was read; readFrom sees the current end
+        if (sameFile && storeOffset > 0) {
+            byte[] tail = readFrom(storeFile, storeOffset - storeAnchor.length);
+            if (startsWith(tail, storeAnchor)) {
+                changes = applyTail(tail, storeAnchor.length);
+            }
+        }
+        if (changes < 0) {
+            byte[] content;
+            try {
+                content = Files.readAllBytes(storeFile);
+            } catch (NoSuchFileException e) {
+                return -1;
+            }
+            changes = resync(content);
+        }
+        if (changes >= 0) {
+            storeFileKey = key;
+            storeSize = size;
+            storeModified = modified;
+        }
+        return changes;
+    }
+    
+    /**
+     * Applies the records after the read position
+     * @param tail file bytes from the start of the anchor
+     * @param from where the unread bytes start in tail
+     */
+    private int applyTail(byte[] tail, int from) throws IOException {
+        int end = lastNonWhitespace(tail);
+        if (end < from || tail[end] != ']') {
+            return -1;
+        }
+        int open = indexOf(tail, (byte) '{', from, end);
+        if (open < 0) {
+            return 0;
+        }
+        JSONArray records;
+        try {
+            records = new JSONArray("[" + new String(tail, open, end + 1 - open, StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+        int close = lastIndexOf(tail, (byte) '}', end);
+        int changes = apply(records, true);
+        storeOffset += close + 1 - from;
+        storeAnchor = Arrays.copyOfRange(tail, Math.max(0, close + 1 - ANCHOR_BYTES), close + 1);
+        return changes;
+    }
+    
+    /**
+     * Reconciles with the whole file: adds what is new and deletes what the
+     * primary no longer has (compacted, expired or replaced)
+     */
+    private int resync(byte[] content) throws IOException {
+        int end = lastNonWhitespace(content);
+        if (end < 0 || content[end] != ']') {
+            return -1;
+        }
+        JSONArray records;
+        try {
+            records = new JSONArray(new String(content, StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+        Set<String> present = new HashSet<>();
+        for (int i = 0; i < records.length(); i++) {
+            present.add(keyOf(records.getJSONObject(i)));
+        }
+        List<Message> gone = new ArrayList<>();
+        for (Iterator<Map.Entry<String, Message>> it = applied.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Message> entry = it.next();
+            if (!present.contains(entry.getKey())) {
+                gone.add(entry.getValue());
+                it.remove();
+            }
+        }
+        deletedKeys.retainAll(present);
+        delete(gone);
+        // The first load is history, not lag
+        int changes = gone.size() + apply(records, resyncs > 0);
+        
+        int close = lastIndexOf(content, (byte) '}', end);
+        storeOffset = close + 1;
+        storeAnchor = Arrays.copyOfRange(content, Math.max(0, close + 1 - ANCHOR_BYTES), close + 1);
+        resyncs++;
+        return changes;
+    }
+    
+    private int apply(JSONArray records, boolean measureLag) throws IOException {
+        List<Message> batch = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        boolean bodiesRead = false;
+        for (int i = 0; i < records.length(); i++) {
+            JSONObject record = records.getJSONObject(i);
+            String key = keyOf(record);
+            if (applied.containsKey(key) || deletedKeys.contains(key)) {
+                continue;
+            }
+            if (!bodiesRead && !record.has("messageContent") && !bodies.containsKey(record.optString("bodyRef", ""))) {
+                bodies = MessageBodyStore.readBodies(bodyFile);
+                bodiesRead = true;
+            }
+            Message message = Message.fromJSON(record, bodies);
+            applied.put(key, message);
+            batch.add(message);
+            if (measureLag && record.has("storedAt")) {
+                lastLagMillis = Math.max(0, now - record.optLong("storedAt"));
+                lag.record(lastLagMillis * 1_000_000L);
+            }
+        }
+        if (!batch.isEmpty()) {
+            synchronized (manager) {
+                manager.addMessages(batch);
+            }
+            appliedRecords += batch.size();
+        }
+        return batch.size();
+    }
+    
+    /**
+     * Applies complete tombstone lines written since the last poll
+     */
+    private int pollTombstones() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(tombstoneFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            tombstoneFileKey = null;
+            tombstoneOffset = 0;
+            return 0;
+        }
+        // Compaction swaps in a new file; re-reading it only repeats deletions
+        if (!Objects.equals(attributes.fileKey(), tombstoneFileKey) || attributes.size() < tombstoneOffset) {
+            tombstoneFileKey = attributes.fileKey();
+            tombstoneOffset = 0;
+        }
+        if (attributes.size() == tombstoneOffset) {
+            return 0;
+        }
+        byte[] bytes = readFrom(tombstoneFile, tombstoneOffset);
+        int lastNewline = lastIndexOf(bytes, (byte) '\n', bytes.length - 1);
+        if (lastNewline < 0) {
+            return 0;
+        }
+        tombstoneOffset += lastNewline + 1;
+        
+        List<Message> gone = new ArrayList<>();
+        for (String line : new String(bytes, 0, lastNewline, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            deletedKeys.add(line);
+            Message message = applied.remove(line);
+            if (message != null) {
+                gone.add(message);
+            }
+        }
+        delete(gone);
+        return gone.size();
+    }
+    
+    private void delete(List<Message> gone) {
+        if (gone.isEmpty()) {
+            return;
+        }
+        synchronized (manager) {
+            manager.deleteReplicated(gone);
+        }
+        appliedDeletions += gone.size();
+    }
+    
+    private static String keyOf(JSONObject record) {
+        return Message.tombstoneKey(record.optString("messageID", ""), record.optString("messageHash", ""));
+    }
+    
+    private static byte[] readFrom(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (position >= size) {
+                return new byte[0];
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - position));
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+    
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int lastNonWhitespace(byte[] bytes) {
+        int i = bytes.length - 1;
+        while (i >= 0 && Character.isWhitespace(bytes[i])) {
+            i--;
+        }
+        return i;
+    }
+    
+    private static int indexOf(byte[] bytes, byte target, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int lastIndexOf(byte[] bytes, byte target, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
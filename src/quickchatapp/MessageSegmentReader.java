@@ -0,0 +1,222 @@
+package quickchatapp;
+
+/**
+ * MessageSegmentReader.java
+ * Random access to a segment written by MessageSegmentWriter
+ * Opening reads only the trailer and the footer; after that a record is
+ * found by binary search over the blocks' first records (or through the
+ * message ID index) and read by inflating the one block that holds it.
+ * The last block inflated is kept, so neighbouring reads are cheap
+ * Thread-safe; reads are serialised on the reader
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.json.JSONObject;
+
+public class MessageSegmentReader implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final Inflater inflater;
+    // Block index from the footer
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] firstRecords;
+    private final int recordCount;
+    // Record number of each message ID (the first, if an ID repeats)
+    private final Map<String, Integer> records;
+    // Last block inflated and where each of its lines starts
+    private int cachedBlock;
+    private byte[] cachedBytes;
+    private int[] cachedLines;
+    private long blocksInflated;
+    
+    // Constructor
+    public MessageSegmentReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.inflater = new Inflater();
+        this.cachedBlock = -1;
+        try {
+            long size = channel.size();
+            byte[] magic = new byte[MessageSegmentWriter.MAGIC.length];
+            if (size < MessageSegmentWriter.MAGIC.length + MessageSegmentWriter.TRAILER_BYTES) {
+                throw notASegment();
+            }
+            ByteBuffer trailer = read(size - MessageSegmentWriter.TRAILER_BYTES, MessageSegmentWriter.TRAILER_BYTES);
+            long footerOffset = trailer.getLong();
+            int footerCompressed = trailer.getInt();
+            int footerRaw = trailer.getInt();
+            trailer.get(magic);
+            if (!Arrays.equals(magic, MessageSegmentWriter.MAGIC) || footerOffset < MessageSegmentWriter.MAGIC.length
+                    || footerOffset + footerCompressed > size - MessageSegmentWriter.TRAILER_BYTES) {
+                throw notASegment();
+            }
+            
+            byte[] footerBytes = inflate(read(footerOffset, footerCompressed), footerRaw);
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes));
+            int blockCount = footer.readInt();
+            this.offsets = new long[blockCount];
+            this.compressedLengths = new int[blockCount];
+            this.rawLengths = new int[blockCount];
+            this.firstRecords = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = footer.readLong();
+                compressedLengths[i] = footer.readInt();
+                rawLengths[i] = footer.readInt();
+                firstRecords[i] = footer.readInt();
+                footer.readInt(); // records in the block; implied by the next block's first
+            }
+            this.recordCount = footer.readInt();
+            this.records = new HashMap<>(recordCount * 2);
+            for (int i = 0; i < recordCount; i++) {
+                records.putIfAbsent(footer.readUTF(), i);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Reads one record
+     * @param record record number, 0 for the first message written
+     * @return the message
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public synchronized Message read(int record) throws IOException {
+        if (record < 0 || record >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + recordCount);
+        }
+        int block = blockOf(record);
+        load(block);
+        int line = record - firstRecords[block];
+        int start = cachedLines[line];
+        int end = cachedLines[line + 1] - 1; // drop the newline
+        JSONObject json = new JSONObject(new String(cachedBytes, start, end - start, StandardCharsets.UTF_8));
+        return Message.fromJSON(json, Map.of());
+    }
+    
+    /**
+     * Reads the message with an ID, inflating only its block
+     * @param messageID message ID to look up
+     * @return the message, or null if the segment has none with that ID
+     */
+    public Message findByMessageID(String messageID) throws IOException {
+        Integer record = records.get(messageID);
+        return record == null ? null : read(record);
+    }
+    
+    /**
+     * Reads every record, in order, one block at a time
+     * @return all messages in the segment
+     */
+    public List<Message> readAll() throws IOException {
+        List<Message> messages = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            messages.add(read(i));
+        }
+        return messages;
+    }
+    
+    public int size() {
+        return recordCount;
+    }
+    
+    public int getBlockCount() {
+        return offsets.length;
+    }
+    
+    /**
+     * @return blocks inflated so far; reads served from the kept block are not counted
+     */
+    public synchronized long getBlocksInflated() {
+        return blocksInflated;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+    
+    private int blockOf(int record) {
+        int block = Arrays.binarySearch(firstRecords, record);
+        // Not a block's first record: it is in the block before the insertion point
+        return block >= 0 ? block : -block - 2;
+    }
+    
+    private void load(int block) throws IOException {
+        if (block == cachedBlock) {
+            return;
+        }
+        byte[] bytes = inflate(read(offsets[block], compressedLengths[block]), rawLengths[block]);
+        int count = (block + 1 < firstRecords.length ? firstRecords[block + 1] : recordCount) - firstRecords[block];
+        int[] lines = new int[count + 1];
+        int line = 1;
+        for (int i = 0; i < bytes.length && line <= count; i++) {
+            if (bytes[i] == '\n') {
+                lines[line++] = i + 1;
+            }
+        }
+        if (line <= count) {
+            throw new IOException("Corrupt block " + block + " in " + file);
+        }
+        cachedBlock = block;
+        cachedBytes = bytes;
+        cachedLines = lines;
+        blocksInflated++;
+    }
+    
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private byte[] inflate(ByteBuffer compressed, int rawLength) throws IOException {
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressed.limit());
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new IOException("Corrupt block in " + file);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block in " + file + ": " + e.getMessage());
+        }
+        return raw;
+    }
+    
+    private IOException notASegment() {
+        return new IOException(file + " is not a message segment.");
+    }
+}
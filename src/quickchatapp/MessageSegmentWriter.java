@@ -0,0 +1,247 @@
+package quickchatapp;
+
+/**
+ * MessageSegmentWriter.java
+ * Writes messages to a compressed, seekable segment file
+ * Records (the stored messages layout, one JSON object per line) are
+ * gathered into blocks of about blockBytes and each block is deflated on
+ * its own, so any one record can be read back by inflating just its
+ * block. A footer lists every block's offset, sizes and first record, and
+ * the message ID of every record, so MessageSegmentReader can go straight
+ * to the right block
+ * Layout: magic, blocks, deflated footer, trailer (footer offset and
+ * sizes, then the magic again)
+ * The segment is written to a temporary file and renamed into place on
+ * close, so readers never see half a segment
+ * Run with: java quickchatapp.MessageSegmentWriter <segment file> [block KiB] [level]
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.Deflater;
+import org.json.JSONObject;
+
+public class MessageSegmentWriter implements Closeable {
+    public static final int DEFAULT_BLOCK_BYTES = 16 * 1024;
+    public static final int DEFAULT_LEVEL = 6;
+    
+    static final byte[] MAGIC = "QCSEG001".getBytes(StandardCharsets.US_ASCII);
+    // Footer offset, compressed and raw footer length, magic
+    static final int TRAILER_BYTES = 8 + 4 + 4 + MAGIC.length;
+    
+    private final Path file;
+    private final Path tempFile;
+    private final FileChannel channel;
+    private final int blockBytes;
+    private final Deflater deflater;
+    private final byte[] deflateBuffer;
+    private final ByteArrayOutputStream block;
+    // Per block written: offset, compressed length, raw length, first record, records
+    private final List<long[]> blocks;
+    private final List<String> messageIDs;
+    private int blockFirstRecord;
+    private long position;
+    private long rawBytes;
+    private boolean closed;
+    
+    // Constructors
+    public MessageSegmentWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_BYTES, DEFAULT_LEVEL);
+    }
+    
+    /**
+     * @param file segment file to create or replace
+     * @param blockBytes uncompressed bytes per block; larger blocks compress
+     *        better, smaller ones make a single read cheaper
+     * @param level Deflater level, 1 (fastest) to 9 (smallest)
+     */
+    public MessageSegmentWriter(Path file, int blockBytes, int level) throws IOException {
+        if (blockBytes < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1 byte.");
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9.");
+        }
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.blockBytes = blockBytes;
+        this.deflater = new Deflater(level);
+        this.deflateBuffer = new byte[64 * 1024];
+        this.block = new ByteArrayOutputStream(blockBytes + 1024);
+        this.blocks = new ArrayList<>();
+        this.messageIDs = new ArrayList<>();
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        write(MAGIC);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java quickchatapp.MessageSegmentWriter <segment file> [block KiB] [level]");
+            System.exit(1);
+        }
+        Path segment = Paths.get(args[0]);
+        int blockBytes = args.length > 1 ? Integer.parseInt(args[1]) * 1024 : DEFAULT_BLOCK_BYTES;
+        int level = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LEVEL;
+        
+        MessageManager manager = MessageStoreWarmup.loadManager(Paths.get(""));
+        long started = System.nanoTime();
+        try (MessageSegmentWriter writer = new MessageSegmentWriter(segment, blockBytes, level)) {
+            writer.appendAll(manager.getAllMessages());
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        Path store = Paths.get(Message.STORE_FILE);
+        long storeBytes = Files.exists(store) ? Files.size(store) : 0;
+        long segmentBytes = Files.size(segment);
+        System.out.println("Wrote " + manager.getMessageCount() + " messages to " + segment + " in " + elapsedMillis + " ms: "
+            + segmentBytes + " bytes, " + storeBytes + " in " + Message.STORE_FILE
+            + String.format(" (%.1fx smaller)", segmentBytes == 0 ? 0.0 : (double) storeBytes / segmentBytes));
+    }
+    
+    /**
+     * Adds a message as the next record
+     * @param message message to write
+     */
+    public void append(Message message) throws IOException {
+        if (closed) {
+            throw new IOException("Segment already closed.");
+        }
+        JSONObject record = message.toJSON();
+        record.put("storedAt", message.getCreatedAt());
+        byte[] line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        block.write(line, 0, line.length);
+        messageIDs.add(message.getMessageID());
+        if (block.size() >= blockBytes) {
+            flushBlock();
+        }
+    }
+    
+    /**
+     * Adds messages as the next records, in order
+     * @param messages messages to write
+     */
+    public void appendAll(Collection<Message> messages) throws IOException {
+        for (Message message : messages) {
+            append(message);
+        }
+    }
+    
+    /**
+     * @return records written so far
+     */
+    public int getRecordCount() {
+        return messageIDs.size();
+    }
+    
+    /**
+     * @return uncompressed bytes of the records written so far
+     */
+    public long getRawBytes() {
+        return rawBytes + block.size();
+    }
+    
+    /**
+     * @return bytes written to the file so far
+     */
+    public long getCompressedBytes() {
+        return position;
+    }
+    
+    /**
+     * Writes the last block and the footer, then renames the segment into place
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            writeFooter();
+            channel.force(false);
+        } finally {
+            channel.close();
+            deflater.end();
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void flushBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        byte[] raw = block.toByteArray();
+        long offset = position;
+        int compressed = deflate(raw);
+        blocks.add(new long[] {offset, compressed, raw.length, blockFirstRecord, messageIDs.size() - blockFirstRecord});
+        blockFirstRecord = messageIDs.size();
+        rawBytes += raw.length;
+        block.reset();
+    }
+    
+    private void writeFooter() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream footer = new DataOutputStream(bytes)) {
+            footer.writeInt(blocks.size());
+            for (long[] entry : blocks) {
+                footer.writeLong(entry[0]);
+                footer.writeInt((int) entry[1]);
+                footer.writeInt((int) entry[2]);
+                footer.writeInt((int) entry[3]);
+                footer.writeInt((int) entry[4]);
+            }
+            footer.writeInt(messageIDs.size());
+            for (String messageID : messageIDs) {
+                footer.writeUTF(messageID);
+            }
+        }
+        byte[] raw = bytes.toByteArray();
+        long offset = position;
+        int compressed = deflate(raw);
+        
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+        trailer.putLong(offset).putInt(compressed).putInt(raw.length).put(MAGIC);
+        write(trailer.array());
+    }
+    
+    /**
+     * Deflates bytes straight into the file
+     * @return compressed length
+     */
+    private int deflate(byte[] raw) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int compressed = 0;
+        while (!deflater.finished()) {
+            int length = deflater.deflate(deflateBuffer);
+            ByteBuffer out = ByteBuffer.wrap(deflateBuffer, 0, length);
+            while (out.hasRemaining()) {
+                position += channel.write(out);
+            }
+            compressed += length;
+        }
+        return compressed;
+    }
+    
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap(bytes);
+        while (out.hasRemaining()) {
+            position += channel.write(out);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package quickchatapp;
+
+/**
+ * MessageServer.java
+ * Headless server exposing one MessageManager to many local clients
+ * A single selector thread owns the MessageManager, so no locking is needed
+ * and requests on a connection are answered in order (clients may pipeline)
+ * Stored messages are written to the stored messages file by a separate
+ * thread, one batch per selector pass, so a full-file rewrite never holds
+ * up other connections; a store is answered once its batch is written
+ * Run with: java quickchatapp.MessageServer [port]
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+public class MessageServer implements Runnable {
+    public static final int DEFAULT_PORT = 7070;
+    
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    
+    private final MessageManager messageManager;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService storeWriter;
+    // Stores handled in this selector pass, written together after it
+    private final List<JSONObject> pendingRecords;
+    private final List<Reply> pendingReplies;
+    // Connections whose stores have been written, for the selector to flush
+    private final Queue<SelectionKey> written;
+    private volatile boolean running;
+    
+    // Constructor
+    /**
+     * Binds to the loopback interface
+     * @param port port to listen on, or 0 for any free port
+     * @param messageManager store to serve
+     * @throws IOException if the port cannot be bound
+     */
+    public MessageServer(int port, MessageManager messageManager) throws IOException {
+        this.messageManager = messageManager;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.storeWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quickchat-store-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingRecords = new ArrayList<>();
+        this.pendingReplies = new ArrayList<>();
+        this.written = new ConcurrentLinkedQueue<>();
+        this.running = false;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        MessageManager manager = MessageStoreWarmup.loadManager(Paths.get(""));
+        MessageServer server = new MessageServer(port, manager);
+        System.out.println("QuickChat server listening on 127.0.0.1:" + server.getPort());
+        try {
+            server.start().join();
+        } catch (InterruptedException e) {
+            server.stop();
+        }
+    }
+    
+    /**
+     * Returns the port actually bound
+     * @return local port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+    
+    /**
+     * Starts serving on a new daemon thread
+     * @return the server thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "quickchat-server");
+        thread.setDaemon(true);
+        running = true;
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * Stops the selector loop and closes all connections
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        close(key);
+                    }
+                }
+                flushStores();
+                SelectionKey key;
+                while ((key = written.poll()) != null) {
+                    try {
+                        if (key.isValid()) {
+                            write(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            // Let batches already handed over finish writing before the selector goes
+            storeWriter.shutdown();
+            try {
+                storeWriter.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+    
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        int read = channel.read(connection.in);
+        if (read < 0) {
+            close(key);
+            return;
+        }
+        
+        // Handle every complete frame in the buffer
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > MessageProtocol.MAX_FRAME_BYTES) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                if (in.capacity() < 4 + length) {
+                    connection.growInput(4 + length);
+                    in = connection.in;
+                }
+                break;
+            }
+            in.getInt();
+            ByteBuffer frame = in.slice();
+            frame.limit(length);
+            in.position(in.position() + length);
+            int stores = pendingRecords.size();
+            Reply reply = new Reply(handle(frame), key);
+            if (pendingRecords.size() > stores) {
+                // Held back until the record is on disk
+                reply.ready = false;
+                pendingReplies.add(reply);
+            }
+            connection.out.add(reply);
+        }
+        in.compact();
+        write(key);
+    }
+    
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        while (!connection.out.isEmpty() && connection.out.peek().ready) {
+            ByteBuffer head = connection.out.peek().bytes;
+            channel.write(head);
+            if (head.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.out.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+    
+    /**
+     * Hands this pass's stores to the writer thread as one batch; their
+     * replies are released once the batch is written
+     */
+    private void flushStores() {
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
+        List<JSONObject> records = new ArrayList<>(pendingRecords);
+        List<Reply> replies = new ArrayList<>(pendingReplies);
+        pendingRecords.clear();
+        pendingReplies.clear();
+        storeWriter.execute(() -> {
+            Message.storeRecords(records);
+            for (Reply reply : replies) {
+                reply.ready = true;
+                written.add(reply.key);
+            }
+            selector.wakeup();
+        });
+    }
+    
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Decodes one request frame and runs it against the MessageManager
+     * A request that cannot be decoded or answered gets an error response;
+     * the connection, and the requests pipelined behind it, carry on
+     * @param frame frame body without its length prefix
+     * @return encoded response frame
+     */
+    byte[] handle(ByteBuffer frame) {
+        // Peeked first so that even a truncated frame can be answered
+        int requestId = frame.remaining() >= 5 ? frame.getInt(frame.position() + 1) : 0;
+        byte op;
+        List<String> args;
+        try {
+            op = frame.get();
+            frame.getInt();
+            args = MessageProtocol.readStrings(frame, frame.getShort());
+        } catch (RuntimeException e) {
+            return error(requestId, "Malformed request.");
+        }
+        
+        List<String> values = new ArrayList<>();
+        switch (op) {
+            case MessageProtocol.OP_SEND:
+            case MessageProtocol.OP_STORE: {
+                if (args.size() != 2) {
+                    return error(requestId, "Expected recipient and message.");
+                }
+                Message msg = new Message();
+                msg.setRecipient(args.get(0));
+                msg.setMessageContent(args.get(1));
+                if (msg.checkRecipientCell() != 0) {
+                    return error(requestId, "Cell phone number is incorrectly formatted or does not contain an international code. Please correct the number and try again.");
+                }
+                String lengthCheck = msg.checkMessageLength();
+                if (!lengthCheck.equals("Message ready to send.")) {
+                    return error(requestId, lengthCheck);
+                }
+                msg.createMessageHash();
+                if (op == MessageProtocol.OP_SEND) {
+                    values.add(msg.sentMessage(1));
+                } else {
+                    // As sentMessage(3), but written by the store writer after this pass
+                    msg.setSendStatus("Stored");
+                    pendingRecords.add(msg.toJSON());
+                    values.add("Message successfully stored.");
+                }
+                messageManager.addMessage(msg);
+                values.add(msg.getMessageID());
+                values.add(msg.getMessageHash());
+                break;
+            }
+            case MessageProtocol.OP_SEARCH_ID:
+                if (args.size() != 1) {
+                    return error(requestId, "Expected message ID.");
+                }
+                values.add(messageManager.searchByMessageID(args.get(0)));
+                break;
+            case MessageProtocol.OP_SEARCH_RECIPIENT:
+                if (args.size() != 1) {
+                    return error(requestId, "Expected recipient.");
+                }
+                values.addAll(messageManager.searchByRecipient(args.get(0)));
+                break;
+            case MessageProtocol.OP_SEARCH_HASH:
+                if (args.size() != 1) {
+                    return error(requestId, "Expected message hash.");
+                }
+                values.add(messageManager.searchByMessageHash(args.get(0)));
+                break;
+            case MessageProtocol.OP_DELETE:
+                if (args.size() != 1) {
+                    return error(requestId, "Expected message hash.");
+                }
+                values.add(messageManager.deleteMessageByHash(args.get(0)));
+                break;
+            case MessageProtocol.OP_REPORT:
+                values.add(messageManager.displayReport());
+                break;
+            default:
+                return error(requestId, "Unknown operation " + op + ".");
+        }
+        try {
+            return MessageProtocol.encodeResponse(requestId, MessageProtocol.STATUS_OK, values);
+        } catch (IllegalArgumentException e) {
+            // Too many values, or too many bytes, for one frame
+            return error(requestId, e.getMessage());
+        }
+    }
+    
+    private static byte[] error(int requestId, String message) {
+        List<String> values = new ArrayList<>();
+        values.add(message);
+        return MessageProtocol.encodeResponse(requestId, MessageProtocol.STATUS_ERROR, values);
+    }
+    
+    /**
+     * Per-connection read buffer and queue of responses still to write
+     */
+    private static class Connection {
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private final ArrayDeque<Reply> out = new ArrayDeque<>();
+        
+        void growInput(int frameBytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(frameBytes, in.capacity() * 2));
+            bigger.put(in);
+            in = bigger;
+            // Leave the new buffer in read mode like the old one
+            in.flip();
+        }
+    }
+    
+    /**
+     * An encoded response and whether it may be sent yet
+     */
+    private static class Reply {
+        private final ByteBuffer bytes;
+        private final SelectionKey key;
+        // Set by the store writer once a store's record is written
+        private volatile boolean ready = true;
+        
+        Reply(byte[] response, SelectionKey key) {
+            this.bytes = ByteBuffer.wrap(response);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package quickchatapp;
+
+/**
+ * MessageSketches.java
+ * Approximate recipient statistics in fixed memory, for dashboards that
+ * do not need exact per-recipient maps over the whole history:
+ * distinct recipients (HyperLogLog), messages per recipient (Count-Min)
+ * and the busiest recipients (Space-Saving), about 14 KB in all
+ * MessageManager updates its sketches on every add. They describe every
+ * message added, so deletions are not subtracted. Sketches from shards or
+ * time windows merge into one
+ */
+
+import java.util.List;
+
+public class MessageSketches {
+    // 4 KB of registers, about 1.6% standard error
+    static final int DISTINCT_PRECISION = 12;
+    // 8 KB of counters; overcount at most 0.53% of all messages, 98% of the time
+    static final int FREQUENCY_WIDTH = 512;
+    static final int FREQUENCY_DEPTH = 4;
+    // Any recipient with over 1/64 of all messages is certain to be tracked
+    static final int TOP_CAPACITY = 64;
+    
+    private final HyperLogLog distinctRecipients;
+    private final CountMinSketch recipientFrequency;
+    private final SpaceSaving topRecipients;
+    
+    // Constructor
+    public MessageSketches() {
+        this.distinctRecipients = new HyperLogLog(DISTINCT_PRECISION);
+        this.recipientFrequency = new CountMinSketch(FREQUENCY_WIDTH, FREQUENCY_DEPTH);
+        this.topRecipients = new SpaceSaving(TOP_CAPACITY);
+    }
+    
+    /**
+     * Counts one message
+     * @param message message added
+     */
+    public void add(Message message) {
+        String recipient = message.getRecipient() == null ? "" : message.getRecipient();
+        distinctRecipients.add(recipient);
+        recipientFrequency.add(recipient);
+        topRecipients.add(recipient);
+    }
+    
+    /**
+     * Adds another set of sketches into this one
+     * @param other sketches to merge in; they are not changed
+     * @return this instance
+     */
+    public MessageSketches merge(MessageSketches other) {
+        distinctRecipients.merge(other.distinctRecipients);
+        recipientFrequency.merge(other.recipientFrequency);
+        topRecipients.merge(other.topRecipients);
+        return this;
+    }
+    
+    /**
+     * @return estimated number of distinct recipients
+     */
+    public long getDistinctRecipients() {
+        return distinctRecipients.estimate();
+    }
+    
+    /**
+     * @param recipient recipient number
+     * @return estimated messages to the recipient, never below the true count
+     */
+    public long estimateMessagesTo(String recipient) {
+        return recipientFrequency.estimate(recipient);
+    }
+    
+    /**
+     * @param n how many recipients to return, at most 64
+     * @return the busiest recipients, largest count first
+     */
+    public List<SpaceSaving.Counter> getTopRecipients(int n) {
+        return topRecipients.top(n);
+    }
+    
+    /**
+     * @return messages counted
+     */
+    public long getMessageCount() {
+        return recipientFrequency.getTotal();
+    }
+    
+    /**
+     * @return memory used by the registers and counters, without the
+     *         top recipients' strings
+     */
+    public long getSizeInBytes() {
+        return distinctRecipients.getSizeInBytes() + recipientFrequency.getSizeInBytes() + TOP_CAPACITY * 16L;
+    }
+}
@@ -0,0 +1,113 @@
+package quickchatapp;
+
+/**
+ * MessageSnapshot.java
+ * Point-in-time, read-only view of a MessageManager's messages
+ * Taking one is O(1) and never waits for the writer; the snapshot keeps
+ * seeing the messages that were live when it was taken, in insertion
+ * order, however the manager changes afterwards. Reports built from it
+ * are therefore consistent and safe to run on any thread
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class MessageSnapshot implements Iterable<Message> {
+    private final VersionedMessages.Version version;
+    
+    // Constructor
+    MessageSnapshot(VersionedMessages.Version version) {
+        this.version = version;
+    }
+    
+    /**
+     * @return version number; a later snapshot of the same manager has a higher one
+     */
+    public long getVersion() {
+        return version.number;
+    }
+    
+    /**
+     * @return number of messages in the snapshot
+     */
+    public int size() {
+        return version.live;
+    }
+    
+    @Override
+    public Iterator<Message> iterator() {
+        return new Iterator<Message>() {
+            private int position = advance(0);
+            
+            @Override
+            public boolean hasNext() {
+                return position < version.length;
+            }
+            
+            @Override
+            public Message next() {
+                if (position >= version.length) {
+                    throw new NoSuchElementException();
+                }
+                Message message = version.get(position);
+                position = advance(position + 1);
+                return message;
+            }
+        };
+    }
+    
+    /**
+     * @return the messages in insertion order
+     */
+    public List<Message> toList() {
+        List<Message> messages = new ArrayList<>(version.live);
+        for (Message message : this) {
+            messages.add(message);
+        }
+        return messages;
+    }
+    
+    /**
+     * Sent messages report, as MessageManager.displayReport
+     * @return formatted report
+     */
+    public String displayReport() {
+        return MessageManager.buildReport(this);
+    }
+    
+    /**
+     * Longest sent or stored message, as MessageManager.findLongestMessage
+     * Taken from the manager's length index as it stood at this version,
+     * so it costs O(1); a log without one is scanned instead
+     * @return longest message content
+     */
+    public String findLongestMessage() {
+        if (!version.knowsLongest) {
+            return MessageManager.longestOf(this);
+        }
+        // Same answer as longestOf, which never reports an empty message
+        Message longest = version.longest;
+        if (longest == null || longest.getMessageContent().isEmpty()) {
+            return "No messages available.";
+        }
+        return longest.getMessageContent();
+    }
+    
+    /**
+     * Recipients and contents of sent messages, as
+     * MessageManager.displaySentMessagesInfo
+     * @return formatted string
+     */
+    public String displaySentMessagesInfo() {
+        return MessageManager.sentInfoOf(this);
+    }
+    
+    private int advance(int position) {
+        while (position < version.length && !version.isLive(position)) {
+            position++;
+        }
+        return position;
+    }
+}
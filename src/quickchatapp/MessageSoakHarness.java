@@ -0,0 +1,511 @@
+package quickchatapp;
+
+/**
+ * MessageSoakHarness.java
+ * Soak test for MessageManager, the persisted store and Login
+ * Simulated senders run a weighted mix of send, store, disregard, search,
+ * delete, report and login operations for a fixed time. Recipients follow
+ * a Zipf distribution over a few country codes and message lengths are
+ * skewed towards short messages, as in real traffic
+ * Every interval it prints throughput, latency percentiles, heap in use,
+ * messages held and GC time, so slow growth in any of them shows up; at
+ * the end it reports per-operation p50/p99/p99.9 and live heap growth
+ * Stores append to stored_messages.json in the working directory, so run
+ * it from an empty directory
+ * Run with: java quickchatapp.MessageSoakHarness [senders] [seconds] [interval seconds]
+ */
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MessageSoakHarness {
+    
+    public enum Operation { SEND, STORE, DISREGARD, SEARCH, DELETE, REPORT, LOGIN }
+    
+    private static final String[] COUNTRY_CODES = {"27", "27", "27", "27", "27", "27", "27", "44", "1", "234"};
+    private static final String[] WORDS = {"hi", "hey", "meeting", "tonight", "call", "me", "when", "you", "get",
+        "home", "the", "report", "is", "ready", "thanks", "see", "you", "tomorrow", "at", "lunch", "running",
+        "late", "traffic", "on", "N1", "did", "it", "arrive", "yes", "no", "please", "send", "invoice", "ok"};
+    private static final int RECIPIENTS = 10_000;
+    // Recent messages each sender remembers for searches and deletes
+    private static final int RECENT = 64;
+    
+    private final MessageManager manager;
+    private final int senders;
+    private final long durationMillis;
+    private final Map<Operation, Integer> weights;
+    private final LoginThrottle throttle;
+    private final String[] recipients;
+    private final double[] recipientWeights;
+    private long intervalMillis;
+    private PrintStream progress;
+    
+    // Constructors
+    public MessageSoakHarness(int senders, long durationMillis) {
+        this(new MessageManager(), senders, durationMillis);
+    }
+    
+    public MessageSoakHarness(MessageManager manager, int senders, long durationMillis) {
+        if (senders <= 0 || durationMillis <= 0) {
+            throw new IllegalArgumentException("Senders and duration must be positive.");
+        }
+        this.manager = manager;
+        this.senders = senders;
+        this.durationMillis = durationMillis;
+        this.weights = new EnumMap<>(Operation.class);
+        weights.put(Operation.SEND, 50);
+        weights.put(Operation.STORE, 5);
+        weights.put(Operation.DISREGARD, 10);
+        weights.put(Operation.SEARCH, 20);
+        weights.put(Operation.DELETE, 8);
+        weights.put(Operation.REPORT, 1);
+        weights.put(Operation.LOGIN, 6);
+        this.throttle = new LoginThrottle();
+        this.recipients = new String[RECIPIENTS];
+        this.recipientWeights = new double[RECIPIENTS];
+        double cumulative = 0;
+        for (int r = 0; r < RECIPIENTS; r++) {
+            recipients[r] = "+" + COUNTRY_CODES[r % COUNTRY_CODES.length] + (7_100_000_000L + r * 7_919L);
+            // Rank r sends 1/(r+1) as much as the busiest recipient
+            cumulative += 1.0 / (r + 1);
+            recipientWeights[r] = cumulative;
+        }
+        this.intervalMillis = 10_000;
+    }
+    
+    public static void main(String[] args) throws InterruptedException {
+        int senders = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int interval = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        
+        if (Files.exists(Paths.get(Message.STORE_FILE))) {
+            System.err.println(Message.STORE_FILE + " already exists here; run the harness from an empty directory.");
+            System.exit(1);
+        }
+        MessageSoakHarness harness = new MessageSoakHarness(senders, seconds * 1000L)
+                .reportEvery(interval * 1000L, System.out);
+        Result result = harness.run();
+        System.out.print(result.format());
+    }
+    
+    /**
+     * Sets how often an operation is picked relative to the others
+     * @param operation operation to weight
+     * @param weight relative weight, 0 to leave it out
+     * @return this harness
+     */
+    public MessageSoakHarness weight(Operation operation, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight cannot be negative.");
+        }
+        weights.put(operation, weight);
+        return this;
+    }
+    
+    /**
+     * Prints a progress line every interval while running
+     * @param intervalMillis time between lines
+     * @param out where to print, or null for no progress
+     * @return this harness
+     */
+    public MessageSoakHarness reportEvery(long intervalMillis, PrintStream out) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
+        }
+        this.intervalMillis = intervalMillis;
+        this.progress = out;
+        return this;
+    }
+    
+    /**
+     * Runs the senders for the configured time
+     * @return latencies, throughput, heap and GC figures for the run
+     */
+    public Result run() throws InterruptedException {
+        Operation[] picks = picks();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long[] gcBefore = gcTotals();
+        long liveBefore = liveHeap(memory);
+        
+        LongAdder rejected = new LongAdder();
+        List<Sender> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        long deadline = start + durationMillis * 1_000_000L;
+        for (int i = 0; i < senders; i++) {
+            Sender sender = new Sender(i, picks, deadline, rejected);
+            sender.thread.start();
+            workers.add(sender);
+        }
+        
+        LatencyHistogram[] totals = histograms();
+        if (progress != null) {
+            progress.println("Seconds  Ops/s      p50 ms    p99 ms    p99.9 ms  Heap MB   Messages   GC ms");
+        }
+        long lastTick = start;
+        long[] gcLast = gcBefore;
+        while (System.nanoTime() < deadline) {
+            long sleep = Math.min(intervalMillis, (deadline - System.nanoTime()) / 1_000_000L);
+            Thread.sleep(Math.max(1, sleep));
+            LatencyHistogram window = new LatencyHistogram();
+            for (Sender sender : workers) {
+                sender.drainInto(totals, window);
+            }
+            long now = System.nanoTime();
+            long[] gcNow = gcTotals();
+            if (progress != null) {
+                int messages;
+                synchronized (manager) {
+                    messages = manager.getMessageCount();
+                }
+                progress.printf("%-8.0f %-10.0f %-9.3f %-9.3f %-9.3f %-9.1f %-10d %d%n",
+                        (now - start) / 1e9, window.getCount() * 1e9 / (now - lastTick),
+                        window.percentile(50) / 1e6, window.percentile(99) / 1e6, window.percentile(99.9) / 1e6,
+                        memory.getHeapMemoryUsage().getUsed() / 1e6, messages, gcNow[1] - gcLast[1]);
+            }
+            lastTick = now;
+            gcLast = gcNow;
+        }
+        for (Sender sender : workers) {
+            sender.thread.join();
+            sender.drainInto(totals, new LatencyHistogram());
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        long[] gcAfter = gcTotals();
+        long liveAfter = liveHeap(memory);
+        int messages;
+        synchronized (manager) {
+            messages = manager.getMessageCount();
+        }
+        return new Result(totals, elapsed, rejected.sum(), liveBefore, liveAfter, messages,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+    
+    /**
+     * One entry per unit of weight, so picking is a single random index
+     */
+    private Operation[] picks() {
+        List<Operation> picks = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                picks.add(entry.getKey());
+            }
+        }
+        if (picks.isEmpty()) {
+            throw new IllegalStateException("At least one operation needs a weight.");
+        }
+        return picks.toArray(new Operation[0]);
+    }
+    
+    private static LatencyHistogram[] histograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+    
+    /**
+     * @return collections and collection millis summed over every collector
+     */
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+    
+    /**
+     * Heap still in use after a full collection, i.e. what the run retains
+     */
+    private static long liveHeap(MemoryMXBean memory) {
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    private String recipient(ThreadLocalRandom random) {
+        double target = random.nextDouble() * recipientWeights[RECIPIENTS - 1];
+        int low = 0;
+        int high = RECIPIENTS - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (recipientWeights[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return recipients[low];
+    }
+    
+    /**
+     * Mostly short messages, a quarter medium and a few near the 250 limit
+     */
+    private static String content(ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        int length = roll < 70 ? 10 + random.nextInt(50) : roll < 95 ? 60 + random.nextInt(100) : 160 + random.nextInt(90);
+        StringBuilder content = new StringBuilder(length + 10);
+        while (content.length() < length) {
+            if (content.length() > 0) {
+                content.append(' ');
+            }
+            content.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        content.setLength(Math.min(content.length(), 250));
+        return content.toString().trim();
+    }
+    
+    /**
+     * A simulated user: picks operations, times them and keeps its recent
+     * messages for searches and deletes
+     */
+    private class Sender implements Runnable {
+        final Thread thread;
+        private final Operation[] picks;
+        private final long deadline;
+        private final LongAdder rejected;
+        private final Login login;
+        private final Message[] recent;
+        private int nextRecent;
+        // Latencies since the monitor last drained them; guarded by this
+        private final LatencyHistogram[] window;
+        
+        Sender(int number, Operation[] picks, long deadline, LongAdder rejected) {
+            this.picks = picks;
+            this.deadline = deadline;
+            this.rejected = rejected;
+            this.login = new Login();
+            login.setUsername(String.format("u_%03d", number % 1000));
+            login.setPassword("Soak#Test1");
+            login.setCellPhoneNumber("+27838968976");
+            login.setFirstName("Soak");
+            login.setLastName("Sender " + number);
+            this.recent = new Message[RECENT];
+            this.window = histograms();
+            this.thread = new Thread(this, "quickchat-soak-" + number);
+            thread.setDaemon(true);
+        }
+        
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                Operation operation = picks[random.nextInt(picks.length)];
+                long start = System.nanoTime();
+                boolean ok = perform(operation, random);
+                long nanos = System.nanoTime() - start;
+                synchronized (this) {
+                    window[operation.ordinal()].record(nanos);
+                }
+                if (!ok) {
+                    rejected.increment();
+                }
+            }
+        }
+        
+        /**
+         * Moves the latencies recorded so far into the run totals and the
+         * monitor's interval histogram
+         */
+        synchronized void drainInto(LatencyHistogram[] totals, LatencyHistogram interval) {
+            for (int i = 0; i < window.length; i++) {
+                totals[i].merge(window[i]);
+                interval.merge(window[i]);
+                window[i].reset();
+            }
+        }
+        
+        private boolean perform(Operation operation, ThreadLocalRandom random) {
+            switch (operation) {
+                case SEND:
+                    return send(1, random);
+                case STORE:
+                    return send(3, random);
+                case DISREGARD:
+                    return send(2, random);
+                case SEARCH:
+                    return search(random);
+                case DELETE:
+                    return delete(random);
+                case REPORT:
+                    synchronized (manager) {
+                        return !manager.displayReport().isEmpty();
+                    }
+                case LOGIN:
+                    boolean valid = login.registerUser().contains("Password successfully captured.");
+                    // One attempt in twenty has a mistyped password
+                    String password = random.nextInt(20) == 0 ? "wrong" : "Soak#Test1";
+                    return throttle.loginUser(login, login.getUsername(), password) && valid;
+                default:
+                    return false;
+            }
+        }
+        
+        /**
+         * Builds and validates a message the way the send dialog does, then
+         * applies the choice; storing writes the file before the message is
+         * added to the manager
+         */
+        private boolean send(int choice, ThreadLocalRandom random) {
+            Message msg = new Message();
+            msg.setRecipient(recipient(random));
+            msg.setMessageContent(content(random));
+            if (msg.checkRecipientCell() != 0 || !msg.checkMessageLength().equals("Message ready to send.")) {
+                return false;
+            }
+            msg.createMessageHash();
+            msg.sentMessage(choice);
+            synchronized (manager) {
+                manager.addMessage(msg);
+            }
+            recent[nextRecent] = msg;
+            nextRecent = (nextRecent + 1) % RECENT;
+            return true;
+        }
+        
+        private boolean search(ThreadLocalRandom random) {
+            Message known = recent[random.nextInt(RECENT)];
+            synchronized (manager) {
+                if (known != null && random.nextBoolean()) {
+                    return !manager.searchByMessageID(known.getMessageID()).equals("Message ID not found.");
+                }
+                return manager.searchByRecipient(recipient(random)) != null;
+            }
+        }
+        
+        private boolean delete(ThreadLocalRandom random) {
+            int slot = random.nextInt(RECENT);
+            Message target = recent[slot];
+            if (target == null) {
+                return false;
+            }
+            recent[slot] = null;
+            synchronized (manager) {
+                return manager.deleteMessageByHash(target.getMessageHash()).endsWith("successfully deleted.");
+            }
+        }
+    }
+    
+    /**
+     * Figures for a finished run
+     */
+    public static class Result {
+        private final LatencyHistogram[] latencies;
+        private final long elapsedNanos;
+        private final long rejected;
+        private final long liveHeapBefore;
+        private final long liveHeapAfter;
+        private final int messagesHeld;
+        private final long gcCount;
+        private final long gcMillis;
+        
+        Result(LatencyHistogram[] latencies, long elapsedNanos, long rejected, long liveHeapBefore,
+               long liveHeapAfter, int messagesHeld, long gcCount, long gcMillis) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.rejected = rejected;
+            this.liveHeapBefore = liveHeapBefore;
+            this.liveHeapAfter = liveHeapAfter;
+            this.messagesHeld = messagesHeld;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+        
+        public long getOperations() {
+            long operations = 0;
+            for (LatencyHistogram histogram : latencies) {
+                operations += histogram.getCount();
+            }
+            return operations;
+        }
+        
+        public long getOperations(Operation operation) {
+            return latencies[operation.ordinal()].getCount();
+        }
+        
+        /**
+         * @return operations per second over the whole run
+         */
+        public double getThroughput() {
+            return getOperations() * 1e9 / elapsedNanos;
+        }
+        
+        /**
+         * @param operation operation to look at
+         * @param percentile 0 to 100, e.g. 99.9
+         * @return latency in nanoseconds, 0 if the operation never ran
+         */
+        public long getLatencyNanos(Operation operation, double percentile) {
+            return latencies[operation.ordinal()].percentile(percentile);
+        }
+        
+        /**
+         * @return operations that failed validation, found nothing or were throttled
+         */
+        public long getRejected() {
+            return rejected;
+        }
+        
+        /**
+         * @return change in heap in use after a full GC, start to end of the run
+         */
+        public long getHeapGrowthBytes() {
+            return liveHeapAfter - liveHeapBefore;
+        }
+        
+        public int getMessagesHeld() {
+            return messagesHeld;
+        }
+        
+        public long getGcCount() {
+            return gcCount;
+        }
+        
+        public long getGcMillis() {
+            return gcMillis;
+        }
+        
+        /**
+         * @return the run summary as printed by main
+         */
+        public String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%nOperation  Count       Ops/s      p50 ms    p99 ms    p99.9 ms  Max ms%n"));
+            LatencyHistogram all = new LatencyHistogram();
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = latencies[operation.ordinal()];
+                all.merge(histogram);
+                row(out, operation.name(), histogram);
+            }
+            row(out, "ALL", all);
+            out.append(String.format("%nRejected operations: %,d%n", rejected));
+            out.append(String.format("Live heap: %.1f MB -> %.1f MB (%+.1f MB) holding %,d messages",
+                    liveHeapBefore / 1e6, liveHeapAfter / 1e6, getHeapGrowthBytes() / 1e6, messagesHeld));
+            if (messagesHeld > 0) {
+                out.append(String.format(", %,d bytes per message", getHeapGrowthBytes() / messagesHeld));
+            }
+            out.append(String.format("%nGC: %,d collections, %,d ms (%.1f%% of run)%n",
+                    gcCount, gcMillis, gcMillis * 1e8 / elapsedNanos));
+            return out.toString();
+        }
+        
+        private void row(StringBuilder out, String name, LatencyHistogram histogram) {
+            out.append(String.format("%-10s %-11d %-10.0f %-9.3f %-9.3f %-9.3f %.3f%n", name, histogram.getCount(),
+                    histogram.getCount() * 1e9 / elapsedNanos, histogram.percentile(50) / 1e6,
+                    histogram.percentile(99) / 1e6, histogram.percentile(99.9) / 1e6, histogram.getMax() / 1e6));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package quickchatapp;
+
+/**
+ * MessageStoreWarmup.java
+ * Loads and indexes the persisted store on a background thread
+ * QuickChatApp starts a warm-up as soon as it launches, so reading,
+ * parsing and indexing stored_messages.json overlaps with registration
+ * and login instead of delaying the first dialog. The loaded manager is
+ * handed over through a readiness future; anything that needs it before
+ * the load has finished waits on that future, never on the file
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class MessageStoreWarmup {
+    private final Path storeFile;
+    private final Path tombstoneFile;
+    private final Path bodyFile;
+    private final CompletableFuture<MessageManager> ready;
+    private volatile long startNanos;
+    private volatile long readyNanos;
+    private volatile int messagesLoaded;
+    
+    // Constructor
+    public MessageStoreWarmup() {
+        this(Paths.get(Message.STORE_FILE), Paths.get(Message.TOMBSTONE_FILE), Paths.get(MessageBodyStore.BODY_FILE));
+    }
+    
+    /**
+     * Warms up from other files (for tests and benchmarks)
+     */
+    MessageStoreWarmup(Path storeFile, Path tombstoneFile, Path bodyFile) {
+        this.storeFile = storeFile;
+        this.tombstoneFile = tombstoneFile;
+        this.bodyFile = bodyFile;
+        this.ready = new CompletableFuture<>();
+    }
+    
+    /**
+     * Creates a warm-up for the default store files and starts it
+     * @return the running warm-up
+     */
+    public static MessageStoreWarmup start() {
+        MessageStoreWarmup warmup = new MessageStoreWarmup();
+        warmup.begin();
+        return warmup;
+    }
+    
+    /**
+     * Starts loading on a daemon thread; later calls do nothing
+     * @return this warm-up
+     */
+    public synchronized MessageStoreWarmup begin() {
+        if (startNanos != 0) {
+            return this;
+        }
+        startNanos = System.nanoTime();
+        Thread thread = new Thread(() -> {
+            try {
+                MessageManager manager = new MessageManager();
+                List<Message> messages = readStore(storeFile, tombstoneFile, bodyFile);
+                manager.addMessages(messages);
+                messagesLoaded = messages.size();
+                readyNanos = System.nanoTime();
+                ready.complete(manager);
+            } catch (RuntimeException e) {
+                readyNanos = System.nanoTime();
+                ready.completeExceptionally(e);
+            }
+        }, "quickchat-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+    
+    /**
+     * @return future completed with the loaded manager
+     */
+    public CompletableFuture<MessageManager> ready() {
+        return ready;
+    }
+    
+    public boolean isReady() {
+        return ready.isDone();
+    }
+    
+    /**
+     * Waits for the load to finish
+     * If loading failed the error is reported and an empty manager returned,
+     * as loadStoredMessages does, so the app can still be used
+     * @return the loaded manager
+     */
+    public MessageManager await() {
+        try {
+            return ready.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error loading stored messages: " + cause.getMessage());
+            return new MessageManager();
+        }
+    }
+    
+    /**
+     * @return time from begin() until the manager was ready, or -1 if it is not
+     */
+    public long getLoadMillis() {
+        return ready.isDone() ? (readyNanos - startNanos) / 1_000_000 : -1;
+    }
+    
+    public int getMessagesLoaded() {
+        return messagesLoaded;
+    }
+    
+    /**
+     * Reads every live message in the store: records with a tombstone are
+     * skipped and bodyRef records get their shared body
+     * The files are read under Message.STORE_LOCK and parsed outside it
+     * @param storeFile stored messages file
+     * @param tombstoneFile deletions not yet compacted out of it
+     * @param bodyFile shared bodies
+     * @return messages in file order, empty if the store does not exist
+     */
+    static List<Message> readStore(Path storeFile, Path tombstoneFile, Path bodyFile) {
+        byte[] content;
+        Set<String> tombstones;
+        Map<String, String> bodies;
+        try {
+            synchronized (Message.STORE_LOCK) {
+                content = Files.readAllBytes(storeFile);
+                tombstones = Message.readTombstones(tombstoneFile);
+                bodies = MessageBodyStore.readBodies(bodyFile);
+            }
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        
+        JSONArray records = new JSONArray(new String(content, StandardCharsets.UTF_8));
+        List<Message> messages = new ArrayList<>(records.length());
+        for (int i = 0; i < records.length(); i++) {
+            JSONObject record = records.getJSONObject(i);
+            if (!tombstones.isEmpty() && tombstones.contains(Message.tombstoneKey(
+                    record.optString("messageID", ""), record.optString("messageHash", "")))) {
+                continue;
+            }
+            messages.add(Message.fromJSON(record, bodies));
+        }
+        return messages;
+    }
+    
+    /**
+     * Reads the store in a directory into a new manager on the calling
+     * thread, for the command-line tools; the app uses a warm-up instead
+     * @param dir directory holding the store files, "" for the working directory
+     * @return manager holding every live stored message
+     */
+    static MessageManager loadManager(Path dir) {
+        MessageManager manager = new MessageManager();
+        manager.addMessages(readStore(dir.resolve(Message.STORE_FILE), dir.resolve(Message.TOMBSTONE_FILE),
+                dir.resolve(MessageBodyStore.BODY_FILE)));
+        return manager;
+    }
+}
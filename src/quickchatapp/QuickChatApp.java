@@ -7,24 +7,80 @@ package quickchatapp;
  */
 
 import javax.swing.JOptionPane;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 
 public class QuickChatApp {
     
     private static Login currentUser;
     private static MessageManager messageManager;
+    private static final LoginThrottle loginThrottle = new LoginThrottle();
+    private static final int CONVERSATION_PAGE_SIZE = 10;
     
     public static void main(String[] args) {
-        messageManager = new MessageManager();
+        // Headless mode: commands from a script file or stdin, no dialogs
+        if (args.length > 0 && args[0].equals("--headless")) {
+            messageManager = new MessageManager();
+            runHeadless(args.length > 1 ? args[1] : null);
+            return;
+        }
+        
+        // Load stored history in the background while the user registers
+        MessageStoreWarmup warmup = MessageStoreWarmup.start();
         
         // Part 1: Registration and Login
         if (!registerAndLogin()) {
             return; // Exit if login fails
         }
         
+        // Normally finished by now; if not, wait for the load to complete
+        messageManager = warmup.await();
+        messageManager.setDisregardedBuffer(new DisregardedMessageBuffer());
+        messageManager.setConversations(new ConversationStore());
+        
         // Part 2 & 3: Main Application Loop
         runQuickChat();
     }
     
+    /**
+     * Runs QuickChatHeadless against a script file, or stdin if none is given
+     * @param scriptFile path of the command script, or null
+     */
+    private static void runHeadless(String scriptFile) {
+        messageManager.setDisregardedBuffer(new DisregardedMessageBuffer());
+        try {
+            // Scripted runs start from an empty store, threads included
+            messageManager.setConversations(new ConversationStore(Files.createTempDirectory("conversations")));
+        } catch (IOException e) {
+            System.err.println("Error creating conversations directory: " + e.getMessage());
+            System.exit(2);
+        }
+        QuickChatHeadless headless = new QuickChatHeadless(messageManager);
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024));
+        
+        try (BufferedReader in = scriptFile != null
+                ? Files.newBufferedReader(Paths.get(scriptFile), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            headless.run(in, out);
+        } catch (IOException e) {
+            System.err.println("Error reading commands: " + e.getMessage());
+            System.exit(2);
+        }
+        
+        if (headless.getErrorCount() > 0) {
+            System.exit(1);
+        }
+    }
+    
     /**
      * Handles user registration and login process
      * @return true if login successful, false otherwise
@@ -140,7 +196,7 @@ public class QuickChatApp {
             
             if (loginPassword == null) return false;
             
-            boolean loginSuccess = currentUser.loginUser(loginUsername, loginPassword);
+            boolean loginSuccess = loginThrottle.loginUser(currentUser, loginUsername, loginPassword);
             String loginMessage = currentUser.returnLoginStatus(loginSuccess);
             
             if (loginSuccess) {
@@ -295,11 +351,19 @@ public class QuickChatApp {
                 if (action == -1) return;
                 
                 String result = msg.sentMessage(action + 1);
-                JOptionPane.showMessageDialog(null, result);
                 
                 // Add to manager
                 messageManager.addMessage(msg);
                 
+                if (action == 1) { // If disregarded
+                    String choice = JOptionPane.showInputDialog(null, result);
+                    if ("0".equals(choice != null ? choice.trim() : null)) {
+                        JOptionPane.showMessageDialog(null, messageManager.deleteMessageByHash(msg.getMessageHash()));
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(null, result);
+                }
+                
                 // Display message details
                 if (action == 0) { // If sent
                     JOptionPane.showMessageDialog(null, 
@@ -332,6 +396,7 @@ public class QuickChatApp {
             "Display Longest Message",
             "Search by Message ID",
             "Search by Recipient",
+            "View Conversation",
             "Delete Message by Hash",
             "Full Report",
             "Back to Main Menu"
@@ -385,7 +450,14 @@ public class QuickChatApp {
                 }
                 break;
                 
-            case 4: // Delete Message by Hash
+            case 4: // View Conversation
+                String conversationRecipient = JOptionPane.showInputDialog(null, "Enter Recipient Number:");
+                if (conversationRecipient != null) {
+                    showConversation(conversationRecipient.trim());
+                }
+                break;
+                
+            case 5: // Delete Message by Hash
                 String deleteHash = JOptionPane.showInputDialog(null, "Enter Message Hash:");
                 if (deleteHash != null) {
                     String deleteResult = messageManager.deleteMessageByHash(deleteHash);
@@ -393,14 +465,45 @@ public class QuickChatApp {
                 }
                 break;
                 
-            case 5: // Full Report
+            case 6: // Full Report
                 String report = messageManager.displayReport();
                 JOptionPane.showMessageDialog(null, report, "Full Report", JOptionPane.INFORMATION_MESSAGE);
                 break;
                 
-            case 6: // Back
+            case 7: // Back
             case -1:
                 break;
         }
     }
+    
+    /**
+     * Shows the conversation with a recipient a page at a time, newest
+     * page first, for as long as the user asks for older messages
+     * @param recipient recipient number
+     */
+    private static void showConversation(String recipient) {
+        ConversationThread thread = messageManager.getConversation(recipient);
+        if (thread == null || thread.size() == 0) {
+            JOptionPane.showMessageDialog(null, "No conversation with this recipient.", "Conversation", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        ConversationThread.Page page = thread.latest(CONVERSATION_PAGE_SIZE);
+        while (true) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Conversation with ").append(recipient).append(":\n\n");
+            for (Message msg : page.getMessages()) {
+                sb.append("- ").append(msg.getMessageContent()).append(" (").append(msg.getSendStatus()).append(")\n\n");
+            }
+            if (!page.hasOlder()) {
+                JOptionPane.showMessageDialog(null, sb.toString(), "Conversation", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            sb.append("Show older messages?");
+            int older = JOptionPane.showConfirmDialog(null, sb.toString(), "Conversation", JOptionPane.YES_NO_OPTION);
+            if (older != JOptionPane.YES_OPTION) {
+                return;
+            }
+            page = thread.before(page.getFirstSequence(), CONVERSATION_PAGE_SIZE);
+        }
+    }
 }
\ No newline at end of file
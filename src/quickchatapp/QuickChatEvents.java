@@ -0,0 +1,206 @@
+package quickchatapp;
+
+/**
+ * QuickChatEvents.java
+ * Java Flight Recorder events for the message lifecycle and the store
+ * Each event times one phase (validation, hashing, a store read, parse or
+ * write, a load, a search, a delete, a login) and carries the sizes that
+ * explain it. All are disabled unless a recording turns them on, and a
+ * disabled event costs a flag check: the fields are only filled in once
+ * shouldCommit() says the event will be kept
+ * quickchat.jfc next to this file enables them, e.g.
+ *   java -XX:StartFlightRecording:settings=quickchat.jfc,filename=quickchat.jfr ...
+ *   jcmd <pid> JFR.start settings=profile settings=/path/to/quickchat.jfc
+ * and `jfr print --events quickchat.* quickchat.jfr` lists what was recorded
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+final class QuickChatEvents {
+    
+    private QuickChatEvents() {
+    }
+    
+    @Name("quickchat.Validation")
+    @Label("Validation")
+    @Description("A recipient, length, username, password or cell number check")
+    @Category({"QuickChat", "Message"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Validation extends Event {
+        @Label("Check")
+        String check;
+        
+        @Label("Input Length")
+        int inputLength;
+        
+        @Label("Valid")
+        boolean valid;
+        
+        void finish(String check, String input, boolean valid) {
+            if (shouldCommit()) {
+                this.check = check;
+                this.inputLength = input == null ? 0 : input.length();
+                this.valid = valid;
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Hash")
+    @Label("Message Hash")
+    @Description("Creating a message hash")
+    @Category({"QuickChat", "Message"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Hash extends Event {
+        @Label("Content Length")
+        int contentLength;
+        
+        void finish(String content) {
+            if (shouldCommit()) {
+                this.contentLength = content == null ? 0 : content.length();
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Store")
+    @Label("Store Phase")
+    @Description("Reading, parsing or writing the stored messages file while storing messages")
+    @Category({"QuickChat", "Storage"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Store extends Event {
+        @Label("Phase")
+        String phase;
+        
+        @Label("File Size")
+        @DataAmount
+        long fileBytes;
+        
+        @Label("Records")
+        int records;
+        
+        void finish(String phase, long fileBytes, int records) {
+            if (shouldCommit()) {
+                this.phase = phase;
+                this.fileBytes = fileBytes;
+                this.records = records;
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Load")
+    @Label("Load Stored Messages")
+    @Description("Loading the stored messages file into a MessageManager")
+    @Category({"QuickChat", "Storage"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Load extends Event {
+        @Label("File Size")
+        @DataAmount
+        long fileBytes;
+        
+        @Label("Records")
+        int records;
+        
+        @Label("Tombstones")
+        int tombstones;
+        
+        @Label("Loaded")
+        int loaded;
+        
+        void finish(long fileBytes, int records, int tombstones, int loaded) {
+            if (shouldCommit()) {
+                this.fileBytes = fileBytes;
+                this.records = records;
+                this.tombstones = tombstones;
+                this.loaded = loaded;
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Search")
+    @Label("Search")
+    @Description("A MessageManager search")
+    @Category({"QuickChat", "Message"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Search extends Event {
+        @Label("Kind")
+        String kind;
+        
+        @Label("Results")
+        int results;
+        
+        @Label("Messages Held")
+        int messagesHeld;
+        
+        void finish(String kind, int results, int messagesHeld) {
+            if (shouldCommit()) {
+                this.kind = kind;
+                this.results = results;
+                this.messagesHeld = messagesHeld;
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Delete")
+    @Label("Delete")
+    @Description("Deleting one message by hash or a batch of messages")
+    @Category({"QuickChat", "Message"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Delete extends Event {
+        @Label("Kind")
+        String kind;
+        
+        @Label("Deleted")
+        int deleted;
+        
+        @Label("Messages Held")
+        int messagesHeld;
+        
+        void finish(String kind, int deleted, int messagesHeld) {
+            if (shouldCommit()) {
+                this.kind = kind;
+                this.deleted = deleted;
+                this.messagesHeld = messagesHeld;
+                commit();
+            }
+        }
+    }
+    
+    @Name("quickchat.Login")
+    @Label("Login")
+    @Description("Registering or logging in a user")
+    @Category({"QuickChat", "Login"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class LoginAttempt extends Event {
+        @Label("Operation")
+        String operation;
+        
+        @Label("Success")
+        boolean success;
+        
+        void finish(String operation, boolean success) {
+            if (shouldCommit()) {
+                this.operation = operation;
+                this.success = success;
+                commit();
+            }
+        }
+    }
+}
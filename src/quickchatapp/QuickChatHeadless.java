@@ -0,0 +1,305 @@
+package quickchatapp;
+
+/**
+ * QuickChatHeadless.java
+ * Headless, scripted mode for QuickChat: reads one command per line and
+ * writes one JSON object per line, with no dialogs
+ * Run with: java quickchatapp.QuickChatApp --headless [script file]
+ *
+ * Commands:
+ *   register <username> <password> <cell> [first name] [last name]
+ *   login <username> <password>
+ *   send|store|disregard <recipient> <message text...>
+ *   search id <messageID> | search recipient <number> | search hash <hash>
+ *   search longest [count] [status]
+ *   delete <messageHash>
+ *   undo <messageHash>  (send a disregarded message after all, within the undo window)
+ *   thread <recipient> [count] [before|after <sequence>]
+ *   report
+ *   quit
+ * Blank lines and lines starting with # are ignored
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class QuickChatHeadless {
+    private final MessageManager messageManager;
+    private final SessionManager sessionManager;
+    private final LoginThrottle loginThrottle;
+    private Login registeredUser;
+    private Session session;
+    private int errorCount;
+    
+    // Constructor
+    public QuickChatHeadless(MessageManager messageManager) {
+        this.messageManager = messageManager;
+        this.sessionManager = new SessionManager();
+        this.loginThrottle = new LoginThrottle();
+        this.errorCount = 0;
+    }
+    
+    /**
+     * Runs commands until end of input or quit
+     * Output is flushed whenever no more input is waiting
+     * @param in command source
+     * @param out result sink
+     * @throws IOException if reading fails
+     */
+    public void run(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.equals("quit")) {
+                break;
+            }
+            out.println(execute(trimmed).toString());
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Number of commands that failed so far
+     * @return error count
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+    
+    /**
+     * Runs one command line
+     * @param line command line without surrounding whitespace
+     * @return JSON result with at least "command" and "status"
+     */
+    public JSONObject execute(String line) {
+        String[] parts = line.split("\\s+", 2);
+        String command = parts[0].toLowerCase();
+        String rest = parts.length > 1 ? parts[1] : "";
+        JSONObject result = new JSONObject();
+        result.put("command", command);
+        
+        switch (command) {
+            case "register":
+                return register(result, rest.split("\\s+"));
+            case "login":
+                return login(result, rest.split("\\s+"));
+            case "send":
+                return message(result, rest, 1);
+            case "disregard":
+                return message(result, rest, 2);
+            case "store":
+                return message(result, rest, 3);
+            case "search":
+                return search(result, rest.split("\\s+", 2));
+            case "delete":
+                if (rest.isEmpty()) {
+                    return error(result, "Usage: delete <messageHash>");
+                }
+                String deleted = messageManager.deleteMessageByHash(rest);
+                return ok(result, deleted).put("deleted", !deleted.equals("Message hash not found."));
+            case "undo":
+                if (rest.isEmpty()) {
+                    return error(result, "Usage: undo <messageHash>");
+                }
+                String undone = messageManager.undoDisregard(rest);
+                if (!undone.endsWith("successfully sent.")) {
+                    return error(result, undone);
+                }
+                return ok(result, undone);
+            case "thread":
+                return thread(result, rest.split("\\s+"));
+            case "report":
+                result.put("sent", messageManager.countByStatus("Sent"));
+                result.put("stored", messageManager.countByStatus("Stored"));
+                result.put("disregarded", messageManager.countByStatus("Disregarded"));
+                return ok(result, messageManager.displayReport());
+            default:
+                return error(result, "Unknown command.");
+        }
+    }
+    
+    private JSONObject register(JSONObject result, String[] args) {
+        if (args.length < 3) {
+            return error(result, "Usage: register <username> <password> <cell> [first name] [last name]");
+        }
+        Login login = new Login();
+        login.setUsername(args[0]);
+        login.setPassword(args[1]);
+        login.setCellPhoneNumber(args[2]);
+        login.setFirstName(args.length > 3 ? args[3] : "");
+        login.setLastName(args.length > 4 ? args[4] : "");
+        
+        String registration = login.registerUser();
+        if (!login.checkUserName() || !login.checkPasswordComplexity() || !login.checkCellPhoneNumber()) {
+            return error(result, registration);
+        }
+        registeredUser = login;
+        session = null;
+        return ok(result, registration);
+    }
+    
+    private JSONObject login(JSONObject result, String[] args) {
+        if (registeredUser == null) {
+            return error(result, "No user registered.");
+        }
+        if (args.length < 2) {
+            return error(result, "Usage: login <username> <password>");
+        }
+        if (!loginThrottle.tryAcquire(args[0])) {
+            return error(result, "Too many login attempts, please try again later.");
+        }
+        session = sessionManager.createSession(registeredUser, args[0], args[1]);
+        if (session == null) {
+            return error(result, registeredUser.returnLoginStatus(false));
+        }
+        loginThrottle.reset(args[0]);
+        return ok(result, registeredUser.returnLoginStatus(true));
+    }
+    
+    private JSONObject message(JSONObject result, String rest, int choice) {
+        if (session == null || !session.isValid()) {
+            return error(result, "Please log in first.");
+        }
+        String[] args = rest.split("\\s+", 2);
+        if (args.length < 2) {
+            return error(result, "Usage: " + result.getString("command") + " <recipient> <message text>");
+        }
+        
+        Message msg = new Message();
+        msg.setRecipient(args[0]);
+        msg.setMessageContent(args[1]);
+        if (msg.checkRecipientCell() != 0) {
+            return error(result, "Cell phone number is incorrectly formatted or does not contain an international code. Please correct the number and try again.");
+        }
+        String lengthCheck = msg.checkMessageLength();
+        if (!lengthCheck.equals("Message ready to send.")) {
+            return error(result, lengthCheck);
+        }
+        msg.createMessageHash();
+        String status = msg.sentMessage(choice);
+        messageManager.addMessage(session, msg);
+        
+        result.put("messageID", msg.getMessageID());
+        result.put("messageHash", msg.getMessageHash());
+        result.put("recipient", msg.getRecipient());
+        result.put("sendStatus", msg.getSendStatus());
+        return ok(result, status);
+    }
+    
+    private JSONObject thread(JSONObject result, String[] args) {
+        String usage = "Usage: thread <recipient> [count] [before|after <sequence>]";
+        if (args[0].isEmpty() || args.length == 3 || args.length > 4) {
+            return error(result, usage);
+        }
+        ConversationThread thread = messageManager.getConversation(args[0]);
+        if (thread == null) {
+            return error(result, "Conversations are not turned on.");
+        }
+        ConversationThread.Page page;
+        try {
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+            if (args.length <= 2) {
+                page = thread.latest(count);
+            } else if (args[2].equals("before")) {
+                page = thread.before(Long.parseLong(args[3]), count);
+            } else if (args[2].equals("after")) {
+                page = thread.after(Long.parseLong(args[3]), count);
+            } else {
+                return error(result, usage);
+            }
+        } catch (NumberFormatException e) {
+            return error(result, usage);
+        }
+        
+        JSONArray found = new JSONArray();
+        for (Message msg : page.getMessages()) {
+            found.put(new JSONObject()
+                .put("messageHash", msg.getMessageHash())
+                .put("messageContent", msg.getMessageContent())
+                .put("sendStatus", msg.getSendStatus()));
+        }
+        result.put("messages", found);
+        result.put("firstSequence", page.getFirstSequence());
+        result.put("lastSequence", page.getLastSequence());
+        result.put("hasOlder", page.hasOlder());
+        result.put("hasNewer", page.hasNewer());
+        return ok(result, page.getMessages().size() + " message(s) found.");
+    }
+    
+    private JSONObject search(JSONObject result, String[] args) {
+        String by = args[0].toLowerCase();
+        String value = args.length > 1 ? args[1].trim() : "";
+        switch (by) {
+            case "id":
+                return ok(result, messageManager.searchByMessageID(value));
+            case "hash":
+                return ok(result, messageManager.searchByMessageHash(value));
+            case "longest":
+                if (value.isEmpty()) {
+                    return ok(result, messageManager.findLongestMessage());
+                }
+                return longest(result, value.split("\\s+"));
+            case "recipient":
+                List<String> messages = messageManager.searchByRecipient(value);
+                JSONArray found = new JSONArray();
+                for (String content : messages) {
+                    found.put(content);
+                }
+                result.put("messages", found);
+                return ok(result, messages.size() + " message(s) found.");
+            default:
+                return error(result, "Usage: search id|recipient|hash <value> or search longest [count] [status]");
+        }
+    }
+    
+    private JSONObject longest(JSONObject result, String[] args) {
+        if (args.length > 2) {
+            return error(result, "Usage: search longest [count] [status]");
+        }
+        int count;
+        try {
+            count = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            return error(result, "Usage: search longest [count] [status]");
+        }
+        if (count < 0) {
+            return error(result, "Count cannot be negative.");
+        }
+        List<Message> messages = args.length > 1
+            ? messageManager.findLongestMessages(count, args[1])
+            : messageManager.findLongestMessages(count);
+        
+        JSONArray found = new JSONArray();
+        for (Message msg : messages) {
+            found.put(new JSONObject()
+                .put("messageHash", msg.getMessageHash())
+                .put("messageContent", msg.getMessageContent())
+                .put("sendStatus", msg.getSendStatus()));
+        }
+        result.put("messages", found);
+        return ok(result, messages.size() + " message(s) found.");
+    }
+    
+    private static JSONObject ok(JSONObject result, String message) {
+        result.put("status", "ok");
+        result.put("message", message);
+        return result;
+    }
+    
+    private JSONObject error(JSONObject result, String message) {
+        errorCount++;
+        result.put("status", "error");
+        result.put("message", message);
+        return result;
+    }
+}
@@ -0,0 +1,317 @@
+package quickchatapp;
+
+/**
+ * RecipientTrie.java
+ * Digit trie over recipient numbers (+<country code><10 digits>)
+ * Every node counts the messages below it, so "how many messages to +27..."
+ * is a walk down the prefix, and each number's node holds its messages, so
+ * listing the messages under a prefix or inside a number range visits only
+ * the matching branches
+ * Recipients that are not + followed by digits are kept aside and checked
+ * directly, so lookups stay exact for any recipient string
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+class RecipientTrie {
+    private final Node root;
+    // Recipients that do not fit the trie
+    private final MessageIndex others;
+    // Owning manager's order, for merging branches back into insertion order
+    private final InsertionOrder order;
+    
+    // Constructor
+    RecipientTrie(InsertionOrder order) {
+        this.order = order;
+        this.root = new Node();
+        this.others = new MessageIndex("recipient");
+    }
+    
+    void add(Message message) {
+        String recipient = message.getRecipient();
+        if (!fits(recipient)) {
+            others.add(recipient, message);
+            return;
+        }
+        Node node = root;
+        node.count++;
+        for (int i = 1; i < recipient.length(); i++) {
+            int digit = recipient.charAt(i) - '0';
+            if (node.children[digit] == null) {
+                node.children[digit] = new Node();
+            }
+            node = node.children[digit];
+            node.count++;
+        }
+        node.messages = MessageIndex.addTo(node.messages, message);
+    }
+    
+    /**
+     * Removes a message; emptied branches are dropped
+     */
+    void remove(Message message) {
+        String recipient = message.getRecipient();
+        if (!fits(recipient)) {
+            others.remove(recipient, message);
+            return;
+        }
+        Node end = find(recipient);
+        if (end == null || !MessageIndex.viewOf(end.messages).contains(message)) {
+            return;
+        }
+        end.messages = MessageIndex.removeFrom(end.messages, message);
+        Node node = root;
+        node.count--;
+        for (int i = 1; i < recipient.length(); i++) {
+            int digit = recipient.charAt(i) - '0';
+            Node child = node.children[digit];
+            if (--child.count == 0) {
+                node.children[digit] = null;
+                return;
+            }
+            node = child;
+        }
+    }
+    
+    /**
+     * @param prefix start of the number, e.g. "+27" or "+2771"
+     * @return messages to recipients starting with prefix
+     */
+    long count(String prefix) {
+        long count = 0;
+        for (String other : others.keys()) {
+            if (other != null && other.startsWith(prefix)) {
+                count += others.count(other);
+            }
+        }
+        Node node = nodeFor(prefix);
+        return node == null ? count : count + node.count;
+    }
+    
+    /**
+     * @param prefix start of the number
+     * @return messages to recipients starting with prefix, in insertion order
+     */
+    List<Message> messages(String prefix) {
+        List<Message> messages = new ArrayList<>();
+        Node node = nodeFor(prefix);
+        if (node != null) {
+            collect(node, messages);
+        }
+        for (String other : others.keys()) {
+            if (other != null && other.startsWith(prefix)) {
+                messages.addAll(others.get(other));
+            }
+        }
+        order.sort(messages);
+        return messages;
+    }
+    
+    /**
+     * Counts messages to recipients between two numbers, compared as
+     * strings, so "+27710000000".."+27719999999" covers that block
+     * Whole branches inside the range are counted without visiting them
+     * @param from lowest recipient, inclusive
+     * @param to highest recipient, inclusive
+     * @return number of messages
+     */
+    long countBetween(String from, String to) {
+        Range range = new Range(from, to, null);
+        walk(range);
+        for (String other : others.keys()) {
+            if (range.contains(other)) {
+                range.count += others.count(other);
+            }
+        }
+        return range.count;
+    }
+    
+    /**
+     * @param from lowest recipient, inclusive
+     * @param to highest recipient, inclusive
+     * @return messages to recipients in the range, in insertion order
+     */
+    List<Message> messagesBetween(String from, String to) {
+        List<Message> messages = new ArrayList<>();
+        Range range = new Range(from, to, messages);
+        walk(range);
+        for (String other : others.keys()) {
+            if (range.contains(other)) {
+                messages.addAll(others.get(other));
+            }
+        }
+        order.sort(messages);
+        return messages;
+    }
+    
+    /**
+     * Message counts per country code, read from the first three digit
+     * levels of the trie rather than from every recipient
+     * @return country code to message count, in code order
+     */
+    Map<String, Long> countsByCountryCode() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (int a = 0; a < 10; a++) {
+            Node first = root.children[a];
+            if (first == null) {
+                continue;
+            }
+            for (int b = 0; b < 10; b++) {
+                Node second = first.children[b];
+                if (second == null) {
+                    continue;
+                }
+                for (int c = 0; c < 10; c++) {
+                    Node third = second.children[c];
+                    if (third != null) {
+                        String code = MessageAnalytics.countryCodeOf("+" + a + b + c);
+                        counts.merge(code, third.count, Long::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * @return the node for a prefix, or null if no trie number starts with it
+     */
+    private Node nodeFor(String prefix) {
+        if (prefix.isEmpty() || prefix.equals("+")) {
+            return root;
+        }
+        return fits(prefix) ? find(prefix) : null;
+    }
+    
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 1; i < prefix.length() && node != null; i++) {
+            node = node.children[prefix.charAt(i) - '0'];
+        }
+        return node;
+    }
+    
+    private static void collect(Node node, List<Message> out) {
+        if (node.messages != null) {
+            out.addAll(MessageIndex.viewOf(node.messages));
+        }
+        for (Node child : node.children) {
+            if (child != null) {
+                collect(child, out);
+            }
+        }
+    }
+    
+    private void walk(Range range) {
+        // Every trie number starts with "+"; compare that first
+        int low = range.from.isEmpty() ? -1 : Character.compare(range.from.charAt(0), '+');
+        int high = range.to.isEmpty() ? -1 : Character.compare(range.to.charAt(0), '+');
+        if (range.from.compareTo(range.to) <= 0 && low <= 0 && high >= 0) {
+            walk(root, new StringBuilder("+"), range, low == 0, high == 0);
+        }
+    }
+    
+    /**
+     * Visits only the branches inside the range; lowTight and highTight say
+     * whether the path so far still equals the start of from or of to
+     */
+    private static void walk(Node node, StringBuilder path, Range range, boolean lowTight, boolean highTight) {
+        if (!lowTight && !highTight) {
+            // The whole branch is inside the range
+            if (range.out == null) {
+                range.count += node.count;
+            } else {
+                collect(node, range.out);
+            }
+            return;
+        }
+        int depth = path.length();
+        if (node.messages != null && range.contains(path.toString())) {
+            if (range.out == null) {
+                range.count += MessageIndex.viewOf(node.messages).size();
+            } else {
+                range.out.addAll(MessageIndex.viewOf(node.messages));
+            }
+        }
+        // Past the end of to, every longer number sorts after it
+        if (highTight && depth >= range.to.length()) {
+            return;
+        }
+        int low = 0;
+        if (lowTight && depth < range.from.length()) {
+            char c = range.from.charAt(depth);
+            if (c > '9') {
+                return;
+            }
+            low = c < '0' ? 0 : c - '0';
+            lowTight = c >= '0';
+        } else {
+            lowTight = false;
+        }
+        int high = 9;
+        if (highTight) {
+            char c = range.to.charAt(depth);
+            if (c < '0') {
+                return;
+            }
+            high = c > '9' ? 9 : c - '0';
+            highTight = c <= '9';
+        }
+        for (int digit = low; digit <= high; digit++) {
+            Node child = node.children[digit];
+            if (child != null) {
+                path.append((char) ('0' + digit));
+                walk(child, path, range, lowTight && digit == low, highTight && digit == high);
+                path.setLength(depth);
+            }
+        }
+    }
+    
+    /**
+     * True for "+" followed by one or more digits
+     */
+    private static boolean fits(String recipient) {
+        if (recipient == null || recipient.length() < 2 || recipient.charAt(0) != '+') {
+            return false;
+        }
+        for (int i = 1; i < recipient.length(); i++) {
+            char c = recipient.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static class Node {
+        final Node[] children = new Node[10];
+        // Messages to exactly this number, held as in MessageIndex; null if none
+        Object messages;
+        // Messages to this number or any longer one below it
+        long count;
+    }
+    
+    /**
+     * Bounds of a range walk and what it has found
+     */
+    private static class Range {
+        final String from;
+        final String to;
+        // Null when only counting
+        final List<Message> out;
+        long count;
+        
+        Range(String from, String to, List<Message> out) {
+            this.from = from;
+            this.to = to;
+            this.out = out;
+        }
+        
+        boolean contains(String recipient) {
+            return recipient != null && recipient.compareTo(from) >= 0 && recipient.compareTo(to) <= 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package quickchatapp;
+
+/**
+ * Session.java
+ * Authenticated session issued by SessionManager after a successful login
+ * Lets callers act as a user without re-checking the password each time
+ */
+public class Session {
+    private final String token;
+    private final Login user;
+    private final long expiresAt;
+    private volatile boolean invalidated;
+    
+    // Constructor
+    Session(String token, Login user, long expiresAt) {
+        this.token = token;
+        this.user = user;
+        this.expiresAt = expiresAt;
+        this.invalidated = false;
+    }
+    
+    // Getters
+    public String getToken() {
+        return token;
+    }
+    
+    public Login getUser() {
+        return user;
+    }
+    
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+    
+    /**
+     * Checks if the session has passed its expiry time
+     * @param now current time in milliseconds
+     * @return true if expired, false otherwise
+     */
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+    
+    /**
+     * Checks if the session can still be used
+     * @return true if not invalidated and not expired, false otherwise
+     */
+    public boolean isValid() {
+        return !invalidated && !isExpired(System.currentTimeMillis());
+    }
+    
+    /**
+     * Marks the session as unusable (logout or eviction)
+     */
+    void invalidate() {
+        invalidated = true;
+    }
+}
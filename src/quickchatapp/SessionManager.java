@@ -0,0 +1,132 @@
+package quickchatapp;
+
+/**
+ * SessionManager.java
+ * Issues and validates session tokens on top of Login
+ * A successful login is verified once; afterwards a token lookup is enough
+ */
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SessionManager {
+    public static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000L;
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final ConcurrentHashMap<String, Session> sessions;
+    // Tokens in issue order; with a fixed TTL this is also expiry order
+    private final Queue<String> issueOrder;
+    private final SecureRandom random;
+    
+    // Constructors
+    public SessionManager() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_SESSIONS);
+    }
+    
+    public SessionManager(long ttlMillis, int maxSessions) {
+        if (ttlMillis <= 0 || maxSessions <= 0) {
+            throw new IllegalArgumentException("TTL and maximum sessions must be positive.");
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxSessions = maxSessions;
+        this.sessions = new ConcurrentHashMap<>();
+        this.issueOrder = new ConcurrentLinkedQueue<>();
+        this.random = new SecureRandom();
+    }
+    
+    /**
+     * Verifies credentials and issues a session token
+     * @param user registered user to log in as
+     * @param inputUsername username entered during login
+     * @param inputPassword password entered during login
+     * @return new session, or null if the credentials are wrong
+     */
+    public Session createSession(Login user, String inputUsername, String inputPassword) {
+        if (user == null || !user.loginUser(inputUsername, inputPassword)) {
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        Session session = new Session(generateToken(), user, now + ttlMillis);
+        sessions.put(session.getToken(), session);
+        issueOrder.add(session.getToken());
+        evict(now);
+        return session;
+    }
+    
+    /**
+     * Looks up a session by token
+     * @param token token returned by createSession
+     * @return the session, or null if unknown, invalidated or expired
+     */
+    public Session validateSession(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (!session.isValid()) {
+            remove(token);
+            return null;
+        }
+        return session;
+    }
+    
+    /**
+     * Ends a session (logout)
+     * @param token token to invalidate
+     * @return true if a session was removed, false otherwise
+     */
+    public boolean invalidateSession(String token) {
+        return token != null && remove(token);
+    }
+    
+    /**
+     * Returns the number of sessions currently cached
+     * @return session count
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+    
+    /**
+     * Drops expired sessions from the head of the issue queue, then the
+     * oldest sessions while the cache is over capacity
+     * @param now current time in milliseconds
+     */
+    private void evict(long now) {
+        String head;
+        while ((head = issueOrder.peek()) != null) {
+            Session oldest = sessions.get(head);
+            boolean overCapacity = sessions.size() > maxSessions;
+            if (oldest != null && !overCapacity && !oldest.isExpired(now)) {
+                break;
+            }
+            if (issueOrder.remove(head)) {
+                remove(head);
+            }
+        }
+    }
+    
+    private boolean remove(String token) {
+        Session removed = sessions.remove(token);
+        if (removed == null) {
+            return false;
+        }
+        removed.invalidate();
+        return true;
+    }
+    
+    private String generateToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,242 @@
+package quickchatapp;
+
+/**
+ * ShardedMessageManager.java
+ * Splits messages across several MessageManager shards by recipient
+ * Recipient lookups touch one shard; global operations fan out to every
+ * shard in parallel on a fork-join pool and merge the results
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+public class ShardedMessageManager {
+    private final MessageManager[] shards;
+    private final ForkJoinPool pool;
+    
+    // Constructors
+    public ShardedMessageManager() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ShardedMessageManager(int shardCount) {
+        this(shardCount, ForkJoinPool.commonPool());
+    }
+    
+    public ShardedMessageManager(int shardCount, ForkJoinPool pool) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+        this.shards = new MessageManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MessageManager();
+        }
+        this.pool = pool;
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Picks the shard that owns a recipient
+     * @param recipient recipient cell number
+     * @return shard index
+     */
+    int shardFor(String recipient) {
+        int h = recipient == null ? 0 : recipient.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+    
+    /**
+     * Adds a message to the shard owning its recipient
+     * @param message message to add
+     */
+    public void addMessage(Message message) {
+        MessageManager shard = shards[shardFor(message.getRecipient())];
+        synchronized (shard) {
+            shard.addMessage(message);
+        }
+    }
+    
+    /**
+     * Searches for all messages sent to a particular recipient
+     * Only the recipient's shard is searched
+     * @param recipient recipient number to search
+     * @return list of messages
+     */
+    public List<String> searchByRecipient(String recipient) {
+        MessageManager shard = shards[shardFor(recipient)];
+        synchronized (shard) {
+            return shard.searchByRecipient(recipient);
+        }
+    }
+    
+    /**
+     * Searches every shard for a message ID
+     * @param messageID ID to search for
+     * @return formatted message details or error message
+     */
+    public String searchByMessageID(String messageID) {
+        String notFound = "Message ID not found.";
+        return fanOut(shard -> shard.searchByMessageID(messageID),
+                (a, b) -> notFound.equals(a) ? b : a);
+    }
+    
+    /**
+     * Deletes a message using its hash from whichever shard holds it
+     * Like MessageManager, only the first match is deleted: shards are
+     * tried in order and the search stops at the first one that deletes
+     * @param messageHash hash of message to delete
+     * @return confirmation message
+     */
+    public String deleteMessageByHash(String messageHash) {
+        String notFound = "Message hash not found.";
+        for (MessageManager shard : shards) {
+            String result;
+            synchronized (shard) {
+                result = shard.deleteMessageByHash(messageHash);
+            }
+            if (!notFound.equals(result)) {
+                return result;
+            }
+        }
+        return notFound;
+    }
+    
+    /**
+     * Finds the longest sent or stored message across all shards
+     * @return longest message content
+     */
+    public String findLongestMessage() {
+        String none = "No messages available.";
+        return fanOut(MessageManager::findLongestMessage, (a, b) -> {
+            if (none.equals(a)) {
+                return b;
+            }
+            if (none.equals(b)) {
+                return a;
+            }
+            return b.length() > a.length() ? b : a;
+        });
+    }
+    
+    /**
+     * Generates a full report of all sent messages, shard by shard
+     * @return formatted report
+     */
+    public String displayReport() {
+        List<Message> sent = fanOut(shard -> {
+            List<Message> messages = new ArrayList<>();
+            for (Message msg : shard.getAllMessages()) {
+                if ("Sent".equals(msg.getSendStatus())) {
+                    messages.add(msg);
+                }
+            }
+            return messages;
+        }, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+        return MessageManager.buildReport(sent);
+    }
+    
+    /**
+     * Counts messages with the given status across all shards
+     * @param status "Sent", "Disregarded" or "Stored"
+     * @return number of messages with that status
+     */
+    public int countByStatus(String status) {
+        return fanOut(shard -> shard.countByStatus(status), Integer::sum);
+    }
+    
+    /**
+     * Returns the number of messages held across all shards
+     * @return message count
+     */
+    public int getMessageCount() {
+        return fanOut(MessageManager::getMessageCount, Integer::sum);
+    }
+    
+    /**
+     * Computes analytics on every shard in parallel and merges them
+     * @return combined analytics
+     */
+    public MessageAnalytics computeAnalytics() {
+        return fanOut(MessageManager::getAnalytics, MessageAnalytics::merge);
+    }
+    
+    /**
+     * Merges the recipient sketches of every shard
+     * @return combined sketches
+     */
+    public MessageSketches getSketches() {
+        return fanOut(shard -> new MessageSketches().merge(shard.getSketches()),
+                MessageSketches::merge);
+    }
+
+    /**
+     * Returns every message, shard by shard
+     * @return list of all messages
+     */
+    public List<Message> getAllMessages() {
+        return fanOut(MessageManager::getAllMessages, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+    
+    /**
+     * Runs an operation on every shard in parallel and merges the results
+     * in shard order
+     * @param operation work to run against one shard (under its lock)
+     * @param merge combines two partial results
+     * @return merged result
+     */
+    <T> T fanOut(Function<MessageManager, T> operation, BinaryOperator<T> merge) {
+        return pool.invoke(new ShardTask<>(shards, 0, shards.length, operation, merge));
+    }
+    
+    /**
+     * Fork-join task that splits a range of shards in half until one is left
+     * Never serialized, although RecursiveTask is Serializable
+     */
+    @SuppressWarnings("serial")
+    private static class ShardTask<T> extends RecursiveTask<T> {
+        private final MessageManager[] shards;
+        private final int from;
+        private final int to;
+        private final Function<MessageManager, T> operation;
+        private final BinaryOperator<T> merge;
+        
+        ShardTask(MessageManager[] shards, int from, int to,
+                  Function<MessageManager, T> operation, BinaryOperator<T> merge) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+            this.operation = operation;
+            this.merge = merge;
+        }
+        
+        @Override
+        protected T compute() {
+            if (to - from == 1) {
+                MessageManager shard = shards[from];
+                synchronized (shard) {
+                    return operation.apply(shard);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            ShardTask<T> left = new ShardTask<>(shards, from, mid, operation, merge);
+            ShardTask<T> right = new ShardTask<>(shards, mid, to, operation, merge);
+            right.fork();
+            T leftResult = left.compute();
+            return merge.apply(leftResult, right.join());
+        }
+    }
+}
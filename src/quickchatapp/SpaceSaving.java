@@ -0,0 +1,247 @@
+package quickchatapp;
+
+/**
+ * SpaceSaving.java
+ * Tracks the most frequent strings in a stream with a fixed number of
+ * counters (the Space-Saving algorithm)
+ * A new value takes over the smallest counter and inherits its count as
+ * possible error, so every value added more than total / capacity times is
+ * guaranteed to hold a counter. Counters sit in a min-heap indexed by a
+ * map, so an update is O(log capacity) and a lookup is O(1)
+ * Summaries merge by adding counts, treating a value missing from a full
+ * summary as having that summary's smallest count
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SpaceSaving {
+    private final int capacity;
+    // Min-heap on count, stored in parallel arrays
+    private final String[] values;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> positions;
+    private int size;
+    private long total;
+    
+    // Constructor
+    /**
+     * @param capacity number of counters kept
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.values = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+        this.size = 0;
+        this.total = 0;
+    }
+    
+    /**
+     * Records one occurrence of a value
+     * @param value value to count
+     */
+    public void add(String value) {
+        add(value, 1);
+    }
+    
+    /**
+     * Records several occurrences of a value
+     * @param value value to count
+     * @param count occurrences, at least 0
+     */
+    public void add(String value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative.");
+        }
+        total += count;
+        Integer position = positions.get(value);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+        } else if (size < capacity) {
+            place(size, value, count, 0);
+            size++;
+            siftUp(size - 1);
+        } else {
+            // Evict the smallest counter; its count becomes the error bound
+            positions.remove(values[0]);
+            long floor = counts[0];
+            place(0, value, floor + count, floor);
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * Returns the counted frequency of a value
+     * @param value value to look up
+     * @return count held for the value (at most getError too high), or 0 if
+     *         it holds no counter
+     */
+    public long estimate(String value) {
+        Integer position = positions.get(value);
+        return position == null ? 0 : counts[position];
+    }
+    
+    /**
+     * Returns the values with the largest counts
+     * @param n how many to return
+     * @return up to n counters, largest count first
+     */
+    public List<Counter> top(int n) {
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter(values[i], counts[i], errors[i]));
+        }
+        counters.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.value.compareTo(b.value));
+        return counters.subList(0, Math.min(n, counters.size()));
+    }
+    
+    /**
+     * Adds another summary's counts into this one
+     * @param other summary to merge in; it is not changed
+     * @return this summary
+     */
+    public SpaceSaving merge(SpaceSaving other) {
+        long ownFloor = size == capacity ? counts[0] : 0;
+        long otherFloor = other.size == other.capacity ? other.counts[0] : 0;
+        Set<String> union = new HashSet<>(positions.keySet());
+        union.addAll(other.positions.keySet());
+        
+        List<Counter> merged = new ArrayList<>(union.size());
+        for (String value : union) {
+            Integer own = positions.get(value);
+            Integer theirs = other.positions.get(value);
+            long count = (own != null ? counts[own] : ownFloor) + (theirs != null ? other.counts[theirs] : otherFloor);
+            long error = (own != null ? errors[own] : ownFloor) + (theirs != null ? other.errors[theirs] : otherFloor);
+            merged.add(new Counter(value, count, error));
+        }
+        merged.sort((a, b) -> Long.compare(b.count, a.count));
+        
+        positions.clear();
+        size = 0;
+        for (Counter counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            place(size, counter.value, counter.count, counter.error);
+            size++;
+            siftUp(size - 1);
+        }
+        total += other.total;
+        return this;
+    }
+    
+    /**
+     * @return number of occurrences added
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    private void place(int position, String value, long count, long error) {
+        values[position] = value;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(value, position);
+    }
+    
+    private void swap(int a, int b) {
+        String value = values[a];
+        long count = counts[a];
+        long error = errors[a];
+        values[a] = values[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        values[b] = value;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(values[a], a);
+        positions.put(values[b], b);
+    }
+    
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+    
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+    
+    /**
+     * One tracked value
+     */
+    public static class Counter {
+        private final String value;
+        private final long count;
+        private final long error;
+        
+        Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        /**
+         * @return counted frequency, never below the true one
+         */
+        public long getCount() {
+            return count;
+        }
+        
+        /**
+         * @return how much of the count may belong to evicted values
+         */
+        public long getError() {
+            return error;
+        }
+        
+        /**
+         * @return frequency the value is certain to have
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+        
+        @Override
+        public String toString() {
+            return value + "=" + count;
+        }
+    }
+}
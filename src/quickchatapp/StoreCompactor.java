@@ -0,0 +1,442 @@
+package quickchatapp;
+
+/**
+ * StoreCompactor.java
+ * Rewrites the stored messages file without deleted or expired records
+ * Deletions are recorded as tombstones by MessageManager; compaction drops
+ * the tombstoned records, applies the retention policy and swaps the new
+ * file in with an atomic rename
+ * Writers are only held off while the file is read and swapped: the
+ * filtering runs unlocked, and records stored in the meantime are carried
+ * over before the swap. Only one compaction of a store runs at a time,
+ * however many compactors or processes point at it
+ * Run with: java quickchatapp.StoreCompactor [max age days] [max per recipient] [purged status...]
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class StoreCompactor {
+    // Compaction locks by store file, shared by every compactor in the process
+    private static final Map<Path, Object> COMPACTION_LOCKS = new ConcurrentHashMap<>();
+    
+    private final Path storeFile;
+    private final Path tombstoneFile;
+    private final RetentionPolicy policy;
+    private final LongSupplier clock;
+    // One compaction per store at a time; the carry-over step relies on it
+    private final Object compactionLock;
+    private ScheduledExecutorService scheduler;
+    
+    // Constructor
+    public StoreCompactor(RetentionPolicy policy) {
+        this(Paths.get(Message.STORE_FILE), Paths.get(Message.TOMBSTONE_FILE), policy, System::currentTimeMillis);
+    }
+    
+    /**
+     * Compacts other files, with a given clock for age checks (for tests)
+     */
+    StoreCompactor(Path storeFile, Path tombstoneFile, RetentionPolicy policy, LongSupplier clock) {
+        this.storeFile = storeFile;
+        this.tombstoneFile = tombstoneFile;
+        this.policy = policy;
+        this.clock = clock;
+        this.compactionLock = COMPACTION_LOCKS.computeIfAbsent(storeFile.toAbsolutePath().normalize(),
+                path -> new Object());
+    }
+    
+    public static void main(String[] args) throws IOException {
+        RetentionPolicy policy = new RetentionPolicy();
+        if (args.length > 0) {
+            policy.setMaxAge(Duration.ofDays(Long.parseLong(args[0])));
+        }
+        if (args.length > 1) {
+            policy.setMaxPerRecipient(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            policy.setPurgedStatuses(Arrays.copyOfRange(args, 2, args.length));
+        }
+        System.out.println(new StoreCompactor(policy).compact());
+    }
+    
+    /**
+     * Compacts on a daemon thread
+     * @return future completed with the result
+     */
+    public CompletableFuture<Result> compactAsync() {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(compact());
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "quickchat-compactor");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+    
+    /**
+     * Compacts on a fixed schedule until stop() is called
+     * @param interval time between compactions
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quickchat-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Result result = compact();
+                if (result.getRecordsRemoved() > 0) {
+                    System.out.println(result);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error compacting stored messages: " + e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * Runs one compaction on the calling thread
+     * @return records removed, space reclaimed and time taken
+     * @throws IOException if the store cannot be read or replaced
+     */
+    public Result compact() throws IOException {
+        synchronized (compactionLock) {
+            // The file lock keeps out compactors in other processes, such as main
+            Path lockFile = storeFile.resolveSibling(storeFile.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Released when the channel closes
+                channel.lock();
+                return compactStore();
+            }
+        }
+    }
+    
+    private Result compactStore() throws IOException {
+        long start = System.nanoTime();
+        
+        // Short lock: take a consistent copy of both files
+        byte[] snapshot;
+        byte[] tombstoneSnapshot;
+        synchronized (Message.STORE_LOCK) {
+            if (!Files.exists(storeFile)) {
+                return new Result(0, 0, 0, 0, 0, 0, System.nanoTime() - start);
+            }
+            snapshot = Files.readAllBytes(storeFile);
+            tombstoneSnapshot = Files.exists(tombstoneFile) ? Files.readAllBytes(tombstoneFile) : new byte[0];
+        }
+        
+        // Unlocked: decide what to keep
+        JSONArray records = new JSONArray(new String(snapshot, StandardCharsets.UTF_8));
+        Counts counts = new Counts();
+        JSONArray kept = retain(records, tombstonesIn(tombstoneSnapshot), counts);
+        
+        // Short lock: carry over anything stored since the copy, then swap
+        long bytesBefore = snapshot.length;
+        long bytesAfter;
+        long bodyBytes;
+        synchronized (Message.STORE_LOCK) {
+            byte[] current = Files.exists(storeFile)
+                    ? Files.readAllBytes(storeFile) : "[]".getBytes(StandardCharsets.UTF_8);
+            if (!Arrays.equals(current, snapshot)) {
+                JSONArray latest = new JSONArray(new String(current, StandardCharsets.UTF_8));
+                if (startsWith(latest, records)) {
+                    // Stores only ever append, so new records follow the copied ones
+                    for (int i = records.length(); i < latest.length(); i++) {
+                        kept.put(latest.get(i));
+                    }
+                } else {
+                    // Shrunk or replaced since the copy: decide again from what is there now
+                    tombstoneSnapshot = Files.exists(tombstoneFile) ? Files.readAllBytes(tombstoneFile) : new byte[0];
+                    records = latest;
+                    bytesBefore = current.length;
+                    counts = new Counts();
+                    kept = retain(records, tombstonesIn(tombstoneSnapshot), counts);
+                }
+            }
+            Path temp = storeFile.resolveSibling(storeFile.getFileName() + ".compact");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(kept.toString(4));
+            }
+            Files.move(temp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            bytesAfter = Files.size(storeFile);
+            bodyBytes = pruneBodies(kept);
+            
+            // Keep tombstones recorded since the copy for the next run
+            if (tombstoneSnapshot.length > 0 && Files.exists(tombstoneFile)) {
+                byte[] tombstonesNow = Files.readAllBytes(tombstoneFile);
+                boolean appended = tombstonesNow.length >= tombstoneSnapshot.length
+                        && Arrays.equals(tombstonesNow, 0, tombstoneSnapshot.length,
+                                tombstoneSnapshot, 0, tombstoneSnapshot.length);
+                // If the file was rewritten meanwhile, keep all of it; extra tombstones are harmless
+                byte[] newer = appended
+                        ? Arrays.copyOfRange(tombstonesNow, tombstoneSnapshot.length, tombstonesNow.length)
+                        : tombstonesNow;
+                Path tombstoneTemp = tombstoneFile.resolveSibling(tombstoneFile.getFileName() + ".compact");
+                Files.write(tombstoneTemp, newer);
+                Files.move(tombstoneTemp, tombstoneFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        return new Result(records.length(), kept.length(), counts.deleted, counts.expired,
+                bytesBefore + bodyBytes, bytesAfter, System.nanoTime() - start);
+    }
+    
+    private static Set<String> tombstonesIn(byte[] file) {
+        Set<String> tombstones = new HashSet<>();
+        for (String line : new String(file, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                tombstones.add(line);
+            }
+        }
+        return tombstones;
+    }
+    
+    /**
+     * @return true if latest begins with the copied records, as it does
+     *         when records have only been stored since the copy
+     */
+    private static boolean startsWith(JSONArray latest, JSONArray copied) {
+        if (latest.length() < copied.length()) {
+            return false;
+        }
+        for (int i = 0; i < copied.length(); i++) {
+            if (!keyOf((JSONObject) latest.get(i)).equals(keyOf((JSONObject) copied.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static String keyOf(JSONObject record) {
+        return Message.tombstoneKey(record.optString("messageID", ""), record.optString("messageHash", ""));
+    }
+    
+    /**
+     * Drops broadcast bodies that no kept record refers to
+     * Runs under the store lock, so a broadcast cannot be halfway written
+     * @return bytes removed from the bodies file
+     */
+    private long pruneBodies(JSONArray kept) throws IOException {
+        Path bodyFile = storeFile.resolveSibling(MessageBodyStore.BODY_FILE);
+        if (!Files.exists(bodyFile)) {
+            return 0;
+        }
+        Set<String> referenced = new HashSet<>();
+        for (int i = 0; i < kept.length(); i++) {
+            String ref = ((JSONObject) kept.get(i)).optString("bodyRef", "");
+            if (!ref.isEmpty()) {
+                referenced.add(ref);
+            }
+        }
+        long before = Files.size(bodyFile);
+        Map<String, String> bodies = MessageBodyStore.readBodies(bodyFile);
+        if (referenced.containsAll(bodies.keySet())) {
+            return 0;
+        }
+        JSONObject live = new JSONObject();
+        for (Map.Entry<String, String> body : bodies.entrySet()) {
+            if (referenced.contains(body.getKey())) {
+                live.put(body.getKey(), body.getValue());
+            }
+        }
+        MessageBodyStore.write(bodyFile, live);
+        return before - Files.size(bodyFile);
+    }
+    
+    /**
+     * Applies tombstones and the retention policy
+     * Newest records win the per-recipient limit; stores append, so the
+     * newest are at the end of the array
+     */
+    private JSONArray retain(JSONArray records, Set<String> tombstones, Counts counts) {
+        boolean[] keep = new boolean[records.length()];
+        Map<String, Integer> perRecipient = new HashMap<>();
+        long now = clock.getAsLong();
+        for (int i = records.length() - 1; i >= 0; i--) {
+            JSONObject record = (JSONObject) records.get(i);
+            if (tombstones.contains(keyOf(record))) {
+                counts.deleted++;
+                continue;
+            }
+            if (policy.isExpired(record, now)) {
+                counts.expired++;
+                continue;
+            }
+            if (policy.getMaxPerRecipient() > 0) {
+                int seen = perRecipient.merge(record.optString("recipient", ""), 1, Integer::sum);
+                if (seen > policy.getMaxPerRecipient()) {
+                    counts.expired++;
+                    continue;
+                }
+            }
+            keep[i] = true;
+        }
+        JSONArray kept = new JSONArray();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                kept.put(records.get(i));
+            }
+        }
+        return kept;
+    }
+    
+    private static class Counts {
+        private int deleted;
+        private int expired;
+    }
+    
+    /**
+     * What compaction removes besides deleted records
+     * Records stored before storedAt was written have no age and never expire
+     */
+    public static class RetentionPolicy {
+        private Duration maxAge;
+        private Set<String> purgedStatuses;
+        private int maxPerRecipient;
+        
+        // Constructor: keep everything that is not deleted
+        public RetentionPolicy() {
+            this.maxAge = null;
+            this.purgedStatuses = new HashSet<>();
+            this.maxPerRecipient = 0;
+        }
+        
+        /**
+         * @param maxAge records stored longer ago are removed; null for no limit
+         */
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+        
+        /**
+         * @param statuses records with any of these statuses are removed
+         */
+        public void setPurgedStatuses(String... statuses) {
+            this.purgedStatuses = new HashSet<>(List.of(statuses));
+        }
+        
+        /**
+         * @param maxPerRecipient newest records kept per recipient; 0 for no limit
+         */
+        public void setMaxPerRecipient(int maxPerRecipient) {
+            if (maxPerRecipient < 0) {
+                throw new IllegalArgumentException("Max per recipient cannot be negative.");
+            }
+            this.maxPerRecipient = maxPerRecipient;
+        }
+        
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+        
+        public int getMaxPerRecipient() {
+            return maxPerRecipient;
+        }
+        
+        boolean isExpired(JSONObject record, long now) {
+            if (purgedStatuses.contains(record.optString("sendStatus", ""))) {
+                return true;
+            }
+            long storedAt = record.optLong("storedAt", 0);
+            return maxAge != null && storedAt > 0 && now - storedAt > maxAge.toMillis();
+        }
+    }
+    
+    /**
+     * Outcome of one compaction
+     */
+    public static class Result {
+        private final int recordsBefore;
+        private final int recordsAfter;
+        private final int deletedRemoved;
+        private final int expiredRemoved;
+        private final long bytesBefore;
+        private final long bytesAfter;
+        private final long elapsedNanos;
+        
+        Result(int recordsBefore, int recordsAfter, int deletedRemoved, int expiredRemoved,
+               long bytesBefore, long bytesAfter, long elapsedNanos) {
+            this.recordsBefore = recordsBefore;
+            this.recordsAfter = recordsAfter;
+            this.deletedRemoved = deletedRemoved;
+            this.expiredRemoved = expiredRemoved;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public int getRecordsBefore() {
+            return recordsBefore;
+        }
+        
+        /**
+         * Records left, including any stored while compaction ran
+         * @return record count after compaction
+         */
+        public int getRecordsAfter() {
+            return recordsAfter;
+        }
+        
+        public int getDeletedRemoved() {
+            return deletedRemoved;
+        }
+        
+        public int getExpiredRemoved() {
+            return expiredRemoved;
+        }
+        
+        public int getRecordsRemoved() {
+            return deletedRemoved + expiredRemoved;
+        }
+        
+        public long getBytesReclaimed() {
+            return bytesBefore - bytesAfter;
+        }
+        
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Compacted %,d records to %,d (%,d deleted, %,d expired), reclaimed %,d bytes in %,d ms",
+                    recordsBefore, recordsAfter, deletedRemoved, expiredRemoved, getBytesReclaimed(), getElapsedMillis());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package quickchatapp;
+
+/**
+ * TimingWheel.java
+ * Hashed timing wheel for expiring items after a delay
+ * Time is cut into ticks and each timeout is linked into the slot for its
+ * deadline tick (tick mod wheel size), so scheduling and cancelling are
+ * O(1) and advancing the clock only looks at the slots that came due.
+ * Timeouts more than one revolution away stay in their slot until the
+ * wheel comes round to their tick; with the wheel sized to cover the
+ * longest delay, each timeout is looked at once
+ * Driven by the caller: advance() expires whatever is due. Not thread-safe
+ */
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+class TimingWheel<T> {
+    private final long tickMillis;
+    private final Timeout<T>[] slots;
+    private final int mask;
+    private final LongSupplier clock;
+    private final Consumer<T> onExpiry;
+    private final long startMillis;
+    // Next tick to process
+    private long tick;
+    private int pending;
+    
+    /**
+     * @param tickMillis length of a tick; expiry is accurate to one tick
+     * @param wheelSize slots, rounded up to a power of two
+     * @param clock time source in milliseconds
+     * @param onExpiry called with each item as it expires
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int wheelSize, LongSupplier clock, Consumer<T> onExpiry) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive.");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.slots = (Timeout<T>[]) new Timeout<?>[size];
+        this.mask = size - 1;
+        this.clock = clock;
+        this.onExpiry = onExpiry;
+        this.startMillis = clock.getAsLong();
+    }
+    
+    /**
+     * Schedules an item to expire after a delay
+     * @param item item handed to the expiry callback
+     * @param delayMillis time until it expires
+     * @return handle for cancel()
+     */
+    Timeout<T> schedule(T item, long delayMillis) {
+        advance();
+        long due = clock.getAsLong() + Math.max(0, delayMillis) - startMillis;
+        // Round up, so an item never expires early
+        long deadline = Math.max(tick, (due + tickMillis - 1) / tickMillis);
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        link(timeout);
+        return timeout;
+    }
+    
+    /**
+     * Cancels a timeout; does nothing if it already expired or was cancelled
+     */
+    void cancel(Timeout<T> timeout) {
+        if (timeout != null && timeout.slot >= 0) {
+            unlink(timeout);
+        }
+    }
+    
+    /**
+     * Expires every item whose deadline tick has passed
+     * @return number of items expired
+     */
+    int advance() {
+        long now = (clock.getAsLong() - startMillis) / tickMillis;
+        int expired = 0;
+        while (tick <= now) {
+            if (pending == 0) {
+                // Nothing to expire; skip the idle ticks
+                tick = now + 1;
+                break;
+            }
+            Timeout<T> timeout = slots[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadline <= tick) {
+                    unlink(timeout);
+                    onExpiry.accept(timeout.item);
+                    expired++;
+                }
+                timeout = next;
+            }
+            tick++;
+        }
+        return expired;
+    }
+    
+    /**
+     * @return timeouts scheduled and not yet expired or cancelled
+     */
+    int getPending() {
+        return pending;
+    }
+    
+    /**
+     * @return time covered by one revolution of the wheel
+     */
+    long getSpanMillis() {
+        return tickMillis * slots.length;
+    }
+    
+    private void link(Timeout<T> timeout) {
+        int slot = (int) (timeout.deadline & mask);
+        timeout.slot = slot;
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = timeout;
+        }
+        slots[slot] = timeout;
+        pending++;
+    }
+    
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.next = null;
+        timeout.previous = null;
+        timeout.slot = -1;
+        pending--;
+    }
+    
+    /**
+     * A scheduled item, linked into its slot's list
+     */
+    static final class Timeout<T> {
+        final T item;
+        final long deadline;
+        int slot;
+        Timeout<T> next;
+        Timeout<T> previous;
+        
+        Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+            this.slot = -1;
+        }
+    }
+}
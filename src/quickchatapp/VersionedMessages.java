@@ -0,0 +1,183 @@
+package quickchatapp;
+
+/**
+ * VersionedMessages.java
+ * Append-only, multi-version copy of a manager's messages for readers on
+ * other threads
+ * Messages are appended to fixed-size chunks that are never moved, and a
+ * delete only stamps the version it happened in. Every change publishes
+ * a new immutable Version (chunk directory, length, number) through one
+ * volatile field, so a snapshot is a single read and sees exactly the
+ * messages that were live at its version while the writer carries on
+ * Once deleted entries make up half of the log it is compacted into new
+ * chunks; snapshots taken before that keep the old chunks, which the GC
+ * reclaims when the last of them is dropped
+ * Each version also carries the longest sent or stored message as the
+ * owner's length index gave it at that version, so readers get it in O(1)
+ * One writer at a time (the owning MessageManager); any number of readers
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+class VersionedMessages {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Delete stamp of an entry that is still live
+    private static final long LIVE = 0;
+    
+    private volatile Version current;
+    // Writer-side state; readers only see it through a published Version
+    private Message[][] chunks;
+    private AtomicLongArray[] removed;
+    private int length;
+    private int live;
+    private long version;
+    // Where each message sits in the log, by identity; a Message can be
+    // held by other managers too, so nothing about this log is kept on it
+    private final Map<Message, Integer> positions;
+    // Owner's longest sent or stored message, read on every change; may be null
+    private final Supplier<Message> longest;
+    
+    // Constructors
+    VersionedMessages() {
+        this(null);
+    }
+    
+    /**
+     * @param longest gives the longest sent or stored message held, once
+     *        the owner's indexes include the change being published; null
+     *        to leave it out of versions
+     */
+    VersionedMessages(Supplier<Message> longest) {
+        this.chunks = new Message[4][];
+        this.removed = new AtomicLongArray[4];
+        this.positions = new IdentityHashMap<>();
+        this.longest = longest;
+        this.current = new Version(0, chunks, removed, 0, 0, longest != null, null);
+    }
+    
+    /**
+     * @return the latest version; O(1) and never blocks
+     */
+    MessageSnapshot snapshot() {
+        return new MessageSnapshot(current);
+    }
+    
+    /**
+     * Appends messages as one new version
+     */
+    void append(Iterable<Message> messages) {
+        long next = version + 1;
+        for (Message message : messages) {
+            int chunk = length >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                // Readers keep the old directory; the chunks themselves are shared
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                removed = Arrays.copyOf(removed, removed.length * 2);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Message[CHUNK_SIZE];
+                removed[chunk] = new AtomicLongArray(CHUNK_SIZE);
+            }
+            chunks[chunk][length & CHUNK_MASK] = message;
+            positions.put(message, length);
+            length++;
+            live++;
+        }
+        publish(next);
+    }
+    
+    /**
+     * Stamps messages as deleted in one new version
+     */
+    void remove(Iterable<Message> messages) {
+        long next = version + 1;
+        for (Message message : messages) {
+            Integer position = positions.remove(message);
+            if (position != null && removed[position >>> CHUNK_BITS].get(position & CHUNK_MASK) == LIVE) {
+                removed[position >>> CHUNK_BITS].set(position & CHUNK_MASK, next);
+                live--;
+            }
+        }
+        publish(next);
+        if (length - live > CHUNK_SIZE && length - live > live) {
+            compact();
+        }
+    }
+    
+    /**
+     * @return entries in the log, deleted ones included
+     */
+    int getLength() {
+        return length;
+    }
+    
+    /**
+     * Copies the live entries into fresh chunks; the old ones are left
+     * untouched for the snapshots still reading them
+     */
+    private void compact() {
+        List<Message> kept = new ArrayList<>(live);
+        for (int i = 0; i < length; i++) {
+            if (removed[i >>> CHUNK_BITS].get(i & CHUNK_MASK) == LIVE) {
+                kept.add(chunks[i >>> CHUNK_BITS][i & CHUNK_MASK]);
+            }
+        }
+        int needed = (live + CHUNK_MASK) >>> CHUNK_BITS;
+        int size = Math.max(4, Integer.highestOneBit(Math.max(1, needed)) * 2);
+        chunks = new Message[size][];
+        removed = new AtomicLongArray[size];
+        length = 0;
+        live = 0;
+        positions.clear();
+        append(kept);
+    }
+    
+    private void publish(long next) {
+        version = next;
+        current = new Version(next, chunks, removed, length, live,
+                longest != null, longest != null ? longest.get() : null);
+    }
+    
+    /**
+     * One published state of the log; immutable apart from delete stamps
+     * newer than its own number, which its readers ignore
+     */
+    static final class Version {
+        final long number;
+        final Message[][] chunks;
+        final AtomicLongArray[] removed;
+        final int length;
+        final int live;
+        // Longest sent or stored message at this version, if knowsLongest
+        final boolean knowsLongest;
+        final Message longest;
+        
+        Version(long number, Message[][] chunks, AtomicLongArray[] removed, int length, int live,
+                boolean knowsLongest, Message longest) {
+            this.number = number;
+            this.chunks = chunks;
+            this.removed = removed;
+            this.length = length;
+            this.live = live;
+            this.knowsLongest = knowsLongest;
+            this.longest = longest;
+        }
+        
+        Message get(int position) {
+            return chunks[position >>> CHUNK_BITS][position & CHUNK_MASK];
+        }
+        
+        boolean isLive(int position) {
+            long stamp = removed[position >>> CHUNK_BITS].get(position & CHUNK_MASK);
+            return stamp == LIVE || stamp > number;
+        }
+    }
+}
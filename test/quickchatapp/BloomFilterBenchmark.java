@@ -0,0 +1,63 @@
+package quickchatapp;
+
+/**
+ * BloomFilterBenchmark.java
+ * Measures memory and accuracy of BloomFilter at several target error rates
+ * and the cost of duplicate checks in MessageManager with and without it
+ * Run with: java quickchatapp.BloomFilterBenchmark [entries]
+ */
+
+public class BloomFilterBenchmark {
+    
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        System.out.println("Target FPR   Measured FPR   Bytes/entry   Stages   Add ns   Lookup ns");
+        for (double rate : new double[] {0.1, 0.01, 0.001, 0.0001}) {
+            BloomFilter filter = new BloomFilter(entries / 8, rate);
+            long start = System.nanoTime();
+            for (int i = 0; i < entries; i++) {
+                filter.add("+2771" + i + "\u0000message " + i);
+            }
+            long addNanos = System.nanoTime() - start;
+            
+            int probes = entries;
+            int falsePositives = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < probes; i++) {
+                if (filter.mightContain("+2783" + i + "\u0000other " + i)) {
+                    falsePositives++;
+                }
+            }
+            long lookupNanos = System.nanoTime() - start;
+            
+            System.out.printf("%-12s %-14.5f %-13.2f %-8d %-8.1f %.1f%n",
+                    rate, (double) falsePositives / probes,
+                    (double) filter.getSizeInBytes() / entries, filter.getStageCount(),
+                    (double) addNanos / entries, (double) lookupNanos / probes);
+        }
+        
+        int messages = Math.min(entries, 50_000);
+        MessageManager manager = new MessageManager();
+        for (int i = 0; i < messages; i++) {
+            Message msg = new Message();
+            msg.setRecipient("+2771" + (1_000_000 + i));
+            msg.setMessageContent("message " + i);
+            msg.setSendStatus("Sent");
+            manager.addMessage(msg);
+        }
+        Message fresh = new Message();
+        fresh.setSendStatus("Sent");
+        long start = System.nanoTime();
+        int duplicates = 0;
+        for (int i = 0; i < messages; i++) {
+            fresh.setRecipient("+2783" + (1_000_000 + i));
+            fresh.setMessageContent("new message " + i);
+            if (manager.isDuplicate(fresh)) {
+                duplicates++;
+            }
+        }
+        System.out.printf("%nDuplicate check of %,d new messages against %,d stored: %.1f ns each (%d flagged)%n",
+                messages, messages, (double) (System.nanoTime() - start) / messages, duplicates);
+    }
+}
@@ -0,0 +1,82 @@
+package quickchatapp;
+
+/**
+ * BloomFilterTest.java
+ * Unit tests for BloomFilter class and duplicate detection in MessageManager
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest {
+    
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("value-" + i);
+        }
+        
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain("value-" + i), "Added value must always be found");
+        }
+        assertEquals(1_000, filter.getCount());
+        assertTrue(filter.getStageCount() > 1, "Filter should have grown past its first stage");
+    }
+    
+    @Test
+    public void testFalsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("value-" + i);
+        }
+        
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        
+        assertTrue(falsePositives < 2_000, "False positive rate too high: " + falsePositives);
+    }
+    
+    @Test
+    public void testDuplicateMessageRejected() {
+        MessageManager manager = new MessageManager();
+        Message first = new Message();
+        first.setRecipient("+27718693002");
+        first.setMessageContent("Hi Mike, can you join us for dinner tonight");
+        first.setSendStatus("Sent");
+        Message retry = new Message();
+        retry.setRecipient("+27718693002");
+        retry.setMessageContent("Hi Mike, can you join us for dinner tonight");
+        retry.setSendStatus("Sent");
+        Message other = new Message();
+        other.setRecipient("+27838884567");
+        other.setMessageContent("Hi Mike, can you join us for dinner tonight");
+        other.setSendStatus("Sent");
+        
+        assertTrue(manager.addMessageIfAbsent(first));
+        assertFalse(manager.addMessageIfAbsent(retry), "Retry should be detected as a duplicate");
+        assertTrue(manager.addMessageIfAbsent(other), "Same content to another recipient is not a duplicate");
+        assertEquals(2, manager.getMessageCount());
+    }
+    
+    @Test
+    public void testDeletedMessageCanBeSentAgain() {
+        MessageManager manager = new MessageManager();
+        Message msg = new Message();
+        msg.setRecipient("+27718693002");
+        msg.setMessageContent("Where are you?");
+        msg.createMessageHash();
+        msg.setSendStatus("Sent");
+        manager.addMessage(msg);
+        
+        manager.deleteMessageByHash(msg.getMessageHash());
+        
+        assertFalse(manager.isDuplicate(msg));
+    }
+}
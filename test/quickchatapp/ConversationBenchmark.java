@@ -0,0 +1,86 @@
+package quickchatapp;
+
+/**
+ * ConversationBenchmark.java
+ * Time to show one recipient's latest messages and page back through
+ * them as the store grows: searchByRecipient against a conversation
+ * thread, plus the time to open one thread from disk
+ * Run with: java quickchatapp.ConversationBenchmark [recipients] [page size]
+ */
+
+import static quickchatapp.TestMessages.message;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConversationBenchmark {
+    private static final int ROUNDS = 200;
+    
+    public static void main(String[] args) throws IOException {
+        int recipients = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        
+        System.out.println(recipients + " recipients, pages of " + pageSize);
+        System.out.println("Messages   Search us  Latest us  Before us  Open thread us");
+        for (int total : new int[] {10_000, 100_000, 1_000_000}) {
+            run(total, recipients, pageSize);
+        }
+    }
+    
+    private static void run(int total, int recipients, int pageSize) throws IOException {
+        Path dir = Files.createTempDirectory("conversations");
+        MessageManager manager = new MessageManager();
+        manager.setConversations(new ConversationStore(dir));
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            batch.add(message(recipient(i % recipients), "Message number " + i, "Sent"));
+            if (batch.size() == 10_000) {
+                manager.addMessages(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        manager.addMessages(batch);
+        
+        String recipient = recipient(recipients / 2);
+        ConversationThread thread = manager.getConversation(recipient);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += manager.searchByRecipient(recipient).size();
+        }
+        long search = (System.nanoTime() - start) / ROUNDS;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += thread.latest(pageSize).getMessages().size();
+        }
+        long latest = (System.nanoTime() - start) / ROUNDS;
+        
+        ConversationThread.Page page = thread.latest(pageSize);
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            if (!page.hasOlder()) {
+                page = thread.latest(pageSize);
+            }
+            page = thread.before(page.getFirstSequence(), pageSize);
+            sink += page.getMessages().size();
+        }
+        long before = (System.nanoTime() - start) / ROUNDS;
+        
+        start = System.nanoTime();
+        sink += new ConversationStore(dir).thread(recipient).size();
+        long open = System.nanoTime() - start;
+        
+        System.out.printf("%-10d %-10d %-10d %-10d %d%n", total, search / 1_000, latest / 1_000,
+            before / 1_000, open / 1_000);
+        if (sink == 0) {
+            System.out.println();
+        }
+    }
+    
+    private static String recipient(int n) {
+        return String.format("+2771%07d", n);
+    }
+}
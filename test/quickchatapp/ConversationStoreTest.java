@@ -0,0 +1,147 @@
+package quickchatapp;
+
+/**
+ * ConversationStoreTest.java
+ * Unit tests for ConversationStore and ConversationThread classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ConversationStoreTest {
+    
+    @Test
+    public void testPagingWithCursors() {
+        ConversationThread thread = new ConversationThread("+27718693002");
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Message msg = message("+27718693002", "Message " + i, "Sent");
+            messages.add(msg);
+            assertEquals(i + 1, thread.append(msg));
+        }
+        assertEquals(0, thread.append(messages.get(0)));
+        
+        ConversationThread.Page latest = thread.latest(3);
+        assertEquals(contents(messages.subList(297, 300)), contents(latest.getMessages()));
+        assertTrue(latest.hasOlder());
+        assertFalse(latest.hasNewer());
+        
+        // Deleted messages are skipped and their numbers are not reused
+        thread.remove(messages.get(295));
+        thread.remove(messages.get(296));
+        ConversationThread.Page older = thread.before(latest.getFirstSequence(), 3);
+        assertEquals(List.of("Message 292", "Message 293", "Message 294"), contents(older.getMessages()));
+        assertEquals(293, older.getFirstSequence());
+        assertEquals(295, older.getLastSequence());
+        assertTrue(older.hasNewer());
+        
+        ConversationThread.Page newer = thread.after(older.getLastSequence(), 10);
+        assertEquals(contents(messages.subList(297, 300)), contents(newer.getMessages()));
+        assertNull(thread.get(296));
+        assertEquals(298, thread.size());
+        
+        ConversationThread.Page first = thread.before(3, 10);
+        assertEquals(List.of("Message 0", "Message 1"), contents(first.getMessages()));
+        assertFalse(first.hasOlder());
+        assertTrue(thread.after(300, 10).getMessages().isEmpty());
+    }
+    
+    @Test
+    public void testThreadsPersistPerRecipient() throws IOException {
+        Path dir = Files.createTempDirectory("conversations");
+        ConversationStore store = new ConversationStore(dir);
+        Message first = message("+27718693002", "Hi Mike, can you join us for dinner tonight", "Sent");
+        Message second = message("+27718693002", "It is dinner time!", "Stored");
+        Message third = message("+27718693002", "Where are you?", "Sent");
+        Message other = message("+27838884567", "Ok, I am leaving without you.", "Sent");
+        store.append(first);
+        assertEquals(3, store.appendAll(List.of(second, other, third)));
+        assertEquals(1, store.removeAll(List.of(second)));
+        // A line cut short by a crash is skipped
+        Files.write(store.fileOf("+27718693002"), "{\"sequence\": 4, \"recip".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        
+        ConversationStore reopened = new ConversationStore(dir);
+        ConversationThread thread = reopened.thread("+27718693002");
+        assertEquals(1, reopened.getLoadedThreadCount());
+        assertEquals(List.of("Hi Mike, can you join us for dinner tonight", "Where are you?"),
+            contents(thread.latest(10).getMessages()));
+        assertEquals(3, thread.getLastSequence());
+        assertEquals(first.getMessageHash(), thread.get(1).getMessageHash());
+        assertEquals("Sent", thread.get(3).getSendStatus());
+        assertNull(thread.get(2));
+        assertEquals(1, reopened.thread("+27838884567").size());
+    }
+    
+    @Test
+    public void testManagerKeepsConversationsInOrder() throws IOException {
+        Path dir = Files.createTempDirectory("conversations");
+        MessageManager manager = new MessageManager();
+        manager.setConversations(new ConversationStore(dir));
+        Message first = message("+27718693002", "Did you get the cake?", "Sent");
+        Message dropped = message("+27718693002", "Never mind", "Disregarded");
+        Message second = message("+27718693002", "It is dinner time!", "Sent");
+        Message third = message("+27718693002", "Where are you?", "Sent");
+        manager.addMessage(first);
+        manager.addMessages(List.of(dropped, second, message("+27838884567", "Yohoooo, I am at your gate.", "Sent")));
+        manager.addMessage(third);
+        manager.deleteMessageByHash(second.getMessageHash());
+        manager.deleteByHashes(List.of(third.getMessageHash()));
+        manager.addMessage(message("+27718693002", "See you soon", "Sent"));
+        
+        ConversationThread thread = manager.getConversation("+27718693002");
+        assertEquals(List.of("Did you get the cake?", "See you soon"), contents(thread.latest(10).getMessages()));
+        assertEquals(4, thread.getLastSequence());
+        assertEquals(contents(thread.latest(10).getMessages()),
+            contents(new ConversationStore(dir).thread("+27718693002").latest(10).getMessages()));
+        assertNull(new MessageManager().getConversation("+27718693002"));
+    }
+    
+    @Test
+    public void testThreadsCatchUpOnHeldMessages() throws IOException {
+        Path dir = Files.createTempDirectory("conversations");
+        Message stored = message("+27718693002", "It is dinner time!", "Stored");
+        // An earlier run threaded one message and stored another before threads existed
+        new ConversationStore(dir).append(message("+27718693002", "Sent last time", "Sent"));
+        
+        MessageManager manager = new MessageManager();
+        manager.addMessages(List.of(stored, message("+27718693002", "Never mind", "Disregarded"),
+            message("+27838884567", "Ok, I am leaving without you.", "Stored")));
+        ConversationStore store = new ConversationStore(dir);
+        manager.setConversations(store);
+        manager.addMessage(message("+27718693002", "Where are you?", "Sent"));
+        
+        List<String> expected = List.of("Sent last time", "It is dinner time!", "Where are you?");
+        assertEquals(expected, contents(manager.getConversation("+27718693002").latest(10).getMessages()));
+        // Only the thread that was asked for is read
+        assertEquals(1, store.getLoadedThreadCount());
+        
+        // The next run loads the same messages; nothing is threaded twice
+        MessageManager next = new MessageManager();
+        next.addMessage(stored);
+        next.setConversations(new ConversationStore(dir));
+        assertEquals(expected, contents(next.getConversation("+27718693002").latest(10).getMessages()));
+        next.deleteMessageByHash(stored.getMessageHash());
+        assertEquals(List.of("Sent last time", "Where are you?"),
+            contents(new ConversationStore(dir).thread("+27718693002").latest(10).getMessages()));
+    }
+    
+    private static List<String> contents(List<Message> messages) {
+        List<String> contents = new ArrayList<>();
+        for (Message msg : messages) {
+            contents.add(msg.getMessageContent());
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,154 @@
+package quickchatapp;
+
+/**
+ * DisregardedMessageBufferTest.java
+ * Unit tests for DisregardedMessageBuffer and TimingWheel classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class DisregardedMessageBufferTest {
+    
+    @Test
+    public void testWheelExpiresOnTimeAndCancels() {
+        AtomicLong now = new AtomicLong(1_000);
+        List<String> expired = new ArrayList<>();
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, now::get, expired::add);
+        
+        wheel.schedule("soon", 25);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 25);
+        // Further away than one revolution (80 ms), so it shares a slot with earlier ticks
+        wheel.schedule("later", 205);
+        wheel.cancel(cancelled);
+        wheel.cancel(cancelled);
+        assertEquals(2, wheel.getPending());
+        
+        now.addAndGet(20);
+        assertEquals(0, wheel.advance());
+        now.addAndGet(10);
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("soon"), expired);
+        
+        now.addAndGet(100);
+        assertEquals(0, wheel.advance());
+        now.addAndGet(80);
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("soon", "later"), expired);
+        assertEquals(0, wheel.getPending());
+    }
+    
+    @Test
+    public void testBufferUndoWindowExpiryAndCapacity() {
+        AtomicLong now = new AtomicLong(0);
+        DisregardedMessageBuffer buffer = new DisregardedMessageBuffer(2,
+            Duration.ofMinutes(10), Duration.ofSeconds(30), now::get);
+        Message first = message("+27718693002", "First draft", "Disregarded");
+        Message second = message("+27838884567", "Second draft", "Disregarded");
+        Message third = message("+27838968976", "Third draft", "Disregarded");
+        
+        buffer.add(first);
+        buffer.add(second);
+        now.addAndGet(31_000);
+        assertFalse(buffer.canUndo(first.getMessageHash()));
+        assertNull(buffer.undo(first.getMessageHash()));
+        
+        // Full, so the oldest makes room
+        buffer.add(third);
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.getEvictedCount());
+        assertNull(buffer.get(first.getMessageHash()));
+        assertSame(third, buffer.undo(third.getMessageHash()));
+        assertEquals(List.of(second), buffer.getMessages());
+        
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        assertEquals(0, buffer.size());
+        assertEquals(1, buffer.getExpiredCount());
+    }
+    
+    @Test
+    public void testManagerKeepsDisregardedMessagesApart() {
+        AtomicLong now = new AtomicLong(0);
+        MessageManager manager = new MessageManager();
+        manager.setDisregardedBuffer(new DisregardedMessageBuffer(10,
+            Duration.ofMinutes(10), Duration.ofSeconds(30), now::get));
+        Message sent = message("+27718693002", "Did you get the cake?", "Sent");
+        Message dropped = message("+27838884567", "Where are you? You are late!", "Disregarded");
+        Message deleted = message("+27838968976", "Ok, I am leaving without you.", "Disregarded");
+        manager.addMessage(sent);
+        manager.addMessages(List.of(dropped, deleted));
+        
+        assertEquals(List.of(sent), manager.getAllMessages());
+        assertEquals(2, manager.countByStatus("Disregarded"));
+        assertEquals(List.of("Where are you? You are late!", "Ok, I am leaving without you."),
+            manager.getDisregardedMessages());
+        assertTrue(manager.searchByRecipient("+27838884567").isEmpty());
+        assertEquals("Message \"Ok, I am leaving without you.\" successfully deleted.",
+            manager.deleteMessageByHash(deleted.getMessageHash()));
+        
+        assertEquals("Message \"Where are you? You are late!\" successfully sent.",
+            manager.undoDisregard(dropped.getMessageHash()));
+        assertEquals("Sent", dropped.getSendStatus());
+        assertEquals(2, manager.countByStatus("Sent"));
+        assertEquals(0, manager.countByStatus("Disregarded"));
+        assertEquals("Message hash not found.", manager.undoDisregard(dropped.getMessageHash()));
+        
+        Message late = message("+27838884567", "Never mind", "Disregarded");
+        manager.addMessage(late);
+        now.addAndGet(60_000);
+        assertEquals("Undo window has passed.", manager.undoDisregard(late.getMessageHash()));
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        manager.addMessage(message("+27718693002", "Still there?", "Sent"));
+        assertEquals(0, manager.countByStatus("Disregarded"));
+        assertEquals(3, manager.getMessageCount());
+    }
+    
+    @Test
+    public void testBufferedMessagesStayInEventsAndAnalytics() {
+        AtomicLong now = new AtomicLong(0);
+        MessageManager manager = new MessageManager();
+        manager.setDisregardedBuffer(new DisregardedMessageBuffer(2,
+            Duration.ofMinutes(10), Duration.ofSeconds(30), now::get));
+        manager.setIncrementalAnalytics(true);
+        List<String> seen = new ArrayList<>();
+        MessageEventBuffer.Subscription subscription = manager.openEventStream(64).subscribe(
+                e -> seen.add(e.getType() + " " + e.getMessage().getMessageContent()),
+                MessageEventBuffer.OverflowPolicy.BLOCK);
+        Message undone = message("+27718693002", "Undone", "Disregarded");
+        Message deleted = message("+27718693002", "Deleted", "Disregarded");
+        Message evicted = message("+27838884567", "Evicted", "Disregarded");
+        Message expired = message("+27838884567", "Expired", "Disregarded");
+        
+        manager.addMessages(List.of(undone, deleted));
+        assertEquals(2, manager.getAnalytics().getStatusCount("Disregarded"));
+        assertEquals(2, manager.computeAnalytics().getStatusCount("Disregarded"));
+        assertEquals(2, manager.getSketches().estimateMessagesTo("+27718693002"));
+        manager.undoDisregard(undone.getMessageHash());
+        manager.deleteMessageByHash(deleted.getMessageHash());
+        manager.addMessage(evicted);
+        manager.addMessage(expired);
+        manager.addMessage(message("+27838968976", "Pushes out the oldest", "Disregarded"));
+        now.addAndGet(Duration.ofMinutes(11).toMillis());
+        
+        MessageAnalytics analytics = manager.getAnalytics();
+        assertEquals(0, analytics.getStatusCount("Disregarded"));
+        assertEquals(1, analytics.getStatusCount("Sent"));
+        subscription.poll();
+        assertEquals(List.of("ADDED Undone", "ADDED Deleted", "DELETED Undone", "ADDED Undone",
+            "DELETED Deleted", "ADDED Evicted", "ADDED Expired", "DELETED Evicted",
+            "ADDED Pushes out the oldest"), seen.subList(0, 9));
+        // Messages expiring on the same tick may come out in either order
+        assertEquals(Set.of("DELETED Expired", "DELETED Pushes out the oldest"),
+            Set.copyOf(seen.subList(9, seen.size())));
+    }
+}
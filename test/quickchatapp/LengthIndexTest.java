@@ -0,0 +1,104 @@
+package quickchatapp;
+
+/**
+ * LengthIndexTest.java
+ * Unit tests for LengthIndex class and the longest-message searches
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class LengthIndexTest {
+    
+    @Test
+    public void testTopKLongestFirstWithTiesInOrderAdded() {
+        MessageManager manager = new MessageManager();
+        Message shortest = message("+27718693002", "Hi", "Sent");
+        Message tieFirst = message("+27718693002", "Twelve chars", "Sent");
+        Message longest = message("+27838884567", "The longest message of them all", "Stored");
+        Message tieSecond = message("+27838884567", "Also twelve.", "Sent");
+        manager.addMessages(List.of(shortest, tieFirst, longest, tieSecond));
+        
+        assertEquals(List.of(longest, tieFirst, tieSecond), manager.findLongestMessages(3));
+        assertEquals(List.of(longest, tieFirst, tieSecond, shortest), manager.findLongestMessages(10));
+        assertEquals(List.of(), manager.findLongestMessages(0));
+        assertEquals("The longest message of them all", manager.findLongestMessage());
+    }
+    
+    @Test
+    public void testLongestRecoversAfterDelete() {
+        MessageManager manager = new MessageManager();
+        Message first = message("+27718693002", "Hi Mike, can you join us for dinner tonight", "Sent");
+        Message second = message("+27838884567", "Where are you? You are late!", "Stored");
+        manager.addMessage(first);
+        manager.addMessage(second);
+        
+        MessageSnapshot before = manager.snapshot();
+        manager.deleteMessageByHash(first.getMessageHash());
+        assertEquals("Where are you? You are late!", manager.findLongestMessage());
+        // An earlier snapshot keeps the answer it was taken with
+        assertEquals("Hi Mike, can you join us for dinner tonight", before.findLongestMessage());
+        manager.deleteMessageByHash(second.getMessageHash());
+        assertEquals("No messages available.", manager.findLongestMessage());
+        assertEquals(List.of(), manager.findLongestMessages(5));
+    }
+    
+    @Test
+    public void testNegativeCountRejected() {
+        MessageManager manager = new MessageManager();
+        manager.addMessage(message("+27718693002", "Hi", "Sent"));
+        
+        assertThrows(IllegalArgumentException.class, () -> manager.findLongestMessages(-1));
+        // Any length below zero already matches every message
+        assertEquals(1, manager.findMessagesLongerThan(-5).size());
+    }
+    
+    @Test
+    public void testLongerThanAndStatusFilter() {
+        MessageManager manager = new MessageManager();
+        Message sent = message("+27718693002", "Sent and twenty chars", "Sent");
+        Message stored = message("+27838884567", "Stored, also 21 chars", "Stored");
+        Message disregarded = message("+27838884567", "Disregarded and the longest of all", "Disregarded");
+        Message brief = message("+27718693002", "Short", "Sent");
+        manager.addMessages(List.of(sent, stored, disregarded, brief));
+        
+        assertEquals(List.of(disregarded, sent, stored), manager.findMessagesLongerThan(5));
+        assertEquals(List.of(disregarded), manager.findMessagesLongerThan(21));
+        assertEquals(List.of(sent, brief), manager.findMessagesLongerThan(0, "Sent"));
+        // Ties across statuses come back in the order the messages were added
+        assertEquals(List.of(sent, stored), manager.findLongestMessages(2, "Stored", "Sent"));
+        assertEquals(List.of(), manager.findLongestMessages(2, "Pending"));
+        // Disregarded messages are never the longest sent message
+        assertEquals("Sent and twenty chars", manager.findLongestMessage());
+    }
+    
+    @Test
+    public void testMatchesAScan() {
+        MessageManager manager = new MessageManager();
+        Random random = new Random(11);
+        String[] statuses = {"Sent", "Stored", "Disregarded"};
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String content = "x".repeat(1 + random.nextInt(250));
+            messages.add(message("+2771" + (10_000_000 + i), content, statuses[random.nextInt(3)]));
+        }
+        manager.addMessages(messages);
+        for (int i = 0; i < 1_000; i++) {
+            manager.deleteMessageByHash(messages.get(random.nextInt(messages.size())).getMessageHash());
+            assertEquals(MessageManager.longestOf(manager.getAllMessages()), manager.findLongestMessage());
+        }
+        
+        List<Message> top = manager.findLongestMessages(50, "Sent");
+        assertEquals(50, top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getMessageContent().length() >= top.get(i).getMessageContent().length());
+            assertEquals("Sent", top.get(i).getSendStatus());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package quickchatapp;
+
+/**
+ * LoginThrottleBenchmark.java
+ * Contention benchmark for LoginThrottle.tryAcquire across many users
+ * Run with: java quickchatapp.LoginThrottleBenchmark [threads] [users] [seconds]
+ */
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoginThrottleBenchmark {
+    
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        String[] usernames = new String[users];
+        for (int i = 0; i < users; i++) {
+            usernames[i] = "u_" + i;
+        }
+        
+        LoginThrottle throttle = new LoginThrottle(5, 1_000);
+        LongAdder allowed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ok = 0;
+                long no = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1_000; i++) {
+                        if (throttle.tryAcquire(usernames[random.nextInt(users)])) {
+                            ok++;
+                        } else {
+                            no++;
+                        }
+                    }
+                }
+                allowed.add(ok);
+                rejected.add(no);
+            });
+            workers[t].start();
+        }
+        
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        long total = allowed.sum() + rejected.sum();
+        System.out.println("Threads: " + threads + ", users: " + users);
+        System.out.println("Attempts: " + total + " (allowed " + allowed.sum() + ", rejected " + rejected.sum() + ")");
+        System.out.printf("Throughput: %.0f attempts/s%n", total * 1e9 / elapsed);
+        System.out.printf("Average per attempt per thread: %.1f ns%n", (double) elapsed * threads / total);
+        System.out.println("Tracked users: " + throttle.getTrackedUserCount());
+    }
+}
@@ -0,0 +1,91 @@
+package quickchatapp;
+
+/**
+ * LoginThrottleTest.java
+ * Unit tests for LoginThrottle class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class LoginThrottleTest {
+    
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    
+    private LoginThrottle throttle(int maxAttempts, long refillMillis) {
+        return new LoginThrottle(maxAttempts, refillMillis, now::get);
+    }
+    
+    @Test
+    public void testAttemptsRejectedAfterBurst() {
+        LoginThrottle throttle = throttle(3, 1_000);
+        
+        assertTrue(throttle.tryAcquire("kyl_1"));
+        assertTrue(throttle.tryAcquire("kyl_1"));
+        assertTrue(throttle.tryAcquire("kyl_1"));
+        assertFalse(throttle.tryAcquire("kyl_1"), "Fourth attempt should be throttled");
+        assertTrue(throttle.isThrottled("kyl_1"));
+    }
+    
+    @Test
+    public void testUsersThrottledIndependently() {
+        LoginThrottle throttle = throttle(1, 1_000);
+        
+        assertTrue(throttle.tryAcquire("kyl_1"));
+        assertFalse(throttle.tryAcquire("kyl_1"));
+        assertTrue(throttle.tryAcquire("bob_2"));
+    }
+    
+    @Test
+    public void testAttemptRestoredAfterRefill() {
+        LoginThrottle throttle = throttle(2, 1_000);
+        throttle.tryAcquire("kyl_1");
+        throttle.tryAcquire("kyl_1");
+        assertFalse(throttle.tryAcquire("kyl_1"));
+        
+        now.addAndGet(1_000_000_000L);
+        
+        assertTrue(throttle.tryAcquire("kyl_1"));
+        assertFalse(throttle.tryAcquire("kyl_1"));
+    }
+    
+    @Test
+    public void testThrottledLoginSkipsPasswordCheck() {
+        LoginThrottle throttle = throttle(2, 1_000);
+        Login login = new Login();
+        login.setUsername("kyl_1");
+        login.setPassword("Ch&&sec@ke99!");
+        
+        assertFalse(throttle.loginUser(login, "kyl_1", "wrongpass"));
+        assertFalse(throttle.loginUser(login, "kyl_1", "wrongpass"));
+        assertFalse(throttle.loginUser(login, "kyl_1", "Ch&&sec@ke99!"), "Correct password should still be rejected while throttled");
+    }
+    
+    @Test
+    public void testSuccessfulLoginResetsBucket() {
+        LoginThrottle throttle = throttle(2, 1_000);
+        Login login = new Login();
+        login.setUsername("kyl_1");
+        login.setPassword("Ch&&sec@ke99!");
+        
+        assertFalse(throttle.loginUser(login, "kyl_1", "wrongpass"));
+        assertTrue(throttle.loginUser(login, "kyl_1", "Ch&&sec@ke99!"));
+        assertEquals(0, throttle.getTrackedUserCount());
+    }
+    
+    @Test
+    public void testIdleBucketsPurged() {
+        LoginThrottle throttle = throttle(3, 1_000);
+        throttle.tryAcquire("kyl_1");
+        throttle.tryAcquire("bob_2");
+        assertEquals(2, throttle.getTrackedUserCount());
+        
+        now.addAndGet(2_000_000_000L);
+        throttle.purgeIdle();
+        
+        assertEquals(0, throttle.getTrackedUserCount());
+    }
+}
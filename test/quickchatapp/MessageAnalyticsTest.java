@@ -0,0 +1,93 @@
+package quickchatapp;
+
+/**
+ * MessageAnalyticsTest.java
+ * Unit tests for MessageAnalytics class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static quickchatapp.TestMessages.message;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class MessageAnalyticsTest {
+    
+    private MessageManager sampleManager() {
+        MessageManager manager = new MessageManager();
+        manager.addMessage(message("+27834557896", "Did you get the cake?", "Sent"));
+        manager.addMessage(message("+27838884567", "Where are you? You are late! I have asked you to be on time.", "Stored"));
+        manager.addMessage(message("+27834484567", "Yohoooo, I am at your gate.", "Disregarded"));
+        manager.addMessage(message("+12025550123", "It is dinner time!", "Sent"));
+        manager.addMessage(message("+27838884567", "Ok, I am leaving without you.", "Stored"));
+        return manager;
+    }
+    
+    @Test
+    public void testCountryCodeExtraction() {
+        assertEquals("27", MessageAnalytics.countryCodeOf("+27834557896"));
+        assertEquals("1", MessageAnalytics.countryCodeOf("+12025550123"));
+        assertEquals("", MessageAnalytics.countryCodeOf("0834557896"));
+    }
+    
+    @Test
+    public void testComputedCounts() {
+        MessageAnalytics analytics = sampleManager().computeAnalytics();
+        
+        assertEquals(5, analytics.getTotalMessages());
+        assertEquals(2, analytics.getStatusCount("Sent"));
+        assertEquals(2, analytics.getStatusCount("Stored"));
+        assertEquals(1, analytics.getStatusCount("Disregarded"));
+        assertEquals(2, analytics.getRecipientCount("+27838884567"));
+        assertEquals(4, analytics.getCountryCodeCount("27"));
+        assertEquals(1, analytics.getCountryCodeCount("1"));
+        assertEquals(4, analytics.getDistinctRecipients());
+        assertEquals(3, analytics.getLengthHistogram()[MessageAnalytics.bucketOf(21)]);
+    }
+    
+    @Test
+    public void testTopRecipients() {
+        List<Map.Entry<String, Long>> top = sampleManager().computeAnalytics().getTopRecipients(2);
+        
+        assertEquals(2, top.size());
+        assertEquals("+27838884567", top.get(0).getKey());
+        assertEquals(2, (long) top.get(0).getValue());
+    }
+    
+    @Test
+    public void testIncrementalMatchesFullPass() {
+        MessageManager manager = sampleManager();
+        manager.setIncrementalAnalytics(true);
+        Message extra = message("+27834557896", "Another one", "Sent");
+        manager.addMessage(extra);
+        manager.deleteMessageByHash(manager.getAllMessages().get(1).getMessageHash());
+        
+        MessageAnalytics live = manager.getAnalytics();
+        MessageAnalytics full = manager.computeAnalytics();
+        
+        assertEquals(full.getTotalMessages(), live.getTotalMessages());
+        assertEquals(full.getStatusCounts(), live.getStatusCounts());
+        assertEquals(full.getRecipientCounts(), live.getRecipientCounts());
+        assertEquals(full.getCountryCodeCounts(), live.getCountryCodeCounts());
+        assertEquals(3, live.getStatusCount("Sent"));
+        
+        // Callers get a copy, so neither side sees the other's changes
+        live.add(extra);
+        manager.deleteMessageByHash(extra.getMessageHash());
+        assertEquals(4, live.getStatusCount("Sent"));
+        assertEquals(2, manager.getAnalytics().getStatusCount("Sent"));
+    }
+    
+    @Test
+    public void testShardedAnalyticsMerge() {
+        ShardedMessageManager sharded = new ShardedMessageManager(4);
+        for (Message msg : sampleManager().getAllMessages()) {
+            sharded.addMessage(msg);
+        }
+        
+        MessageAnalytics analytics = sharded.computeAnalytics();
+        
+        assertEquals(5, analytics.getTotalMessages());
+        assertEquals(2, analytics.getRecipientCount("+27838884567"));
+    }
+}
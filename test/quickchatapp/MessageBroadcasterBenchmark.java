@@ -0,0 +1,106 @@
+package quickchatapp;
+
+/**
+ * MessageBroadcasterBenchmark.java
+ * Compares sending one body to many recipients one message at a time
+ * against MessageBroadcaster: time, body copies held in memory and the
+ * bytes a Stored send would persist (computed, not written, so no files
+ * are touched)
+ * Run with: java quickchatapp.MessageBroadcasterBenchmark [max recipients]
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.json.JSONObject;
+
+public class MessageBroadcasterBenchmark {
+    private static final String BODY = ("Reminder: the quarterly all-hands moves to the main hall on Thursday at 10:00. "
+            + "Please bring your laptop, check the agenda in advance and send questions to the events team before Wednesday noon. ")
+            .repeat(2).substring(0, 240);
+    
+    public static void main(String[] args) {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        
+        // Warm-up pass so the JIT has compiled both paths
+        loop(recipients(10_000));
+        new MessageBroadcaster(new MessageManager()).broadcast(BODY, recipients(10_000), "Sent");
+        
+        System.out.println("Recipients   Path        ms        Body copies   Bytes persisted");
+        for (int count = 1_000; count <= max; count *= 10) {
+            List<String> recipients = recipients(count);
+            
+            long start = System.nanoTime();
+            MessageManager looped = loop(recipients);
+            long loopNanos = System.nanoTime() - start;
+            long loopBytes = 0;
+            for (Message msg : looped.getAllMessages()) {
+                loopBytes += msg.toJSON().toString().length();
+            }
+            print(count, "loop", loopNanos, bodyCopies(looped.getAllMessages()), loopBytes);
+            
+            start = System.nanoTime();
+            MessageManager broadcast = new MessageManager();
+            MessageBroadcaster.Result result = new MessageBroadcaster(broadcast).broadcast(BODY, recipients, "Sent");
+            long broadcastNanos = System.nanoTime() - start;
+            long broadcastBytes = BODY.length() + result.getBodyKey().length();
+            for (Message msg : result.getMessages()) {
+                JSONObject record = new JSONObject();
+                record.put("messageID", msg.getMessageID());
+                record.put("numMessagesSent", msg.getNumMessagesSent());
+                record.put("recipient", msg.getRecipient());
+                record.put("bodyRef", result.getBodyKey());
+                record.put("messageHash", msg.getMessageHash());
+                record.put("sendStatus", msg.getSendStatus());
+                broadcastBytes += record.toString().length();
+            }
+            print(count, "broadcast", broadcastNanos, bodyCopies(result.getMessages()), broadcastBytes);
+            if (broadcast.getMessageCount() != count) {
+                System.out.println("Unexpected message count " + broadcast.getMessageCount());
+            }
+        }
+    }
+    
+    /**
+     * The one-at-a-time path: every message gets its own copy of the body
+     */
+    private static MessageManager loop(List<String> recipients) {
+        MessageManager manager = new MessageManager();
+        for (String recipient : recipients) {
+            Message msg = new Message();
+            msg.setRecipient(recipient);
+            msg.setMessageContent(new String(BODY.toCharArray()));
+            if (msg.checkRecipientCell() == 0 && msg.checkMessageLength().equals("Message ready to send.")) {
+                msg.createMessageHash();
+                msg.setSendStatus("Sent");
+                manager.addMessage(msg);
+            }
+        }
+        return manager;
+    }
+    
+    private static List<String> recipients(int count) {
+        List<String> recipients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            recipients.add("+2771" + (10_000_000 + i));
+        }
+        return recipients;
+    }
+    
+    /**
+     * Counts distinct body String instances held by the messages
+     */
+    private static int bodyCopies(List<Message> messages) {
+        Set<String> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Message msg : messages) {
+            copies.add(msg.getMessageContent());
+        }
+        return copies.size();
+    }
+    
+    private static void print(int count, String path, long nanos, int bodyCopies, long persistedBytes) {
+        System.out.printf("%-12d %-11s %-9.1f %-13d %,d%n", count, path, nanos / 1e6, bodyCopies, persistedBytes);
+    }
+}
@@ -0,0 +1,83 @@
+package quickchatapp;
+
+/**
+ * MessageBroadcasterTest.java
+ * Unit tests for MessageBroadcaster and MessageBodyStore classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class MessageBroadcasterTest {
+    
+    @Test
+    public void testBroadcastSharesOneBody() {
+        MessageManager manager = new MessageManager();
+        MessageBroadcaster broadcaster = new MessageBroadcaster(manager);
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            recipients.add("+2771" + (10_000_000 + i));
+        }
+        recipients.add("0712345678");
+        recipients.add(recipients.get(5));
+        
+        MessageBroadcaster.Result result = broadcaster.broadcast("Office closed on Friday, see you Monday!", recipients, "Sent");
+        
+        assertEquals(1_000, result.getMessages().size());
+        assertEquals(1_000, manager.getMessageCount());
+        assertEquals(2, result.getRejected().size());
+        assertEquals("Duplicate recipient.", result.getRejected().get(recipients.get(5)));
+        String body = result.getMessages().get(0).getMessageContent();
+        for (Message msg : result.getMessages()) {
+            assertSame(body, msg.getMessageContent());
+            assertEquals(msg.getMessageID().substring(0, 2) + ":" + msg.getNumMessagesSent() + ":OFFICE:MONDAY",
+                    msg.getMessageHash());
+            assertEquals("Sent", msg.getSendStatus());
+        }
+        assertEquals(result.getMessages().get(0).getNumMessagesSent() + 999,
+                result.getMessages().get(999).getNumMessagesSent());
+    }
+    
+    @Test
+    public void testOverlongBodyRejectsEveryRecipient() {
+        MessageManager manager = new MessageManager();
+        MessageBroadcaster.Result result = new MessageBroadcaster(manager)
+                .broadcast("x".repeat(255), List.of("+27718693002", "+27838884567"), "Sent");
+        
+        assertEquals(0, result.getMessages().size());
+        assertEquals("Message exceeds 250 characters by 5, please reduce size.", result.getRejected().get("+27718693002"));
+        assertEquals(0, manager.getMessageCount());
+    }
+    
+    @Test
+    public void testBodiesAreContentAddressed() {
+        MessageBodyStore store = new MessageBodyStore();
+        MessageBodyStore.Body first = store.intern("Hello there");
+        MessageBodyStore.Body again = store.intern(new String("Hello there"));
+        
+        assertSame(first, again);
+        assertEquals(1, store.size());
+        assertEquals(32, first.getKey().length());
+        assertEquals(MessageBodyStore.contentKey("Hello there"), first.getKey());
+        assertTrue(!first.getKey().equals(store.intern("Hello there!").getKey()), "Different text needs a different key");
+    }
+    
+    @Test
+    public void testContentOfFollowsBodyRef() {
+        String key = MessageBodyStore.contentKey("Shared body");
+        JSONObject record = new JSONObject();
+        record.put("messageID", "1234567890");
+        record.put("bodyRef", key);
+        
+        assertEquals("Shared body", MessageBodyStore.contentOf(record, Map.of(key, "Shared body")));
+        assertEquals("", MessageBodyStore.contentOf(record, Map.of()));
+        record.put("messageContent", "Inline body");
+        assertEquals("Inline body", MessageBodyStore.contentOf(record, Map.of()));
+    }
+}
@@ -0,0 +1,60 @@
+package quickchatapp;
+
+/**
+ * MessageEventBufferBenchmark.java
+ * Measures events per second through MessageEventBuffer with several
+ * subscribers, each on its own thread
+ * Run with: java quickchatapp.MessageEventBufferBenchmark [subscribers] [events] [buffer size]
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class MessageEventBufferBenchmark {
+    
+    public static void main(String[] args) throws InterruptedException {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 14;
+        
+        Message message = new Message();
+        message.setRecipient("+27718693002");
+        message.setMessageContent("Benchmark message");
+        
+        for (MessageEventBuffer.OverflowPolicy policy : MessageEventBuffer.OverflowPolicy.values()) {
+            MessageEventBuffer buffer = new MessageEventBuffer(size);
+            LongAdder handled = new LongAdder();
+            MessageEventBuffer.Subscription[] subscriptions = new MessageEventBuffer.Subscription[subscribers];
+            Thread[] threads = new Thread[subscribers];
+            for (int i = 0; i < subscribers; i++) {
+                long[] count = new long[1];
+                subscriptions[i] = buffer.subscribe(e -> count[0]++, policy);
+                MessageEventBuffer.Subscription subscription = subscriptions[i];
+                threads[i] = new Thread(() -> {
+                    subscription.run();
+                    handled.add(count[0]);
+                });
+                threads[i].start();
+            }
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                buffer.publish(MessageEvent.Type.ADDED, message);
+            }
+            for (MessageEventBuffer.Subscription subscription : subscriptions) {
+                while (subscription.getSequence() < buffer.getCursor() && policy == MessageEventBuffer.OverflowPolicy.BLOCK) {
+                    Thread.onSpinWait();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            
+            long dropped = 0;
+            for (int i = 0; i < subscribers; i++) {
+                subscriptions[i].close();
+                threads[i].join();
+                dropped += subscriptions[i].getDroppedCount();
+            }
+            System.out.printf("%-5s subscribers: %d  %,.0f events/s published  handled: %,d  dropped: %,d%n",
+                    policy, subscribers, events * 1e9 / elapsed, handled.sum(), dropped);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package quickchatapp;
+
+/**
+ * MessageEventBufferTest.java
+ * Unit tests for MessageEventBuffer and MessageManager change events
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class MessageEventBufferTest {
+    
+    @Test
+    public void testManagerPublishesAddAndDelete() {
+        MessageManager manager = new MessageManager();
+        MessageEventBuffer buffer = manager.openEventStream(16);
+        List<String> seen = new ArrayList<>();
+        MessageEventBuffer.Subscription subscription = buffer.subscribe(
+                e -> seen.add(e.getType() + " " + e.getMessage().getMessageContent()),
+                MessageEventBuffer.OverflowPolicy.BLOCK);
+        
+        Message msg = message("+27718693002", "Where are you?", "Sent");
+        manager.addMessage(msg);
+        manager.deleteMessageByHash(msg.getMessageHash());
+        
+        assertEquals(2, subscription.poll());
+        assertEquals(List.of("ADDED Where are you?", "DELETED Where are you?"), seen);
+        assertEquals(0, subscription.poll());
+    }
+    
+    @Test
+    public void testSubscribersHaveIndependentCursors() {
+        MessageEventBuffer buffer = new MessageEventBuffer(8);
+        List<Long> first = new ArrayList<>();
+        List<Long> second = new ArrayList<>();
+        MessageEventBuffer.Subscription a = buffer.subscribe(e -> first.add(e.getSequence()),
+                MessageEventBuffer.OverflowPolicy.BLOCK);
+        MessageEventBuffer.Subscription b = buffer.subscribe(e -> second.add(e.getSequence()),
+                MessageEventBuffer.OverflowPolicy.DROP);
+        
+        buffer.publish(MessageEvent.Type.ADDED, message("+27718693002", "one", "Sent"));
+        a.poll();
+        buffer.publish(MessageEvent.Type.ADDED, message("+27718693002", "two", "Sent"));
+        a.poll();
+        b.poll();
+        
+        assertEquals(List.of(0L, 1L), first);
+        assertEquals(List.of(0L, 1L), second);
+    }
+    
+    @Test
+    public void testDropSubscriberSkipsOverwrittenEvents() {
+        MessageEventBuffer buffer = new MessageEventBuffer(4);
+        List<Long> seen = new ArrayList<>();
+        MessageEventBuffer.Subscription slow = buffer.subscribe(e -> seen.add(e.getSequence()),
+                MessageEventBuffer.OverflowPolicy.DROP);
+        
+        for (int i = 0; i < 10; i++) {
+            buffer.publish(MessageEvent.Type.ADDED, message("+27718693002", "message " + i, "Sent"));
+        }
+        
+        assertEquals(4, slow.poll());
+        assertEquals(List.of(6L, 7L, 8L, 9L), seen);
+        assertEquals(6, slow.getDroppedCount());
+    }
+    
+    @Test
+    public void testBlockSubscriberHoldsWriterBack() throws InterruptedException {
+        MessageEventBuffer buffer = new MessageEventBuffer(4);
+        List<Long> seen = new ArrayList<>();
+        MessageEventBuffer.Subscription subscription = buffer.subscribe(e -> seen.add(e.getSequence()),
+                MessageEventBuffer.OverflowPolicy.BLOCK);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 6; i++) {
+                buffer.publish(MessageEvent.Type.ADDED, message("+27718693002", "message " + i, "Sent"));
+            }
+        });
+        
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive(), "Writer should wait for the subscriber");
+        assertEquals(3, buffer.getCursor());
+        
+        subscription.poll();
+        writer.join(2_000);
+        subscription.poll();
+        
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L), seen);
+    }
+    
+    @Test
+    public void testClosedSubscriberReleasesWriter() throws InterruptedException {
+        MessageEventBuffer buffer = new MessageEventBuffer(2);
+        MessageEventBuffer.Subscription subscription = buffer.subscribe(e -> { },
+                MessageEventBuffer.OverflowPolicy.BLOCK);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                buffer.publish(MessageEvent.Type.ADDED, message("+27718693002", "message " + i, "Sent"));
+            }
+        });
+        
+        writer.start();
+        subscription.close();
+        writer.join(2_000);
+        
+        assertEquals(4, buffer.getCursor());
+    }
+}
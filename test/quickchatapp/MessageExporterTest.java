@@ -0,0 +1,129 @@
+package quickchatapp;
+
+/**
+ * MessageExporterTest.java
+ * Unit tests for MessageExporter class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class MessageExporterTest {
+    
+    @Test
+    public void testNdjsonExportFilteredByStatus() throws IOException {
+        MessageManager manager = store(1_000);
+        Path file = Files.createTempFile("export", ".ndjson");
+        MessageExporter exporter = new MessageExporter(manager, 3);
+        exporter.setChunkMessages(64);
+        
+        MessageExporter.Result result = exporter.export(file, MessageImporter.Format.NDJSON, MessageExporter.byStatus("Stored"), false);
+        
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(500, result.getMessagesExported());
+        assertEquals(500, lines.size());
+        assertEquals(Files.size(file), result.getFileBytes());
+        for (int i = 0; i < lines.size(); i++) {
+            JSONObject row = new JSONObject(lines.get(i));
+            assertEquals("Stored", row.getString("sendStatus"));
+            assertEquals("Message, number " + (i * 2 + 1), row.getString("messageContent"));
+        }
+        assertFalse(Files.exists(MessageExporter.checkpointOf(file)), "Checkpoint should be removed when done");
+    }
+    
+    @Test
+    public void testCsvExportImportsBack() throws IOException {
+        MessageManager manager = store(200);
+        Path file = Files.createTempFile("export", ".csv");
+        new MessageExporter(manager, 2).export(file, MessageImporter.Format.CSV, MessageExporter.all(), false);
+        
+        MessageManager copy = new MessageManager();
+        MessageImporter importer = new MessageImporter(copy, 2);
+        importer.setPersistStored(false);
+        MessageImporter.Result result = importer.importFile(file, MessageImporter.Format.CSV);
+        
+        assertEquals(200, result.getRowsImported());
+        for (int i = 0; i < 200; i++) {
+            Message original = manager.getAllMessages().get(i);
+            Message imported = copy.getAllMessages().get(i);
+            assertEquals(original.getMessageID(), imported.getMessageID());
+            assertEquals(original.getMessageContent(), imported.getMessageContent());
+            assertEquals(original.getSendStatus(), imported.getSendStatus());
+        }
+    }
+    
+    @Test
+    public void testGzipExportReadable() throws IOException {
+        MessageManager manager = store(1_000);
+        Path file = Files.createTempFile("export", ".ndjson.gz");
+        MessageExporter exporter = new MessageExporter(manager, 4);
+        exporter.setChunkMessages(100);
+        exporter.setGzip(true);
+        
+        exporter.export(file, MessageImporter.Format.NDJSON, MessageExporter.byRecipient("+27718693002"), false);
+        
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertEquals("+27718693002", new JSONObject(line).getString("recipient"));
+                count++;
+            }
+        }
+        assertEquals(100, count);
+    }
+    
+    @Test
+    public void testResumeAfterFailure() throws IOException {
+        MessageManager manager = store(1_000);
+        Path expected = Files.createTempFile("export", ".csv");
+        new MessageExporter(manager, 1).export(expected, MessageImporter.Format.CSV, MessageExporter.all(), false);
+        
+        Path file = Files.createTempFile("export", ".csv");
+        MessageExporter exporter = new MessageExporter(manager, 1);
+        exporter.setChunkMessages(50);
+        exporter.setCheckpointChunks(1);
+        AtomicInteger seen = new AtomicInteger();
+        assertThrows(RuntimeException.class, () -> exporter.export(file, MessageImporter.Format.CSV, msg -> {
+            if (seen.incrementAndGet() > 620) {
+                throw new IllegalStateException("Simulated failure");
+            }
+            return true;
+        }, false));
+        assertTrue(Files.exists(MessageExporter.checkpointOf(file)), "Checkpoint should survive the failure");
+        
+        MessageExporter.Result result = exporter.export(file, MessageImporter.Format.CSV, MessageExporter.all(), true);
+        
+        assertEquals(1_000, result.getMessagesExported());
+        assertTrue(result.getMessagesWritten() < 1_000, "Resume should skip exported messages");
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(file));
+    }
+    
+    private static MessageManager store(int count) {
+        MessageManager manager = new MessageManager();
+        for (int i = 0; i < count; i++) {
+            Message msg = new Message();
+            msg.setRecipient(i % 10 == 0 ? "+27718693002" : "+2783" + (1_000_000 + i));
+            msg.setMessageContent("Message, number " + i);
+            msg.setSendStatus(i % 2 == 0 ? "Sent" : "Stored");
+            msg.createMessageHash();
+            manager.addMessage(msg);
+        }
+        return manager;
+    }
+}
@@ -0,0 +1,97 @@
+package quickchatapp;
+
+/**
+ * MessageImporterTest.java
+ * Unit tests for MessageImporter class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class MessageImporterTest {
+    
+    @Test
+    public void testNdjsonImportKeepsFileOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            input.append("{\"recipient\": \"+2771" + (10_000_000 + i) + "\", \"messageContent\": \"Message number " + i + "\"}\n");
+        }
+        MessageManager manager = new MessageManager();
+        MessageImporter importer = new MessageImporter(manager, 4);
+        importer.setChunkRows(64);
+        
+        MessageImporter.Result result = importer.importFrom(reader(input.toString()), MessageImporter.Format.NDJSON);
+        
+        assertEquals(1_000, result.getRowsImported());
+        assertEquals(0, result.getRowsRejected());
+        List<Message> messages = manager.getAllMessages();
+        assertEquals(1_000, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message msg = messages.get(i);
+            assertEquals("Message number " + i, msg.getMessageContent());
+            assertEquals("Sent", msg.getSendStatus());
+            assertEquals(messages.get(0).getNumMessagesSent() + i, msg.getNumMessagesSent());
+            assertTrue(msg.getMessageHash().endsWith(":MESSAGE:"), "Unexpected hash " + msg.getMessageHash());
+        }
+    }
+    
+    @Test
+    public void testCsvImportReportsRejectedRows() throws IOException {
+        String input = "recipient,messageContent,sendStatus\n"
+                + "+27718693002,\"Hi Mike, can you join us for dinner tonight\",Sent\n"
+                + "08575975889,Missing country code,Sent\n"
+                + "+27838884567,\"He said \"\"later\"\"\",Disregarded\n"
+                + "+27838884567," + "x".repeat(260) + ",Sent\n"
+                + "+27838884567,Unknown status,Queued\n"
+                + "+27838884567,\"Unterminated,Sent\n";
+        MessageManager manager = new MessageManager();
+        MessageImporter importer = new MessageImporter(manager, 2);
+        importer.setChunkRows(2);
+        List<MessageImporter.Reject> rejects = new ArrayList<>();
+        importer.setRejectListener(rejects::add);
+        
+        MessageImporter.Result result = importer.importFrom(reader(input), MessageImporter.Format.CSV);
+        
+        assertEquals(6, result.getRowsRead());
+        assertEquals(2, result.getRowsImported());
+        assertEquals(4, result.getRowsRejected());
+        assertEquals(4, rejects.size());
+        assertEquals(3, rejects.get(0).getLineNumber());
+        assertEquals("Message exceeds 250 characters by 10, please reduce size.", rejects.get(1).getReason());
+        assertEquals(7, rejects.get(3).getLineNumber());
+        assertEquals("Hi Mike, can you join us for dinner tonight", manager.getAllMessages().get(0).getMessageContent());
+        assertEquals("He said \"later\"", manager.getAllMessages().get(1).getMessageContent());
+    }
+    
+    @Test
+    public void testProgressReportedPerChunk() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            input.append("{\"recipient\": \"+27718693002\", \"messageContent\": \"Row " + i + "\", \"sendStatus\": \"Disregarded\"}\n");
+        }
+        MessageImporter importer = new MessageImporter(new MessageManager(), 3);
+        importer.setChunkRows(10);
+        List<Long> progress = new ArrayList<>();
+        importer.setProgressListener(snapshot -> progress.add(snapshot.getRowsRead()));
+        
+        importer.importFrom(reader(input.toString()), MessageImporter.Format.NDJSON);
+        
+        assertEquals(10, progress.size());
+        assertEquals(100L, (long) progress.get(progress.size() - 1));
+    }
+    
+    @Test
+    public void testParseCsvLine() {
+        assertEquals(List.of("a", "b, c", "d \"e\"", ""), MessageImporter.parseCsvLine("a,\"b, c\",\"d \"\"e\"\"\","));
+    }
+    
+    private static BufferedReader reader(String input) {
+        return new BufferedReader(new StringReader(input));
+    }
+}
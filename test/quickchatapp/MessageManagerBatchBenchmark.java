@@ -0,0 +1,118 @@
+package quickchatapp;
+
+/**
+ * MessageManagerBatchBenchmark.java
+ * Compares the batch operations of MessageManager against looping over
+ * the single-message versions, at batch sizes from 10 to 100,000
+ * Each batch runs against a store already holding as many messages
+ * Run with: java quickchatapp.MessageManagerBatchBenchmark [largest looped batch]
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageManagerBatchBenchmark {
+    
+    public static void main(String[] args) {
+        // Looped search and delete are quadratic; larger batches take minutes
+        int loopLimit = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        
+        // Warm-up pass so the JIT has compiled both paths
+        for (int size = 10; size <= 1_000; size *= 10) {
+            run(size, true, false);
+        }
+        
+        System.out.println("Batch      Operation   Loop ns/msg    Batch ns/msg   Speedup");
+        for (int size = 10; size <= 100_000; size *= 10) {
+            run(size, size <= loopLimit, true);
+        }
+    }
+    
+    private static void run(int size, boolean loop, boolean report) {
+        int reps = Math.max(1, 10_000 / size);
+        long loopAdd = 0;
+        long batchAdd = 0;
+        long loopSearch = 0;
+        long batchSearch = 0;
+        long loopDelete = 0;
+        long batchDelete = 0;
+        for (int r = 0; r < reps; r++) {
+            List<Message> batch = messages(size);
+            if (loop) {
+                MessageManager manager = store(size);
+                long start = System.nanoTime();
+                for (Message msg : batch) {
+                    manager.addMessage(msg);
+                }
+                loopAdd += System.nanoTime() - start;
+                
+                start = System.nanoTime();
+                for (Message msg : batch) {
+                    manager.searchByMessageID(msg.getMessageID());
+                }
+                loopSearch += System.nanoTime() - start;
+                
+                start = System.nanoTime();
+                for (Message msg : batch) {
+                    manager.deleteMessageByHash(msg.getMessageHash());
+                }
+                loopDelete += System.nanoTime() - start;
+            }
+            
+            MessageManager manager = store(size);
+            List<String> ids = new ArrayList<>(size);
+            List<String> hashes = new ArrayList<>(size);
+            for (Message msg : batch) {
+                ids.add(msg.getMessageID());
+                hashes.add(msg.getMessageHash());
+            }
+            long start = System.nanoTime();
+            manager.addMessages(batch);
+            batchAdd += System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            manager.searchByMessageIDs(ids);
+            batchSearch += System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            manager.deleteByHashes(hashes);
+            batchDelete += System.nanoTime() - start;
+        }
+        
+        if (!report) {
+            return;
+        }
+        long count = (long) size * reps;
+        print(size, "add", loop, loopAdd, batchAdd, count);
+        print(size, "search", loop, loopSearch, batchSearch, count);
+        print(size, "delete", loop, loopDelete, batchDelete, count);
+    }
+    
+    private static void print(int size, String operation, boolean loop, long loopNanos, long batchNanos, long count) {
+        if (loop) {
+            System.out.printf("%-10d %-11s %-14.1f %-14.1f %.1fx%n", size, operation,
+                    (double) loopNanos / count, (double) batchNanos / count, (double) loopNanos / batchNanos);
+        } else {
+            System.out.printf("%-10d %-11s %-14s %-14.1f -%n", size, operation, "skipped", (double) batchNanos / count);
+        }
+    }
+    
+    private static MessageManager store(int size) {
+        MessageManager manager = new MessageManager();
+        manager.addMessages(messages(size));
+        return manager;
+    }
+    
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Message msg = new Message();
+            msg.setRecipient("+2771" + (10_000_000 + i % 10_000));
+            msg.setMessageContent("Batch message " + i);
+            msg.setSendStatus("Sent");
+            msg.createMessageHash();
+            messages.add(msg);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,115 @@
+package quickchatapp;
+
+/**
+ * MessageManagerBatchTest.java
+ * Unit tests for the batch operations of MessageManager class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class MessageManagerBatchTest {
+    
+    @Test
+    public void testAddMessagesMatchesLoop() {
+        List<Message> messages = messages(50);
+        MessageManager looped = new MessageManager();
+        for (Message msg : messages) {
+            looped.addMessage(msg);
+        }
+        MessageManager batched = new MessageManager();
+        
+        assertEquals(50, batched.addMessages(messages));
+        
+        assertEquals(looped.getAllMessages(), batched.getAllMessages());
+        assertEquals(looped.getSentMessages(), batched.getSentMessages());
+        assertEquals(looped.getDisregardedMessages(), batched.getDisregardedMessages());
+        assertEquals(looped.getStoredMessages(), batched.getStoredMessages());
+        assertEquals(looped.displayReport(), batched.displayReport());
+    }
+    
+    @Test
+    public void testSearchByMessageIDs() {
+        MessageManager manager = new MessageManager();
+        List<Message> messages = messages(20);
+        manager.addMessages(messages);
+        List<String> ids = new ArrayList<>();
+        ids.add(messages.get(7).getMessageID());
+        ids.add("0000000000");
+        ids.add(messages.get(2).getMessageID());
+        
+        Map<String, String> results = manager.searchByMessageIDs(ids);
+        
+        assertEquals(ids, new ArrayList<>(results.keySet()));
+        assertEquals(manager.searchByMessageID(messages.get(7).getMessageID()), results.get(ids.get(0)));
+        assertEquals("Message ID not found.", results.get("0000000000"));
+        assertEquals(manager.searchByMessageID(messages.get(2).getMessageID()), results.get(ids.get(2)));
+    }
+    
+    @Test
+    public void testDeleteByHashesMatchesLoop() {
+        List<Message> messages = messages(40);
+        MessageManager looped = new MessageManager();
+        looped.addMessages(messages);
+        MessageManager batched = new MessageManager();
+        batched.addMessages(messages);
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i += 3) {
+            hashes.add(messages.get(i).getMessageHash());
+        }
+        hashes.add("00:0:NOT:THERE");
+        for (String hash : hashes) {
+            looped.deleteMessageByHash(hash);
+        }
+        
+        assertEquals(14, batched.deleteByHashes(hashes));
+        
+        assertEquals(looped.getAllMessages(), batched.getAllMessages());
+        assertEquals(looped.getSentMessages(), batched.getSentMessages());
+        assertEquals(looped.getDisregardedMessages(), batched.getDisregardedMessages());
+        assertEquals(looped.searchByMessageHash(messages.get(1).getMessageHash()),
+                batched.searchByMessageHash(messages.get(1).getMessageHash()));
+        assertEquals("Message hash not found.", batched.searchByMessageHash(messages.get(3).getMessageHash()));
+    }
+    
+    @Test
+    public void testDeleteByHashesSharedHashMatchesLoop() {
+        // Three messages share a hash; listing it twice deletes the two oldest
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(new Message("100000000" + i, i, "+27718693002", "Hi " + i, "00:0:HIHI", "Sent"));
+        }
+        messages.add(new Message("1000000009", 9, "+27718693002", "Other", "00:9:OTHER", "Sent"));
+        List<String> hashes = List.of("00:0:HIHI", "00:9:OTHER", "00:0:HIHI");
+        MessageManager looped = new MessageManager();
+        looped.addMessages(messages);
+        for (String hash : hashes) {
+            looped.deleteMessageByHash(hash);
+        }
+        MessageManager batched = new MessageManager();
+        batched.addMessages(messages);
+        
+        assertEquals(3, batched.deleteByHashes(hashes));
+        
+        assertEquals(looped.getAllMessages(), batched.getAllMessages());
+        assertEquals(List.of(messages.get(2)), batched.getAllMessages());
+        assertEquals(looped.getSentMessages(), batched.getSentMessages());
+    }
+    
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message msg = new Message();
+            msg.setRecipient("+2771869300" + (i % 5));
+            // Repeated content checks the per-status lists drop the right copies
+            msg.setMessageContent("Message " + (i % 8));
+            msg.setSendStatus(i % 2 == 0 ? "Sent" : "Disregarded");
+            msg.createMessageHash();
+            messages.add(msg);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,139 @@
+package quickchatapp;
+
+/**
+ * MessageQueryTest.java
+ * Unit tests for MessageQuery class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+public class MessageQueryTest {
+    
+    @Test
+    public void testIndexDrivesAndQuery() {
+        MessageManager manager = manager(100);
+        MessageQuery query = MessageQuery.where(MessageQuery.status("Sent")
+                .and(MessageQuery.recipient("+27710000003")));
+        
+        MessageQuery.Result result = manager.query(query);
+        
+        assertTrue(result.getPlan().startsWith("INDEX recipient = +27710000003"), result.getPlan());
+        assertEquals(10, result.getRowsExamined());
+        for (Message msg : result.getMessages()) {
+            assertEquals("+27710000003", msg.getRecipient());
+            assertEquals("Sent", msg.getSendStatus());
+        }
+        assertEquals(scan(manager, msg -> msg.getRecipient().equals("+27710000003") && msg.getSendStatus().equals("Sent")),
+                result.getMessages());
+        assertTrue(manager.explain(query).contains("Rows examined: 10"));
+    }
+    
+    @Test
+    public void testOrUnionsIndexesOrScans() {
+        MessageManager manager = manager(100);
+        MessageQuery indexed = MessageQuery.where(MessageQuery.recipient("+27710000001")
+                .or(MessageQuery.recipient("+27710000002")));
+        MessageQuery.Result result = manager.query(indexed);
+        
+        assertTrue(result.getPlan().startsWith("UNION("), result.getPlan());
+        assertEquals(20, result.getMessages().size());
+        assertEquals(scan(manager, msg -> msg.getRecipient().equals("+27710000001") || msg.getRecipient().equals("+27710000002")),
+                result.getMessages());
+        
+        MessageQuery mixed = MessageQuery.where(MessageQuery.recipient("+27710000001")
+                .or(MessageQuery.keyword("number 42")));
+        result = manager.query(mixed);
+        
+        assertTrue(result.getPlan().startsWith("SCAN"), result.getPlan());
+        assertEquals(100, result.getRowsExamined());
+        assertEquals(11, result.getMessages().size());
+    }
+    
+    @Test
+    public void testOrderAndLimit() {
+        MessageManager manager = manager(100);
+        MessageQuery query = MessageQuery.where(MessageQuery.lengthBetween(0, 250)
+                .and(MessageQuery.recipientPrefix("+2771")))
+                .orderBy(MessageQuery.Order.LONGEST).limit(5);
+        
+        List<Message> longest = manager.query(query).getMessages();
+        
+        assertEquals(5, longest.size());
+        List<Message> all = manager.getAllMessages();
+        all.sort((a, b) -> b.getMessageContent().length() - a.getMessageContent().length());
+        assertEquals(all.subList(0, 5), longest);
+        
+        MessageQuery.Result first = manager.query(MessageQuery.all().limit(3));
+        assertEquals(3, first.getRowsExamined());
+        assertEquals(manager.getMessageRange(0, 3), first.getMessages());
+    }
+    
+    @Test
+    public void testKeywordAndTimeRange() {
+        MessageManager manager = new MessageManager();
+        Message early = message("+27718693002", "Team meeting moved to Friday", "Sent");
+        early.setCreatedAt(1_000);
+        Message late = message("+27718693002", "No meetings this week", "Sent");
+        late.setCreatedAt(5_000);
+        manager.addMessage(early);
+        manager.addMessage(late);
+        
+        assertEquals(List.of(early), manager.query(MessageQuery.where(MessageQuery.keyword("MEETING"))).getMessages());
+        assertEquals(List.of(late), manager.query(MessageQuery.where(MessageQuery.createdBetween(2_000, 6_000))).getMessages());
+        assertEquals(List.of(late, early), manager.query(MessageQuery.all().orderBy(MessageQuery.Order.NEWEST)).getMessages());
+        
+        manager.deleteMessageByHash(early.getMessageHash());
+        assertEquals(List.of(late), manager.query(MessageQuery.where(MessageQuery.recipient("+27718693002"))).getMessages());
+        assertEquals(1, manager.countByStatus("Sent"));
+    }
+    
+    @Test
+    public void testOrderIsKeptPerManager() {
+        MessageManager manager = manager(40);
+        // Another manager holding the same messages in the opposite order
+        List<Message> reversed = manager.getAllMessages();
+        Collections.reverse(reversed);
+        MessageManager other = new MessageManager();
+        other.addMessages(reversed);
+        
+        for (MessageManager each : List.of(manager, other)) {
+            assertEquals(scan(each, msg -> msg.getRecipient().equals("+27710000001") || msg.getRecipient().equals("+27710000002")),
+                    each.query(MessageQuery.where(MessageQuery.recipient("+27710000001")
+                            .or(MessageQuery.recipient("+27710000002")))).getMessages());
+            assertEquals(scan(each, msg -> msg.getRecipient().compareTo("+27710000003") <= 0),
+                    each.searchByRecipientRange("+27710000000", "+27710000003"));
+            List<Message> longest = each.getAllMessages();
+            longest.sort((a, b) -> b.getMessageContent().length() - a.getMessageContent().length());
+            assertEquals(longest, each.query(MessageQuery.all().orderBy(MessageQuery.Order.LONGEST)).getMessages());
+            assertEquals(longest, each.findLongestMessages(40, "Sent", "Disregarded"));
+        }
+    }
+    
+    private static List<Message> scan(MessageManager manager, Predicate<Message> condition) {
+        List<Message> matches = new ArrayList<>();
+        for (Message msg : manager.getAllMessages()) {
+            if (condition.test(msg)) {
+                matches.add(msg);
+            }
+        }
+        return matches;
+    }
+    
+    private static MessageManager manager(int count) {
+        MessageManager manager = new MessageManager();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message("+2771000000" + (i % 10), "Query test number " + i + "!".repeat(i % 7),
+                    i % 3 == 0 ? "Disregarded" : "Sent"));
+        }
+        manager.addMessages(messages);
+        return manager;
+    }
+}
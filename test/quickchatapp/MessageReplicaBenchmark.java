@@ -0,0 +1,101 @@
+package quickchatapp;
+
+/**
+ * MessageReplicaBenchmark.java
+ * Runs a primary and a replica in two JVMs on this machine
+ * This JVM starts a second one as the primary, in a fresh directory: it
+ * stores messages at a fixed rate, deletes every tenth one and compacts
+ * the store halfway through. This JVM tails that directory with a
+ * MessageReplica, prints its lag once a second, and when the primary has
+ * exited checks that the replica holds exactly what the primary persisted
+ * Run with: java quickchatapp.MessageReplicaBenchmark [messages] [stores per second] [poll ms]
+ */
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class MessageReplicaBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("primary")) {
+            primary(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long pollMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        Path dir = Files.createTempDirectory("replica-bench");
+        
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process primary = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                MessageReplicaBenchmark.class.getName(), "primary", String.valueOf(messages), String.valueOf(rate))
+                .directory(dir.toFile()).inheritIO().start();
+        System.out.println("Primary pid " + primary.pid() + " writing to " + dir + File.separator);
+        
+        MessageReplica replica = new MessageReplica(dir);
+        replica.start(Duration.ofMillis(pollMillis));
+        while (!primary.waitFor(1, TimeUnit.SECONDS)) {
+            System.out.println("Replica  " + replica.status());
+        }
+        replica.stop();
+        while (replica.poll() > 0) {
+            // drain whatever the primary wrote after the last scheduled poll
+        }
+        
+        List<String> expected = ids(MessageStoreWarmup.readStore(dir.resolve(Message.STORE_FILE),
+                dir.resolve(Message.TOMBSTONE_FILE), dir.resolve(MessageBodyStore.BODY_FILE)));
+        List<String> actual = ids(replica.snapshot().toList());
+        System.out.println("Final    " + replica.status());
+        System.out.println("Poll interval " + pollMillis + " ms; lag p50 " + replica.getLagMillis(50)
+                + " ms, p99 " + replica.getLagMillis(99) + " ms, p99.9 " + replica.getLagMillis(99.9) + " ms");
+        System.out.println("Replica matches primary: " + expected.equals(actual) + " (" + actual.size() + " messages)");
+    }
+    
+    /**
+     * The primary: stores at a fixed rate through the normal send path,
+     * deleting every tenth message and compacting once halfway
+     */
+    private static void primary(int messages, int rate) throws Exception {
+        MessageManager manager = new MessageManager();
+        List<Message> stored = new ArrayList<>();
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            Message msg = new Message();
+            msg.setRecipient("+2771" + (10_000_000 + random.nextInt(1_000)));
+            msg.setMessageContent("Replicated message number " + i);
+            msg.createMessageHash();
+            msg.sentMessage(3);
+            manager.addMessage(msg);
+            stored.add(msg);
+            if (i % 10 == 9) {
+                Message victim = stored.remove(random.nextInt(stored.size()));
+                manager.deleteMessageByHash(victim.getMessageHash());
+            }
+            if (i == messages / 2) {
+                System.out.println("Primary  " + new StoreCompactor(new StoreCompactor.RetentionPolicy()).compact());
+            }
+            long due = start + (i + 1) * 1_000_000_000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        }
+        System.out.println("Primary  stored " + messages + ", holding " + manager.getMessageCount());
+    }
+    
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        for (Message msg : messages) {
+            ids.add(msg.getMessageID());
+        }
+        return ids;
+    }
+}
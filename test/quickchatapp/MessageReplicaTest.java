@@ -0,0 +1,128 @@
+package quickchatapp;
+
+/**
+ * MessageReplicaTest.java
+ * Unit tests for MessageReplica class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class MessageReplicaTest {
+    
+    @Test
+    public void testTailsNewRecordsAndDeletions() throws IOException {
+        Path dir = Files.createTempDirectory("replica");
+        long now = System.currentTimeMillis();
+        store(dir, record("1000000001", "10:1:HI:TONIGHT", now), record("1000000002", "10:2:HI:LATER", now),
+                record("1000000003", "10:3:HI:SOON", now));
+        MessageReplica replica = new MessageReplica(dir);
+        
+        assertEquals(3, replica.poll());
+        assertEquals(0, replica.poll());
+        store(dir, record("1000000004", "10:4:SEE:YOU", now - 250), record("1000000005", "10:5:OK:THEN", now));
+        assertEquals(2, replica.poll());
+        tombstone(dir, "1000000002", "10:2:HI:LATER");
+        assertEquals(1, replica.poll());
+        
+        // One full load, then only the appended bytes
+        assertEquals(1, replica.getResyncs());
+        assertEquals(5, replica.getAppliedRecords());
+        assertEquals(1, replica.getAppliedDeletions());
+        assertTrue(replica.getLagMillis(100) >= 250, "Lag " + replica.getLagMillis(100));
+        assertTrue(replica.getStalenessMillis() >= 0);
+        assertEquals(ids(primary(dir)), ids(replica.snapshot().toList()));
+        synchronized (replica.getManager()) {
+            assertEquals("Message ID not found.", replica.getManager().searchByMessageID("1000000002"));
+            assertEquals(4, replica.getManager().countByStatus("Stored"));
+        }
+        // Applying a deletion must not write one of its own
+        assertEquals(1, Files.readAllLines(dir.resolve(Message.TOMBSTONE_FILE)).size());
+    }
+    
+    @Test
+    public void testCompactionAndTornWrites() throws IOException {
+        Path dir = Files.createTempDirectory("replica");
+        long now = System.currentTimeMillis();
+        store(dir, record("1000000001", "10:1:A:A", now), record("1000000002", "10:2:B:B", now),
+                record("1000000003", "10:3:C:C", now));
+        MessageReplica replica = new MessageReplica(dir);
+        replica.poll();
+        
+        tombstone(dir, "1000000001", "10:1:A:A");
+        new StoreCompactor(dir.resolve(Message.STORE_FILE), dir.resolve(Message.TOMBSTONE_FILE),
+                new StoreCompactor.RetentionPolicy(), () -> now).compact();
+        replica.poll();
+        assertEquals(List.of("1000000002", "1000000003"), ids(replica.snapshot().toList()));
+        assertEquals(2, replica.getResyncs());
+        
+        // A store caught halfway through its rewrite, and the deletion of
+        // the record it adds, are both held back until the write completes
+        Path storeFile = dir.resolve(Message.STORE_FILE);
+        store(dir, record("1000000004", "10:4:D:D", now));
+        byte[] complete = Files.readAllBytes(storeFile);
+        Files.write(storeFile, Arrays.copyOf(complete, complete.length - 20));
+        tombstone(dir, "1000000004", "10:4:D:D");
+        assertEquals(0, replica.poll());
+        assertEquals(2, replica.snapshot().size());
+        Files.write(storeFile, complete);
+        replica.poll();
+        assertEquals(List.of("1000000002", "1000000003"), ids(replica.snapshot().toList()));
+        assertEquals(ids(primary(dir)), ids(replica.snapshot().toList()));
+    }
+    
+    private static List<Message> primary(Path dir) {
+        return MessageStoreWarmup.readStore(dir.resolve(Message.STORE_FILE), dir.resolve(Message.TOMBSTONE_FILE),
+                dir.resolve(MessageBodyStore.BODY_FILE));
+    }
+    
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        for (Message msg : messages) {
+            ids.add(msg.getMessageID());
+        }
+        return ids;
+    }
+    
+    private static JSONObject record(String id, String hash, long storedAt) {
+        JSONObject record = new JSONObject();
+        record.put("messageID", id);
+        record.put("numMessagesSent", Integer.parseInt(hash.split(":")[1]));
+        record.put("recipient", "+27718693002");
+        record.put("messageContent", "Replica test " + id);
+        record.put("messageHash", hash);
+        record.put("sendStatus", "Stored");
+        record.put("storedAt", storedAt);
+        return record;
+    }
+    
+    /**
+     * Appends records the way Message.storeRecords does: read, add, rewrite
+     */
+    private static void store(Path dir, JSONObject... records) throws IOException {
+        Path file = dir.resolve(Message.STORE_FILE);
+        JSONArray array = Files.exists(file)
+                ? new JSONArray(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+                : new JSONArray();
+        for (JSONObject record : records) {
+            array.put(record);
+        }
+        Files.write(file, array.toString(4).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void tombstone(Path dir, String id, String hash) throws IOException {
+        Files.write(dir.resolve(Message.TOMBSTONE_FILE), (Message.tombstoneKey(id, hash) + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,92 @@
+package quickchatapp;
+
+/**
+ * MessageSegmentBenchmark.java
+ * Compression ratio, write throughput and random-read latency of message
+ * segments across block sizes and Deflater levels, against the stored
+ * messages file layout (a pretty-printed JSON array)
+ * Run with: java quickchatapp.MessageSegmentBenchmark [messages] [reads]
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONArray;
+
+public class MessageSegmentBenchmark {
+    private static final String[] PHRASES = {
+        "Hi Mike, can you join us for dinner tonight",
+        "Where are you? You are late! I have asked you to be on time.",
+        "Yohoooo, I am at your gate.",
+        "It is dinner time!",
+        "Ok, I am leaving without you.",
+        "Did you get the cake?"
+    };
+    
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int reads = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        
+        List<Message> messages = new ArrayList<>(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            Message msg = new Message();
+            msg.setRecipient(String.format("+2771%07d", random.nextInt(5_000)));
+            msg.setMessageContent(PHRASES[random.nextInt(PHRASES.length)] + " #" + i);
+            msg.setSendStatus("Stored");
+            msg.createMessageHash();
+            messages.add(msg);
+        }
+        JSONArray store = new JSONArray();
+        for (Message msg : messages) {
+            store.put(msg.toJSON().put("storedAt", msg.getCreatedAt()));
+        }
+        long storeBytes = store.toString(4).getBytes(StandardCharsets.UTF_8).length;
+        
+        Path dir = Files.createTempDirectory("segment");
+        // Warm-up so the JIT has compiled both paths
+        run(dir, messages.subList(0, Math.min(count, 20_000)), MessageSegmentWriter.DEFAULT_BLOCK_BYTES,
+            MessageSegmentWriter.DEFAULT_LEVEL, 2_000, storeBytes, false);
+        
+        System.out.println(count + " messages, " + storeBytes + " bytes as " + Message.STORE_FILE + ", " + reads + " random reads");
+        System.out.println("Block KiB  Level  Bytes        Ratio   Write MB/s  Read p50 us  Read p99 us");
+        for (int blockKiB : new int[] {4, 16, 64, 256}) {
+            for (int level : new int[] {1, 6, 9}) {
+                run(dir, messages, blockKiB * 1024, level, reads, storeBytes, true);
+            }
+        }
+    }
+    
+    private static void run(Path dir, List<Message> messages, int blockBytes, int level, int reads,
+            long storeBytes, boolean report) throws IOException {
+        Path file = dir.resolve("messages.seg");
+        long started = System.nanoTime();
+        long raw;
+        try (MessageSegmentWriter writer = new MessageSegmentWriter(file, blockBytes, level)) {
+            writer.appendAll(messages);
+            raw = writer.getRawBytes();
+        }
+        long writeNanos = System.nanoTime() - started;
+        long size = Files.size(file);
+        
+        LatencyHistogram latency = new LatencyHistogram();
+        Random random = new Random(7);
+        try (MessageSegmentReader reader = new MessageSegmentReader(file)) {
+            for (int i = 0; i < reads; i++) {
+                String id = messages.get(random.nextInt(messages.size())).getMessageID();
+                long start = System.nanoTime();
+                reader.findByMessageID(id);
+                latency.record(System.nanoTime() - start);
+            }
+        }
+        if (report) {
+            System.out.printf("%-10d %-6d %-12d %-7.1f %-11.0f %-12.1f %.1f%n", blockBytes / 1024, level, size,
+                (double) storeBytes / size, raw / 1e6 / (writeNanos / 1e9),
+                latency.percentile(50) / 1e3, latency.percentile(99) / 1e3);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package quickchatapp;
+
+/**
+ * MessageSegmentTest.java
+ * Unit tests for MessageSegmentWriter and MessageSegmentReader classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class MessageSegmentTest {
+    
+    @Test
+    public void testRoundTripAndSingleBlockReads() throws IOException {
+        Path file = Files.createTempDirectory("segment").resolve("messages.seg");
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            messages.add(message("+27718693002", "Hi Mike, can you join us for dinner tonight? (" + i + ")",
+                i % 2 == 0 ? "Stored" : "Sent"));
+        }
+        try (MessageSegmentWriter writer = new MessageSegmentWriter(file, 2_048, 9)) {
+            writer.appendAll(messages);
+            assertEquals(500, writer.getRecordCount());
+        }
+        assertFalse(Files.exists(file.resolveSibling("messages.seg.tmp")));
+        
+        try (MessageSegmentReader reader = new MessageSegmentReader(file)) {
+            assertEquals(500, reader.size());
+            assertTrue(reader.getBlockCount() > 10, "Blocks " + reader.getBlockCount());
+            
+            Message found = reader.findByMessageID(messages.get(321).getMessageID());
+            assertEquals(1, reader.getBlocksInflated());
+            assertEquals(messages.get(321).getMessageHash(), found.getMessageHash());
+            assertEquals(messages.get(321).getMessageContent(), found.getMessageContent());
+            assertEquals("Sent", found.getSendStatus());
+            assertEquals(messages.get(321).getCreatedAt(), found.getCreatedAt());
+            assertNull(reader.findByMessageID("no such id"));
+            
+            List<Message> all = reader.readAll();
+            for (int i = 0; i < messages.size(); i++) {
+                assertEquals(messages.get(i).getMessageID(), all.get(i).getMessageID());
+                assertEquals(messages.get(i).getRecipient(), all.get(i).getRecipient());
+            }
+            assertEquals(reader.getBlockCount() + 1, reader.getBlocksInflated());
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.read(500));
+        }
+    }
+    
+    @Test
+    public void testCompressesAndRejectsOtherFiles() throws IOException {
+        Path dir = Files.createTempDirectory("segment");
+        Path file = dir.resolve("messages.seg");
+        long raw;
+        try (MessageSegmentWriter writer = new MessageSegmentWriter(file)) {
+            for (int i = 0; i < 2_000; i++) {
+                writer.append(message("+27838884567", "Where are you? You are late! I have asked you to be on time.", "Stored"));
+            }
+            raw = writer.getRawBytes();
+        }
+        assertTrue(Files.size(file) * 4 < raw, Files.size(file) + " of " + raw);
+        
+        Path empty = dir.resolve("empty.seg");
+        new MessageSegmentWriter(empty).close();
+        try (MessageSegmentReader reader = new MessageSegmentReader(empty)) {
+            assertEquals(0, reader.size());
+        }
+        
+        Path other = dir.resolve(Message.STORE_FILE);
+        Files.write(other, "[{\"messageID\": \"1000000001\"}]".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new MessageSegmentReader(other));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSegmentWriter(file, 4_096, 0));
+    }
+}
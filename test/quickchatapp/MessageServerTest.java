@@ -0,0 +1,164 @@
+package quickchatapp;
+
+/**
+ * MessageServerTest.java
+ * Unit tests for MessageServer and MessageClient over loopback
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MessageServerTest {
+    
+    private MessageServer server;
+    private MessageClient client;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MessageServer(0, new MessageManager());
+        server.start();
+        client = new MessageClient(server.getPort());
+    }
+    
+    @AfterEach
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+    
+    @Test
+    public void testSendSearchAndDelete() throws Exception {
+        MessageClient.Response sent = client.send("+27718693002", "Hi Mike, can you join us for dinner tonight");
+        assertTrue(sent.isOk());
+        assertEquals("Message successfully sent.", sent.getValue());
+        String messageID = sent.getValues().get(1);
+        String messageHash = sent.getValues().get(2);
+        
+        assertEquals("Recipient: +27718693002\nMessage: Hi Mike, can you join us for dinner tonight",
+                     client.searchByMessageID(messageID).getValue());
+        assertEquals(List.of("Hi Mike, can you join us for dinner tonight"),
+                     client.searchByRecipient("+27718693002").getValues());
+        assertTrue(client.displayReport().getValue().contains("Total Sent Messages: 1"));
+        assertEquals("Message \"Hi Mike, can you join us for dinner tonight\" successfully deleted.",
+                     client.deleteMessageByHash(messageHash).getValue());
+        assertEquals("Message hash not found.", client.searchByMessageHash(messageHash).getValue());
+    }
+    
+    @Test
+    public void testValidationErrorsReturned() throws Exception {
+        MessageClient.Response badNumber = client.send("08575975889", "Hello");
+        MessageClient.Response tooLong = client.send("+27718693002", "a".repeat(260));
+        
+        assertFalse(badNumber.isOk());
+        assertFalse(tooLong.isOk());
+        assertEquals("Message exceeds 250 characters by 10, please reduce size.", tooLong.getValue());
+    }
+    
+    @Test
+    public void testPipelinedRequestsAllAnswered() throws Exception {
+        List<CompletableFuture<MessageClient.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(client.sendAsync(MessageProtocol.OP_SEND, "+27718693002", "Message " + i));
+        }
+        client.flush();
+        
+        for (CompletableFuture<MessageClient.Response> future : futures) {
+            assertTrue(future.join().isOk());
+        }
+        assertEquals(500, client.searchByRecipient("+27718693002").getValues().size());
+    }
+    
+    @Test
+    public void testStoresAnsweredInOrderOnceWritten() throws Exception {
+        Path store = Paths.get(Message.STORE_FILE);
+        int before = Files.exists(store) ? new JSONArray(Files.readString(store)).length() : 0;
+        List<CompletableFuture<MessageClient.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(client.sendAsync(MessageProtocol.OP_STORE, "+27838884567", "Stored " + i));
+        }
+        CompletableFuture<MessageClient.Response> search =
+                client.sendAsync(MessageProtocol.OP_SEARCH_RECIPIENT, "+27838884567");
+        client.flush();
+        
+        for (CompletableFuture<MessageClient.Response> future : futures) {
+            assertEquals("Message successfully stored.", future.join().getValue());
+        }
+        assertEquals(50, search.join().getValues().size());
+        // Every store was answered, so every record is already in the file
+        assertEquals(before + 50, new JSONArray(Files.readString(store)).length());
+    }
+    
+    @Test
+    public void testLargeResponseFrame() throws Exception {
+        for (int i = 0; i < 2_000; i++) {
+            client.sendAsync(MessageProtocol.OP_SEND, "+27718693002", "Report filler message number " + i);
+        }
+        client.flush();
+        
+        String report = client.displayReport().getValue();
+        
+        assertTrue(report.length() > 64 * 1024);
+        assertTrue(report.contains("Total Sent Messages: 2000"));
+    }
+    
+    @Test
+    public void testOversizedResponseFailsOnlyItsRequest() throws Exception {
+        for (int i = 0; i < Short.MAX_VALUE + 1; i++) {
+            client.sendAsync(MessageProtocol.OP_SEND, "+27718693002", "Filler " + i);
+        }
+        client.flush();
+        
+        CompletableFuture<MessageClient.Response> tooMany = client.sendAsync(MessageProtocol.OP_SEARCH_RECIPIENT, "+27718693002");
+        CompletableFuture<MessageClient.Response> after = client.sendAsync(MessageProtocol.OP_SEARCH_RECIPIENT, "+27838884567");
+        client.flush();
+        
+        assertFalse(tooMany.join().isOk());
+        assertEquals("Too many values for one frame.", tooMany.join().getValue());
+        assertTrue(after.join().isOk());
+        // The report is over MAX_FRAME_BYTES by now
+        assertEquals("Frame exceeds " + MessageProtocol.MAX_FRAME_BYTES + " bytes.", client.displayReport().getValue());
+        assertTrue(client.searchByMessageHash("none").isOk());
+    }
+    
+    @Test
+    public void testTruncatedFrameGetsErrorResponse() {
+        ByteBuffer response = ByteBuffer.wrap(server.handle(ByteBuffer.wrap(new byte[] {MessageProtocol.OP_REPORT, 0, 0, 0, 7})));
+        
+        response.getInt();
+        assertEquals(7, response.getInt());
+        assertEquals(MessageProtocol.STATUS_ERROR, response.get());
+        assertEquals(MessageProtocol.STATUS_ERROR, ByteBuffer.wrap(server.handle(ByteBuffer.wrap(new byte[] {1}))).get(8));
+    }
+    
+    @Test
+    public void testRequestsFailOnceConnectionCloses() throws Exception {
+        assertTrue(client.displayReport().isOk());
+        server.stop();
+        
+        // Wait for the reader to see the close; until then requests are only queued
+        CompletableFuture<MessageClient.Response> future = client.sendAsync(MessageProtocol.OP_REPORT);
+        for (int i = 0; i < 1_000 && !future.isDone(); i++) {
+            Thread.sleep(10);
+            future = client.sendAsync(MessageProtocol.OP_REPORT);
+        }
+        
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(client.sendAsync(MessageProtocol.OP_REPORT).isCompletedExceptionally());
+        assertThrows(IOException.class, () -> client.displayReport());
+        assertEquals(0, client.getPendingCount());
+    }
+}
@@ -0,0 +1,149 @@
+package quickchatapp;
+
+/**
+ * MessageSketchesTest.java
+ * Accuracy tests for HyperLogLog, CountMinSketch and SpaceSaving classes
+ * against exact counts, and for the sketches kept by MessageManager
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class MessageSketchesTest {
+    
+    @Test
+    public void testDistinctCountWithinError() {
+        for (int distinct : new int[] {10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (int i = 0; i < distinct * 3; i++) {
+                sketch.add("+2771" + (10_000_000 + i % distinct));
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            // Three standard errors of 1.6%
+            assertTrue(error < 0.05, distinct + " distinct estimated as " + sketch.estimate());
+        }
+    }
+    
+    @Test
+    public void testHyperLogLogMergeEqualsUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog whole = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            String value = "recipient-" + i;
+            (i % 2 == 0 ? left : right).add(value);
+            whole.add(value);
+            // Overlap between the two halves must not be counted twice
+            if (i % 10 == 0) {
+                left.add(value);
+                right.add(value);
+            }
+        }
+        
+        assertEquals(whole.estimate(), left.merge(right).estimate());
+    }
+    
+    @Test
+    public void testFrequencyNeverUnderCounts() {
+        CountMinSketch sketch = new CountMinSketch(512, 4);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (String recipient : zipf(random, 100_000, 20_000)) {
+            sketch.add(recipient);
+            exact.merge(recipient, 1, Integer::sum);
+        }
+        
+        int outsideBound = 0;
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), "Count-Min must never undercount");
+            if (estimate - entry.getValue() > sketch.getErrorBound()) {
+                outsideBound++;
+            }
+        }
+        // The bound holds with probability 1 - e^-4, about 98%
+        assertTrue(outsideBound < exact.size() * 0.02, outsideBound + " estimates outside the bound");
+        assertEquals(100_000, sketch.getTotal());
+    }
+    
+    @Test
+    public void testTopRecipientsMatchExact() {
+        SpaceSaving sketch = new SpaceSaving(64);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(11);
+        for (String recipient : zipf(random, 200_000, 50_000)) {
+            sketch.add(recipient);
+            exact.merge(recipient, 1, Integer::sum);
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(exact.entrySet());
+        ranked.sort((a, b) -> b.getValue() - a.getValue());
+        
+        List<SpaceSaving.Counter> top = sketch.top(10);
+        for (int i = 0; i < 10; i++) {
+            SpaceSaving.Counter counter = top.get(i);
+            int trueCount = exact.get(counter.getValue());
+            assertTrue(counter.getCount() >= trueCount && counter.getGuaranteedCount() <= trueCount,
+                    counter + " does not bracket " + trueCount);
+        }
+        // Heavy hitters are tracked regardless of order
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sketch.estimate(ranked.get(i).getKey()) >= ranked.get(i).getValue());
+        }
+    }
+    
+    @Test
+    public void testManagerSketchesMergeAcrossShards() {
+        ShardedMessageManager sharded = new ShardedMessageManager(4);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(3);
+        for (String recipient : zipf(random, 20_000, 2_000)) {
+            Message msg = new Message(Message.newMessageID(), 0, recipient, "Sketch test", "", "Sent");
+            sharded.addMessage(msg);
+            exact.merge(recipient, 1, Integer::sum);
+        }
+        
+        MessageSketches sketches = sharded.getSketches();
+        
+        assertEquals(20_000, sketches.getMessageCount());
+        assertTrue(Math.abs(sketches.getDistinctRecipients() - exact.size()) < exact.size() * 0.05,
+                "Distinct recipients " + sketches.getDistinctRecipients() + " vs " + exact.size());
+        String busiest = sketches.getTopRecipients(1).get(0).getValue();
+        assertEquals(exact.entrySet().stream().max(Map.Entry.comparingByValue()).get().getKey(), busiest);
+        assertTrue(sketches.estimateMessagesTo(busiest) >= exact.get(busiest));
+        assertTrue(sketches.getSizeInBytes() < 16 * 1024);
+    }
+    
+    /**
+     * Recipients drawn from a Zipf-like distribution (rank r has weight 1/r)
+     */
+    private static List<String> zipf(Random random, int count, int recipients) {
+        double[] cumulative = new double[recipients];
+        double sum = 0;
+        for (int r = 0; r < recipients; r++) {
+            sum += 1.0 / (r + 1);
+            cumulative[r] = sum;
+        }
+        List<String> drawn = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = recipients - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            drawn.add("+2771" + (10_000_000 + low));
+        }
+        return drawn;
+    }
+}
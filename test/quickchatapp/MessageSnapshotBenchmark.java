@@ -0,0 +1,131 @@
+package quickchatapp;
+
+/**
+ * MessageSnapshotBenchmark.java
+ * One writer adding and batch-deleting messages while reader threads run
+ * findLongestMessage over the whole store, three ways:
+ * - locked: readers and the writer share the manager's monitor
+ * - unlocked: readers walk the live list with no lock (the old behaviour)
+ * - snapshot: readers take a snapshot and never lock
+ * Reports writes/s, reads/s, writer latency and reader failures
+ * Run with: java quickchatapp.MessageSnapshotBenchmark [messages] [readers] [seconds]
+ */
+
+import static quickchatapp.TestMessages.message;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MessageSnapshotBenchmark {
+    private static final int DELETE_BATCH = 1_000;
+    
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        // Warm-up pass so the JIT has compiled every path
+        for (String mode : new String[] {"locked", "unlocked", "snapshot"}) {
+            run(mode, 20_000, readers, 1, false);
+        }
+        
+        System.out.println(messages + " messages, 1 writer, " + readers + " readers, " + seconds + " s");
+        System.out.println("Mode       Writes/s   Reads/s    Write p99 ms  Write max ms  Reader failures");
+        for (String mode : new String[] {"locked", "unlocked", "snapshot"}) {
+            run(mode, messages, readers, seconds, true);
+        }
+    }
+    
+    private static void run(String mode, int count, int readers, int seconds, boolean report) throws InterruptedException {
+        MessageManager manager = new MessageManager();
+        List<Message> initial = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            initial.add(message(recipient(i), content(i), "Sent"));
+        }
+        manager.addMessages(initial);
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder reads = new LongAdder();
+        LongAdder failures = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        read(mode, manager);
+                        reads.increment();
+                    } catch (RuntimeException e) {
+                        // ConcurrentModificationException and friends from the unlocked list
+                        failures.increment();
+                    }
+                }
+            }));
+        }
+        
+        LatencyHistogram writes = new LatencyHistogram();
+        Thread writer = new Thread(() -> {
+            List<String> pending = new ArrayList<>();
+            int next = count;
+            while (running.get()) {
+                Message msg = message(recipient(next), content(next), "Sent");
+                next++;
+                long start = System.nanoTime();
+                synchronized (manager) {
+                    manager.addMessage(msg);
+                }
+                writes.record(System.nanoTime() - start);
+                pending.add(msg.getMessageHash());
+                if (pending.size() == DELETE_BATCH) {
+                    // Keeps the store the same size across the run
+                    start = System.nanoTime();
+                    synchronized (manager) {
+                        manager.deleteByHashes(pending);
+                    }
+                    writes.record(System.nanoTime() - start);
+                    pending.clear();
+                }
+            }
+        });
+        threads.add(writer);
+        
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        
+        if (report) {
+            System.out.printf("%-10s %-10.0f %-10.1f %-13.3f %-13.3f %d%n", mode, writes.getCount() / elapsed,
+                    reads.sum() / elapsed, writes.percentile(99) / 1e6, writes.getMax() / 1e6, failures.sum());
+        }
+    }
+    
+    private static void read(String mode, MessageManager manager) {
+        switch (mode) {
+            case "locked":
+                synchronized (manager) {
+                    manager.findLongestMessage();
+                }
+                break;
+            case "unlocked":
+                MessageManager.longestOf(manager.messagesView());
+                break;
+            default:
+                manager.snapshot().findLongestMessage();
+        }
+    }
+    
+    private static String recipient(int i) {
+        return "+2771" + (10_000_000 + i % 50_000);
+    }
+    
+    private static String content(int i) {
+        return "Snapshot benchmark message " + i + " ".repeat(i % 40) + "end";
+    }
+}
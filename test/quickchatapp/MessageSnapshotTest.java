@@ -0,0 +1,146 @@
+package quickchatapp;
+
+/**
+ * MessageSnapshotTest.java
+ * Unit tests for MessageSnapshot and VersionedMessages classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+public class MessageSnapshotTest {
+    
+    @Test
+    public void testSnapshotIgnoresLaterChanges() {
+        MessageManager manager = new MessageManager();
+        Message first = message("+27718693002", "Hello there", "Sent");
+        Message second = message("+27838884567", "The longest message in the store so far", "Stored");
+        manager.addMessage(first);
+        manager.addMessage(second);
+        
+        MessageSnapshot before = manager.snapshot();
+        String report = before.displayReport();
+        manager.addMessage(message("+27718693002", "Added after the snapshot was taken, and longer", "Sent"));
+        manager.deleteMessageByHash(first.getMessageHash());
+        MessageSnapshot after = manager.snapshot();
+        
+        assertEquals(List.of(first, second), before.toList());
+        assertEquals(2, before.size());
+        assertEquals(report, before.displayReport());
+        assertEquals("The longest message in the store so far", before.findLongestMessage());
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(manager.getAllMessages(), after.toList());
+        assertEquals("Added after the snapshot was taken, and longer", manager.findLongestMessage());
+        assertEquals(manager.displayReport(), after.displayReport());
+        assertEquals("No sent messages available.", new MessageManager().displaySentMessagesInfo());
+    }
+    
+    @Test
+    public void testCompactionKeepsOldSnapshots() {
+        MessageManager manager = new MessageManager();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            messages.add(message("+2771" + (10_000_000 + i), "Compaction test " + i, "Sent"));
+        }
+        manager.addMessages(messages);
+        MessageSnapshot full = manager.snapshot();
+        
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 4_000; i++) {
+            hashes.add(messages.get(i).getMessageHash());
+        }
+        manager.deleteByHashes(hashes);
+        MessageSnapshot compacted = manager.snapshot();
+        
+        assertEquals(messages, full.toList());
+        assertEquals(messages.subList(4_000, 5_000), compacted.toList());
+        assertEquals(1_000, compacted.size());
+        // Deletions no longer take space once the log is compacted
+        VersionedMessages versions = new VersionedMessages();
+        versions.append(messages);
+        versions.remove(messages.subList(0, 4_000));
+        assertEquals(1_000, versions.getLength());
+        
+        manager.deleteMessageByHash(messages.get(4_500).getMessageHash());
+        assertEquals(999, manager.snapshot().size());
+        assertEquals(1_000, compacted.size());
+    }
+    
+    @Test
+    public void testDeletesFindMessagesSharedWithAnotherManager() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 51; i++) {
+            messages.add(message("+2771" + (10_000_000 + i), "Shared " + i, "Sent"));
+        }
+        MessageManager manager = new MessageManager();
+        manager.addMessages(messages);
+        // Indexing them elsewhere, in another order, must not move them here
+        List<Message> reversed = new ArrayList<>(messages);
+        Collections.reverse(reversed);
+        new MessageManager().addMessages(reversed);
+        
+        manager.deleteMessageByHash(messages.get(0).getMessageHash());
+        
+        assertEquals(50, manager.getMessageCount());
+        assertEquals(50, manager.snapshot().size());
+        assertEquals(manager.getAllMessages(), manager.snapshot().toList());
+        assertEquals(manager.displayReport(), MessageManager.buildReport(manager.getAllMessages()));
+    }
+    
+    @Test
+    public void testReadersNeverSeeHalfABatch() throws InterruptedException {
+        MessageManager manager = new MessageManager();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> problem = new AtomicReference<>();
+        
+        // Every batch adds, then deletes, two messages to the same recipient
+        Thread writer = new Thread(() -> {
+            for (int batch = 0; running.get() && batch < 200_000; batch++) {
+                String recipient = "+2771" + (10_000_000 + batch % 100);
+                List<Message> pair = List.of(message(recipient, "Pair " + batch + " a", "Sent"),
+                        message(recipient, "Pair " + batch + " b", "Sent"));
+                manager.addMessages(pair);
+                if (batch % 3 != 0) {
+                    manager.deleteByHashes(List.of(pair.get(0).getMessageHash(), pair.get(1).getMessageHash()));
+                }
+            }
+        });
+        writer.start();
+        
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        int checked = 0;
+        while (System.nanoTime() < deadline && problem.get() == null) {
+            MessageSnapshot snapshot = manager.snapshot();
+            Map<String, Integer> perRecipient = new HashMap<>();
+            int seen = 0;
+            for (Message msg : snapshot) {
+                perRecipient.merge(msg.getRecipient(), 1, Integer::sum);
+                seen++;
+            }
+            if (seen != snapshot.size()) {
+                problem.set("Snapshot size " + snapshot.size() + " but iterated " + seen);
+            }
+            for (Map.Entry<String, Integer> entry : perRecipient.entrySet()) {
+                if (entry.getValue() % 2 != 0) {
+                    problem.set("Torn batch for " + entry.getKey());
+                }
+            }
+            checked++;
+        }
+        running.set(false);
+        writer.join();
+        
+        assertEquals(null, problem.get());
+        assertTrue(checked > 0);
+        assertEquals(manager.getAllMessages(), manager.snapshot().toList());
+    }
+}
@@ -0,0 +1,71 @@
+package quickchatapp;
+
+/**
+ * MessageSoakHarnessTest.java
+ * Unit tests for MessageSoakHarness and LatencyHistogram classes
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class MessageSoakHarnessTest {
+    
+    @Test
+    public void testHistogramPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++) {
+            histogram.record(nanos * 10);
+        }
+        
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        for (double percentile : new double[] {50, 99, 99.9}) {
+            double expected = percentile / 100 * 10_000_000;
+            long reported = histogram.percentile(percentile);
+            assertTrue(reported >= expected && reported <= expected * 1.016,
+                    "p" + percentile + " reported as " + reported);
+        }
+        
+        LatencyHistogram merged = new LatencyHistogram().merge(histogram).merge(histogram);
+        assertEquals(2_000_000, merged.getCount());
+        assertEquals(histogram.percentile(99), merged.percentile(99));
+        histogram.reset();
+        assertEquals(0, histogram.percentile(50));
+    }
+    
+    @Test
+    public void testShortRunReportsEveryOperation() throws InterruptedException {
+        ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        MessageManager manager = new MessageManager();
+        // No stores, so the run leaves no files behind
+        MessageSoakHarness harness = new MessageSoakHarness(manager, 2, 1_500)
+                .weight(MessageSoakHarness.Operation.STORE, 0)
+                .weight(MessageSoakHarness.Operation.REPORT, 2)
+                .reportEvery(500, new PrintStream(progress, true, StandardCharsets.UTF_8));
+        
+        MessageSoakHarness.Result result = harness.run();
+        
+        assertEquals(0, result.getOperations(MessageSoakHarness.Operation.STORE));
+        for (MessageSoakHarness.Operation operation : MessageSoakHarness.Operation.values()) {
+            if (operation == MessageSoakHarness.Operation.STORE) {
+                continue;
+            }
+            assertTrue(result.getOperations(operation) > 0, operation + " never ran");
+            long p50 = result.getLatencyNanos(operation, 50);
+            long p99 = result.getLatencyNanos(operation, 99);
+            assertTrue(p50 <= p99 && p99 <= result.getLatencyNanos(operation, 99.9));
+        }
+        assertEquals(manager.getMessageCount(), result.getMessagesHeld());
+        assertTrue(result.getThroughput() > 0);
+        assertEquals(manager.countByStatus("Stored"), 0);
+        
+        String lines = progress.toString(StandardCharsets.UTF_8);
+        assertTrue(lines.startsWith("Seconds"), lines);
+        assertTrue(lines.split("\n").length >= 3, lines);
+        assertTrue(result.format().contains("p99.9 ms"));
+    }
+}
@@ -0,0 +1,88 @@
+package quickchatapp;
+
+/**
+ * MessageStoreWarmupBenchmark.java
+ * Measures startup against stores of 10,000 to 1,000,000 messages, with
+ * the load done before the first dialog (blocking) and overlapped with a
+ * simulated registration and login (background)
+ * Time to first interaction is when the first dialog could be shown;
+ * time to first operation is when the store can serve the menu after login
+ * Run with: java quickchatapp.MessageStoreWarmupBenchmark [login ms] [max messages]
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MessageStoreWarmupBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        long loginMillis = args.length > 0 ? Long.parseLong(args[0]) : 3_000;
+        int max = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path dir = Files.createTempDirectory("warmup-bench");
+        
+        // Warm-up pass so the JIT has compiled the load path
+        Path warm = write(dir, 50_000);
+        blocking(warm, dir, 0);
+        
+        System.out.println("Login " + loginMillis + " ms");
+        System.out.println("Messages   Startup      First dialog ms   First operation ms");
+        for (int count = 10_000; count <= max; count *= 10) {
+            Path store = write(dir, count);
+            long[] blocking = blocking(store, dir, loginMillis);
+            long[] background = background(store, dir, loginMillis);
+            print(count, "blocking", blocking);
+            print(count, "background", background);
+        }
+    }
+    
+    /**
+     * Loads first, then shows the first dialog and runs the login
+     */
+    private static long[] blocking(Path store, Path dir, long loginMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        MessageManager manager = new MessageManager();
+        manager.addMessages(MessageStoreWarmup.readStore(store, dir.resolve("none"), dir.resolve("none")));
+        long firstDialog = System.nanoTime() - start;
+        Thread.sleep(loginMillis);
+        manager.getMessageCount();
+        return new long[] {firstDialog, System.nanoTime() - start};
+    }
+    
+    /**
+     * Starts the warm-up, shows the first dialog at once and waits on the
+     * readiness future after login
+     */
+    private static long[] background(Path store, Path dir, long loginMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        MessageStoreWarmup warmup = new MessageStoreWarmup(store, dir.resolve("none"), dir.resolve("none")).begin();
+        long firstDialog = System.nanoTime() - start;
+        Thread.sleep(loginMillis);
+        warmup.await().getMessageCount();
+        return new long[] {firstDialog, System.nanoTime() - start};
+    }
+    
+    private static void print(int count, String startup, long[] nanos) {
+        System.out.printf("%-10d %-12s %-17.1f %.1f%n", count, startup, nanos[0] / 1e6, nanos[1] / 1e6);
+    }
+    
+    private static Path write(Path dir, int count) throws IOException {
+        Path store = dir.resolve("store-" + count + ".json");
+        try (Writer out = Files.newBufferedWriter(store, StandardCharsets.UTF_8)) {
+            out.write('[');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write("{\"messageID\":\"" + (1_000_000_000L + i) + "\",\"numMessagesSent\":" + (i + 1)
+                        + ",\"recipient\":\"+2771" + (10_000_000 + i % 100_000) + "\",\"messageContent\":\"Stored message "
+                        + i + "\",\"messageHash\":\"10:" + (i + 1) + ":STORED:" + i + "\",\"sendStatus\":\"Stored\",\"storedAt\":"
+                        + (1_700_000_000_000L + i) + "}");
+            }
+            out.write(']');
+        }
+        return store;
+    }
+}
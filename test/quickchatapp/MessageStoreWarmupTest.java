@@ -0,0 +1,95 @@
+package quickchatapp;
+
+/**
+ * MessageStoreWarmupTest.java
+ * Unit tests for MessageStoreWarmup class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class MessageStoreWarmupTest {
+    
+    @Test
+    public void testLoadsAndIndexesStore() throws Exception {
+        Path dir = Files.createTempDirectory("warmup");
+        String bodyKey = MessageBodyStore.contentKey("Shared body");
+        JSONArray records = new JSONArray();
+        records.put(record("1000000001", "10:1:HI:TONIGHT", "+27718693002").put("messageContent", "Hi tonight").put("storedAt", 5_000L));
+        records.put(record("1000000002", "10:2:HI:LATER", "+27718693002").put("messageContent", "Hi later"));
+        records.put(record("1000000003", "10:3:SHARED:BODY", "+27838884567").put("bodyRef", bodyKey));
+        Files.write(dir.resolve("store"), records.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("tombstones"), (Message.tombstoneKey("1000000002", "10:2:HI:LATER") + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("bodies"), new JSONObject().put(bodyKey, "Shared body").toString().getBytes(StandardCharsets.UTF_8));
+        
+        MessageStoreWarmup warmup = new MessageStoreWarmup(dir.resolve("store"), dir.resolve("tombstones"), dir.resolve("bodies")).begin();
+        MessageManager manager = warmup.ready().get(10, TimeUnit.SECONDS);
+        
+        assertTrue(warmup.isReady());
+        assertEquals(2, warmup.getMessagesLoaded());
+        assertTrue(warmup.getLoadMillis() >= 0);
+        assertEquals(2, manager.getMessageCount());
+        assertEquals(2, manager.countByStatus("Stored"));
+        assertEquals("Recipient: +27838884567\nMessage: Shared body", manager.searchByMessageID("1000000003"));
+        assertEquals("Message ID not found.", manager.searchByMessageID("1000000002"));
+        assertEquals(5_000L, manager.getAllMessages().get(0).getCreatedAt());
+    }
+    
+    @Test
+    public void testMissingStoreGivesEmptyManager() throws IOException {
+        Path dir = Files.createTempDirectory("warmup");
+        MessageStoreWarmup warmup = new MessageStoreWarmup(dir.resolve("store"), dir.resolve("tombstones"), dir.resolve("bodies")).begin();
+        
+        MessageManager manager = warmup.await();
+        
+        assertEquals(0, manager.getMessageCount());
+        assertEquals(0, warmup.getMessagesLoaded());
+    }
+    
+    @Test
+    public void testCorruptStoreStillUsable() throws IOException {
+        Path dir = Files.createTempDirectory("warmup");
+        Files.write(dir.resolve("store"), "[{\"messageID\":".getBytes(StandardCharsets.UTF_8));
+        MessageStoreWarmup warmup = new MessageStoreWarmup(dir.resolve("store"), dir.resolve("tombstones"), dir.resolve("bodies")).begin();
+        
+        MessageManager manager = warmup.await();
+        
+        assertTrue(warmup.ready().isCompletedExceptionally());
+        assertEquals(0, manager.getMessageCount());
+    }
+    
+    @Test
+    public void testLoadManagerReadsFullRecords() throws IOException {
+        Path dir = Files.createTempDirectory("warmup");
+        JSONArray records = new JSONArray();
+        records.put(record("1000000001", "10:1:HI:TONIGHT", "+27718693002").put("messageContent", "Hi tonight"));
+        records.put(record("1000000002", "10:2:HI:LATER", "+27838884567").put("messageContent", "Hi later"));
+        Files.write(dir.resolve(Message.STORE_FILE), records.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(Message.TOMBSTONE_FILE),
+                (Message.tombstoneKey("1000000001", "10:1:HI:TONIGHT") + "\n").getBytes(StandardCharsets.UTF_8));
+        
+        MessageManager manager = MessageStoreWarmup.loadManager(dir);
+        
+        assertEquals(1, manager.getMessageCount());
+        assertEquals("Recipient: +27838884567\nMessage: Hi later", manager.searchByMessageID("1000000002"));
+        assertEquals(0, MessageStoreWarmup.loadManager(dir.resolve("missing")).getMessageCount());
+    }
+    
+    private static JSONObject record(String id, String hash, String recipient) {
+        JSONObject record = new JSONObject();
+        record.put("messageID", id);
+        record.put("numMessagesSent", 1);
+        record.put("recipient", recipient);
+        record.put("messageHash", hash);
+        record.put("sendStatus", "Stored");
+        return record;
+    }
+}
@@ -0,0 +1,108 @@
+package quickchatapp;
+
+/**
+ * QuickChatEventsTest.java
+ * Unit tests for QuickChatEvents class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+public class QuickChatEventsTest {
+    
+    @Test
+    public void testEventsAreOffWithoutARecording() {
+        assertFalse(EventType.getEventType(QuickChatEvents.Search.class).isEnabled());
+        assertFalse(EventType.getEventType(QuickChatEvents.Validation.class).isEnabled());
+        // Disabled events are never committed, so nothing else changes
+        Message msg = message("+27718693002", "Hi Mike, can you join us for dinner tonight", "Sent");
+        assertEquals(0, msg.checkRecipientCell());
+    }
+    
+    @Test
+    public void testRecordedEventsCarrySizes() throws IOException {
+        Path file = Files.createTempDirectory("events").resolve("quickchat.jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"quickchat.Search", "quickchat.Delete", "quickchat.Validation",
+                    "quickchat.Hash", "quickchat.Login"}) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            
+            MessageManager manager = new MessageManager();
+            Message first = message("+27718693002", "Hi Mike, can you join us for dinner tonight", "Sent");
+            Message second = message("+27838884567", "Where are you? You are late!", "Stored");
+            manager.addMessage(first);
+            manager.addMessage(second);
+            first.checkRecipientCell();
+            manager.searchByRecipient("+27718693002");
+            manager.deleteMessageByHash(second.getMessageHash());
+            
+            Login login = new Login();
+            login.setUsername("kyl_1");
+            login.setPassword("Ch&&sec@ke99!");
+            login.setCellPhoneNumber("+27838968976");
+            login.registerUser();
+            login.loginUser("kyl_1", "wrong");
+            
+            recording.stop();
+            recording.dump(file);
+        }
+        events = RecordingFile.readAllEvents(file);
+        
+        RecordedEvent search = only(events, "quickchat.Search");
+        assertEquals("recipient", search.getString("kind"));
+        assertEquals(1, search.getInt("results"));
+        assertEquals(2, search.getInt("messagesHeld"));
+        
+        RecordedEvent delete = only(events, "quickchat.Delete");
+        assertEquals("hash", delete.getString("kind"));
+        assertEquals(1, delete.getInt("deleted"));
+        assertEquals(1, delete.getInt("messagesHeld"));
+        
+        List<String> checks = new ArrayList<>();
+        for (RecordedEvent event : named(events, "quickchat.Validation")) {
+            checks.add(event.getString("check"));
+            assertTrue(event.getBoolean("valid"));
+        }
+        assertEquals(List.of("recipient", "username", "password", "cellPhoneNumber"), checks);
+        assertEquals(2, named(events, "quickchat.Hash").size());
+        
+        List<RecordedEvent> logins = named(events, "quickchat.Login");
+        assertEquals(2, logins.size());
+        assertTrue(logins.get(0).getBoolean("success"));
+        assertEquals("login", logins.get(1).getString("operation"));
+        assertFalse(logins.get(1).getBoolean("success"));
+    }
+    
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = named(events, name);
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+    
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                matching.add(event);
+            }
+        }
+        matching.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        return matching;
+    }
+}
@@ -0,0 +1,154 @@
+package quickchatapp;
+
+/**
+ * QuickChatHeadlessTest.java
+ * Unit tests for QuickChatHeadless class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class QuickChatHeadlessTest {
+    
+    private String[] run(QuickChatHeadless headless, String script) throws Exception {
+        StringWriter output = new StringWriter();
+        headless.run(new BufferedReader(new StringReader(script)), new PrintWriter(output));
+        return output.toString().split("\\R");
+    }
+    
+    @Test
+    public void testScriptedSession() throws Exception {
+        MessageManager manager = new MessageManager();
+        QuickChatHeadless headless = new QuickChatHeadless(manager);
+        
+        String[] lines = run(headless,
+                "# set up\n"
+                + "register kyl_1 Ch&&sec@ke99! +27838968976 Kyle Smith\n"
+                + "login kyl_1 Ch&&sec@ke99!\n"
+                + "send +27718693002 Hi Mike, can you join us for dinner tonight\n"
+                + "disregard +27718693002 Never mind\n"
+                + "search recipient +27718693002\n"
+                + "report\n");
+        
+        assertEquals(6, lines.length);
+        assertEquals("ok", new JSONObject(lines[0]).getString("status"));
+        assertEquals("Welcome Kyle Smith, it is great to see you again.", new JSONObject(lines[1]).getString("message"));
+        JSONObject sent = new JSONObject(lines[2]);
+        assertEquals("Message successfully sent.", sent.getString("message"));
+        assertEquals("Sent", sent.getString("sendStatus"));
+        assertEquals("Disregarded", new JSONObject(lines[3]).getString("sendStatus"));
+        assertEquals(1, new JSONObject(lines[4]).getJSONArray("messages").length());
+        assertEquals(2, manager.getMessageCount());
+        assertEquals(0, headless.getErrorCount());
+    }
+    
+    @Test
+    public void testSendRequiresLogin() throws Exception {
+        QuickChatHeadless headless = new QuickChatHeadless(new MessageManager());
+        
+        String[] lines = run(headless, "send +27718693002 Hello\n");
+        
+        JSONObject result = new JSONObject(lines[0]);
+        assertEquals("error", result.getString("status"));
+        assertEquals("Please log in first.", result.getString("message"));
+        assertEquals(1, headless.getErrorCount());
+    }
+    
+    @Test
+    public void testValidationErrorsReported() throws Exception {
+        QuickChatHeadless headless = new QuickChatHeadless(new MessageManager());
+        
+        String[] lines = run(headless,
+                "register kyle!!!!!!!! password 08966553\n"
+                + "register kyl_1 Ch&&sec@ke99! +27838968976\n"
+                + "login kyl_1 wrongpass\n"
+                + "login kyl_1 Ch&&sec@ke99!\n"
+                + "send 08575975889 Hello\n"
+                + "send +27718693002 " + "a".repeat(260) + "\n"
+                + "frobnicate\n");
+        
+        assertEquals("error", new JSONObject(lines[0]).getString("status"));
+        assertTrue(new JSONObject(lines[0]).getString("message").contains("Username is not correctly formatted"));
+        assertEquals("Username or password incorrect, please try again.", new JSONObject(lines[2]).getString("message"));
+        assertEquals("ok", new JSONObject(lines[3]).getString("status"));
+        assertEquals("error", new JSONObject(lines[4]).getString("status"));
+        assertEquals("Message exceeds 250 characters by 10, please reduce size.", new JSONObject(lines[5]).getString("message"));
+        assertEquals("Unknown command.", new JSONObject(lines[6]).getString("message"));
+        assertEquals(5, headless.getErrorCount());
+    }
+    
+    @Test
+    public void testDeleteAndSearchByHash() throws Exception {
+        QuickChatHeadless headless = new QuickChatHeadless(new MessageManager());
+        String[] lines = run(headless,
+                "register kyl_1 Ch&&sec@ke99! +27838968976\n"
+                + "login kyl_1 Ch&&sec@ke99!\n"
+                + "send +27718693002 Where are you?\n");
+        String hash = new JSONObject(lines[2]).getString("messageHash");
+        
+        lines = run(headless, "search hash " + hash + "\ndelete " + hash + "\ndelete " + hash + "\n");
+        
+        assertEquals("Recipient: +27718693002\nMessage: Where are you?", new JSONObject(lines[0]).getString("message"));
+        assertTrue(new JSONObject(lines[1]).getBoolean("deleted"));
+        assertEquals("Message hash not found.", new JSONObject(lines[2]).getString("message"));
+    }
+    
+    @Test
+    public void testSearchLongestCount() throws Exception {
+        QuickChatHeadless headless = new QuickChatHeadless(new MessageManager());
+        String[] lines = run(headless,
+                "register kyl_1 Ch&&sec@ke99! +27838968976\n"
+                + "login kyl_1 Ch&&sec@ke99!\n"
+                + "send +27718693002 Hi Mike, can you join us for dinner tonight\n"
+                + "store +27838884567 Where are you? You are late!\n"
+                + "search longest\n"
+                + "search longest 5\n"
+                + "search longest 5 Stored\n"
+                + "search longest many\n"
+                + "search longest -1\n"
+                + "search longest 1\n");
+        
+        assertEquals("Hi Mike, can you join us for dinner tonight", new JSONObject(lines[4]).getString("message"));
+        assertEquals(2, new JSONObject(lines[5]).getJSONArray("messages").length());
+        JSONObject stored = new JSONObject(lines[6]);
+        assertEquals(1, stored.getJSONArray("messages").length());
+        assertEquals("Where are you? You are late!",
+            stored.getJSONArray("messages").getJSONObject(0).getString("messageContent"));
+        assertEquals("error", new JSONObject(lines[7]).getString("status"));
+        assertEquals("Count cannot be negative.", new JSONObject(lines[8]).getString("message"));
+        // The session carries on after the rejected count
+        assertEquals(1, new JSONObject(lines[9]).getJSONArray("messages").length());
+    }
+    
+    @Test
+    public void testThreadWithAndWithoutCount() throws Exception {
+        MessageManager manager = new MessageManager();
+        manager.setConversations(new ConversationStore(Files.createTempDirectory("conversations")));
+        QuickChatHeadless headless = new QuickChatHeadless(manager);
+        String[] lines = run(headless,
+                "register kyl_1 Ch&&sec@ke99! +27838968976\n"
+                + "login kyl_1 Ch&&sec@ke99!\n"
+                + "send +27718693002 Did you get the cake?\n"
+                + "send +27718693002 It is dinner time!\n"
+                + "thread +27718693002\n"
+                + "thread +27718693002 1\n"
+                + "thread +27718693002 1 before 2\n");
+        
+        JSONObject all = new JSONObject(lines[4]);
+        assertEquals("ok", all.getString("status"));
+        assertEquals(2, all.getJSONArray("messages").length());
+        JSONObject latest = new JSONObject(lines[5]);
+        assertEquals("It is dinner time!", latest.getJSONArray("messages").getJSONObject(0).getString("messageContent"));
+        assertTrue(latest.getBoolean("hasOlder"));
+        JSONObject older = new JSONObject(lines[6]);
+        assertEquals("Did you get the cake?", older.getJSONArray("messages").getJSONObject(0).getString("messageContent"));
+        assertEquals(0, headless.getErrorCount());
+    }
+}
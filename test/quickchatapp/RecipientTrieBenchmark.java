@@ -0,0 +1,99 @@
+package quickchatapp;
+
+/**
+ * RecipientTrieBenchmark.java
+ * Compares prefix search and prefix counts through the recipient trie
+ * against a scan over every message, for stores of 10,000 to 1,000,000
+ * messages spread over a few country codes
+ * Run with: java quickchatapp.RecipientTrieBenchmark [max messages]
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecipientTrieBenchmark {
+    private static final String[] CODES = {"27", "44", "1", "234", "91", "61", "49", "33"};
+    private static final int REPEATS = 5;
+    
+    public static void main(String[] args) {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        // Warm-up pass so the JIT has compiled both paths
+        run(manager(50_000), false);
+        
+        System.out.println("Messages   Lookup               Scan ms    Trie ms    Matches");
+        for (int count = 10_000; count <= max; count *= 10) {
+            run(manager(count), true);
+        }
+    }
+    
+    private static void run(MessageManager manager, boolean report) {
+        String[] prefixes = {"+27", "+2771005", "+277100512"};
+        for (String prefix : prefixes) {
+            // Best of a few runs, so a stray GC pause does not decide the result
+            long scanNanos = Long.MAX_VALUE;
+            long trieNanos = Long.MAX_VALUE;
+            long scanCountNanos = Long.MAX_VALUE;
+            long trieCountNanos = Long.MAX_VALUE;
+            int found = 0;
+            long trieCount = 0;
+            for (int r = 0; r < REPEATS; r++) {
+                long start = System.nanoTime();
+                List<Message> scanned = new ArrayList<>();
+                for (Message msg : manager.messagesView()) {
+                    if (msg.getRecipient().startsWith(prefix)) {
+                        scanned.add(msg);
+                    }
+                }
+                scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                List<Message> searched = manager.searchByRecipientPrefix(prefix);
+                trieNanos = Math.min(trieNanos, System.nanoTime() - start);
+                if (!searched.equals(scanned)) {
+                    System.out.println("Mismatch for " + prefix + ": " + searched.size() + " vs " + scanned.size());
+                }
+                found = searched.size();
+                
+                start = System.nanoTime();
+                long counted = 0;
+                for (Message msg : manager.messagesView()) {
+                    if (msg.getRecipient().startsWith(prefix)) {
+                        counted++;
+                    }
+                }
+                scanCountNanos = Math.min(scanCountNanos, System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                trieCount = manager.countByRecipientPrefix(prefix);
+                trieCountNanos = Math.min(trieCountNanos, System.nanoTime() - start);
+                if (trieCount != counted) {
+                    System.out.println("Count mismatch for " + prefix + ": " + trieCount + " vs " + counted);
+                }
+            }
+            
+            if (report) {
+                print(manager.getMessageCount(), "search " + prefix, scanNanos, trieNanos, found);
+                print(manager.getMessageCount(), "count " + prefix, scanCountNanos, trieCountNanos, trieCount);
+            }
+        }
+    }
+    
+    private static void print(int count, String lookup, long scanNanos, long trieNanos, long matches) {
+        System.out.printf("%-10d %-20s %-10.2f %-10.3f %d%n", count, lookup, scanNanos / 1e6, trieNanos / 1e6, matches);
+    }
+    
+    private static MessageManager manager(int count) {
+        MessageManager manager = new MessageManager();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String code = CODES[i % CODES.length];
+            // Numbers spread over a million per code, so prefixes narrow quickly
+            String number = Long.toString(7_100_000_000L + (i * 7919L) % 1_000_000);
+            messages.add(new Message(Message.newMessageID(), i + 1, "+" + code + number,
+                    "Routing message " + i, "", "Sent"));
+        }
+        manager.addMessages(messages);
+        return manager;
+    }
+}
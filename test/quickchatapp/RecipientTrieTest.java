@@ -0,0 +1,124 @@
+package quickchatapp;
+
+/**
+ * RecipientTrieTest.java
+ * Unit tests for RecipientTrie class and the recipient prefix and range
+ * searches of MessageManager class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+public class RecipientTrieTest {
+    private final InsertionOrder order = new InsertionOrder();
+    
+    @Test
+    public void testPrefixCountsAndMessages() {
+        RecipientTrie trie = new RecipientTrie(order);
+        Message first = message("+27718693002");
+        Message other = message("+27838884567");
+        Message american = message("+14155550100");
+        Message second = message("+27718693002");
+        Message local = message("0712345678");
+        for (Message msg : List.of(first, other, american, second, local)) {
+            trie.add(msg);
+        }
+        
+        assertEquals(3, trie.count("+27"));
+        assertEquals(2, trie.count("+2771"));
+        assertEquals(4, trie.count("+"));
+        assertEquals(5, trie.count(""));
+        assertEquals(0, trie.count("+44"));
+        assertEquals(1, trie.count("07"));
+        assertEquals(List.of(first, other, second), trie.messages("+27"));
+        assertEquals(List.of(local), trie.messages("07"));
+        
+        trie.remove(first);
+        trie.remove(second);
+        assertEquals(1, trie.count("+27"));
+        assertEquals(List.of(other), trie.messages("+27"));
+        assertEquals(0, trie.count("+2771"));
+    }
+    
+    @Test
+    public void testRangeMatchesBruteForce() {
+        RecipientTrie trie = new RecipientTrie(order);
+        List<Message> messages = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            Message msg = message("+27" + (710_000_000L + random.nextInt(2_000_000)));
+            messages.add(msg);
+            trie.add(msg);
+        }
+        
+        String from = "+27710500000";
+        String to = "+27711250000";
+        List<Message> expected = new ArrayList<>();
+        for (Message msg : messages) {
+            if (msg.getRecipient().compareTo(from) >= 0 && msg.getRecipient().compareTo(to) <= 0) {
+                expected.add(msg);
+            }
+        }
+        
+        assertEquals(expected, trie.messagesBetween(from, to));
+        assertEquals(expected.size(), trie.countBetween(from, to));
+        assertEquals(0, trie.countBetween(to, from));
+        assertEquals(trie.messages("+27"), trie.messagesBetween("+27", "+28"));
+        assertEquals(2_000, trie.countBetween("", "+9"));
+    }
+    
+    @Test
+    public void testManagerSearchesStayCurrent() {
+        MessageManager manager = new MessageManager();
+        List<Message> messages = new ArrayList<>();
+        String[] numbers = {"+27718693002", "+27838884567", "+14155550100", "+447700900123", "+27718690000"};
+        for (int i = 0; i < 50; i++) {
+            Message msg = new Message();
+            msg.setRecipient(numbers[i % numbers.length]);
+            msg.setMessageContent("Routing test " + i);
+            msg.setSendStatus("Sent");
+            msg.createMessageHash();
+            messages.add(msg);
+        }
+        manager.addMessages(messages);
+        
+        assertEquals(filter(manager, msg -> msg.getRecipient().startsWith("+27")), manager.searchByRecipientPrefix("+27"));
+        assertEquals(30, manager.countByRecipientPrefix("+27"));
+        assertEquals(filter(manager, msg -> msg.getRecipient().startsWith("+2771869")),
+                manager.searchByRecipientRange("+27718690000", "+27718699999"));
+        Map<String, Long> byCode = manager.countByCountryCode();
+        assertEquals(30L, (long) byCode.get("27"));
+        assertEquals(10L, (long) byCode.get("1"));
+        assertEquals(10L, (long) byCode.get("44"));
+        
+        manager.deleteByHashes(List.of(messages.get(0).getMessageHash(), messages.get(1).getMessageHash()));
+        assertEquals(28, manager.countByRecipientPrefix("+27"));
+        assertEquals(filter(manager, msg -> msg.getRecipient().startsWith("+27")), manager.searchByRecipientPrefix("+27"));
+        
+        MessageQuery.Result result = manager.query(MessageQuery.where(MessageQuery.recipientPrefix("+44")));
+        assertTrue(result.getPlan().startsWith("TRIE"), result.getPlan());
+        assertEquals(10, result.getRowsExamined());
+    }
+    
+    private static List<Message> filter(MessageManager manager, Predicate<Message> condition) {
+        List<Message> matches = new ArrayList<>();
+        for (Message msg : manager.getAllMessages()) {
+            if (condition.test(msg)) {
+                matches.add(msg);
+            }
+        }
+        return matches;
+    }
+    
+    private Message message(String recipient) {
+        Message msg = new Message(Message.newMessageID(), 0, recipient, "Routing test", "", "Sent");
+        order.add(msg);
+        return msg;
+    }
+}
@@ -0,0 +1,107 @@
+package quickchatapp;
+
+/**
+ * SessionManagerTest.java
+ * Unit tests for SessionManager class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class SessionManagerTest {
+    
+    private Login registeredUser() {
+        Login login = new Login();
+        login.setUsername("kyl_1");
+        login.setPassword("Ch&&sec@ke99!");
+        login.setFirstName("Kyle");
+        login.setLastName("Smith");
+        return login;
+    }
+    
+    @Test
+    public void testSessionCreatedOnCorrectCredentials() {
+        SessionManager manager = new SessionManager();
+        Login user = registeredUser();
+        
+        Session session = manager.createSession(user, "kyl_1", "Ch&&sec@ke99!");
+        
+        assertNotNull(session, "Session should be issued");
+        assertSame(session, manager.validateSession(session.getToken()));
+        assertSame(user, session.getUser());
+    }
+    
+    @Test
+    public void testNoSessionOnWrongCredentials() {
+        SessionManager manager = new SessionManager();
+        
+        assertNull(manager.createSession(registeredUser(), "kyl_1", "wrongpass"));
+        assertEquals(0, manager.getSessionCount());
+    }
+    
+    @Test
+    public void testUnknownTokenRejected() {
+        SessionManager manager = new SessionManager();
+        
+        assertNull(manager.validateSession("not-a-token"));
+        assertNull(manager.validateSession(null));
+    }
+    
+    @Test
+    public void testInvalidatedSessionRejected() {
+        SessionManager manager = new SessionManager();
+        Session session = manager.createSession(registeredUser(), "kyl_1", "Ch&&sec@ke99!");
+        
+        assertTrue(manager.invalidateSession(session.getToken()));
+        assertNull(manager.validateSession(session.getToken()));
+        assertFalse(session.isValid());
+    }
+    
+    @Test
+    public void testExpiredSessionRejected() throws InterruptedException {
+        SessionManager manager = new SessionManager(1, 10);
+        Session session = manager.createSession(registeredUser(), "kyl_1", "Ch&&sec@ke99!");
+        
+        Thread.sleep(5);
+        
+        assertNull(manager.validateSession(session.getToken()));
+    }
+    
+    @Test
+    public void testOldestSessionEvictedWhenFull() {
+        SessionManager manager = new SessionManager(60_000, 2);
+        Login user = registeredUser();
+        
+        Session first = manager.createSession(user, "kyl_1", "Ch&&sec@ke99!");
+        Session second = manager.createSession(user, "kyl_1", "Ch&&sec@ke99!");
+        Session third = manager.createSession(user, "kyl_1", "Ch&&sec@ke99!");
+        
+        assertEquals(2, manager.getSessionCount());
+        assertNull(manager.validateSession(first.getToken()));
+        assertNotNull(manager.validateSession(second.getToken()));
+        assertNotNull(manager.validateSession(third.getToken()));
+    }
+    
+    @Test
+    public void testMessageManagerAcceptsOnlyValidSession() {
+        SessionManager sessions = new SessionManager();
+        MessageManager messages = new MessageManager();
+        Session session = sessions.createSession(registeredUser(), "kyl_1", "Ch&&sec@ke99!");
+        
+        Message msg = new Message();
+        msg.setRecipient("+27718693002");
+        msg.setMessageContent("Hi Mike, can you join us for dinner tonight");
+        msg.createMessageHash();
+        msg.setSendStatus("Sent");
+        
+        assertTrue(messages.addMessage(session, msg));
+        sessions.invalidateSession(session.getToken());
+        assertFalse(messages.addMessage(session, msg));
+        assertEquals(1, messages.getAllMessages().size());
+    }
+}
@@ -0,0 +1,67 @@
+package quickchatapp;
+
+/**
+ * ShardedMessageManagerBenchmark.java
+ * Compares throughput of one MessageManager shard against many
+ * Run with: java quickchatapp.ShardedMessageManagerBenchmark [threads] [messages per thread]
+ */
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ShardedMessageManagerBenchmark {
+    
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        
+        // Warm-up pass so the JIT has compiled both paths
+        run(new ShardedMessageManager(1), threads, perThread / 10);
+        run(new ShardedMessageManager(threads * 4), threads, perThread / 10);
+        
+        for (int shards : new int[] {1, threads, threads * 4}) {
+            ShardedMessageManager manager = new ShardedMessageManager(shards);
+            long elapsed = run(manager, threads, perThread);
+            long ops = (long) threads * perThread;
+            System.out.printf("Shards: %3d  threads: %2d  %,.0f ops/s%n", shards, threads, ops * 1e9 / elapsed);
+            
+            long start = System.nanoTime();
+            manager.findLongestMessage();
+            manager.countByStatus("Sent");
+            System.out.printf("             fan-out longest + count over %,d messages: %.2f ms%n",
+                    manager.getMessageCount(), (System.nanoTime() - start) / 1e6);
+        }
+    }
+    
+    /**
+     * Each thread adds messages and looks up recipients (90% add, 10% search)
+     * @return elapsed nanoseconds
+     */
+    private static long run(ShardedMessageManager manager, int threads, int perThread) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    String recipient = "+2771" + (10_000_000 + random.nextInt(100_000));
+                    if (i % 10 == 9) {
+                        manager.searchByRecipient(recipient);
+                    } else {
+                        Message msg = new Message();
+                        msg.setRecipient(recipient);
+                        msg.setMessageContent("Benchmark message " + i);
+                        msg.setSendStatus("Sent");
+                        manager.addMessage(msg);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,82 @@
+package quickchatapp;
+
+/**
+ * ShardedMessageManagerTest.java
+ * Unit tests for ShardedMessageManager class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static quickchatapp.TestMessages.message;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ShardedMessageManagerTest {
+    
+    @Test
+    public void testRecipientSearchUsesOwningShard() {
+        ShardedMessageManager manager = new ShardedMessageManager(4);
+        manager.addMessage(message("+27718693002", "Where are you?", "Sent"));
+        manager.addMessage(message("+27718693002", "It is dinner time!", "Stored"));
+        manager.addMessage(message("+27838884567", "Ok, I am leaving without you.", "Sent"));
+        
+        List<String> found = manager.searchByRecipient("+27718693002");
+        
+        assertEquals(List.of("Where are you?", "It is dinner time!"), found);
+    }
+    
+    @Test
+    public void testGlobalOperationsMergeAllShards() {
+        ShardedMessageManager manager = new ShardedMessageManager(8);
+        for (int i = 0; i < 100; i++) {
+            String status = i % 2 == 0 ? "Sent" : "Stored";
+            manager.addMessage(message("+277186930" + String.format("%02d", i), "Message " + i, status));
+        }
+        manager.addMessage(message("+27718693099", "The longest message of them all", "Sent"));
+        manager.addMessage(message("+27718693098", "Ignored disregarded message that is even longer", "Disregarded"));
+        
+        assertEquals(102, manager.getMessageCount());
+        assertEquals(51, manager.countByStatus("Sent"));
+        assertEquals(50, manager.countByStatus("Stored"));
+        assertEquals(1, manager.countByStatus("Disregarded"));
+        assertEquals("The longest message of them all", manager.findLongestMessage());
+        assertTrue(manager.displayReport().contains("Total Sent Messages: 51"));
+    }
+    
+    @Test
+    public void testSearchAndDeleteAcrossShards() {
+        ShardedMessageManager manager = new ShardedMessageManager(4);
+        Message msg = message("+27838884567", "Ok, I am leaving without you.", "Sent");
+        manager.addMessage(msg);
+        manager.addMessage(message("+27718693002", "Where are you?", "Sent"));
+        
+        assertEquals("Recipient: +27838884567\nMessage: Ok, I am leaving without you.",
+                     manager.searchByMessageID(msg.getMessageID()));
+        assertEquals("Message \"Ok, I am leaving without you.\" successfully deleted.",
+                     manager.deleteMessageByHash(msg.getMessageHash()));
+        assertEquals("Message hash not found.", manager.deleteMessageByHash(msg.getMessageHash()));
+        assertEquals("Message ID not found.", manager.searchByMessageID(msg.getMessageID()));
+    }
+    
+    @Test
+    public void testDeleteByHashRemovesOnlyFirstMatch() {
+        ShardedMessageManager manager = new ShardedMessageManager(4);
+        String other = "+27838884567";
+        for (int i = 0; manager.shardFor(other) == manager.shardFor("+27718693002"); i++) {
+            other = "+2783888456" + i;
+        }
+        manager.addMessage(new Message("0000000001", 1, "+27718693002", "Hi", "00:1:HIHI", "Sent"));
+        manager.addMessage(new Message("0000000002", 2, other, "Hi", "00:1:HIHI", "Sent"));
+        
+        assertEquals("Message \"Hi\" successfully deleted.", manager.deleteMessageByHash("00:1:HIHI"));
+        assertEquals(1, manager.getMessageCount());
+    }
+    
+    @Test
+    public void testEmptyManager() {
+        ShardedMessageManager manager = new ShardedMessageManager(3);
+        
+        assertEquals("No messages available.", manager.findLongestMessage());
+        assertTrue(manager.displayReport().contains("No sent messages to display."));
+    }
+}
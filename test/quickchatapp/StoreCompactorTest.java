@@ -0,0 +1,165 @@
+package quickchatapp;
+
+/**
+ * StoreCompactorTest.java
+ * Unit tests for StoreCompactor class
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class StoreCompactorTest {
+    private static final long NOW = 1_000L * 60 * 60 * 24 * 365;
+    private static final long DAY = 1_000L * 60 * 60 * 24;
+    
+    @Test
+    public void testTombstonedRecordsRemoved() throws IOException {
+        Path dir = Files.createTempDirectory("compact");
+        Path store = write(dir, record("1000000001", "10:1:HI:TONIGHT", "+27718693002", NOW),
+                record("1000000002", "10:2:HI:LATER", "+27718693002", NOW),
+                record("1000000003", "10:3:HI:SOON", "+27838884567", NOW));
+        Path tombstones = dir.resolve("tombstones");
+        Files.write(tombstones, (Message.tombstoneKey("1000000002", "10:2:HI:LATER") + "\n").getBytes(StandardCharsets.UTF_8));
+        
+        StoreCompactor.Result result = new StoreCompactor(store, tombstones, new StoreCompactor.RetentionPolicy(), () -> NOW).compact();
+        
+        assertEquals(3, result.getRecordsBefore());
+        assertEquals(2, result.getRecordsAfter());
+        assertEquals(1, result.getDeletedRemoved());
+        assertTrue(result.getBytesReclaimed() > 0, "Removing a record should reclaim space");
+        JSONArray kept = read(store);
+        assertEquals("1000000001", kept.getJSONObject(0).getString("messageID"));
+        assertEquals("1000000003", kept.getJSONObject(1).getString("messageID"));
+        assertEquals(0, Files.size(tombstones));
+    }
+    
+    @Test
+    public void testRetentionByAgeStatusAndRecipient() throws IOException {
+        Path dir = Files.createTempDirectory("compact");
+        JSONObject disregarded = record("1000000005", "10:5:OLD:DRAFT", "+27838884567", NOW);
+        disregarded.put("sendStatus", "Disregarded");
+        Path store = write(dir, record("1000000001", "10:1:A:A", "+27718693002", NOW - 40 * DAY),
+                record("1000000002", "10:2:B:B", "+27718693002", NOW - DAY),
+                record("1000000003", "10:3:C:C", "+27718693002", NOW - DAY),
+                record("1000000004", "10:4:D:D", "+27718693002", NOW),
+                disregarded);
+        StoreCompactor.RetentionPolicy policy = new StoreCompactor.RetentionPolicy();
+        policy.setMaxAge(Duration.ofDays(30));
+        policy.setMaxPerRecipient(2);
+        policy.setPurgedStatuses("Disregarded");
+        
+        StoreCompactor.Result result = new StoreCompactor(store, dir.resolve("tombstones"), policy, () -> NOW).compact();
+        
+        assertEquals(3, result.getExpiredRemoved());
+        JSONArray kept = read(store);
+        assertEquals(2, kept.length());
+        assertEquals("1000000003", kept.getJSONObject(0).getString("messageID"));
+        assertEquals("1000000004", kept.getJSONObject(1).getString("messageID"));
+    }
+    
+    @Test
+    public void testRecordsWithoutAgeAreKept() throws IOException {
+        Path dir = Files.createTempDirectory("compact");
+        Path store = write(dir, record("1000000001", "10:1:HI:THERE", "+27718693002", 0));
+        StoreCompactor.RetentionPolicy policy = new StoreCompactor.RetentionPolicy();
+        policy.setMaxAge(Duration.ofDays(1));
+        
+        StoreCompactor.Result result = new StoreCompactor(store, dir.resolve("tombstones"), policy, () -> NOW).compact();
+        
+        assertEquals(0, result.getRecordsRemoved());
+        assertEquals(1, read(store).length());
+    }
+    
+    @Test
+    public void testUnreferencedBodiesPruned() throws IOException {
+        Path dir = Files.createTempDirectory("compact");
+        JSONObject shared = record("1000000001", "10:1:KEEP:ME", "+27718693002", NOW);
+        shared.put("bodyRef", "keep");
+        JSONObject deleted = record("1000000002", "10:2:DROP:ME", "+27718693002", NOW);
+        deleted.put("bodyRef", "drop");
+        Path store = write(dir, shared, deleted);
+        JSONObject bodies = new JSONObject();
+        bodies.put("keep", "Keep me");
+        bodies.put("drop", "Drop me");
+        MessageBodyStore.write(dir.resolve(MessageBodyStore.BODY_FILE), bodies);
+        Path tombstones = dir.resolve("tombstones");
+        Files.write(tombstones, (Message.tombstoneKey("1000000002", "10:2:DROP:ME") + "\n").getBytes(StandardCharsets.UTF_8));
+        
+        new StoreCompactor(store, tombstones, new StoreCompactor.RetentionPolicy(), () -> NOW).compact();
+        
+        assertEquals(Set.of("keep"), MessageBodyStore.readBodies(dir.resolve(MessageBodyStore.BODY_FILE)).keySet());
+    }
+    
+    @Test
+    public void testStoreShrunkDuringCompactionIsRetainedAgain() throws IOException {
+        Path dir = Files.createTempDirectory("compact");
+        JSONObject first = record("1000000001", "10:1:HI:TONIGHT", "+27718693002", NOW);
+        JSONObject third = record("1000000003", "10:3:HI:SOON", "+27838884567", NOW);
+        Path store = write(dir, first, record("1000000002", "10:2:HI:LATER", "+27718693002", NOW), third);
+        Path tombstones = dir.resolve("tombstones");
+        Files.write(tombstones, (Message.tombstoneKey("1000000002", "10:2:HI:LATER") + "\n").getBytes(StandardCharsets.UTF_8));
+        // The clock is read while filtering, between the copy and the swap: another
+        // compaction finishes there, then a record is stored
+        AtomicBoolean interrupted = new AtomicBoolean();
+        LongSupplier clock = () -> {
+            if (interrupted.compareAndSet(false, true)) {
+                try {
+                    write(dir, first, third, record("1000000004", "10:4:NEW:ONE", "+27838884567", NOW));
+                    Files.write(tombstones, new byte[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return NOW;
+        };
+        
+        StoreCompactor.Result result = new StoreCompactor(store, tombstones, new StoreCompactor.RetentionPolicy(), clock).compact();
+        
+        assertEquals(3, result.getRecordsAfter());
+        JSONArray kept = read(store);
+        assertEquals("1000000001", kept.getJSONObject(0).getString("messageID"));
+        assertEquals("1000000003", kept.getJSONObject(1).getString("messageID"));
+        assertEquals("1000000004", kept.getJSONObject(2).getString("messageID"));
+        assertEquals(0, Files.size(tombstones));
+    }
+    
+    private static JSONObject record(String messageID, String messageHash, String recipient, long storedAt) {
+        JSONObject record = new JSONObject();
+        record.put("messageID", messageID);
+        record.put("numMessagesSent", 1);
+        record.put("recipient", recipient);
+        record.put("messageContent", "Message " + messageID);
+        record.put("messageHash", messageHash);
+        record.put("sendStatus", "Stored");
+        if (storedAt > 0) {
+            record.put("storedAt", storedAt);
+        }
+        return record;
+    }
+    
+    private static Path write(Path dir, JSONObject... records) throws IOException {
+        JSONArray array = new JSONArray();
+        for (JSONObject record : records) {
+            array.put(record);
+        }
+        Path store = dir.resolve("stored_messages.json");
+        Files.write(store, array.toString(4).getBytes(StandardCharsets.UTF_8));
+        return store;
+    }
+    
+    private static JSONArray read(Path store) throws IOException {
+        return new JSONArray(new String(Files.readAllBytes(store), StandardCharsets.UTF_8));
+    }
+}
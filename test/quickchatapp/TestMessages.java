@@ -0,0 +1,28 @@
+package quickchatapp;
+
+/**
+ * TestMessages.java
+ * Message fixtures shared by the unit tests
+ */
+
+final class TestMessages {
+    
+    private TestMessages() {
+    }
+    
+    /**
+     * Builds a message with its hash, as the send path would
+     * @param recipient recipient cell number
+     * @param content message text
+     * @param status "Sent", "Stored" or "Disregarded"
+     * @return the message
+     */
+    static Message message(String recipient, String content, String status) {
+        Message msg = new Message();
+        msg.setRecipient(recipient);
+        msg.setMessageContent(content);
+        msg.setSendStatus(status);
+        msg.createMessageHash();
+        return msg;
+    }
+}